@@ -25,7 +25,6 @@
 package org.apache.jcp.xml.dsig.internal.dom;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.security.spec.AlgorithmParameterSpec;
 import java.security.InvalidAlgorithmParameterException;
@@ -41,6 +40,7 @@ import org.apache.xml.security.c14n.Canonicalizer;
 import org.apache.xml.security.c14n.InvalidCanonicalizerException;
 import org.apache.xml.security.signature.XMLSignatureInput;
 import org.apache.xml.security.transforms.Transform;
+import org.apache.xml.security.utils.UnsyncByteArrayOutputStream;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -128,7 +128,7 @@ public abstract class ApacheCanonicalizer extends TransformService {
         if (os != null) {
             apacheCanonicalizer.setWriter(os);
         } else {
-            apacheCanonicalizer.setWriter(new ByteArrayOutputStream());
+            apacheCanonicalizer.setWriter(new UnsyncByteArrayOutputStream());
         }
 
         try {
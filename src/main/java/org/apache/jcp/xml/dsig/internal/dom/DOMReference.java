@@ -50,6 +50,7 @@ import org.apache.xml.security.utils.XMLUtils;
 import org.apache.jcp.xml.dsig.internal.DigesterOutputStream;
 import org.apache.xml.security.algorithms.MessageDigestAlgorithm;
 import org.apache.xml.security.signature.XMLSignatureInput;
+import org.apache.xml.security.utils.MultiOutputStream;
 import org.apache.xml.security.utils.UnsyncBufferedOutputStream;
 
 /**
@@ -92,6 +93,8 @@ public final class DOMReference extends DOMStructure
     private boolean digested = false;
     private boolean validated = false;
     private boolean validationStatus;
+    // the References which are validated together with this one, see groupSharedReferences
+    private List<DOMReference> sharedReferences;
     private Data derefData;
     private InputStream dis;
     private MessageDigest md;
@@ -367,6 +370,20 @@ public final class DOMReference extends DOMStructure
         if (validated) {
             return validationStatus;
         }
+        if (sharedReferences != null) {
+            List<DOMReference> shared = new ArrayList<>(sharedReferences.size());
+            shared.add(this);
+            for (DOMReference reference : sharedReferences) {
+                if (reference != this && !reference.validated) {
+                    shared.add(reference);
+                }
+                reference.sharedReferences = null;
+            }
+            if (shared.size() > 1 && canShare(validateContext)) {
+                validate(shared, validateContext);
+                return validationStatus;
+            }
+        }
         Data data = dereference(validateContext);
         calcDigestValue = transform(data, validateContext);
 
@@ -411,10 +428,128 @@ public final class DOMReference extends DOMStructure
         return data;
     }
 
-    private byte[] transform(Data dereferencedData,
-                             XMLCryptoContext context)
+    /**
+     * Groups the References which dereference the same same-document URI and apply equal
+     * Transforms. When the first of a group is validated, the transformed octets are
+     * calculated once and fed to the digests of all of them. The results are returned by
+     * the subsequent calls of {@link #validate(XMLValidateContext)}.
+     *
+     * @param references the References of a SignedInfo or Manifest
+     * @param validateContext the validating context
+     */
+    static void groupSharedReferences(List<Reference> references,
+                                      XMLValidateContext validateContext)
+    {
+        if (!canShare(validateContext)) {
+            return;
+        }
+        List<DOMReference> pending = new ArrayList<>(references.size());
+        for (Reference reference : references) {
+            if (reference instanceof DOMReference) {
+                DOMReference domReference = (DOMReference)reference;
+                if (!domReference.validated && domReference.isShareable()) {
+                    pending.add(domReference);
+                }
+            }
+        }
+        while (pending.size() > 1) {
+            DOMReference first = pending.remove(0);
+            List<DOMReference> shared = new ArrayList<>();
+            shared.add(first);
+            for (Iterator<DOMReference> it = pending.iterator(); it.hasNext();) {
+                DOMReference reference = it.next();
+                if (first.uri.equals(reference.uri)
+                    && isEqualNode(first.getTransformsElement(), reference.getTransformsElement())) {
+                    shared.add(reference);
+                    it.remove();
+                }
+            }
+            if (shared.size() > 1) {
+                for (DOMReference reference : shared) {
+                    reference.sharedReferences = shared;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether References can be validated together with the given context. A
+     * URIDereferencer of the caller must be passed each Reference, and with
+     * javax.xml.crypto.dsig.cacheReference the dereferenced data and digest input are
+     * cached per Reference.
+     */
+    private static boolean canShare(XMLValidateContext validateContext) {
+        Boolean cache = (Boolean)
+            validateContext.getProperty("javax.xml.crypto.dsig.cacheReference");
+        if (cache != null && cache) {
+            return false;
+        }
+        URIDereferencer deref = validateContext.getURIDereferencer();
+        return deref == null || deref == DOMURIDereferencer.INSTANCE;
+    }
+
+    private static void validate(List<DOMReference> shared,
+                                 XMLValidateContext validateContext)
         throws XMLSignatureException
     {
+        LOG.debug("Validating {} References with URI \"{}\" in one pass",
+                  shared.size(), shared.get(0).uri);
+        DigesterOutputStream[] digesters = new DigesterOutputStream[shared.size()];
+        for (int i = 0; i < digesters.length; i++) {
+            digesters[i] = new DigesterOutputStream(shared.get(i).getMessageDigest());
+        }
+        DOMReference first = shared.get(0);
+        Data data = first.dereference(validateContext);
+        try (OutputStream os = new UnsyncBufferedOutputStream(new MultiOutputStream(digesters))) {
+            first.transform(data, validateContext, os);
+            os.flush();
+        } catch (IOException e) {
+            throw new XMLSignatureException(e);
+        }
+        for (int i = 0; i < digesters.length; i++) {
+            DOMReference reference = shared.get(i);
+            reference.calcDigestValue = digesters[i].getDigestValue();
+            reference.validationStatus =
+                Arrays.equals(reference.digestValue, reference.calcDigestValue);
+            reference.validated = true;
+        }
+    }
+
+    /**
+     * Returns whether the digest input of this Reference can be shared with other References.
+     * Transforms which evaluate XPath expressions are excluded, as here() depends on the
+     * location of the Transform.
+     */
+    private boolean isShareable() {
+        if (refElem == null || uri == null || !uri.isEmpty() && uri.charAt(0) != '#') {
+            return false;
+        }
+        for (Transform transform : allTransforms) {
+            String algorithm = transform.getAlgorithm();
+            if (Transform.XPATH.equals(algorithm) || Transform.XPATH2.equals(algorithm)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Element getTransformsElement() {
+        Element child = DOMUtils.getFirstChildElement(refElem);
+        if (child != null && "Transforms".equals(child.getLocalName())
+            && XMLSignature.XMLNS.equals(child.getNamespaceURI())) {
+            return child;
+        }
+        return null;
+    }
+
+    private static boolean isEqualNode(Node node1, Node node2) {
+        if (node1 == null || node2 == null) {
+            return node1 == node2;
+        }
+        return node1.isEqualNode(node2);
+    }
+
+    private MessageDigest getMessageDigest() throws XMLSignatureException {
         if (md == null) {
             try {
                 md = MessageDigest.getInstance
@@ -424,17 +559,48 @@ public final class DOMReference extends DOMStructure
             }
         }
         md.reset();
+        return md;
+    }
+
+    private byte[] transform(Data dereferencedData,
+                             XMLCryptoContext context)
+        throws XMLSignatureException
+    {
         DigesterOutputStream dos;
         Boolean cache = (Boolean)
             context.getProperty("javax.xml.crypto.dsig.cacheReference");
         if (cache != null && cache) {
             this.derefData = copyDerefData(dereferencedData);
-            dos = new DigesterOutputStream(md, true);
+            dos = new DigesterOutputStream(getMessageDigest(), true);
         } else {
-            dos = new DigesterOutputStream(md);
+            dos = new DigesterOutputStream(getMessageDigest());
         }
-        Data data = dereferencedData;
         try (OutputStream os = new UnsyncBufferedOutputStream(dos)) {
+            transform(dereferencedData, context, os);
+            os.flush();
+            if (cache != null && cache) {
+                this.dis = dos.getInputStream();
+            }
+            return dos.getDigestValue();
+        } catch (IOException e) {
+            throw new XMLSignatureException(e);
+        } finally {
+            if (dos != null) {
+                try {
+                    dos.close();
+                } catch (IOException e) {
+                    throw new XMLSignatureException(e);
+                }
+            }
+        }
+    }
+
+    private void transform(Data dereferencedData,
+                           XMLCryptoContext context, OutputStream os)
+        throws XMLSignatureException
+    {
+        Data data = dereferencedData;
+        try {
             for (int i = 0, size = transforms.size(); i < size; i++) {
                 DOMTransform transform = (DOMTransform)transforms.get(i);
                 if (i < size - 1) {
@@ -520,11 +686,6 @@ public final class DOMReference extends DOMStructure
                     xi.updateOutputStream(os);
                 }
             }
-            os.flush();
-            if (cache != null && cache) {
-                this.dis = dos.getInputStream();
-            }
-            return dos.getDigestValue();
         } catch (NoSuchAlgorithmException e) {
             throw new XMLSignatureException(e);
         } catch (TransformException e) {
@@ -535,14 +696,6 @@ public final class DOMReference extends DOMStructure
             throw new XMLSignatureException(e);
         } catch (org.apache.xml.security.c14n.CanonicalizationException e) {
             throw new XMLSignatureException(e);
-        } finally {
-            if (dos != null) {
-                try {
-                    dos.close();
-                } catch (IOException e) {
-                    throw new XMLSignatureException(e);
-                }
-            }
         }
     }
 
@@ -25,10 +25,12 @@
 package org.apache.jcp.xml.dsig.internal.dom;
 
 import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 import org.apache.xml.security.Init;
+import org.apache.xml.security.utils.DocumentIdIndex;
 import org.apache.xml.security.utils.XMLUtils;
 import org.apache.xml.security.utils.resolver.ResourceResolver;
 import org.apache.xml.security.signature.XMLSignatureInput;
@@ -44,6 +46,12 @@ public final class DOMURIDereferencer implements URIDereferencer {
 
     static final URIDereferencer INSTANCE = new DOMURIDereferencer();
 
+    /**
+     * The property of the validate context under which DOMXMLSignature keeps the index of the
+     * IDs of the document for the duration of one validation.
+     */
+    static final String ID_INDEX_PROPERTY = "org.apache.jcp.xml.dsig.internal.dom.DocumentIdIndex";
+
     private DOMURIDereferencer() {
         // need to call org.apache.xml.security.Init.init()
         // before calling any apache security code
@@ -82,8 +90,16 @@ public final class DOMURIDereferencer implements URIDereferencer {
             Node referencedElem = dcc.getElementById(id);
             if (referencedElem != null) {
                 if (secVal) {
-                    Element start = referencedElem.getOwnerDocument().getDocumentElement();
-                    if (!XMLUtils.protectAgainstWrappingAttack(start, (Element)referencedElem, id)) {
+                    Document doc = referencedElem.getOwnerDocument();
+                    Object idIndex = context.getProperty(ID_INDEX_PROPERTY);
+                    boolean unique;
+                    if (idIndex instanceof DocumentIdIndex && ((DocumentIdIndex)idIndex).getDocument() == doc) {
+                        unique = ((DocumentIdIndex)idIndex).isUnique(id, (Element)referencedElem);
+                    } else {
+                        Element start = doc.getDocumentElement();
+                        unique = XMLUtils.protectAgainstWrappingAttack(start, (Element)referencedElem, id);
+                    }
+                    if (!unique) {
                         String error = "Multiple Elements with the same ID " + id + " were detected";
                         throw new URIReferenceException(error);
                     }
@@ -108,7 +124,10 @@ public final class DOMURIDereferencer implements URIDereferencer {
         try {
             ResourceResolver apacheResolver =
                 ResourceResolver.getInstance(uriAttr, baseURI, secVal);
-            XMLSignatureInput in = apacheResolver.resolve(uriAttr, baseURI, secVal);
+            Object idIndex = context.getProperty(ID_INDEX_PROPERTY);
+            XMLSignatureInput in = apacheResolver.resolve(
+                uriAttr, baseURI, secVal, idIndex instanceof DocumentIdIndex ? (DocumentIdIndex)idIndex : null
+            );
             if (in.isOctetStream()) {
                 return new ApacheOctetStreamData(in);
             } else {
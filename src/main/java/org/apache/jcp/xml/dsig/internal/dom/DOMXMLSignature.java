@@ -46,9 +46,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+import org.apache.xml.security.utils.DocumentIdIndex;
 import org.apache.xml.security.utils.XMLUtils;
 
 /**
@@ -256,8 +258,24 @@ public final class DOMXMLSignature extends DOMStructure
             return validationStatus;
         }
 
+        // The IDs of the document are indexed once for all the References of this validation only,
+        // as ID attributes may be added or registered before the next one
+        Object previousIdIndex = vc.getProperty(DOMURIDereferencer.ID_INDEX_PROPERTY);
+        Document doc = DOMUtils.getOwnerDocument(((DOMValidateContext)vc).getNode());
+        vc.setProperty(DOMURIDereferencer.ID_INDEX_PROPERTY, new DocumentIdIndex(doc));
+        try {
+            validationStatus = validateReferences(vc);
+        } finally {
+            vc.setProperty(DOMURIDereferencer.ID_INDEX_PROPERTY, previousIdIndex);
+        }
+        validated = true;
+        return validationStatus;
+    }
+
+    private boolean validateReferences(XMLValidateContext vc) throws XMLSignatureException {
         // validate all References
         List<Reference> refs = DOMSignedInfo.getSignedInfoReferences(this.si);
+        DOMReference.groupSharedReferences(refs, vc);
         boolean validateRefs = true;
         for (int i = 0, size = refs.size(); validateRefs && i < size; i++) {
             Reference ref = refs.get(i);
@@ -267,9 +285,7 @@ public final class DOMXMLSignature extends DOMStructure
         }
         if (!validateRefs) {
             LOG.debug("Couldn't validate the References");
-            validationStatus = false;
-            validated = true;
-            return validationStatus;
+            return false;
         }
 
         // validate Manifests, if property set
@@ -301,9 +317,7 @@ public final class DOMXMLSignature extends DOMStructure
             }
         }
 
-        validationStatus = validateMans;
-        validated = true;
-        return validationStatus;
+        return validateMans;
     }
 
     @Override
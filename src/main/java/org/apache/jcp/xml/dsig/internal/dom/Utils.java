@@ -29,6 +29,8 @@ import java.io.InputStream;
 import java.io.IOException;
 import java.util.*;
 import javax.xml.crypto.XMLCryptoContext;
+
+import org.apache.xml.security.utils.CompactNodeSet;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
@@ -67,7 +69,7 @@ public final class Utils {
      * @return the Set of Nodes
      */
     static Set<Node> toNodeSet(Iterator<Node> i) {
-        Set<Node> nodeSet = new HashSet<>();
+        Set<Node> nodeSet = new CompactNodeSet();
         while (i.hasNext()) {
             Node n = i.next();
             nodeSet.add(n);
@@ -53,6 +53,9 @@ public class SignatureAlgorithm extends Algorithm {
     private static Map<String, Class<? extends SignatureAlgorithmSpi>> algorithmHash =
         new ConcurrentHashMap<String, Class<? extends SignatureAlgorithmSpi>>();
 
+    /** Whether the default algorithms are available, without being part of the map */
+    private static volatile boolean defaultAlgorithmsRegistered;
+
     /** Field signatureAlgorithm */
     private final SignatureAlgorithmSpi signatureAlgorithm;
 
@@ -142,7 +145,7 @@ public class SignatureAlgorithm extends Algorithm {
         throws XMLSignatureException {
         try {
             Class<? extends SignatureAlgorithmSpi> implementingClass =
-                algorithmHash.get(algorithmURI);
+                getSignatureAlgorithmSpiClass(algorithmURI);
             LOG.debug("Create URI \"{}\" class \"{}\"", algorithmURI, implementingClass);
             if (implementingClass == null) {
                 Object exArgs[] = { algorithmURI };
@@ -323,7 +326,7 @@ public class SignatureAlgorithm extends Algorithm {
         LOG.debug("Try to register {} {}", algorithmURI, implementingClass);
 
         // are we already registered?
-        Class<? extends SignatureAlgorithmSpi> registeredClass = algorithmHash.get(algorithmURI);
+        Class<? extends SignatureAlgorithmSpi> registeredClass = getSignatureAlgorithmSpiClass(algorithmURI);
         if (registeredClass != null) {
             Object exArgs[] = { algorithmURI, registeredClass };
             throw new AlgorithmAlreadyRegisteredException(
@@ -359,7 +362,7 @@ public class SignatureAlgorithm extends Algorithm {
         LOG.debug("Try to register {} {}", algorithmURI, implementingClass);
 
         // are we already registered?
-        Class<? extends SignatureAlgorithmSpi> registeredClass = algorithmHash.get(algorithmURI);
+        Class<? extends SignatureAlgorithmSpi> registeredClass = getSignatureAlgorithmSpiClass(algorithmURI);
         if (registeredClass != null) {
             Object exArgs[] = { algorithmURI, registeredClass };
             throw new AlgorithmAlreadyRegisteredException(
@@ -370,104 +373,95 @@ public class SignatureAlgorithm extends Algorithm {
     }
 
     /**
-     * This method registers the default algorithms.
+     * This method registers the default algorithms. The implementing classes are only loaded
+     * when an algorithm is used for the first time, see {@link #getDefaultSignatureAlgorithmSpiClass(String)}.
      */
     public static void registerDefaultAlgorithms() {
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_DSA, SignatureDSA.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_DSA_SHA256, SignatureDSA.SHA256.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA1, SignatureBaseRSA.SignatureRSASHA1.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_MAC_HMAC_SHA1, IntegrityHmac.IntegrityHmacSHA1.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_NOT_RECOMMENDED_RSA_MD5,
-            SignatureBaseRSA.SignatureRSAMD5.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_RSA_RIPEMD160,
-            SignatureBaseRSA.SignatureRSARIPEMD160.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA224, SignatureBaseRSA.SignatureRSASHA224.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA256, SignatureBaseRSA.SignatureRSASHA256.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA384, SignatureBaseRSA.SignatureRSASHA384.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA512, SignatureBaseRSA.SignatureRSASHA512.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA1_MGF1, SignatureBaseRSA.SignatureRSASHA1MGF1.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA224_MGF1, SignatureBaseRSA.SignatureRSASHA224MGF1.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA256_MGF1, SignatureBaseRSA.SignatureRSASHA256MGF1.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA384_MGF1, SignatureBaseRSA.SignatureRSASHA384MGF1.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA512_MGF1, SignatureBaseRSA.SignatureRSASHA512MGF1.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA3_224_MGF1, SignatureBaseRSA.SignatureRSASHA3_224MGF1.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA3_256_MGF1, SignatureBaseRSA.SignatureRSASHA3_256MGF1.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA3_384_MGF1, SignatureBaseRSA.SignatureRSASHA3_384MGF1.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA3_512_MGF1, SignatureBaseRSA.SignatureRSASHA3_512MGF1.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_ECDSA_SHA1, SignatureECDSA.SignatureECDSASHA1.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_ECDSA_SHA224, SignatureECDSA.SignatureECDSASHA224.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_ECDSA_SHA256, SignatureECDSA.SignatureECDSASHA256.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_ECDSA_SHA384, SignatureECDSA.SignatureECDSASHA384.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_ECDSA_SHA512, SignatureECDSA.SignatureECDSASHA512.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_SIGNATURE_ECDSA_RIPEMD160, SignatureECDSA.SignatureECDSARIPEMD160.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_MAC_HMAC_NOT_RECOMMENDED_MD5, IntegrityHmac.IntegrityHmacMD5.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_MAC_HMAC_RIPEMD160, IntegrityHmac.IntegrityHmacRIPEMD160.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_MAC_HMAC_SHA224, IntegrityHmac.IntegrityHmacSHA224.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_MAC_HMAC_SHA256, IntegrityHmac.IntegrityHmacSHA256.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_MAC_HMAC_SHA384, IntegrityHmac.IntegrityHmacSHA384.class
-        );
-        algorithmHash.put(
-            XMLSignature.ALGO_ID_MAC_HMAC_SHA512, IntegrityHmac.IntegrityHmacSHA512.class
-        );
+        defaultAlgorithmsRegistered = true;
+    }
+
+    /**
+     * @return the class registered for the algorithm URI, including the default algorithms
+     */
+    private static Class<? extends SignatureAlgorithmSpi> getSignatureAlgorithmSpiClass(String algorithmURI) {
+        Class<? extends SignatureAlgorithmSpi> implementingClass = algorithmHash.get(algorithmURI);
+        if (implementingClass == null && defaultAlgorithmsRegistered) {
+            implementingClass = getDefaultSignatureAlgorithmSpiClass(algorithmURI);
+        }
+        return implementingClass;
+    }
+
+    /**
+     * The table of the default algorithms. Unlike a map of classes, a switch only loads the
+     * class of the requested algorithm.
+     */
+    private static Class<? extends SignatureAlgorithmSpi> getDefaultSignatureAlgorithmSpiClass(String algorithmURI) {
+        switch (algorithmURI) {
+            case XMLSignature.ALGO_ID_SIGNATURE_DSA:
+                return SignatureDSA.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_DSA_SHA256:
+                return SignatureDSA.SHA256.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA1:
+                return SignatureBaseRSA.SignatureRSASHA1.class;
+            case XMLSignature.ALGO_ID_MAC_HMAC_SHA1:
+                return IntegrityHmac.IntegrityHmacSHA1.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_NOT_RECOMMENDED_RSA_MD5:
+                return SignatureBaseRSA.SignatureRSAMD5.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_RSA_RIPEMD160:
+                return SignatureBaseRSA.SignatureRSARIPEMD160.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA224:
+                return SignatureBaseRSA.SignatureRSASHA224.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA256:
+                return SignatureBaseRSA.SignatureRSASHA256.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA384:
+                return SignatureBaseRSA.SignatureRSASHA384.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA512:
+                return SignatureBaseRSA.SignatureRSASHA512.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA1_MGF1:
+                return SignatureBaseRSA.SignatureRSASHA1MGF1.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA224_MGF1:
+                return SignatureBaseRSA.SignatureRSASHA224MGF1.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA256_MGF1:
+                return SignatureBaseRSA.SignatureRSASHA256MGF1.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA384_MGF1:
+                return SignatureBaseRSA.SignatureRSASHA384MGF1.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA512_MGF1:
+                return SignatureBaseRSA.SignatureRSASHA512MGF1.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA3_224_MGF1:
+                return SignatureBaseRSA.SignatureRSASHA3_224MGF1.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA3_256_MGF1:
+                return SignatureBaseRSA.SignatureRSASHA3_256MGF1.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA3_384_MGF1:
+                return SignatureBaseRSA.SignatureRSASHA3_384MGF1.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA3_512_MGF1:
+                return SignatureBaseRSA.SignatureRSASHA3_512MGF1.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_ECDSA_SHA1:
+                return SignatureECDSA.SignatureECDSASHA1.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_ECDSA_SHA224:
+                return SignatureECDSA.SignatureECDSASHA224.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_ECDSA_SHA256:
+                return SignatureECDSA.SignatureECDSASHA256.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_ECDSA_SHA384:
+                return SignatureECDSA.SignatureECDSASHA384.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_ECDSA_SHA512:
+                return SignatureECDSA.SignatureECDSASHA512.class;
+            case XMLSignature.ALGO_ID_SIGNATURE_ECDSA_RIPEMD160:
+                return SignatureECDSA.SignatureECDSARIPEMD160.class;
+            case XMLSignature.ALGO_ID_MAC_HMAC_NOT_RECOMMENDED_MD5:
+                return IntegrityHmac.IntegrityHmacMD5.class;
+            case XMLSignature.ALGO_ID_MAC_HMAC_RIPEMD160:
+                return IntegrityHmac.IntegrityHmacRIPEMD160.class;
+            case XMLSignature.ALGO_ID_MAC_HMAC_SHA224:
+                return IntegrityHmac.IntegrityHmacSHA224.class;
+            case XMLSignature.ALGO_ID_MAC_HMAC_SHA256:
+                return IntegrityHmac.IntegrityHmacSHA256.class;
+            case XMLSignature.ALGO_ID_MAC_HMAC_SHA384:
+                return IntegrityHmac.IntegrityHmacSHA384.class;
+            case XMLSignature.ALGO_ID_MAC_HMAC_SHA512:
+                return IntegrityHmac.IntegrityHmacSHA512.class;
+            default:
+                return null;
+        }
     }
 
     /**
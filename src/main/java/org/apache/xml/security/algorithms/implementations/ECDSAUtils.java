@@ -23,8 +23,11 @@ import java.math.BigInteger;
 import java.security.interfaces.ECPublicKey;
 import java.security.spec.*;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public final class ECDSAUtils {
 
@@ -45,44 +48,38 @@ public final class ECDSAUtils {
      * @see <A HREF="ftp://ftp.rfc-editor.org/in-notes/rfc4050.txt">3.3. ECDSA Signatures</A>
      */
     public static byte[] convertASN1toXMLDSIG(byte asn1Bytes[]) throws IOException {
+        int r = getFirstInteger(asn1Bytes, 0, asn1Bytes.length);
+        int s = r + 2 + asn1Bytes[r + 1];
+        int rawLen = Math.max(getIntegerLength(asn1Bytes, r), getIntegerLength(asn1Bytes, s));
 
-        if (asn1Bytes.length < 8 || asn1Bytes[0] != 48) {
-            throw new IOException("Invalid ASN.1 format of ECDSA signature");
-        }
-        int offset;
-        if (asn1Bytes[1] > 0) {
-            offset = 2;
-        } else if (asn1Bytes[1] == (byte) 0x81) {
-            offset = 3;
-        } else {
-            throw new IOException("Invalid ASN.1 format of ECDSA signature");
-        }
-
-        byte rLength = asn1Bytes[offset + 1];
-        int i;
-
-        for (i = rLength; i > 0 && asn1Bytes[offset + 2 + rLength - i] == 0; i--); //NOPMD
-
-        byte sLength = asn1Bytes[offset + 2 + rLength + 1];
-        int j;
-
-        for (j = sLength; j > 0 && asn1Bytes[offset + 2 + rLength + 2 + sLength - j] == 0; j--); //NOPMD
-
-        int rawLen = Math.max(i, j);
+        byte xmldsigBytes[] = new byte[2 * rawLen];
+        copyIntegers(asn1Bytes, r, s, xmldsigBytes, 0, rawLen);
+        return xmldsigBytes;
+    }
 
-        if ((asn1Bytes[offset - 1] & 0xff) != asn1Bytes.length - offset
-                || (asn1Bytes[offset - 1] & 0xff) != 2 + rLength + 2 + sLength
-                || asn1Bytes[offset] != 2
-                || asn1Bytes[offset + 2 + rLength] != 2) {
+    /**
+     * Converts an ASN.1 ECDSA value to a XML Signature ECDSA Value of the given length
+     * without allocating any memory.
+     *
+     * @param asn1Bytes the buffer which contains the ASN.1 value
+     * @param asn1Offset the offset of the ASN.1 value
+     * @param asn1Length the length of the ASN.1 value
+     * @param xmldsigBytes the buffer for the XML Signature value
+     * @param xmldsigOffset the offset of the XML Signature value
+     * @param rawLen the length of r and s in the XML Signature value, e.g. 32 for P-256
+     * @return the length of the XML Signature value, i.e. 2 * rawLen
+     * @throws IOException if the ASN.1 value is invalid or r or s is longer than rawLen
+     */
+    public static int convertASN1toXMLDSIG(
+        byte[] asn1Bytes, int asn1Offset, int asn1Length, byte[] xmldsigBytes, int xmldsigOffset, int rawLen
+    ) throws IOException {
+        int r = getFirstInteger(asn1Bytes, asn1Offset, asn1Length);
+        int s = r + 2 + asn1Bytes[r + 1];
+        if (getIntegerLength(asn1Bytes, r) > rawLen || getIntegerLength(asn1Bytes, s) > rawLen) {
             throw new IOException("Invalid ASN.1 format of ECDSA signature");
         }
-        byte xmldsigBytes[] = new byte[2 * rawLen];
-
-        System.arraycopy(asn1Bytes, offset + 2 + rLength - i, xmldsigBytes, rawLen - i, i);
-        System.arraycopy(asn1Bytes, offset + 2 + rLength + 2 + sLength - j, xmldsigBytes,
-                2 * rawLen - j, j);
-
-        return xmldsigBytes;
+        copyIntegers(asn1Bytes, r, s, xmldsigBytes, xmldsigOffset, rawLen);
+        return 2 * rawLen;
     }
 
     /**
@@ -98,58 +95,133 @@ public final class ECDSAUtils {
      * @see <A HREF="ftp://ftp.rfc-editor.org/in-notes/rfc4050.txt">3.3. ECDSA Signatures</A>
      */
     public static byte[] convertXMLDSIGtoASN1(byte xmldsigBytes[]) throws IOException {
+        byte asn1Bytes[] = new byte[getMaxASN1Length(xmldsigBytes.length)];
+        int length = convertXMLDSIGtoASN1(xmldsigBytes, 0, xmldsigBytes.length, asn1Bytes, 0);
+        return length == asn1Bytes.length ? asn1Bytes : Arrays.copyOf(asn1Bytes, length);
+    }
 
-        int rawLen = xmldsigBytes.length / 2;
+    /**
+     * Converts a XML Signature ECDSA Value to an ASN.1 DSA value without allocating any memory.
+     * The ASN.1 value can be verified with {@link java.security.Signature#verify(byte[], int, int)}.
+     *
+     * @param xmldsigBytes the buffer which contains the XML Signature value
+     * @param xmldsigOffset the offset of the XML Signature value
+     * @param xmldsigLength the length of the XML Signature value
+     * @param asn1Bytes the buffer for the ASN.1 value, see {@link #getMaxASN1Length(int)}
+     * @param asn1Offset the offset of the ASN.1 value
+     * @return the length of the ASN.1 value
+     * @throws IOException if the XML Signature value is invalid
+     */
+    public static int convertXMLDSIGtoASN1(
+        byte[] xmldsigBytes, int xmldsigOffset, int xmldsigLength, byte[] asn1Bytes, int asn1Offset
+    ) throws IOException {
+        int rawLen = xmldsigLength / 2;
+        if (rawLen == 0) {
+            throw new IOException("Invalid XMLDSIG format of ECDSA signature");
+        }
+        int r = xmldsigOffset;
+        int s = xmldsigOffset + rawLen;
 
         int i;
-
-        for (i = rawLen; i > 0 && xmldsigBytes[rawLen - i] == 0; i--); //NOPMD
-
-        int j = i;
-
-        if (xmldsigBytes[rawLen - i] < 0) {
-            j += 1;
-        }
+        for (i = rawLen; i > 0 && xmldsigBytes[r + rawLen - i] == 0; i--); //NOPMD
+        int j = i > 0 && xmldsigBytes[r + rawLen - i] < 0 ? i + 1 : i;
 
         int k;
-
-        for (k = rawLen; k > 0 && xmldsigBytes[2 * rawLen - k] == 0; k--); //NOPMD
-
-        int l = k;
-
-        if (xmldsigBytes[2 * rawLen - k] < 0) {
-            l += 1;
-        }
+        for (k = rawLen; k > 0 && xmldsigBytes[s + rawLen - k] == 0; k--); //NOPMD
+        int l = k > 0 && xmldsigBytes[s + rawLen - k] < 0 ? k + 1 : k;
 
         int len = 2 + j + 2 + l;
         if (len > 255) {
             throw new IOException("Invalid XMLDSIG format of ECDSA signature");
         }
-        int offset;
-        byte asn1Bytes[];
-        if (len < 128) {
-            asn1Bytes = new byte[2 + 2 + j + 2 + l];
-            offset = 1;
-        } else {
-            asn1Bytes = new byte[3 + 2 + j + 2 + l];
-            asn1Bytes[1] = (byte) 0x81;
-            offset = 2;
+        int offset = asn1Offset;
+        asn1Bytes[offset++] = 48;
+        if (len >= 128) {
+            asn1Bytes[offset++] = (byte) 0x81;
         }
-        asn1Bytes[0] = 48;
         asn1Bytes[offset++] = (byte) len;
+
         asn1Bytes[offset++] = 2;
         asn1Bytes[offset++] = (byte) j;
-
-        System.arraycopy(xmldsigBytes, rawLen - i, asn1Bytes, offset + j - i, i);
-
-        offset += j;
+        if (j > i) {
+            asn1Bytes[offset++] = 0;
+        }
+        System.arraycopy(xmldsigBytes, r + rawLen - i, asn1Bytes, offset, i);
+        offset += i;
 
         asn1Bytes[offset++] = 2;
         asn1Bytes[offset++] = (byte) l;
+        if (l > k) {
+            asn1Bytes[offset++] = 0;
+        }
+        System.arraycopy(xmldsigBytes, s + rawLen - k, asn1Bytes, offset, k);
+        offset += k;
+
+        return offset - asn1Offset;
+    }
+
+    /**
+     * Returns the maximum length of the ASN.1 value of a XML Signature ECDSA value.
+     *
+     * @param xmldsigLength the length of the XML Signature value
+     * @return the maximum length of the ASN.1 value
+     */
+    public static int getMaxASN1Length(int xmldsigLength) {
+        // SEQUENCE with a long form length and two INTEGERs with a sign byte each
+        return 3 + 2 * (2 + 1 + xmldsigLength / 2);
+    }
+
+    /**
+     * Validates the ASN.1 ECDSA value and returns the offset of the r INTEGER
+     */
+    private static int getFirstInteger(byte[] asn1Bytes, int asn1Offset, int asn1Length) throws IOException {
+        if (asn1Length < 8 || asn1Bytes[asn1Offset] != 48) {
+            throw new IOException("Invalid ASN.1 format of ECDSA signature");
+        }
+        int offset;
+        if (asn1Bytes[asn1Offset + 1] > 0) {
+            offset = 2;
+        } else if (asn1Bytes[asn1Offset + 1] == (byte) 0x81) {
+            offset = 3;
+        } else {
+            throw new IOException("Invalid ASN.1 format of ECDSA signature");
+        }
+
+        int seqLength = asn1Bytes[asn1Offset + offset - 1] & 0xff;
+        int rLength = asn1Bytes[asn1Offset + offset + 1];
+        int s = offset + 2 + rLength;
+        if (seqLength != asn1Length - offset
+            || asn1Bytes[asn1Offset + offset] != 2
+            || rLength < 0 || s + 2 > asn1Length
+            || asn1Bytes[asn1Offset + s] != 2) {
+            throw new IOException("Invalid ASN.1 format of ECDSA signature");
+        }
+        int sLength = asn1Bytes[asn1Offset + s + 1];
+        if (sLength < 0 || seqLength != 2 + rLength + 2 + sLength) {
+            throw new IOException("Invalid ASN.1 format of ECDSA signature");
+        }
+        return asn1Offset + offset;
+    }
 
-        System.arraycopy(xmldsigBytes, 2 * rawLen - k, asn1Bytes, offset + l - k, k);
+    /**
+     * Returns the length of the ASN.1 INTEGER at the given offset without leading zeros
+     */
+    private static int getIntegerLength(byte[] asn1Bytes, int offset) {
+        int length = asn1Bytes[offset + 1];
+        int i;
+        for (i = length; i > 0 && asn1Bytes[offset + 2 + length - i] == 0; i--); //NOPMD
+        return i;
+    }
 
-        return asn1Bytes;
+    private static void copyIntegers(
+        byte[] asn1Bytes, int r, int s, byte[] xmldsigBytes, int xmldsigOffset, int rawLen
+    ) {
+        int i = getIntegerLength(asn1Bytes, r);
+        int j = getIntegerLength(asn1Bytes, s);
+        Arrays.fill(xmldsigBytes, xmldsigOffset, xmldsigOffset + rawLen - i, (byte) 0);
+        System.arraycopy(asn1Bytes, r + 2 + asn1Bytes[r + 1] - i, xmldsigBytes, xmldsigOffset + rawLen - i, i);
+        Arrays.fill(xmldsigBytes, xmldsigOffset + rawLen, xmldsigOffset + 2 * rawLen - j, (byte) 0);
+        System.arraycopy(asn1Bytes, s + 2 + asn1Bytes[s + 1] - j, xmldsigBytes, xmldsigOffset + 2 * rawLen - j, j);
     }
 
     private static final List<ECCurveDefinition> ecCurveDefinitions = new ArrayList<>();
@@ -754,9 +826,45 @@ public final class ECDSAUtils {
         );
     }
 
+    private static final Map<String, ECCurveDefinition> ecCurveDefinitionsByOid = new HashMap<>();
+    private static final Map<String, ECCurveDefinition> ecCurveDefinitionsByName = new HashMap<>();
+    private static final Map<BigInteger, List<ECCurveDefinition>> ecCurveDefinitionsByOrder = new HashMap<>();
+
+    static {
+        for (ECCurveDefinition ecCurveDefinition : ecCurveDefinitions) {
+            ecCurveDefinitionsByOid.putIfAbsent(ecCurveDefinition.getOid(), ecCurveDefinition);
+            for (String name : getNames(ecCurveDefinition.getName())) {
+                ecCurveDefinitionsByName.putIfAbsent(name, ecCurveDefinition);
+            }
+            ecCurveDefinitionsByOrder.computeIfAbsent(ecCurveDefinition.order, k -> new ArrayList<>(1))
+                .add(ecCurveDefinition);
+        }
+    }
+
+    /**
+     * Splits a name like "secp256r1 [NIST P-256, X9.62 prime256v1]" into the name and its aliases
+     */
+    private static List<String> getNames(String name) {
+        List<String> names = new ArrayList<>();
+        names.add(name);
+        int bracket = name.indexOf(" [");
+        if (bracket > 0 && name.endsWith("]")) {
+            names.add(name.substring(0, bracket));
+            for (String alias : name.substring(bracket + 2, name.length() - 1).split(",")) {
+                names.add(alias.trim());
+            }
+        }
+        return names;
+    }
+
     public static String getOIDFromPublicKey(ECPublicKey ecPublicKey) {
         ECParameterSpec ecParameterSpec = ecPublicKey.getParams();
         BigInteger order = ecParameterSpec.getOrder();
+        List<ECCurveDefinition> candidates = ecCurveDefinitionsByOrder.get(order);
+        if (candidates == null) {
+            return null;
+        }
+
         BigInteger affineX = ecParameterSpec.getGenerator().getAffineX();
         BigInteger affineY = ecParameterSpec.getGenerator().getAffineY();
         BigInteger a = ecParameterSpec.getCurve().getA();
@@ -772,9 +880,7 @@ public final class ECDSAUtils {
             field = ecFieldF2m.getReductionPolynomial();
         }
 
-        Iterator<ECCurveDefinition> ecCurveDefinitionIterator = ecCurveDefinitions.iterator();
-        while (ecCurveDefinitionIterator.hasNext()) {
-            ECCurveDefinition ecCurveDefinition = ecCurveDefinitionIterator.next();
+        for (ECCurveDefinition ecCurveDefinition : candidates) {
             String oid = ecCurveDefinition.equals(field, a, b, affineX, affineY, order, h);
             if (oid != null) {
                 return oid;
@@ -784,14 +890,24 @@ public final class ECDSAUtils {
     }
 
     public static ECCurveDefinition getECCurveDefinition(String oid) {
-        Iterator<ECCurveDefinition> ecCurveDefinitionIterator = ecCurveDefinitions.iterator();
-        while (ecCurveDefinitionIterator.hasNext()) {
-            ECCurveDefinition ecCurveDefinition = ecCurveDefinitionIterator.next();
-            if (ecCurveDefinition.getOid().equals(oid)) {
-                return ecCurveDefinition;
-            }
-        }
-        return null;
+        return ecCurveDefinitionsByOid.get(oid);
+    }
+
+    /**
+     * Returns the curve with the given name, e.g. "secp256r1", "NIST P-256" or "X9.62 prime256v1".
+     *
+     * @param name the name of the curve
+     * @return the curve, or null if the name is unknown
+     */
+    public static ECCurveDefinition getECCurveDefinitionByName(String name) {
+        return ecCurveDefinitionsByName.get(name);
+    }
+
+    /**
+     * @return all known curves
+     */
+    public static List<ECCurveDefinition> getECCurveDefinitions() {
+        return Collections.unmodifiableList(ecCurveDefinitions);
     }
 
     public static class ECCurveDefinition {
@@ -806,6 +922,15 @@ public final class ECDSAUtils {
         private final String n;
         private final int h;
 
+        // the parsed values, so that the hex strings are only parsed once
+        private final BigInteger fieldValue;
+        private final BigInteger aValue;
+        private final BigInteger bValue;
+        private final BigInteger xValue;
+        private final BigInteger yValue;
+        private final BigInteger order;
+        private final ECParameterSpec ecParameterSpec;
+
         public ECCurveDefinition(String name, String oid, String field, String a, String b, String x, String y, String n, int h) {
             this.name = name;
             this.oid = oid;
@@ -816,24 +941,50 @@ public final class ECDSAUtils {
             this.y = y;
             this.n = n;
             this.h = h;
+
+            this.fieldValue = new BigInteger(field, 16);
+            this.aValue = new BigInteger(a, 16);
+            this.bValue = new BigInteger(b, 16);
+            this.xValue = new BigInteger(x, 16);
+            this.yValue = new BigInteger(y, 16);
+            this.order = new BigInteger(n, 16);
+            this.ecParameterSpec = createECParameterSpec();
+        }
+
+        private ECParameterSpec createECParameterSpec() {
+            try {
+                EllipticCurve curve = new EllipticCurve(new ECFieldFp(fieldValue), aValue, bValue);
+                return new ECParameterSpec(curve, new ECPoint(xValue, yValue), order, h);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
         }
 
         /**
          * returns the ec oid if parameter are equal to this definition
          */
         public String equals(BigInteger field, BigInteger a, BigInteger b, BigInteger x, BigInteger y, BigInteger n, int h) {
-            if (this.field.equals(field.toString(16))
-                    && this.a.equals(a.toString(16))
-                    && this.b.equals(b.toString(16))
-                    && this.x.equals(x.toString(16))
-                    && this.y.equals(y.toString(16))
-                    && this.n.equals(n.toString(16))
+            if (this.fieldValue.equals(field)
+                    && this.aValue.equals(a)
+                    && this.bValue.equals(b)
+                    && this.xValue.equals(x)
+                    && this.yValue.equals(y)
+                    && this.order.equals(n)
                     && this.h == h) {
                 return this.oid;
             }
             return null;
         }
 
+        /**
+         * Returns the parameters of the curve over a prime field, which are built only once.
+         *
+         * @return the parameters of the curve, or null if they can't be represented
+         */
+        public ECParameterSpec getECParameterSpec() {
+            return ecParameterSpec;
+        }
+
         public String getName() {
             return name;
         }
@@ -50,6 +50,9 @@ public abstract class SignatureECDSA extends SignatureAlgorithmSpi {
     /** Field algorithm */
     private Signature signatureAlgorithm;
 
+    /** The buffer for the ASN.1 value of the signatures to verify, which is reused */
+    private byte[] asn1Buffer;
+
     /**
      * Converts an ASN.1 ECDSA value to a XML Signature ECDSA Value.
      *
@@ -125,13 +128,17 @@ public abstract class SignatureECDSA extends SignatureAlgorithmSpi {
     /** {@inheritDoc} */
     protected boolean engineVerify(byte[] signature) throws XMLSignatureException {
         try {
-            byte[] jcebytes = SignatureECDSA.convertXMLDSIGtoASN1(signature);
+            int maxLength = ECDSAUtils.getMaxASN1Length(signature.length);
+            if (asn1Buffer == null || asn1Buffer.length < maxLength) {
+                asn1Buffer = new byte[maxLength];
+            }
+            int length = ECDSAUtils.convertXMLDSIGtoASN1(signature, 0, signature.length, asn1Buffer, 0);
 
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Called ECDSA.verify() on " + XMLUtils.encodeToString(signature));
             }
 
-            return this.signatureAlgorithm.verify(jcebytes);
+            return this.signatureAlgorithm.verify(asn1Buffer, 0, length);
         } catch (SignatureException ex) {
             throw new XMLSignatureException(ex);
         } catch (IOException ex) {
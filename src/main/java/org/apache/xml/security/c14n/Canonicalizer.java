@@ -98,6 +98,9 @@ public class Canonicalizer {
     private static Map<String, Class<? extends CanonicalizerSpi>> canonicalizerHash =
         new ConcurrentHashMap<String, Class<? extends CanonicalizerSpi>>();
 
+    /** Whether the default algorithms are available, without being part of the map */
+    private static volatile boolean defaultAlgorithmsRegistered;
+
     private final CanonicalizerSpi canonicalizerSpi;
     private boolean secureValidation;
 
@@ -110,7 +113,7 @@ public class Canonicalizer {
     private Canonicalizer(String algorithmURI) throws InvalidCanonicalizerException {
         try {
             Class<? extends CanonicalizerSpi> implementingClass =
-                canonicalizerHash.get(algorithmURI);
+                getCanonicalizerSpiClass(algorithmURI);
 
             canonicalizerSpi = implementingClass.newInstance();
             canonicalizerSpi.reset = true;
@@ -149,7 +152,7 @@ public class Canonicalizer {
         JavaUtils.checkRegisterPermission();
         // check whether URI is already registered
         Class<? extends CanonicalizerSpi> registeredClass =
-            canonicalizerHash.get(algorithmURI);
+            getCanonicalizerSpiClass(algorithmURI);
 
         if (registeredClass != null)  {
             Object exArgs[] = { algorithmURI, registeredClass };
@@ -175,7 +178,7 @@ public class Canonicalizer {
         throws AlgorithmAlreadyRegisteredException, ClassNotFoundException {
         JavaUtils.checkRegisterPermission();
         // check whether URI is already registered
-        Class<? extends CanonicalizerSpi> registeredClass = canonicalizerHash.get(algorithmURI);
+        Class<? extends CanonicalizerSpi> registeredClass = getCanonicalizerSpiClass(algorithmURI);
 
         if (registeredClass != null)  {
             Object exArgs[] = { algorithmURI, registeredClass };
@@ -186,37 +189,47 @@ public class Canonicalizer {
     }
 
     /**
-     * This method registers the default algorithms.
+     * This method registers the default algorithms. The implementing classes are only loaded
+     * when an algorithm is used for the first time, see {@link #getDefaultCanonicalizerSpiClass(String)}.
      */
     public static void registerDefaultAlgorithms() {
-        canonicalizerHash.put(
-            Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS,
-            Canonicalizer20010315OmitComments.class
-        );
-        canonicalizerHash.put(
-            Canonicalizer.ALGO_ID_C14N_WITH_COMMENTS,
-            Canonicalizer20010315WithComments.class
-        );
-        canonicalizerHash.put(
-            Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS,
-            Canonicalizer20010315ExclOmitComments.class
-        );
-        canonicalizerHash.put(
-            Canonicalizer.ALGO_ID_C14N_EXCL_WITH_COMMENTS,
-            Canonicalizer20010315ExclWithComments.class
-        );
-        canonicalizerHash.put(
-            Canonicalizer.ALGO_ID_C14N11_OMIT_COMMENTS,
-            Canonicalizer11_OmitComments.class
-        );
-        canonicalizerHash.put(
-            Canonicalizer.ALGO_ID_C14N11_WITH_COMMENTS,
-            Canonicalizer11_WithComments.class
-        );
-        canonicalizerHash.put(
-            Canonicalizer.ALGO_ID_C14N_PHYSICAL,
-            CanonicalizerPhysical.class
-        );
+        defaultAlgorithmsRegistered = true;
+    }
+
+    /**
+     * @return the class registered for the algorithm URI, including the default algorithms
+     */
+    private static Class<? extends CanonicalizerSpi> getCanonicalizerSpiClass(String algorithmURI) {
+        Class<? extends CanonicalizerSpi> implementingClass = canonicalizerHash.get(algorithmURI);
+        if (implementingClass == null && defaultAlgorithmsRegistered) {
+            implementingClass = getDefaultCanonicalizerSpiClass(algorithmURI);
+        }
+        return implementingClass;
+    }
+
+    /**
+     * The table of the default algorithms. Unlike a map of classes, a switch only loads the
+     * class of the requested algorithm.
+     */
+    private static Class<? extends CanonicalizerSpi> getDefaultCanonicalizerSpiClass(String algorithmURI) {
+        switch (algorithmURI) {
+            case Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS:
+                return Canonicalizer20010315OmitComments.class;
+            case Canonicalizer.ALGO_ID_C14N_WITH_COMMENTS:
+                return Canonicalizer20010315WithComments.class;
+            case Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS:
+                return Canonicalizer20010315ExclOmitComments.class;
+            case Canonicalizer.ALGO_ID_C14N_EXCL_WITH_COMMENTS:
+                return Canonicalizer20010315ExclWithComments.class;
+            case Canonicalizer.ALGO_ID_C14N11_OMIT_COMMENTS:
+                return Canonicalizer11_OmitComments.class;
+            case Canonicalizer.ALGO_ID_C14N11_WITH_COMMENTS:
+                return Canonicalizer11_WithComments.class;
+            case Canonicalizer.ALGO_ID_C14N_PHYSICAL:
+                return CanonicalizerPhysical.class;
+            default:
+                return null;
+        }
     }
 
     /**
@@ -93,7 +93,7 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
      * in subtree canonicalizations.
      */
     private Node excludeNode;
-    private OutputStream writer = new ByteArrayOutputStream();
+    private OutputStream writer = new UnsyncByteArrayOutputStream();
 
    /**
     * The null xmlns definition.
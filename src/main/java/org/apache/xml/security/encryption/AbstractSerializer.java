@@ -18,14 +18,21 @@
  */
 package org.apache.xml.security.encryption;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.SequenceInputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.xml.security.utils.JavaUtils;
+
 import org.apache.xml.security.c14n.Canonicalizer;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
@@ -131,6 +138,40 @@ public abstract class AbstractSerializer implements Serializer {
         }
     }
 
+    /**
+     * Writes the canonical form of the specified <code>Element</code> to the
+     * given <code>OutputStream</code>, without holding it in memory.
+     *
+     * @param element the <code>Element</code> to serialize.
+     * @param os the <code>OutputStream</code> to write to.
+     * @throws Exception
+     */
+    public void serialize(Element element, OutputStream os) throws Exception {
+        canon.setSecureValidation(secureValidation);
+        // the Canonicalizer closes the writer after each subtree
+        canon.setWriter(new NonClosingOutputStream(os));
+        canon.notReset();
+        canon.canonicalizeSubtree(element);
+    }
+
+    /**
+     * Writes the canonical form of the specified <code>NodeList</code> to the
+     * given <code>OutputStream</code>, without holding it in memory.
+     *
+     * @param content the <code>NodeList</code> to serialize.
+     * @param os the <code>OutputStream</code> to write to.
+     * @throws Exception
+     */
+    public void serialize(NodeList content, OutputStream os) throws Exception {
+        canon.setSecureValidation(secureValidation);
+        // the Canonicalizer closes the writer after each subtree
+        canon.setWriter(new NonClosingOutputStream(os));
+        canon.notReset();
+        for (int i = 0; i < content.getLength(); i++) {
+            canon.canonicalizeSubtree(content.item(i));
+        }
+    }
+
     /**
      * Use the Canonicalizer to serialize the node
      * @param node
@@ -181,7 +222,36 @@ public abstract class AbstractSerializer implements Serializer {
      */
     public abstract Node deserialize(byte[] source, Node ctx) throws XMLEncryptionException, IOException;
 
+    /**
+     * Parses the source as it is read from the stream. This implementation reads
+     * the whole stream, subclasses parse it without holding it in memory.
+     *
+     * @param source
+     * @param ctx
+     * @return the Node resulting from the parse of the source
+     * @throws XMLEncryptionException
+     */
+    public Node deserialize(InputStream source, Node ctx) throws XMLEncryptionException, IOException {
+        return deserialize(JavaUtils.getBytesFromStream(source), ctx);
+    }
+
     protected static byte[] createContext(byte[] source, Node ctx) throws XMLEncryptionException {
+        byte[] prefix = createContextPrefix(ctx);
+        byte[] suffix = "</dummy>".getBytes(StandardCharsets.UTF_8);
+        byte[] fragment = new byte[prefix.length + source.length + suffix.length];
+        System.arraycopy(prefix, 0, fragment, 0, prefix.length);
+        System.arraycopy(source, 0, fragment, prefix.length, source.length);
+        System.arraycopy(suffix, 0, fragment, prefix.length + source.length, suffix.length);
+        return fragment;
+    }
+
+    protected static InputStream createContext(InputStream source, Node ctx) throws XMLEncryptionException {
+        InputStream prefix = new ByteArrayInputStream(createContextPrefix(ctx));
+        InputStream suffix = new ByteArrayInputStream("</dummy>".getBytes(StandardCharsets.UTF_8));
+        return new SequenceInputStream(new SequenceInputStream(prefix, source), suffix);
+    }
+
+    private static byte[] createContextPrefix(Node ctx) throws XMLEncryptionException {
         // Create the context to parse the document against
         try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
             OutputStreamWriter outputStreamWriter = new OutputStreamWriter(byteArrayOutputStream, StandardCharsets.UTF_8);
@@ -210,10 +280,6 @@ public abstract class AbstractSerializer implements Serializer {
                 wk = wk.getParentNode();
             }
             outputStreamWriter.write(">");
-            outputStreamWriter.flush();
-            byteArrayOutputStream.write(source);
-
-            outputStreamWriter.write("</dummy>");
             outputStreamWriter.close();
 
             return byteArrayOutputStream.toByteArray();
@@ -265,4 +331,23 @@ public abstract class AbstractSerializer implements Serializer {
         this.secureValidation = secureValidation;
     }
 
+    /**
+     * Passes the bytes to the underlying stream, which is only flushed when it is closed
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
 }
@@ -52,6 +52,19 @@ public class DocumentSerializer extends AbstractSerializer {
         }
     }
 
+    /**
+     * @param source
+     * @param ctx
+     * @return the Node resulting from the parse of the source
+     * @throws XMLEncryptionException
+     */
+    @Override
+    public Node deserialize(InputStream source, Node ctx) throws XMLEncryptionException, IOException {
+        try (InputStream is = createContext(source, ctx)) {
+            return deserialize(ctx, new InputSource(is));
+        }
+    }
+
     /**
      * @param source
      * @param ctx
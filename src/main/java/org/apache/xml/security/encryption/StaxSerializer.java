@@ -0,0 +1,220 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.encryption;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Converts <code>String</code>s into <code>Node</code>s and visa versa. The nodes are
+ * created directly in the document of the context node while the source is parsed
+ * with a StAX parser, so no intermediate document is built and imported.
+ */
+public class StaxSerializer extends AbstractSerializer {
+
+    private XMLInputFactory xmlInputFactory;
+
+    /**
+     * @param source
+     * @param ctx
+     * @return the Node resulting from the parse of the source
+     * @throws XMLEncryptionException
+     */
+    public Node deserialize(byte[] source, Node ctx) throws XMLEncryptionException, IOException {
+        return deserialize(new ByteArrayInputStream(source), ctx);
+    }
+
+    /**
+     * @param source
+     * @param ctx
+     * @return the Node resulting from the parse of the source
+     * @throws XMLEncryptionException
+     */
+    @Override
+    public Node deserialize(InputStream source, Node ctx) throws XMLEncryptionException, IOException {
+        try (InputStream is = createContext(source, ctx)) {
+            XMLStreamReader reader = getXMLInputFactory().createXMLStreamReader(is);
+            return deserialize(ctx, reader);
+        } catch (XMLStreamException e) {
+            throw new XMLEncryptionException(e);
+        }
+    }
+
+    /**
+     * @param source
+     * @param ctx
+     * @return the Node resulting from the parse of the source
+     * @throws XMLEncryptionException
+     */
+    public Node deserialize(String source, Node ctx) throws XMLEncryptionException {
+        String fragment = createContext(source, ctx);
+        try {
+            XMLStreamReader reader = getXMLInputFactory().createXMLStreamReader(new StringReader(fragment));
+            return deserialize(ctx, reader);
+        } catch (XMLStreamException e) {
+            throw new XMLEncryptionException(e);
+        }
+    }
+
+    /**
+     * @param ctx
+     * @param reader
+     * @return the Node resulting from the parse of the source
+     * @throws XMLEncryptionException
+     */
+    private Node deserialize(Node ctx, XMLStreamReader reader) throws XMLStreamException {
+        try {
+            Document contextDocument = null;
+            if (Node.DOCUMENT_NODE == ctx.getNodeType()) {
+                contextDocument = (Document)ctx;
+            } else {
+                contextDocument = ctx.getOwnerDocument();
+            }
+
+            DocumentFragment result = contextDocument.createDocumentFragment();
+            Node parent = result;
+            // the depth below the dummy element which declares the namespaces of the context
+            int depth = -1;
+            StringBuilder text = new StringBuilder();
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event != XMLStreamConstants.CHARACTERS && event != XMLStreamConstants.SPACE) {
+                    appendText(contextDocument, parent, text);
+                }
+                switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (++depth > 0) {
+                        Element element = createElement(contextDocument, reader);
+                        parent.appendChild(element);
+                        parent = element;
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (depth-- > 0) {
+                        parent = parent.getParentNode();
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    if (depth >= 0) {
+                        // the parser may report a text in several parts
+                        text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    break;
+                case XMLStreamConstants.CDATA:
+                    parent.appendChild(contextDocument.createCDATASection(reader.getText()));
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    if (depth >= 0) {
+                        parent.appendChild(contextDocument.createComment(reader.getText()));
+                    }
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    if (depth >= 0) {
+                        String data = reader.getPIData();
+                        parent.appendChild(
+                            contextDocument.createProcessingInstruction(
+                                reader.getPITarget(), data == null ? "" : data
+                            )
+                        );
+                    }
+                    break;
+                default:
+                    break;
+                }
+            }
+
+            Node child = result.getFirstChild();
+            if (child != null && child.getNextSibling() == null) {
+                return child;
+            }
+            return result;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static Element createElement(Document contextDocument, XMLStreamReader reader) {
+        Element element =
+            contextDocument.createElementNS(
+                emptyToNull(reader.getNamespaceURI()), getQualifiedName(reader.getPrefix(), reader.getLocalName())
+            );
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            String uri = reader.getNamespaceURI(i);
+            element.setAttributeNS(
+                XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+                prefix == null || prefix.isEmpty()
+                    ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix,
+                uri == null ? "" : uri
+            );
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            element.setAttributeNS(
+                emptyToNull(reader.getAttributeNamespace(i)),
+                getQualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                reader.getAttributeValue(i)
+            );
+        }
+        return element;
+    }
+
+    private static void appendText(Document contextDocument, Node parent, StringBuilder text) {
+        if (text.length() > 0) {
+            parent.appendChild(contextDocument.createTextNode(text.toString()));
+            text.setLength(0);
+        }
+    }
+
+    private static String getQualifiedName(String prefix, String localName) {
+        if (prefix == null || prefix.isEmpty()) {
+            return localName;
+        }
+        return prefix + ":" + localName;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private XMLInputFactory getXMLInputFactory() {
+        if (xmlInputFactory == null) {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+            xmlInputFactory = factory;
+        }
+        return xmlInputFactory;
+    }
+
+}
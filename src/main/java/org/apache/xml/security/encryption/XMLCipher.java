@@ -18,9 +18,14 @@
  */
 package org.apache.xml.security.encryption;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -33,12 +38,21 @@ import java.security.NoSuchProviderException;
 import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.MGF1ParameterSpec;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -58,11 +72,14 @@ import org.apache.xml.security.keys.keyresolver.KeyResolverSpi;
 import org.apache.xml.security.keys.keyresolver.implementations.EncryptedKeyResolver;
 import org.apache.xml.security.signature.XMLSignatureException;
 import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.apache.xml.security.stax.impl.util.IDGenerator;
 import org.apache.xml.security.transforms.InvalidTransformException;
 import org.apache.xml.security.transforms.TransformationException;
 import org.apache.xml.security.utils.Constants;
 import org.apache.xml.security.utils.ElementProxy;
+import org.apache.xml.security.utils.JavaUtils;
 import org.apache.xml.security.utils.EncryptionConstants;
+import org.apache.xml.security.utils.UnsyncBufferedOutputStream;
 import org.apache.xml.security.utils.XMLUtils;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
@@ -239,8 +256,6 @@ public class XMLCipher {
     CAMELLIA_128_KeyWrap + "\n" + CAMELLIA_192_KeyWrap + "\n" + CAMELLIA_256_KeyWrap + "\n" +
     SEED_128_KeyWrap + "\n";
 
-    private static final boolean HAVE_FUNCTIONAL_IDENTITY_TRANSFORMER = haveFunctionalIdentityTransformer();
-
     /** Cipher created during initialisation that is used for encryption */
     private Cipher contextCipher;
 
@@ -344,11 +359,7 @@ public class XMLCipher {
         }
 
         if (serializer == null) {
-            if (HAVE_FUNCTIONAL_IDENTITY_TRANSFORMER) {
-                serializer = new TransformSerializer();
-            } else {
-                serializer = new DocumentSerializer();
-            }
+            serializer = new StaxSerializer();
         }
         serializer.setCanonicalizer(this.canon);
 
@@ -1001,6 +1012,189 @@ public class XMLCipher {
         return result;
     }
 
+    /**
+     * Encrypts a list of DOM <code>Element</code> nodes, or their contents, with the
+     * key of {@link #init(int, Key) init()}. Each element is replaced by an
+     * <code>EncryptedData</code> with a generated Id and its own IV. The serializer
+     * and the cipher are set up once for the whole list.
+     *
+     * The given <code>EncryptedKey</code>, which carries the encrypted content key, gets
+     * a <code>ReferenceList</code> with a <code>DataReference</code> to every
+     * <code>EncryptedData</code>. It is not placed in the document, use
+     * {@link #martial(Document, EncryptedKey)} for that.
+     *
+     * @param context the context <code>Document</code>.
+     * @param elements the <code>Element</code>s to be encrypted, e.g. the result of an
+     *   XPath expression. None of them may contain another one.
+     * @param content <code>true</code> to encrypt the contents of the elements only,
+     *   <code>false</code> otherwise
+     * @param encryptedKey the <code>EncryptedKey</code> of the key, or <code>null</code>
+     * @return the <code>EncryptedData</code> elements in the order of the given elements.
+     * @throws Exception to indicate any exceptional conditions.
+     */
+    public List<Element> doFinal(
+        Document context, List<Element> elements, boolean content, EncryptedKey encryptedKey
+    ) throws /* XMLEncryption */ Exception {
+        return doFinal(context, elements, content, encryptedKey, null);
+    }
+
+    /**
+     * Encrypts a list of DOM <code>Element</code> nodes, or their contents, like
+     * {@link #doFinal(Document, List, boolean, EncryptedKey)}. If an executor is given,
+     * the serialized elements are encrypted concurrently on it. The elements are serialized
+     * and replaced on the calling thread, as a DOM must not be accessed concurrently. The
+     * document is only changed once all the elements have been encrypted.
+     *
+     * @param context the context <code>Document</code>.
+     * @param elements the <code>Element</code>s to be encrypted. None of them may contain
+     *   another one.
+     * @param content <code>true</code> to encrypt the contents of the elements only,
+     *   <code>false</code> otherwise
+     * @param encryptedKey the <code>EncryptedKey</code> of the key, or <code>null</code>
+     * @param executor the executor to encrypt the elements on, or <code>null</code> to
+     *   encrypt them on the calling thread
+     * @return the <code>EncryptedData</code> elements in the order of the given elements.
+     * @throws Exception to indicate any exceptional conditions.
+     */
+    public List<Element> doFinal(
+        Document context, List<Element> elements, boolean content,
+        EncryptedKey encryptedKey, Executor executor
+    ) throws /* XMLEncryption */ Exception {
+        LOG.debug("Processing source elements...");
+        if (null == context) {
+            throw new XMLEncryptionException("empty", "Context document unexpectedly null...");
+        }
+        if (null == elements) {
+            throw new XMLEncryptionException("empty", "Source elements unexpectedly null...");
+        }
+        if (cipherMode != ENCRYPT_MODE) {
+            throw new XMLEncryptionException("empty", "XMLCipher unexpectedly not in ENCRYPT_MODE...");
+        }
+        if (algorithm == null) {
+            throw new XMLEncryptionException("empty", "XMLCipher instance without transformation specified");
+        }
+        checkIndependentElements(elements);
+
+        contextDocument = context;
+        if (serializer instanceof AbstractSerializer) {
+            ((AbstractSerializer)serializer).setSecureValidation(secureValidation);
+        }
+
+        // Encrypt all the elements before the document is changed
+        String[] cipherValues = new String[elements.size()];
+        if (executor == null) {
+            Cipher c = contextCipher == null ? constructCipher(algorithm, null) : contextCipher;
+            for (int i = 0; i < cipherValues.length; i++) {
+                Element element = elements.get(i);
+                cipherValues[i] =
+                    encryptOctets(c, element, content ? element.getChildNodes() : null, null);
+            }
+        } else {
+            // A cipher is only used by one task at a time, it is reused by the following tasks
+            final Queue<Cipher> ciphers = new ConcurrentLinkedQueue<>();
+            List<FutureTask<String>> tasks = new ArrayList<>(elements.size());
+            for (Element element : elements) {
+                ByteArrayOutputStream serializedData = new ByteArrayOutputStream();
+                serialize(element, content ? element.getChildNodes() : null, serializedData);
+                final byte[] octets = serializedData.toByteArray();
+
+                FutureTask<String> task = new FutureTask<>(() -> {
+                    Cipher c = ciphers.poll();
+                    if (c == null) {
+                        c = constructCipher(algorithm, null);
+                    }
+                    String cipherValue = encryptOctets(c, null, null, new ByteArrayInputStream(octets));
+                    ciphers.offer(c);
+                    return cipherValue;
+                });
+                executor.execute(task);
+                tasks.add(task);
+            }
+            for (int i = 0; i < cipherValues.length; i++) {
+                cipherValues[i] = getResult(tasks.get(i));
+            }
+        }
+
+        String type = content ? EncryptionConstants.TYPE_CONTENT : EncryptionConstants.TYPE_ELEMENT;
+        ReferenceList referenceList = null;
+        if (encryptedKey != null) {
+            referenceList = encryptedKey.getReferenceList();
+            if (referenceList == null) {
+                referenceList = createReferenceList(ReferenceList.DATA_REFERENCE);
+                encryptedKey.setReferenceList(referenceList);
+            }
+        }
+
+        List<Element> result = new ArrayList<>(elements.size());
+        for (int i = 0; i < cipherValues.length; i++) {
+            EncryptedData encryptedData = createEncryptedData(CipherData.VALUE_TYPE, cipherValues[i]);
+            encryptedData.setId(IDGenerator.generateID("ED-"));
+            encryptedData.setType(type);
+            EncryptionMethod method = factory.newEncryptionMethod(algorithm);
+            method.setDigestAlgorithm(digestAlg);
+            encryptedData.setEncryptionMethod(method);
+            if (referenceList != null) {
+                referenceList.add(referenceList.newDataReference("#" + encryptedData.getId()));
+            }
+
+            Element element = elements.get(i);
+            Element encryptedElement = factory.toElement(encryptedData);
+            if (content) {
+                removeContent(element);
+                element.appendChild(encryptedElement);
+            } else {
+                element.getParentNode().replaceChild(encryptedElement, element);
+            }
+            result.add(encryptedElement);
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks that all elements have a parent and that none of them contains another one,
+     * which would be encrypted twice.
+     */
+    private static void checkIndependentElements(List<Element> elements) throws XMLEncryptionException {
+        Set<Node> elementSet = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        for (Element element : elements) {
+            if (null == element) {
+                throw new XMLEncryptionException("empty", "Element unexpectedly null...");
+            }
+            if (element.getParentNode() == null) {
+                throw new XMLEncryptionException("empty", "The element can't be serialized as it has no parent");
+            }
+            if (!elementSet.add(element)) {
+                throw new XMLEncryptionException("empty", "The element is contained more than once");
+            }
+        }
+        for (Element element : elements) {
+            for (Node parent = element.getParentNode(); parent != null; parent = parent.getParentNode()) {
+                if (elementSet.contains(parent)) {
+                    throw new XMLEncryptionException("empty", "The element is contained in another element");
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for a task and rethrows the exception it failed with
+     */
+    private static <T> T getResult(Future<T> task) throws Exception {
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new XMLEncryptionException(ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception)cause;
+            }
+            throw new XMLEncryptionException(ex);
+        }
+    }
+
     /**
      * Returns an <code>EncryptedData</code> interface. Use this operation if
      * you want to have full control over the contents of the
@@ -1099,25 +1293,14 @@ public class XMLCipher {
             throw new XMLEncryptionException("empty", "The element can't be serialized as it has no parent");
         }
 
-        byte[] serializedOctets = null;
-        if (serializedData == null) {
-            if (type.equals(EncryptionConstants.TYPE_CONTENT)) {
-                NodeList children = element.getChildNodes();
-                if (null != children) {
-                    serializedOctets = serializer.serializeToByteArray(children);
-                } else {
-                    throw new XMLEncryptionException("empty", "Element has no content.");
-                }
-            } else {
-                serializedOctets = serializer.serializeToByteArray(element);
-            }
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Serialized octets:\n" + new String(serializedOctets, StandardCharsets.UTF_8));
+        NodeList children = null;
+        if (serializedData == null && type.equals(EncryptionConstants.TYPE_CONTENT)) {
+            children = element.getChildNodes();
+            if (null == children) {
+                throw new XMLEncryptionException("empty", "Element has no content.");
             }
         }
 
-        byte[] encryptedBytes = null;
-
         // Now create the working cipher if none was created already
         Cipher c;
         if (contextCipher == null) {
@@ -1126,7 +1309,39 @@ public class XMLCipher {
             c = contextCipher;
         }
         // Now perform the encryption
+        String base64EncodedEncryptedOctets = encryptOctets(c, element, children, serializedData);
+
+        LOG.debug("Encrypted octets:\n{}", base64EncodedEncryptedOctets);
+        LOG.debug("Encrypted octets length = {}", base64EncodedEncryptedOctets.length());
+
+        try {
+            CipherData cd = ed.getCipherData();
+            CipherValue cv = cd.getCipherValue();
+            cv.setValue(base64EncodedEncryptedOctets);
 
+            if (type != null) {
+                ed.setType(new URI(type).toString());
+            }
+            EncryptionMethod method =
+                factory.newEncryptionMethod(new URI(algorithm).toString());
+            method.setDigestAlgorithm(digestAlg);
+            ed.setEncryptionMethod(method);
+        } catch (URISyntaxException ex) {
+            throw new XMLEncryptionException(ex);
+        }
+        return ed;
+    }
+
+    /**
+     * Initializes the cipher with a fresh IV and encrypts the serialized data, or the element
+     * or its content if no data is given. The octets are encrypted and base64 encoded while
+     * they are serialized, so that only the encoded CipherValue is held in memory. It is built
+     * up as a properly XML Encryption encoded octet stream, i.e. the IV followed by the cipher
+     * text.
+     */
+    private String encryptOctets(
+        Cipher c, Element element, NodeList children, InputStream serializedData
+    ) throws Exception {
         int ivLen = JCEMapper.getIVLengthFromURI(algorithm) / 8;
         byte[] iv = XMLSecurityConstants.generateBytes(ivLen);
         try {
@@ -1136,29 +1351,28 @@ public class XMLCipher {
             throw new XMLEncryptionException(ike);
         }
 
-        try {
+        // Get IV from Cipher Object. If this is null (see BouncyCastle issue BJA-473) then use
+        // the original IV that was generated
+        if (c.getIV() != null) {
+            iv = c.getIV();
+        }
+
+        ByteArrayOutputStream base64EncodedOctets = new ByteArrayOutputStream();
+        try (OutputStream base64Stream = XMLUtils.encodeStream(base64EncodedOctets)) {
+            base64Stream.write(iv);
+            OutputStream cipherStream = new CipherUpdateOutputStream(c, base64Stream);
             if (serializedData != null) {
                 int numBytes;
                 byte[] buf = new byte[8192];
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                    while ((numBytes = serializedData.read(buf)) != -1) {
-                        byte[] data = c.update(buf, 0, numBytes);
-                        baos.write(data);
-                    }
-                    baos.write(c.doFinal());
-                    encryptedBytes = baos.toByteArray();
+                while ((numBytes = serializedData.read(buf)) != -1) {
+                    cipherStream.write(buf, 0, numBytes);
                 }
             } else {
-                encryptedBytes = c.doFinal(serializedOctets);
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Expected cipher.outputSize = " +
-                        Integer.toString(c.getOutputSize(serializedOctets.length)));
+                try (OutputStream os = new UnsyncBufferedOutputStream(cipherStream)) {
+                    serialize(element, children, os);
                 }
             }
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Actual cipher.outputSize = "
-                             + Integer.toString(encryptedBytes.length));
-            }
+            base64Stream.write(c.doFinal());
         } catch (IllegalStateException ise) {
             throw new XMLEncryptionException(ise);
         } catch (IllegalBlockSizeException ibse) {
@@ -1169,36 +1383,24 @@ public class XMLCipher {
             throw new XMLEncryptionException(uee);
         }
 
-        // Get IV from Cipher Object. If this is null (see BouncyCastle issue BJA-473) then use
-        // the original IV that was generated
-        if (c.getIV() != null) {
-            iv = c.getIV();
-        }
-        // Now build up to a properly XML Encryption encoded octet stream
-        byte[] finalEncryptedBytes = new byte[iv.length + encryptedBytes.length];
-        System.arraycopy(iv, 0, finalEncryptedBytes, 0, iv.length);
-        System.arraycopy(encryptedBytes, 0, finalEncryptedBytes, iv.length, encryptedBytes.length);
-        String base64EncodedEncryptedOctets = XMLUtils.encodeToString(finalEncryptedBytes);
-
-        LOG.debug("Encrypted octets:\n{}", base64EncodedEncryptedOctets);
-        LOG.debug("Encrypted octets length = {}", base64EncodedEncryptedOctets.length());
-
-        try {
-            CipherData cd = ed.getCipherData();
-            CipherValue cv = cd.getCipherValue();
-            cv.setValue(base64EncodedEncryptedOctets);
+        return base64EncodedOctets.toString(StandardCharsets.US_ASCII.name());
+    }
 
-            if (type != null) {
-                ed.setType(new URI(type).toString());
+    /**
+     * Serializes the element, or its content if children is not null, to the stream
+     */
+    private void serialize(Element element, NodeList children, OutputStream os) throws Exception {
+        if (serializer instanceof AbstractSerializer) {
+            if (children != null) {
+                ((AbstractSerializer)serializer).serialize(children, os);
+            } else {
+                ((AbstractSerializer)serializer).serialize(element, os);
             }
-            EncryptionMethod method =
-                factory.newEncryptionMethod(new URI(algorithm).toString());
-            method.setDigestAlgorithm(digestAlg);
-            ed.setEncryptionMethod(method);
-        } catch (URISyntaxException ex) {
-            throw new XMLEncryptionException(ex);
+        } else if (children != null) {
+            os.write(serializer.serializeToByteArray(children));
+        } else {
+            os.write(serializer.serializeToByteArray(element));
         }
-        return ed;
     }
 
     /**
@@ -1639,6 +1841,7 @@ public class XMLCipher {
             throw new XMLEncryptionException("empty", "XMLCipher unexpectedly not in DECRYPT_MODE...");
         }
 
+        // The octets are only parsed once the padding or authentication tag has been checked
         byte[] octets = decryptToByteArray(element);
 
         if (LOG.isDebugEnabled()) {
@@ -1649,14 +1852,7 @@ public class XMLCipher {
         try {
             Node decryptedNode = serializer.deserialize(octets, sourceParent);
 
-            // The de-serialiser returns a node whose children we need to take on.
-            if (sourceParent != null && Node.DOCUMENT_NODE == sourceParent.getNodeType()) {
-                // If this is a content decryption, this may have problems
-                contextDocument.removeChild(contextDocument.getDocumentElement());
-                contextDocument.appendChild(decryptedNode);
-            } else if (sourceParent != null) {
-                sourceParent.replaceChild(decryptedNode, element);
-            }
+            replaceEncryptedElement(element, sourceParent, decryptedNode);
         } catch (IOException ex) {
             throw new XMLEncryptionException(ex);
         }
@@ -1664,6 +1860,20 @@ public class XMLCipher {
         return contextDocument;
     }
 
+    /**
+     * Replaces the EncryptedData element by the decrypted node
+     */
+    private void replaceEncryptedElement(Element element, Node sourceParent, Node decryptedNode) {
+        // The de-serialiser returns a node whose children we need to take on.
+        if (sourceParent != null && Node.DOCUMENT_NODE == sourceParent.getNodeType()) {
+            // If this is a content decryption, this may have problems
+            contextDocument.removeChild(contextDocument.getDocumentElement());
+            contextDocument.appendChild(decryptedNode);
+        } else if (sourceParent != null) {
+            sourceParent.replaceChild(decryptedNode, element);
+        }
+    }
+
     /**
      *
      * @param element
@@ -1684,6 +1894,181 @@ public class XMLCipher {
         return decryptElement(e);
     }
 
+    /**
+     * Decrypts all the <code>EncryptedData</code> elements of a document. The
+     * <code>EncryptedData</code> elements are found and their keys are resolved on the
+     * calling thread. A key which is shared by an <code>EncryptedKey</code> with a
+     * <code>ReferenceList</code> is only decrypted once, with the KEK of
+     * {@link #setKEK(Key) setKEK()}. The key of {@link #init(int, Key) init()}, if any,
+     * is used for all the <code>EncryptedData</code> elements.
+     *
+     * If an executor is given, the cipher texts are decoded and decrypted concurrently on
+     * it. Once all of them have been decrypted, the decrypted octets are parsed and replace
+     * their <code>EncryptedData</code> in document order on the calling thread, as a DOM
+     * must not be accessed concurrently. The document is not changed if a cipher text can't
+     * be decrypted. The <code>EncryptedKey</code> elements are left in the document.
+     *
+     * @param context the <code>Document</code> to decrypt.
+     * @param executor the executor to decrypt the cipher texts on, or <code>null</code>
+     *   to decrypt them on the calling thread
+     * @return the decrypted <code>Document</code>.
+     * @throws XMLEncryptionException to indicate any exceptional conditions.
+     */
+    public Document decryptDocument(Document context, Executor executor) throws XMLEncryptionException {
+        LOG.debug("Decrypting document...");
+        if (null == context) {
+            throw new XMLEncryptionException("empty", "Context document unexpectedly null...");
+        }
+        if (cipherMode != DECRYPT_MODE) {
+            throw new XMLEncryptionException("empty", "XMLCipher unexpectedly not in DECRYPT_MODE...");
+        }
+
+        contextDocument = context;
+        if (serializer instanceof AbstractSerializer) {
+            ((AbstractSerializer)serializer).setSecureValidation(secureValidation);
+        }
+
+        // The outermost EncryptedData elements, in document order
+        List<Element> elements = new ArrayList<>();
+        Set<Node> elementSet = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        NodeList nl = context.getElementsByTagNameNS(
+            EncryptionConstants.EncryptionSpecNS, EncryptionConstants._TAG_ENCRYPTEDDATA
+        );
+        for (int i = 0; i < nl.getLength(); i++) {
+            Element element = (Element) nl.item(i);
+            elementSet.add(element);
+            boolean nested = false;
+            for (Node parent = element.getParentNode(); parent != null; parent = parent.getParentNode()) {
+                if (elementSet.contains(parent)) {
+                    nested = true;
+                    break;
+                }
+            }
+            if (!nested) {
+                elements.add(element);
+            }
+        }
+
+        // The EncryptedKeys which refer to EncryptedData elements by their Id
+        Map<String, Element> referencingKeys = new HashMap<>();
+        nl = context.getElementsByTagNameNS(
+            EncryptionConstants.EncryptionSpecNS, EncryptionConstants._TAG_ENCRYPTEDKEY
+        );
+        for (int i = 0; i < nl.getLength(); i++) {
+            Element encryptedKey = (Element) nl.item(i);
+            Element referenceList = XMLUtils.selectXencNode(
+                encryptedKey.getFirstChild(), EncryptionConstants._TAG_REFERENCELIST, 0
+            );
+            if (referenceList != null) {
+                Element dataReference = XMLUtils.getNextElement(referenceList.getFirstChild());
+                while (dataReference != null) {
+                    String uri = dataReference.getAttributeNS(null, EncryptionConstants._ATT_URI);
+                    if (XMLUtils.elementIsInEncryptionSpace(dataReference, EncryptionConstants._TAG_DATAREFERENCE)
+                        && uri.startsWith("#")) {
+                        referencingKeys.put(uri.substring(1), encryptedKey);
+                    }
+                    dataReference = XMLUtils.getNextElement(dataReference.getNextSibling());
+                }
+            }
+        }
+
+        // Everything which accesses the document is done here, the tasks only decrypt the octets
+        Map<Element, Key> sharedKeys = new IdentityHashMap<>();
+        List<FutureTask<byte[]>> tasks = new ArrayList<>(elements.size());
+        for (Element element : elements) {
+            EncryptedData encryptedData = factory.newEncryptedData(element);
+            final String encMethodAlgorithm = encryptedData.getEncryptionMethod().getAlgorithm();
+
+            Key decryptionKey = key;
+            Element encryptedKey = referencingKeys.get(encryptedData.getId());
+            if (decryptionKey == null && encryptedKey != null) {
+                decryptionKey = sharedKeys.get(encryptedKey);
+                if (decryptionKey == null) {
+                    decryptionKey = decryptSharedKey(encryptedKey, encMethodAlgorithm);
+                    sharedKeys.put(encryptedKey, decryptionKey);
+                }
+            }
+            if (decryptionKey == null) {
+                decryptionKey = resolveKeyInfo(encryptedData, encMethodAlgorithm);
+            }
+            if (decryptionKey == null) {
+                LOG.error("XMLCipher::decryptDocument called without a key and unable to resolve");
+                throw new XMLEncryptionException("empty", "encryption.nokey");
+            }
+
+            XMLCipherInput cipherInput = new XMLCipherInput(encryptedData);
+            cipherInput.setSecureValidation(secureValidation);
+            final InputStream encryptedStream = cipherInput.getInputStream();
+            final Key taskKey = decryptionKey;
+
+            FutureTask<byte[]> task = new FutureTask<>(() -> {
+                try (InputStream is = decryptStream(encMethodAlgorithm, taskKey, encryptedStream)) {
+                    return JavaUtils.getBytesFromStream(is);
+                }
+            });
+            if (executor != null) {
+                executor.execute(task);
+            }
+            tasks.add(task);
+        }
+
+        // The document is only changed once all the cipher texts have been decrypted and
+        // authenticated, so that it is left unchanged if one of them fails
+        byte[][] decryptedOctets = new byte[tasks.size()][];
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                FutureTask<byte[]> task = tasks.get(i);
+                if (executor == null) {
+                    task.run();
+                }
+                decryptedOctets[i] = getResult(task);
+            }
+        } catch (XMLEncryptionException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new XMLEncryptionException(ex);
+        } finally {
+            // The remaining tasks are not needed if one has failed
+            for (FutureTask<byte[]> task : tasks) {
+                task.cancel(false);
+            }
+        }
+
+        try {
+            for (int i = 0; i < decryptedOctets.length; i++) {
+                Element element = elements.get(i);
+                Node sourceParent = element.getParentNode();
+                Node decryptedNode = serializer.deserialize(decryptedOctets[i], sourceParent);
+                replaceEncryptedElement(element, sourceParent, decryptedNode);
+            }
+        } catch (IOException ex) {
+            throw new XMLEncryptionException(ex);
+        }
+
+        return contextDocument;
+    }
+
+    /**
+     * Decrypts the key of an EncryptedKey which is shared by several EncryptedData elements
+     */
+    private Key decryptSharedKey(Element element, String encMethodAlgorithm) throws XMLEncryptionException {
+        XMLCipher keyCipher;
+        if (requestedJCEProvider == null) {
+            keyCipher = XMLCipher.getInstance();
+        } else {
+            keyCipher = XMLCipher.getProviderInstance(requestedJCEProvider);
+        }
+        keyCipher.init(UNWRAP_MODE, kek);
+        keyCipher.setSecureValidation(secureValidation);
+        if (internalKeyResolvers != null) {
+            for (KeyResolverSpi resolver : internalKeyResolvers) {
+                keyCipher.registerInternalKeyResolver(resolver);
+            }
+        }
+        EncryptedKey encryptedKey = keyCipher.loadEncryptedKey(contextDocument, element);
+        return keyCipher.decryptKey(encryptedKey, encMethodAlgorithm);
+    }
+
     /**
      * Decrypt an EncryptedData element to a byte array.
      *
@@ -1704,26 +2089,97 @@ public class XMLCipher {
 
         EncryptedData encryptedData = factory.newEncryptedData(element);
         String encMethodAlgorithm = encryptedData.getEncryptionMethod().getAlgorithm();
+        resolveDecryptionKey(encryptedData, encMethodAlgorithm);
+
+        // Obtain the encrypted octets
+        XMLCipherInput cipherInput = new XMLCipherInput(encryptedData);
+        cipherInput.setSecureValidation(secureValidation);
+        byte[] encryptedBytes = cipherInput.getBytes();
+
+        int ivLen = JCEMapper.getIVLengthFromURI(encMethodAlgorithm) / 8;
+        byte[] ivBytes = new byte[ivLen];
+
+        // You may be able to pass the entire piece in to IvParameterSpec
+        // and it will only take the first x bytes, but no way to be certain
+        // that this will work for every JCE provider, so lets copy the
+        // necessary bytes into a dedicated array.
+
+        System.arraycopy(encryptedBytes, 0, ivBytes, 0, ivLen);
+
+        Cipher c = constructDecryptionCipher(encMethodAlgorithm, key, ivBytes);
+
+        try {
+            return c.doFinal(encryptedBytes, ivLen, encryptedBytes.length - ivLen);
+        } catch (IllegalBlockSizeException ibse) {
+            throw new XMLEncryptionException(ibse);
+        } catch (BadPaddingException bpe) {
+            throw new XMLEncryptionException(bpe);
+        }
+    }
+
+    /**
+     * Decrypt an EncryptedData element to a stream.
+     *
+     * The encrypted octets are base64 decoded and decrypted while the returned
+     * stream is read, so that neither the encrypted nor the decrypted octets are
+     * held in memory as a whole. The stream throws an <code>IOException</code>
+     * if the final block can't be decrypted, e.g. if the authentication tag of
+     * an AES-GCM cipher text is invalid.
+     *
+     * The octets read before the end of the stream are neither authenticated nor
+     * checked for a valid padding. They must not be parsed or otherwise acted upon
+     * before the stream has been read to its end without an error, as this could
+     * give away information on the plain text of a modified cipher text. Use
+     * {@link #decryptToByteArray(Element)} unless the plain text is too large to
+     * be held in memory.
+     *
+     * Does not modify the source document.
+     * @param element
+     * @return the stream of the bytes resulting from the decryption
+     * @throws XMLEncryptionException
+     */
+    public InputStream decryptToInputStream(Element element) throws XMLEncryptionException {
+        LOG.debug("Decrypting to InputStream...");
+
+        if (cipherMode != DECRYPT_MODE) {
+            throw new XMLEncryptionException("empty", "XMLCipher unexpectedly not in DECRYPT_MODE...");
+        }
+
+        EncryptedData encryptedData = factory.newEncryptedData(element);
+        String encMethodAlgorithm = encryptedData.getEncryptionMethod().getAlgorithm();
+        resolveDecryptionKey(encryptedData, encMethodAlgorithm);
+
+        // Obtain the encrypted octets
+        XMLCipherInput cipherInput = new XMLCipherInput(encryptedData);
+        cipherInput.setSecureValidation(secureValidation);
+        return decryptStream(encMethodAlgorithm, key, cipherInput.getInputStream());
+    }
+
+    /**
+     * Reads the IV from the stream of encrypted octets and returns the stream of the
+     * decrypted octets. It does not access the document.
+     */
+    private InputStream decryptStream(String encMethodAlgorithm, Key decryptionKey, InputStream encryptedStream)
+        throws XMLEncryptionException {
+        int ivLen = JCEMapper.getIVLengthFromURI(encMethodAlgorithm) / 8;
+        byte[] ivBytes = new byte[ivLen];
+        try {
+            new DataInputStream(encryptedStream).readFully(ivBytes);
+        } catch (IOException ex) {
+            throw new XMLEncryptionException(ex);
+        }
 
+        Cipher c = constructDecryptionCipher(encMethodAlgorithm, decryptionKey, ivBytes);
+        return new CipherUpdateInputStream(c, encryptedStream);
+    }
+
+    /**
+     * Resolves the key to decrypt the EncryptedData with, if none was set
+     */
+    private void resolveDecryptionKey(EncryptedData encryptedData, String encMethodAlgorithm)
+        throws XMLEncryptionException {
         if (key == null) {
-            KeyInfo ki = encryptedData.getKeyInfo();
-            if (ki != null) {
-                try {
-                    // Add an EncryptedKey resolver
-                    EncryptedKeyResolver resolver = new EncryptedKeyResolver(encMethodAlgorithm, kek);
-                    if (internalKeyResolvers != null) {
-                        int size = internalKeyResolvers.size();
-                        for (int i = 0; i < size; i++) {
-                            resolver.registerInternalKeyResolver(internalKeyResolvers.get(i));
-                        }
-                    }
-                    ki.registerInternalKeyResolver(resolver);
-                    ki.setSecureValidation(secureValidation);
-                    key = ki.getSecretKey();
-                } catch (KeyResolverException kre) {
-                    LOG.debug(kre.getMessage(), kre);
-                }
-            }
+            key = resolveKeyInfo(encryptedData, encMethodAlgorithm);
 
             if (key == null) {
                 LOG.error(
@@ -1732,12 +2188,40 @@ public class XMLCipher {
                 throw new XMLEncryptionException("empty", "encryption.nokey");
             }
         }
+    }
 
-        // Obtain the encrypted octets
-        XMLCipherInput cipherInput = new XMLCipherInput(encryptedData);
-        cipherInput.setSecureValidation(secureValidation);
-        byte[] encryptedBytes = cipherInput.getBytes();
+    /**
+     * Resolves the key from the KeyInfo of the EncryptedData
+     *
+     * @return the key, or null if it can't be resolved
+     */
+    private Key resolveKeyInfo(EncryptedData encryptedData, String encMethodAlgorithm) {
+        KeyInfo ki = encryptedData.getKeyInfo();
+        if (ki != null) {
+            try {
+                // Add an EncryptedKey resolver
+                EncryptedKeyResolver resolver = new EncryptedKeyResolver(encMethodAlgorithm, kek);
+                if (internalKeyResolvers != null) {
+                    int size = internalKeyResolvers.size();
+                    for (int i = 0; i < size; i++) {
+                        resolver.registerInternalKeyResolver(internalKeyResolvers.get(i));
+                    }
+                }
+                ki.registerInternalKeyResolver(resolver);
+                ki.setSecureValidation(secureValidation);
+                return ki.getSecretKey();
+            } catch (KeyResolverException kre) {
+                LOG.debug(kre.getMessage(), kre);
+            }
+        }
+        return null;
+    }
 
+    /**
+     * Creates the cipher to decrypt the EncryptedData with and initializes it with the IV
+     */
+    private Cipher constructDecryptionCipher(String encMethodAlgorithm, Key decryptionKey, byte[] ivBytes)
+        throws XMLEncryptionException {
         // Now create the working cipher
         String jceAlgorithm =
             JCEMapper.translateURItoJCEID(encMethodAlgorithm);
@@ -1758,16 +2242,6 @@ public class XMLCipher {
             throw new XMLEncryptionException(nspae);
         }
 
-        int ivLen = JCEMapper.getIVLengthFromURI(encMethodAlgorithm) / 8;
-        byte[] ivBytes = new byte[ivLen];
-
-        // You may be able to pass the entire piece in to IvParameterSpec
-        // and it will only take the first x bytes, but no way to be certain
-        // that this will work for every JCE provider, so lets copy the
-        // necessary bytes into a dedicated array.
-
-        System.arraycopy(encryptedBytes, 0, ivBytes, 0, ivLen);
-
         String blockCipherAlg = algorithm;
         if (blockCipherAlg == null) {
             blockCipherAlg = encMethodAlgorithm;
@@ -1775,20 +2249,14 @@ public class XMLCipher {
         AlgorithmParameterSpec paramSpec = constructBlockCipherParameters(blockCipherAlg, ivBytes);
 
         try {
-            c.init(cipherMode, key, paramSpec);
+            c.init(cipherMode, decryptionKey, paramSpec);
         } catch (InvalidKeyException ike) {
             throw new XMLEncryptionException(ike);
         } catch (InvalidAlgorithmParameterException iape) {
             throw new XMLEncryptionException(iape);
         }
 
-        try {
-            return c.doFinal(encryptedBytes, ivLen, encryptedBytes.length - ivLen);
-        } catch (IllegalBlockSizeException ibse) {
-            throw new XMLEncryptionException(ibse);
-        } catch (BadPaddingException bpe) {
-            throw new XMLEncryptionException(bpe);
-        }
+        return c;
     }
 
     /*
@@ -3564,32 +4032,118 @@ public class XMLCipher {
         }
     }
 
-    private static boolean haveFunctionalIdentityTransformer() {
-        final String xml =
-                "<a:e1 xmlns:a=\"a\" xmlns:b=\"b\">"
-                        + "<a xmlns=\"a\" xmlns:b=\"b\"/>"
-                        + "</a:e1>";
+    /**
+     * Encrypts the bytes written to it and writes the cipher text to the underlying
+     * stream. Unlike <code>CipherOutputStream</code> it does not finish the encryption
+     * when it is closed, the caller writes the final block, so that its exceptions are
+     * not swallowed. Closing it does not close the underlying stream.
+     */
+    private static final class CipherUpdateOutputStream extends FilterOutputStream {
 
-        try {
-            final javax.xml.transform.dom.DOMResult domResult = new javax.xml.transform.dom.DOMResult();
-            final javax.xml.transform.TransformerFactory transformerFactory =
-                    javax.xml.transform.TransformerFactory.newInstance();
-            transformerFactory.newTransformer().transform(
-                    new javax.xml.transform.stream.StreamSource(
-                            new java.io.ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))), domResult);
-
-            boolean result = false;
-            if (domResult.getNode().getFirstChild().getFirstChild().hasAttributes()
-                && domResult.getNode().getFirstChild().getFirstChild().getAttributes().getLength() >= 1) {
-                result = "http://www.w3.org/2000/xmlns/".equals(
-                    domResult.getNode().getFirstChild().getFirstChild().getAttributes().item(1).getNamespaceURI());
-            }
-            LOG.debug("Have functional IdentityTransformer: {}", result);
-            return result;
+        private final Cipher cipher;
+
+        CipherUpdateOutputStream(Cipher cipher, OutputStream out) {
+            super(out);
+            this.cipher = cipher;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            byte[] encrypted = cipher.update(b, off, len);
+            if (encrypted != null) {
+                out.write(encrypted);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Decrypts the bytes read from the underlying stream. Unlike <code>CipherInputStream</code>
+     * it fills the buffer passed to read as far as possible, so that a parser receives the
+     * plain text in large chunks.
+     */
+    private static final class CipherUpdateInputStream extends FilterInputStream {
+
+        private final Cipher cipher;
+        private final byte[] input = new byte[8192];
+        private byte[] output;
+        private int pos;
+        private boolean done;
+
+        CipherUpdateInputStream(Cipher cipher, InputStream in) {
+            super(in);
+            this.cipher = cipher;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = 0;
+            while (count < len) {
+                if (output == null || pos == output.length) {
+                    if (!decryptMore()) {
+                        break;
+                    }
+                    continue;
+                }
+                int n = Math.min(len - count, output.length - pos);
+                System.arraycopy(output, pos, b, off + count, n);
+                pos += n;
+                count += n;
+            }
+            return count == 0 && len > 0 ? -1 : count;
+        }
 
-        } catch (Exception e) {
-            LOG.debug(e.getMessage(), e);
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] b = new byte[(int) Math.min(n, input.length)];
+            int read = read(b, 0, b.length);
+            return read == -1 ? 0 : read;
+        }
+
+        @Override
+        public int available() {
+            return output == null ? 0 : output.length - pos;
+        }
+
+        @Override
+        public boolean markSupported() {
             return false;
         }
+
+        private boolean decryptMore() throws IOException {
+            if (done) {
+                return false;
+            }
+            int read = in.read(input);
+            try {
+                if (read == -1) {
+                    done = true;
+                    output = cipher.doFinal();
+                } else {
+                    output = cipher.update(input, 0, read);
+                }
+            } catch (IllegalBlockSizeException ex) {
+                throw new IOException(ex);
+            } catch (BadPaddingException ex) {
+                throw new IOException(ex);
+            }
+            pos = 0;
+            return true;
+        }
     }
 }
@@ -18,7 +18,9 @@
  */
 package org.apache.xml.security.encryption;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import org.apache.xml.security.c14n.CanonicalizationException;
 import org.apache.xml.security.utils.XMLUtils;
@@ -103,6 +105,26 @@ public class XMLCipherInput {
         return null;
     }
 
+    /**
+     * Dereferences the input and returns it as a stream of the encrypted bytes. A
+     * CipherValue is base64 decoded while it is read, so that it is not held in
+     * memory a second time.
+     *
+     * @throws XMLEncryptionException
+     * @return The encrypted bytes.
+     */
+    public InputStream getInputStream() throws XMLEncryptionException {
+        if (mode != XMLCipher.DECRYPT_MODE) {
+            return null;
+        }
+        if (cipherData.getDataType() == CipherData.VALUE_TYPE) {
+            String base64EncodedEncryptedOctets = cipherData.getCipherValue().getValue();
+            LOG.debug("Encrypted octets:\n{}", base64EncodedEncryptedOctets);
+            return XMLUtils.decodeStream(new TextInputStream(base64EncodedEncryptedOctets));
+        }
+        return new ByteArrayInputStream(getDecryptBytes());
+    }
+
     /**
      * Internal method to get bytes in decryption mode
      * @return the decrypted bytes
@@ -169,4 +191,47 @@ public class XMLCipherInput {
 
         return XMLUtils.decode(base64EncodedEncryptedOctets);
     }
+
+    /**
+     * Reads the characters of a base64 encoded text as bytes, like
+     * {@link java.util.Base64.Decoder#decode(String)} converts them
+     */
+    private static final class TextInputStream extends InputStream {
+
+        private final String text;
+        private int pos;
+
+        TextInputStream(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read() {
+            return pos < text.length() ? toByte(text.charAt(pos++)) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (pos >= text.length()) {
+                return -1;
+            }
+            int n = Math.min(len, text.length() - pos);
+            for (int i = 0; i < n; i++) {
+                b[off + i] = (byte) toByte(text.charAt(pos++));
+            }
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return text.length() - pos;
+        }
+
+        private static int toByte(char c) {
+            return c <= 0xff ? c : '?';
+        }
+    }
 }
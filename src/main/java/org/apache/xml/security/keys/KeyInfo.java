@@ -22,8 +22,9 @@ import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.crypto.SecretKey;
 
@@ -117,6 +118,14 @@ public class KeyInfo extends SignatureElementProxy {
 
     private boolean secureValidation;
 
+    private ResolvedKeyCache resolvedKeyCache;
+
+    /**
+     * The identifiers of the child elements in the resolved key cache, an empty array if the
+     * element can't be cached. They are calculated once per KeyInfo.
+     */
+    private Map<Element, byte[]> cacheIdentifiers;
+
     /**
      * Constructor KeyInfo
      * @param doc
@@ -156,6 +165,17 @@ public class KeyInfo extends SignatureElementProxy {
         this.secureValidation = secureValidation;
     }
 
+    /**
+     * Set the cache of the keys resolved from the child elements of KeyInfos. The default
+     * is null, i.e. the keys are resolved every time. The cache holds the keys resolved by
+     * the system-wide key resolvers and is consulted after the per-KeyInfo key resolvers.
+     *
+     * @param resolvedKeyCache the cache, or null
+     */
+    public void setResolvedKeyCache(ResolvedKeyCache resolvedKeyCache) {
+        this.resolvedKeyCache = resolvedKeyCache;
+    }
+
     /**
      * Sets the <code>Id</code> attribute
      *
@@ -828,6 +848,14 @@ public class KeyInfo extends SignatureElementProxy {
         }
         LOG.debug("I couldn't find a key using the per-KeyInfo key resolvers");
 
+        pk = this.getPublicKeyFromCache();
+
+        if (pk != null) {
+            LOG.debug("I could find a key in the resolved key cache");
+
+            return pk;
+        }
+
         pk = this.getPublicKeyFromStaticResolvers();
 
         if (pk != null) {
@@ -847,26 +875,21 @@ public class KeyInfo extends SignatureElementProxy {
      * @throws KeyResolverException
      */
     PublicKey getPublicKeyFromStaticResolvers() throws KeyResolverException {
-        Iterator<KeyResolverSpi> it = KeyResolver.iterator();
-        while (it.hasNext()) {
-            KeyResolverSpi keyResolver = it.next();
+        String uri = this.getBaseURI();
+        for (Map.Entry<KeyResolverSpi, List<Element>> entry
+            : KeyResolver.getResolvers(getChildElements()).entrySet()) {
+            KeyResolverSpi keyResolver = entry.getKey();
             keyResolver.setSecureValidation(secureValidation);
-            Node currentChild = getFirstChild();
-            String uri = this.getBaseURI();
-            while (currentChild != null) {
-                if (currentChild.getNodeType() == Node.ELEMENT_NODE) {
-                    for (StorageResolver storage : storageResolvers) {
-                        PublicKey pk =
-                            keyResolver.engineLookupAndResolvePublicKey(
-                                (Element) currentChild, uri, storage
-                            );
+            for (Element currentChild : entry.getValue()) {
+                for (StorageResolver storage : storageResolvers) {
+                    PublicKey pk =
+                        keyResolver.engineLookupAndResolvePublicKey(currentChild, uri, storage);
 
-                        if (pk != null) {
-                            return pk;
-                        }
+                    if (pk != null) {
+                        cacheResolvedKey(currentChild, pk);
+                        return pk;
                     }
                 }
-                currentChild = currentChild.getNextSibling();
             }
         }
         return null;
@@ -921,6 +944,15 @@ public class KeyInfo extends SignatureElementProxy {
         }
         LOG.debug("I couldn't find a X509Certificate using the per-KeyInfo key resolvers");
 
+        // Then the certificates the system-wide Resolvers found before
+        cert = this.getX509CertificateFromCache();
+
+        if (cert != null) {
+            LOG.debug("I could find a X509Certificate in the resolved key cache");
+
+            return cert;
+        }
+
         // Then use the system-wide Resolvers
         cert = this.getX509CertificateFromStaticResolvers();
 
@@ -948,13 +980,20 @@ public class KeyInfo extends SignatureElementProxy {
             "Start getX509CertificateFromStaticResolvers() with {} resolvers", KeyResolver.length()
         );
         String uri = this.getBaseURI();
-        Iterator<KeyResolverSpi> it = KeyResolver.iterator();
-        while (it.hasNext()) {
-            KeyResolverSpi keyResolver = it.next();
+        for (Map.Entry<KeyResolverSpi, List<Element>> entry
+            : KeyResolver.getResolvers(getChildElements()).entrySet()) {
+            KeyResolverSpi keyResolver = entry.getKey();
             keyResolver.setSecureValidation(secureValidation);
-            X509Certificate cert = applyCurrentResolver(uri, keyResolver);
-            if (cert != null) {
-                return cert;
+            for (Element currentChild : entry.getValue()) {
+                for (StorageResolver storage : storageResolvers) {
+                    X509Certificate cert =
+                        keyResolver.engineLookupResolveX509Certificate(currentChild, uri, storage);
+
+                    if (cert != null) {
+                        cacheResolvedCertificate(currentChild, cert);
+                        return cert;
+                    }
+                }
             }
         }
         return null;
@@ -1041,27 +1080,21 @@ public class KeyInfo extends SignatureElementProxy {
      * @throws KeyResolverException
      */
     SecretKey getSecretKeyFromStaticResolvers() throws KeyResolverException {
-        Iterator<KeyResolverSpi> it = KeyResolver.iterator();
-        while (it.hasNext()) {
-            KeyResolverSpi keyResolver = it.next();
+        String uri = this.getBaseURI();
+        for (Map.Entry<KeyResolverSpi, List<Element>> entry
+            : KeyResolver.getResolvers(getChildElements()).entrySet()) {
+            KeyResolverSpi keyResolver = entry.getKey();
             keyResolver.setSecureValidation(secureValidation);
 
-            Node currentChild = getFirstChild();
-            String uri = this.getBaseURI();
-            while (currentChild != null)      {
-                if (currentChild.getNodeType() == Node.ELEMENT_NODE) {
-                    for (StorageResolver storage : storageResolvers) {
-                        SecretKey sk =
-                            keyResolver.engineLookupAndResolveSecretKey(
-                                (Element) currentChild, uri, storage
-                            );
+            for (Element currentChild : entry.getValue()) {
+                for (StorageResolver storage : storageResolvers) {
+                    SecretKey sk =
+                        keyResolver.engineLookupAndResolveSecretKey(currentChild, uri, storage);
 
-                        if (sk != null) {
-                            return sk;
-                        }
+                    if (sk != null) {
+                        return sk;
                     }
                 }
-                currentChild = currentChild.getNextSibling();
             }
         }
         return null;
@@ -1131,32 +1164,121 @@ public class KeyInfo extends SignatureElementProxy {
      * @throws KeyResolverException
      */
     PrivateKey getPrivateKeyFromStaticResolvers() throws KeyResolverException {
-        Iterator<KeyResolverSpi> it = KeyResolver.iterator();
-        while (it.hasNext()) {
-            KeyResolverSpi keyResolver = it.next();
+        String uri = this.getBaseURI();
+        for (Map.Entry<KeyResolverSpi, List<Element>> entry
+            : KeyResolver.getResolvers(getChildElements()).entrySet()) {
+            KeyResolverSpi keyResolver = entry.getKey();
             keyResolver.setSecureValidation(secureValidation);
 
-            Node currentChild = getFirstChild();
-            String uri = this.getBaseURI();
-            while (currentChild != null)      {
-                if (currentChild.getNodeType() == Node.ELEMENT_NODE) {
-                    // not using StorageResolvers at the moment
-                    // since they cannot return private keys
-                    PrivateKey pk =
-                        keyResolver.engineLookupAndResolvePrivateKey(
-                            (Element) currentChild, uri, null
-                        );
+            for (Element currentChild : entry.getValue()) {
+                // not using StorageResolvers at the moment
+                // since they cannot return private keys
+                PrivateKey pk =
+                    keyResolver.engineLookupAndResolvePrivateKey(currentChild, uri, null);
+
+                if (pk != null) {
+                    return pk;
+                }
+            }
+        }
+        return null;
+    }
 
+    /**
+     * Searches the resolved key cache for the public key of a child element
+     *
+     * @return the public key, or null if none of the child elements is cached
+     */
+    private PublicKey getPublicKeyFromCache() {
+        if (resolvedKeyCache != null) {
+            for (Element currentChild : getChildElements()) {
+                byte[] identifier = getCacheIdentifier(currentChild);
+                if (identifier != null) {
+                    PublicKey pk = resolvedKeyCache.getPublicKey(identifier);
                     if (pk != null) {
                         return pk;
                     }
                 }
-                currentChild = currentChild.getNextSibling();
             }
         }
         return null;
     }
 
+    /**
+     * Searches the resolved key cache for the certificate of a child element
+     *
+     * @return the certificate, or null if none of the child elements is cached
+     */
+    private X509Certificate getX509CertificateFromCache() {
+        if (resolvedKeyCache != null) {
+            for (Element currentChild : getChildElements()) {
+                byte[] identifier = getCacheIdentifier(currentChild);
+                if (identifier != null) {
+                    X509Certificate cert = resolvedKeyCache.getX509Certificate(identifier);
+                    if (cert != null) {
+                        return cert;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private void cacheResolvedKey(Element child, PublicKey pk) {
+        if (resolvedKeyCache != null) {
+            byte[] identifier = getCacheIdentifier(child);
+            if (identifier != null) {
+                resolvedKeyCache.put(identifier, pk);
+            }
+        }
+    }
+
+    private void cacheResolvedCertificate(Element child, X509Certificate cert) {
+        if (resolvedKeyCache != null) {
+            byte[] identifier = getCacheIdentifier(child);
+            if (identifier != null) {
+                resolvedKeyCache.put(identifier, cert);
+            }
+        }
+    }
+
+    /**
+     * @return the identifier of the given child element in the resolved key cache, or null
+     * if the key resolved from the element can't be cached
+     */
+    private byte[] getCacheIdentifier(Element child) {
+        if (cacheIdentifiers == null) {
+            cacheIdentifiers = new HashMap<>();
+        }
+        byte[] identifier = cacheIdentifiers.get(child);
+        if (identifier == null) {
+            identifier = new byte[0];
+            if (ResolvedKeyCache.isCacheable(child)) {
+                try {
+                    identifier = ResolvedKeyCache.getIdentifier(child);
+                } catch (XMLSecurityException ex) {
+                    LOG.debug("The element can't be cached", ex);
+                }
+            }
+            cacheIdentifiers.put(child, identifier);
+        }
+        return identifier.length == 0 ? null : identifier;
+    }
+
+    /**
+     * @return the child elements of this KeyInfo
+     */
+    private List<Element> getChildElements() {
+        List<Element> childElements = new ArrayList<>();
+        for (Node currentChild = getFirstChild(); currentChild != null;
+            currentChild = currentChild.getNextSibling()) {
+            if (currentChild.getNodeType() == Node.ELEMENT_NODE) {
+                childElements.add((Element) currentChild);
+            }
+        }
+        return childElements;
+    }
+
     /**
      * Searches the per-KeyInfo KeyResolvers for private keys
      *
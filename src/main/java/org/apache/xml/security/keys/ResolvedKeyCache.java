@@ -0,0 +1,274 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.keys;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.utils.Constants;
+import org.apache.xml.security.utils.XMLUtils;
+import org.w3c.dom.Element;
+
+/**
+ * A cache of the keys and certificates resolved from the child elements of a KeyInfo.
+ * Senders usually identify their key in the same way in every message, so the key is
+ * resolved only once instead of e.g. parsing the KeyValue or searching the StorageResolvers
+ * for every message. A cache is set with {@link KeyInfo#setResolvedKeyCache(ResolvedKeyCache)}
+ * or with {@code XMLSecurityProperties.setResolvedKeyCache(ResolvedKeyCache)}.
+ * <p>
+ * The entries are keyed by the SHA-256 digest of the exclusive canonical form of the child
+ * element. Only the elements which identify a key by their content are cached, i.e. KeyName,
+ * KeyValue, X509Data and DEREncodedKeyValue. The result of elements which refer to other parts
+ * of the document, like RetrievalMethod or KeyInfoReference, is never cached.
+ * <p>
+ * Only the keys resolved by the system-wide key resolvers are cached, a KeyInfo asks its
+ * per-KeyInfo key resolvers before the cache. The result of KeyName and of the X509Data
+ * identifiers still depends on the StorageResolvers, so a cache must only be shared by KeyInfos
+ * which are configured in the same way. The entries expire after the given time to live. When the cache is full, the
+ * expired entries are removed, and if there are none an arbitrary entry is evicted.
+ */
+public class ResolvedKeyCache {
+
+    private final int maxSize;
+    private final long timeToLive;
+
+    private final ConcurrentMap<ByteBuffer, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructor ResolvedKeyCache
+     *
+     * @param maxSize the maximum number of cached keys
+     * @param timeToLive the time in milliseconds after which a cached key expires
+     */
+    public ResolvedKeyCache(int maxSize, long timeToLive) {
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns whether the key resolved from the given KeyInfo child element can be cached.
+     *
+     * @param element a child element of a KeyInfo
+     * @return whether the key resolved from the element can be cached
+     */
+    public static boolean isCacheable(Element element) {
+        return XMLUtils.elementIsInSignatureSpace(element, Constants._TAG_KEYNAME)
+            || XMLUtils.elementIsInSignatureSpace(element, Constants._TAG_KEYVALUE)
+            || XMLUtils.elementIsInSignatureSpace(element, Constants._TAG_X509DATA)
+            || XMLUtils.elementIsInSignature11Space(element, Constants._TAG_DERENCODEDKEYVALUE);
+    }
+
+    /**
+     * Returns the identifier of a KeyInfo child element, the digest of its exclusive
+     * canonical form.
+     *
+     * @param element a child element of a KeyInfo
+     * @return the identifier of the element
+     * @throws XMLSecurityException if the element can't be canonicalized
+     */
+    public static byte[] getIdentifier(Element element) throws XMLSecurityException {
+        Canonicalizer c14n = Canonicalizer.getInstance(Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+        return getSHA256().digest(c14n.canonicalizeSubtree(element));
+    }
+
+    /**
+     * Returns the identifier of a key which is given by its type and the values it consists
+     * of, e.g. the modulus and the exponent of an RSA KeyValue.
+     *
+     * @param keyType the type of the key, e.g. the name of the KeyValue element
+     * @param values the values of the key
+     * @return the identifier of the key
+     * @throws XMLSecurityException if SHA-256 is not available
+     */
+    public static byte[] getIdentifier(String keyType, byte[]... values) throws XMLSecurityException {
+        MessageDigest digest = getSHA256();
+        digest.update(keyType.getBytes(StandardCharsets.UTF_8));
+        for (byte[] value : values) {
+            int length = value == null ? -1 : value.length;
+            // the length keeps the values apart
+            digest.update(new byte[] {
+                (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length
+            });
+            if (value != null) {
+                digest.update(value);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Returns the public key cached for the given identifier.
+     *
+     * @param identifier the identifier of a KeyInfo child element
+     * @return the public key, or null if there is none or it has expired
+     */
+    public PublicKey getPublicKey(byte[] identifier) {
+        Entry entry = getEntry(identifier);
+        return count(entry == null ? null : entry.publicKey);
+    }
+
+    /**
+     * Returns the certificate cached for the given identifier.
+     *
+     * @param identifier the identifier of a KeyInfo child element
+     * @return the certificate, or null if there is none or it has expired
+     */
+    public X509Certificate getX509Certificate(byte[] identifier) {
+        Entry entry = getEntry(identifier);
+        return count(entry == null ? null : entry.certificate);
+    }
+
+    /**
+     * Caches the public key resolved from the element with the given identifier.
+     *
+     * @param identifier the identifier of a KeyInfo child element
+     * @param publicKey the resolved public key
+     */
+    public void put(byte[] identifier, PublicKey publicKey) {
+        put(identifier, new Entry(publicKey, null, System.currentTimeMillis() + timeToLive));
+    }
+
+    /**
+     * Caches the certificate resolved from the element with the given identifier. The
+     * public key of the certificate is returned for the identifier as well.
+     *
+     * @param identifier the identifier of a KeyInfo child element
+     * @param certificate the resolved certificate
+     */
+    public void put(byte[] identifier, X509Certificate certificate) {
+        put(
+            identifier,
+            new Entry(certificate.getPublicKey(), certificate, System.currentTimeMillis() + timeToLive)
+        );
+    }
+
+    /**
+     * @return the number of keys which were found in the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of keys which were not found in the cache
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of cached keys, including the expired ones which were not removed yet
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all keys from the cache.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    private Entry getEntry(byte[] identifier) {
+        ByteBuffer key = ByteBuffer.wrap(identifier);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expires - System.currentTimeMillis() <= 0) {
+            entries.remove(key, entry);
+            entry = null;
+        }
+        return entry;
+    }
+
+    private <T> T count(T result) {
+        if (result == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return result;
+    }
+
+    private void put(byte[] identifier, Entry entry) {
+        if (maxSize <= 0) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        entries.put(ByteBuffer.wrap(identifier), entry);
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        boolean removed = false;
+        Iterator<Map.Entry<ByteBuffer, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().expires - now <= 0) {
+                iterator.remove();
+                removed = true;
+            }
+        }
+        if (!removed) {
+            iterator = entries.entrySet().iterator();
+            if (iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    private static MessageDigest getSHA256() throws XMLSecurityException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new XMLSecurityException(ex);
+        }
+    }
+
+    /**
+     * A resolved key and the time when it expires
+     */
+    private static final class Entry {
+
+        private final PublicKey publicKey;
+        private final X509Certificate certificate;
+        private final long expires;
+
+        Entry(PublicKey publicKey, X509Certificate certificate, long expires) {
+            this.publicKey = publicKey;
+            this.certificate = certificate;
+            this.expires = expires;
+        }
+    }
+}
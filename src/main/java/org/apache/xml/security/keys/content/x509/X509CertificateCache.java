@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.keys.content.x509;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivilegedAction;
+import java.security.PublicKey;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of the X.509 certificates parsed from their DER encoding, e.g. from the
+ * X509Certificate elements of a KeyInfo or from a BinarySecurityToken. The same few
+ * certificates are usually received with every message, so they are parsed only once.
+ * <p>
+ * The certificates are keyed by the SHA-256 digest of their encoding. X509Certificate
+ * objects are immutable, so they are shared by all threads. The cache holds at most 256
+ * certificates by default, which can be changed with the system property
+ * {@code org.apache.xml.security.certificateCache.size}. A size of 0 disables the cache.
+ * When the cache is full, an arbitrary certificate is evicted.
+ * <p>
+ * The number of hits and misses is counted and can be used for monitoring.
+ */
+public final class X509CertificateCache {
+
+    private static final int DEFAULT_MAX_SIZE = 256;
+
+    private static final int maxSize =
+        AccessController.doPrivileged(
+            (PrivilegedAction<Integer>) () ->
+                Integer.getInteger("org.apache.xml.security.certificateCache.size", DEFAULT_MAX_SIZE));
+
+    private static final ConcurrentMap<ByteBuffer, X509Certificate> CERTIFICATES =
+        new ConcurrentHashMap<>();
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    private X509CertificateCache() {
+        // we don't allow instantiation
+    }
+
+    /**
+     * Returns the certificate with the given DER encoding.
+     *
+     * @param encoded the DER encoding of the certificate
+     * @return the certificate
+     * @throws CertificateException if the certificate can't be parsed
+     */
+    public static X509Certificate getCertificate(byte[] encoded) throws CertificateException {
+        if (maxSize <= 0) {
+            misses.increment();
+            return parse(encoded);
+        }
+        ByteBuffer key = ByteBuffer.wrap(sha256(encoded));
+        X509Certificate cert = CERTIFICATES.get(key);
+        if (cert != null) {
+            hits.increment();
+            return cert;
+        }
+        misses.increment();
+        cert = parse(encoded);
+        if (CERTIFICATES.size() >= maxSize) {
+            Iterator<ByteBuffer> iterator = CERTIFICATES.keySet().iterator();
+            if (iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        X509Certificate cached = CERTIFICATES.putIfAbsent(key, cert);
+        return cached != null ? cached : cert;
+    }
+
+    /**
+     * Returns the public key of the certificate with the given DER encoding.
+     *
+     * @param encoded the DER encoding of the certificate
+     * @return the public key of the certificate
+     * @throws CertificateException if the certificate can't be parsed
+     */
+    public static PublicKey getPublicKey(byte[] encoded) throws CertificateException {
+        return getCertificate(encoded).getPublicKey();
+    }
+
+    /**
+     * @return the number of certificates which were found in the cache
+     */
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of certificates which had to be parsed
+     */
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of cached certificates
+     */
+    public static int size() {
+        return CERTIFICATES.size();
+    }
+
+    /**
+     * Removes all certificates from the cache.
+     */
+    public static void clear() {
+        CERTIFICATES.clear();
+    }
+
+    private static X509Certificate parse(byte[] encoded) throws CertificateException {
+        CertificateFactory certFact =
+            CertificateFactory.getInstance(XMLX509Certificate.JCA_CERT_ID);
+        return (X509Certificate) certFact.generateCertificate(new ByteArrayInputStream(encoded));
+    }
+
+    private static byte[] sha256(byte[] encoded) throws CertificateException {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(encoded);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new CertificateException(ex);
+        }
+    }
+}
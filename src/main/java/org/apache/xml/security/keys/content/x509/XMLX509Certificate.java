@@ -18,12 +18,9 @@
  */
 package org.apache.xml.security.keys.content.x509;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.security.PublicKey;
 import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
 
@@ -97,18 +94,9 @@ public class XMLX509Certificate extends SignatureElementProxy implements XMLX509
      */
     public X509Certificate getX509Certificate() throws XMLSecurityException {
         byte certbytes[] = this.getCertificateBytes();
-        try (InputStream is = new ByteArrayInputStream(certbytes)) {
-            CertificateFactory certFact =
-                CertificateFactory.getInstance(XMLX509Certificate.JCA_CERT_ID);
-            X509Certificate cert =
-                (X509Certificate) certFact.generateCertificate(is);
-
-            if (cert != null) {
-                return cert;
-            }
-
-            return null;
-        } catch (CertificateException | IOException ex) {
+        try {
+            return X509CertificateCache.getCertificate(certbytes);
+        } catch (CertificateException ex) {
             throw new XMLSecurityException(ex);
         }
     }
@@ -21,11 +21,17 @@ package org.apache.xml.security.keys.keyresolver;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.crypto.SecretKey;
+import javax.xml.namespace.QName;
 
 import org.apache.xml.security.keys.keyresolver.implementations.DEREncodedKeyValueResolver;
 import org.apache.xml.security.keys.keyresolver.implementations.DSAKeyValueResolver;
@@ -55,6 +61,9 @@ public class KeyResolver {
     /** Field resolverVector */
     private static List<KeyResolver> resolverVector = new CopyOnWriteArrayList<KeyResolver>();
 
+    /** The resolvers by the names of the elements they resolve, built from resolverVector */
+    private static Dispatch dispatch;
+
     /** Field resolverSpi */
     private final KeyResolverSpi resolverSpi;
 
@@ -89,7 +98,7 @@ public class KeyResolver {
     public static final X509Certificate getX509Certificate(
         Element element, String baseURI, StorageResolver storage
     ) throws KeyResolverException {
-        for (KeyResolver resolver : resolverVector) {
+        for (KeyResolver resolver : getDispatch().getResolvers(element)) {
             if (resolver == null) {
                 Object exArgs[] = {
                                    element != null
@@ -128,7 +137,7 @@ public class KeyResolver {
     public static final PublicKey getPublicKey(
         Element element, String baseURI, StorageResolver storage
     ) throws KeyResolverException {
-        for (KeyResolver resolver : resolverVector) {
+        for (KeyResolver resolver : getDispatch().getResolvers(element)) {
             if (resolver == null) {
                 Object exArgs[] = {
                                    element != null
@@ -241,6 +250,7 @@ public class KeyResolver {
         } else {
             resolverVector.add(resolver);
         }
+        resetDispatch();
     }
 
     /**
@@ -270,6 +280,7 @@ public class KeyResolver {
             keyResolverList.add(new KeyResolver(keyResolverSpi));
         }
         resolverVector.addAll(keyResolverList);
+        resetDispatch();
     }
 
     /**
@@ -290,6 +301,56 @@ public class KeyResolver {
         keyResolverList.add(new KeyResolver(new X509DigestResolver()));
 
         resolverVector.addAll(keyResolverList);
+        resetDispatch();
+    }
+
+    /**
+     * Returns the registered {@link KeyResolverSpi}s which can resolve at least one of the
+     * given elements, in the order in which they were registered, each with the elements it
+     * can resolve. The resolvers are looked up by the names of the elements, see
+     * {@link KeyResolverSpi#engineGetResolvableElements()}.
+     *
+     * @param elements the child elements of a KeyInfo
+     * @return the KeyResolverSpis with the elements they can resolve
+     */
+    public static Map<KeyResolverSpi, List<Element>> getResolvers(List<Element> elements) {
+        Dispatch currentDispatch = getDispatch();
+        List<List<Element>> elementsByResolver = currentDispatch.newElementsByResolver();
+        for (Element element : elements) {
+            for (int index : currentDispatch.getResolverIndexes(element)) {
+                List<Element> resolverElements = elementsByResolver.get(index);
+                if (resolverElements == null) {
+                    resolverElements = new ArrayList<>(elements.size());
+                    elementsByResolver.set(index, resolverElements);
+                }
+                resolverElements.add(element);
+            }
+        }
+        Map<KeyResolverSpi, List<Element>> resolvers = new LinkedHashMap<>();
+        for (int i = 0; i < elementsByResolver.size(); i++) {
+            List<Element> resolverElements = elementsByResolver.get(i);
+            if (resolverElements != null) {
+                KeyResolverSpi resolverSpi = currentDispatch.resolvers[i].resolverSpi;
+                List<Element> resolvable = resolvers.get(resolverSpi);
+                if (resolvable == null) {
+                    resolvers.put(resolverSpi, resolverElements);
+                } else {
+                    resolvable.addAll(resolverElements);
+                }
+            }
+        }
+        return resolvers;
+    }
+
+    private static synchronized Dispatch getDispatch() {
+        if (dispatch == null) {
+            dispatch = new Dispatch(resolverVector.toArray(new KeyResolver[0]));
+        }
+        return dispatch;
+    }
+
+    private static synchronized void resetDispatch() {
+        dispatch = null;
     }
 
     /**
@@ -378,6 +439,84 @@ public class KeyResolver {
         return resolverSpi.getClass().getName();
     }
 
+    /**
+     * The registered resolvers, indexed by the names of the elements they can resolve.
+     * Resolvers which don't declare their elements are candidates for every element.
+     * The candidates of an element keep the order of the registration.
+     */
+    private static final class Dispatch {
+
+        private final KeyResolver[] resolvers;
+        private final Map<QName, int[]> indexesByElement = new HashMap<>();
+        private final int[] wildcardIndexes;
+        private final int[] allIndexes;
+
+        Dispatch(KeyResolver[] resolvers) {
+            this.resolvers = resolvers;
+            List<Integer> wildcards = new ArrayList<>();
+            Map<QName, List<Integer>> byElement = new HashMap<>();
+            for (int i = 0; i < resolvers.length; i++) {
+                Set<QName> names =
+                    resolvers[i] == null ? null : resolvers[i].resolverSpi.engineGetResolvableElements();
+                if (names == null) {
+                    wildcards.add(i);
+                    for (List<Integer> indexes : byElement.values()) {
+                        indexes.add(i);
+                    }
+                } else {
+                    for (QName name : names) {
+                        List<Integer> indexes = byElement.get(name);
+                        if (indexes == null) {
+                            indexes = new ArrayList<>(wildcards);
+                            byElement.put(name, indexes);
+                        }
+                        indexes.add(i);
+                    }
+                }
+            }
+            for (Map.Entry<QName, List<Integer>> entry : byElement.entrySet()) {
+                indexesByElement.put(entry.getKey(), toArray(entry.getValue()));
+            }
+            wildcardIndexes = toArray(wildcards);
+            allIndexes = new int[resolvers.length];
+            for (int i = 0; i < allIndexes.length; i++) {
+                allIndexes[i] = i;
+            }
+        }
+
+        int[] getResolverIndexes(Element element) {
+            if (element == null || element.getLocalName() == null) {
+                return allIndexes;
+            }
+            String namespace = element.getNamespaceURI();
+            int[] indexes = indexesByElement.get(
+                new QName(namespace == null ? "" : namespace, element.getLocalName())
+            );
+            return indexes != null ? indexes : wildcardIndexes;
+        }
+
+        List<KeyResolver> getResolvers(Element element) {
+            int[] indexes = getResolverIndexes(element);
+            List<KeyResolver> result = new ArrayList<>(indexes.length);
+            for (int index : indexes) {
+                result.add(resolvers[index]);
+            }
+            return result;
+        }
+
+        List<List<Element>> newElementsByResolver() {
+            return new ArrayList<>(Collections.<List<Element>>nCopies(resolvers.length, null));
+        }
+
+        private static int[] toArray(List<Integer> list) {
+            int[] array = new int[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+            return array;
+        }
+    }
+
     /**
      * Iterate over the KeyResolverSpi instances
      */
@@ -25,8 +25,10 @@ import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
 import java.util.HashMap;
+import java.util.Set;
 
 import javax.crypto.SecretKey;
+import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -62,6 +64,18 @@ public abstract class KeyResolverSpi {
         this.secureValidation = secureValidation;
     }
 
+    /**
+     * Returns the names of the KeyInfo child elements which this KeyResolverSpi can resolve.
+     * The {@link KeyResolver} uses them to look up the resolvers for an element, and asks
+     * this KeyResolverSpi only for elements with one of these names. The default is null,
+     * which means that it is asked for every element.
+     *
+     * @return the names of the elements which this KeyResolverSpi can resolve, or null
+     */
+    public Set<QName> engineGetResolvableElements() {
+        return null;
+    }
+
     /**
      * This method returns whether the KeyResolverSpi is able to perform the requested action.
      *
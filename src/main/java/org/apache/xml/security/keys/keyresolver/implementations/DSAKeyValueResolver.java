@@ -20,6 +20,12 @@ package org.apache.xml.security.keys.keyresolver.implementations;
 
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
 
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.keys.content.keyvalues.DSAKeyValue;
@@ -34,6 +40,12 @@ public class DSAKeyValueResolver extends KeyResolverSpi {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(DSAKeyValueResolver.class);
 
+    private static final Set<QName> RESOLVABLE_ELEMENTS =
+        Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            new QName(Constants.SignatureSpecNS, Constants._TAG_KEYVALUE),
+            new QName(Constants.SignatureSpecNS, Constants._TAG_DSAKEYVALUE)
+        )));
+
 
     /**
      * Method engineResolvePublicKey
@@ -92,4 +104,10 @@ public class DSAKeyValueResolver extends KeyResolverSpi {
     ) {
         return null;
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<QName> engineGetResolvableElements() {
+        return RESOLVABLE_ELEMENTS;
+    }
 }
@@ -22,9 +22,12 @@ import java.security.Key;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import javax.crypto.SecretKey;
+import javax.xml.namespace.QName;
 
 import org.apache.xml.security.encryption.EncryptedKey;
 import org.apache.xml.security.encryption.XMLCipher;
@@ -51,6 +54,9 @@ public class EncryptedKeyResolver extends KeyResolverSpi {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(RSAKeyValueResolver.class);
 
+    private static final Set<QName> RESOLVABLE_ELEMENTS =
+        Collections.singleton(new QName(EncryptionConstants.EncryptionSpecNS, EncryptionConstants._TAG_ENCRYPTEDKEY));
+
     private Key kek;
     private String algorithm;
     private List<KeyResolverSpi> internalKeyResolvers;
@@ -135,4 +141,10 @@ public class EncryptedKeyResolver extends KeyResolverSpi {
 
         return key;
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<QName> engineGetResolvableElements() {
+        return RESOLVABLE_ELEMENTS;
+    }
 }
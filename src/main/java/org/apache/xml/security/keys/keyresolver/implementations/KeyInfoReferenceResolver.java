@@ -22,6 +22,8 @@ import java.io.IOException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Set;
 
 import javax.crypto.SecretKey;
 import javax.xml.namespace.QName;
@@ -52,6 +54,9 @@ public class KeyInfoReferenceResolver extends KeyResolverSpi {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(KeyInfoReferenceResolver.class);
 
+    private static final Set<QName> RESOLVABLE_ELEMENTS =
+        Collections.singleton(new QName(Constants.SignatureSpec11NS, Constants._TAG_KEYINFOREFERENCE));
+
     /** {{@inheritDoc}}. */
     public boolean engineCanResolve(Element element, String baseURI, StorageResolver storage) {
         return XMLUtils.elementIsInSignature11Space(element, Constants._TAG_KEYINFOREFERENCE);
@@ -250,4 +255,10 @@ public class KeyInfoReferenceResolver extends KeyResolverSpi {
         }
         return e;
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<QName> engineGetResolvableElements() {
+        return RESOLVABLE_ELEMENTS;
+    }
 }
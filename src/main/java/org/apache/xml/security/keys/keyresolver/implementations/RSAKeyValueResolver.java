@@ -20,6 +20,12 @@ package org.apache.xml.security.keys.keyresolver.implementations;
 
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
 
 
 import org.apache.xml.security.exceptions.XMLSecurityException;
@@ -35,6 +41,12 @@ public class RSAKeyValueResolver extends KeyResolverSpi {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(RSAKeyValueResolver.class);
 
+    private static final Set<QName> RESOLVABLE_ELEMENTS =
+        Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            new QName(Constants.SignatureSpecNS, Constants._TAG_KEYVALUE),
+            new QName(Constants.SignatureSpecNS, Constants._TAG_RSAKEYVALUE)
+        )));
+
 
     /** {@inheritDoc} */
     public PublicKey engineLookupAndResolvePublicKey(
@@ -85,4 +97,10 @@ public class RSAKeyValueResolver extends KeyResolverSpi {
     ) {
         return null;
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<QName> engineGetResolvableElements() {
+        return RESOLVABLE_ELEMENTS;
+    }
 }
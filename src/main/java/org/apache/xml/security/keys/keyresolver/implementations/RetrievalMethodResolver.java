@@ -18,25 +18,24 @@
  */
 package org.apache.xml.security.keys.keyresolver.implementations;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.security.PublicKey;
 import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
 
+import javax.xml.namespace.QName;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.xml.security.c14n.CanonicalizationException;
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.keys.content.RetrievalMethod;
-import org.apache.xml.security.keys.content.x509.XMLX509Certificate;
+import org.apache.xml.security.keys.content.x509.X509CertificateCache;
 import org.apache.xml.security.keys.keyresolver.KeyResolver;
 import org.apache.xml.security.keys.keyresolver.KeyResolverException;
 import org.apache.xml.security.keys.keyresolver.KeyResolverSpi;
@@ -66,6 +65,9 @@ public class RetrievalMethodResolver extends KeyResolverSpi {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(RetrievalMethodResolver.class);
 
+    private static final Set<QName> RESOLVABLE_ELEMENTS =
+        Collections.singleton(new QName(Constants.SignatureSpecNS, Constants._TAG_RETRIEVALMETHOD));
+
     /**
      * Method engineResolvePublicKey
      * {@inheritDoc}
@@ -255,11 +257,7 @@ public class RetrievalMethodResolver extends KeyResolverSpi {
         throws CanonicalizationException, IOException, CertificateException {
         byte inputBytes[] = resource.getBytes();
         // if the resource stores a raw certificate, we have to handle it
-        CertificateFactory certFact =
-            CertificateFactory.getInstance(XMLX509Certificate.JCA_CERT_ID);
-        try (InputStream is = new ByteArrayInputStream(inputBytes)) {
-            return (X509Certificate) certFact.generateCertificate(is);
-        }
+        return X509CertificateCache.getCertificate(inputBytes);
     }
 
     /**
@@ -327,4 +325,10 @@ public class RetrievalMethodResolver extends KeyResolverSpi {
         }
         return null;
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<QName> engineGetResolvableElements() {
+        return RESOLVABLE_ELEMENTS;
+    }
 }
@@ -21,7 +21,10 @@ package org.apache.xml.security.keys.keyresolver.implementations;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Set;
 import javax.crypto.SecretKey;
+import javax.xml.namespace.QName;
 import org.apache.xml.security.keys.keyresolver.KeyResolverException;
 import org.apache.xml.security.keys.keyresolver.KeyResolverSpi;
 import org.apache.xml.security.keys.storage.StorageResolver;
@@ -36,6 +39,9 @@ public class SingleKeyResolver extends KeyResolverSpi {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(SingleKeyResolver.class);
 
+    private static final Set<QName> RESOLVABLE_ELEMENTS =
+        Collections.singleton(new QName(Constants.SignatureSpecNS, Constants._TAG_KEYNAME));
+
     private String keyName;
     private PublicKey publicKey;
     private PrivateKey privateKey;
@@ -175,4 +181,10 @@ public class SingleKeyResolver extends KeyResolverSpi {
         LOG.debug("I can't");
         return null;
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<QName> engineGetResolvableElements() {
+        return RESOLVABLE_ELEMENTS;
+    }
 }
@@ -22,15 +22,19 @@ import java.security.PublicKey;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.Set;
 
 import javax.crypto.SecretKey;
+import javax.xml.namespace.QName;
 
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.keys.content.X509Data;
 import org.apache.xml.security.keys.content.x509.XMLX509Digest;
 import org.apache.xml.security.keys.keyresolver.KeyResolverException;
 import org.apache.xml.security.keys.keyresolver.KeyResolverSpi;
+import org.apache.xml.security.keys.storage.IndexedStorageResolver;
 import org.apache.xml.security.keys.storage.StorageResolver;
 import org.apache.xml.security.utils.Constants;
 import org.apache.xml.security.utils.XMLUtils;
@@ -46,6 +50,9 @@ public class X509DigestResolver extends KeyResolverSpi {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(X509DigestResolver.class);
 
+    private static final Set<QName> RESOLVABLE_ELEMENTS =
+        Collections.singleton(new QName(Constants.SignatureSpecNS, Constants._TAG_X509DATA));
+
     /** {{@inheritDoc}}. */
     public boolean engineCanResolve(Element element, String baseURI, StorageResolver storage) {
         if (XMLUtils.elementIsInSignatureSpace(element, Constants._TAG_X509DATA)) {
@@ -127,6 +134,17 @@ public class X509DigestResolver extends KeyResolverSpi {
                 x509Digests[i] = new XMLX509Digest(x509childNodes[i], baseURI);
             }
 
+            if (storage instanceof IndexedStorageResolver) {
+                for (int i = 0; i < x509Digests.length; i++) {
+                    X509Certificate cert = ((IndexedStorageResolver) storage).getCertificate(x509Digests[i]);
+                    if (cert != null) {
+                        LOG.debug("Found certificate with: {}", cert.getSubjectX500Principal().getName());
+                        return cert;
+                    }
+                }
+                return null;
+            }
+
             Iterator<Certificate> storageIterator = storage.getIterator();
             while (storageIterator.hasNext()) {
                 X509Certificate cert = (X509Certificate) storageIterator.next();
@@ -165,4 +183,9 @@ public class X509DigestResolver extends KeyResolverSpi {
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Set<QName> engineGetResolvableElements() {
+        return RESOLVABLE_ELEMENTS;
+    }
 }
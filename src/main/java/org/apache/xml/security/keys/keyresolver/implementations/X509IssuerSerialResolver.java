@@ -21,13 +21,18 @@ package org.apache.xml.security.keys.keyresolver.implementations;
 import java.security.PublicKey;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
 
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.keys.content.X509Data;
 import org.apache.xml.security.keys.content.x509.XMLX509IssuerSerial;
 import org.apache.xml.security.keys.keyresolver.KeyResolverException;
 import org.apache.xml.security.keys.keyresolver.KeyResolverSpi;
+import org.apache.xml.security.keys.storage.IndexedStorageResolver;
 import org.apache.xml.security.keys.storage.StorageResolver;
 import org.apache.xml.security.signature.XMLSignatureException;
 import org.apache.xml.security.utils.Constants;
@@ -38,6 +43,9 @@ public class X509IssuerSerialResolver extends KeyResolverSpi {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(X509IssuerSerialResolver.class);
 
+    private static final Set<QName> RESOLVABLE_ELEMENTS =
+        Collections.singleton(new QName(Constants.SignatureSpecNS, Constants._TAG_X509DATA));
+
 
     /** {@inheritDoc} */
     public PublicKey engineLookupAndResolvePublicKey(
@@ -86,6 +94,18 @@ public class X509IssuerSerialResolver extends KeyResolverSpi {
 
             int noOfISS = x509data.lengthIssuerSerial();
 
+            if (storage instanceof IndexedStorageResolver) {
+                for (int i = 0; i < noOfISS; i++) {
+                    X509Certificate cert =
+                        ((IndexedStorageResolver) storage).getCertificate(x509data.itemIssuerSerial(i));
+                    if (cert != null) {
+                        LOG.debug("match !!! ");
+                        return cert;
+                    }
+                }
+                return null;
+            }
+
             Iterator<Certificate> storageIterator = storage.getIterator();
             while (storageIterator.hasNext()) {
                 X509Certificate cert = (X509Certificate)storageIterator.next();
@@ -122,4 +142,10 @@ public class X509IssuerSerialResolver extends KeyResolverSpi {
     ) {
         return null;
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<QName> engineGetResolvableElements() {
+        return RESOLVABLE_ELEMENTS;
+    }
 }
@@ -21,13 +21,18 @@ package org.apache.xml.security.keys.keyresolver.implementations;
 import java.security.PublicKey;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
 
 
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.keys.content.x509.XMLX509SubjectName;
 import org.apache.xml.security.keys.keyresolver.KeyResolverException;
 import org.apache.xml.security.keys.keyresolver.KeyResolverSpi;
+import org.apache.xml.security.keys.storage.IndexedStorageResolver;
 import org.apache.xml.security.keys.storage.StorageResolver;
 import org.apache.xml.security.utils.Constants;
 import org.apache.xml.security.utils.XMLUtils;
@@ -38,6 +43,9 @@ public class X509SubjectNameResolver extends KeyResolverSpi {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(X509SubjectNameResolver.class);
 
+    private static final Set<QName> RESOLVABLE_ELEMENTS =
+        Collections.singleton(new QName(Constants.SignatureSpecNS, Constants._TAG_X509DATA));
+
 
     /**
      * Method engineResolvePublicKey
@@ -107,6 +115,18 @@ public class X509SubjectNameResolver extends KeyResolverSpi {
                 x509childObject[i] = new XMLX509SubjectName(x509childNodes[i], baseURI);
             }
 
+            if (storage instanceof IndexedStorageResolver) {
+                for (int i = 0; i < x509childObject.length; i++) {
+                    X509Certificate cert = ((IndexedStorageResolver) storage).getCertificate(x509childObject[i]);
+                    if (cert != null) {
+                        LOG.debug("match !!! ");
+
+                        return cert;
+                    }
+                }
+                return null;
+            }
+
             Iterator<Certificate> storageIterator = storage.getIterator();
             while (storageIterator.hasNext()) {
                 X509Certificate cert = (X509Certificate)storageIterator.next();
@@ -148,4 +168,10 @@ public class X509SubjectNameResolver extends KeyResolverSpi {
     ) {
         return null;
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<QName> engineGetResolvableElements() {
+        return RESOLVABLE_ELEMENTS;
+    }
 }
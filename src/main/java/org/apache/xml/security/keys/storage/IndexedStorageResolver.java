@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.keys.storage;
+
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.keys.content.x509.XMLX509Digest;
+import org.apache.xml.security.keys.content.x509.XMLX509IssuerSerial;
+import org.apache.xml.security.keys.content.x509.XMLX509SKI;
+import org.apache.xml.security.keys.content.x509.XMLX509SubjectName;
+import org.apache.xml.security.utils.RFC2253Parser;
+
+/**
+ * A {@link StorageResolver} which indexes its certificates by issuer and serial number,
+ * subject key identifier, subject name and digest, so that the X.509 KeyResolvers find a
+ * certificate without iterating over all of them.
+ * <p>
+ * The indexes are built when the first certificate is looked up, and the digest index of an
+ * algorithm when the first digest of that algorithm is looked up. They are rebuilt when a
+ * resolver is added. Certificates which are added to a KeyStore after the indexes were built
+ * are only found after calling {@link #reindex()}. Like the iteration, the lookups return the
+ * first matching certificate in the order of the resolvers.
+ */
+public class IndexedStorageResolver extends StorageResolver {
+
+    private volatile Index index;
+    // not initialized here, as the super constructors already call add()
+    private boolean hasResolvers;
+
+    /**
+     * Constructor IndexedStorageResolver
+     *
+     */
+    public IndexedStorageResolver() {
+        super();
+    }
+
+    /**
+     * Constructor IndexedStorageResolver
+     *
+     * @param resolver
+     */
+    public IndexedStorageResolver(StorageResolverSpi resolver) {
+        super(resolver);
+    }
+
+    /**
+     * Constructor IndexedStorageResolver
+     *
+     * @param keyStore
+     */
+    public IndexedStorageResolver(KeyStore keyStore) {
+        super(keyStore);
+    }
+
+    /**
+     * Constructor IndexedStorageResolver
+     *
+     * @param x509certificate
+     */
+    public IndexedStorageResolver(X509Certificate x509certificate) {
+        super(x509certificate);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void add(StorageResolverSpi resolver) {
+        synchronized (this) {
+            super.add(resolver);
+            hasResolvers = true;
+            index = null;
+        }
+    }
+
+    /**
+     * Discards the indexes, so that they are built again from the current certificates of the
+     * resolvers when the next certificate is looked up.
+     */
+    public void reindex() {
+        synchronized (this) {
+            index = null;
+        }
+    }
+
+    /**
+     * Returns the certificate with the issuer name and serial number of the given element.
+     *
+     * @param issuerSerial
+     * @return the certificate, or null if there is none
+     */
+    public X509Certificate getCertificate(XMLX509IssuerSerial issuerSerial) {
+        return getIndex().byIssuerSerial.get(
+            issuerSerialKey(issuerSerial.getIssuerName(), issuerSerial.getSerialNumber().toString())
+        );
+    }
+
+    /**
+     * Returns the certificate with the subject key identifier of the given element.
+     *
+     * @param ski
+     * @return the certificate, or null if there is none
+     * @throws XMLSecurityException if the subject key identifier can't be decoded
+     */
+    public X509Certificate getCertificate(XMLX509SKI ski) throws XMLSecurityException {
+        return getIndex().bySKI.get(ByteBuffer.wrap(ski.getSKIBytes()));
+    }
+
+    /**
+     * Returns the certificate with the subject name of the given element.
+     *
+     * @param subjectName
+     * @return the certificate, or null if there is none
+     */
+    public X509Certificate getCertificate(XMLX509SubjectName subjectName) {
+        return getIndex().bySubjectName.get(subjectName.getSubjectName());
+    }
+
+    /**
+     * Returns the certificate with the digest of the given element.
+     *
+     * @param digest
+     * @return the certificate, or null if there is none
+     * @throws XMLSecurityException if the digest algorithm is not supported
+     */
+    public X509Certificate getCertificate(XMLX509Digest digest) throws XMLSecurityException {
+        Index currentIndex = getIndex();
+        String algorithm = digest.getAlgorithm();
+        Map<ByteBuffer, X509Certificate> byDigest = currentIndex.byDigest.get(algorithm);
+        if (byDigest == null) {
+            byDigest = new HashMap<>();
+            for (X509Certificate cert : currentIndex.certificates) {
+                byDigest.putIfAbsent(
+                    ByteBuffer.wrap(XMLX509Digest.getDigestBytesFromCert(cert, algorithm)), cert
+                );
+            }
+            currentIndex.byDigest.putIfAbsent(algorithm, byDigest);
+        }
+        return byDigest.get(ByteBuffer.wrap(digest.getDigestBytes()));
+    }
+
+    private Index getIndex() {
+        Index currentIndex = index;
+        if (currentIndex == null) {
+            synchronized (this) {
+                currentIndex = index;
+                if (currentIndex == null) {
+                    currentIndex = new Index(hasResolvers ? getIterator() : Collections.<Certificate>emptyIterator());
+                    index = currentIndex;
+                }
+            }
+        }
+        return currentIndex;
+    }
+
+    private static String issuerSerialKey(String issuerName, String serialNumber) {
+        // the serial number contains only digits and a sign, so the key is unambiguous
+        return serialNumber + ' ' + issuerName;
+    }
+
+    /**
+     * The indexes of the certificates of the resolvers at one point in time
+     */
+    private static final class Index {
+
+        private final List<X509Certificate> certificates = new ArrayList<>();
+        private final Map<String, X509Certificate> byIssuerSerial = new HashMap<>();
+        private final Map<ByteBuffer, X509Certificate> bySKI = new HashMap<>();
+        private final Map<String, X509Certificate> bySubjectName = new HashMap<>();
+        private final ConcurrentMap<String, Map<ByteBuffer, X509Certificate>> byDigest =
+            new ConcurrentHashMap<>();
+
+        Index(Iterator<Certificate> iterator) {
+            while (iterator.hasNext()) {
+                Certificate certificate = iterator.next();
+                if (!(certificate instanceof X509Certificate)) {
+                    continue;
+                }
+                X509Certificate cert = (X509Certificate) certificate;
+                certificates.add(cert);
+
+                byIssuerSerial.putIfAbsent(
+                    issuerSerialKey(
+                        RFC2253Parser.normalize(cert.getIssuerX500Principal().getName()),
+                        cert.getSerialNumber().toString()
+                    ),
+                    cert
+                );
+                bySubjectName.putIfAbsent(
+                    RFC2253Parser.normalize(cert.getSubjectX500Principal().getName()), cert
+                );
+                if (cert.getExtensionValue(XMLX509SKI.SKI_OID) != null) {
+                    try {
+                        bySKI.putIfAbsent(ByteBuffer.wrap(XMLX509SKI.getSKIBytesFromCert(cert)), cert);
+                    } catch (XMLSecurityException ex) { //NOPMD
+                        // a certificate without a subject key identifier can't be found by it
+                    }
+                }
+            }
+        }
+    }
+}
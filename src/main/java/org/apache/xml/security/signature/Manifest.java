@@ -33,6 +33,7 @@ import org.apache.xml.security.c14n.InvalidCanonicalizerException;
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.transforms.Transforms;
 import org.apache.xml.security.utils.Constants;
+import org.apache.xml.security.utils.DocumentIdIndex;
 import org.apache.xml.security.utils.I18n;
 import org.apache.xml.security.utils.SignatureElementProxy;
 import org.apache.xml.security.utils.XMLUtils;
@@ -300,6 +301,23 @@ public class Manifest extends SignatureElementProxy {
      * @throws XMLSecurityException
      */
     public boolean verifyReferences(boolean followManifests)
+        throws MissingResourceFailureException, XMLSecurityException {
+        // The ID lookups of all References of this run, including nested Manifests, share one index
+        return verifyReferences(followManifests, new DocumentIdIndex(getDocument()));
+    }
+
+    /**
+     * Verify all References of this Manifest, resolving same-document IDs through the given index.
+     *
+     * @param followManifests
+     * @param idIndex the ID index of the document which is validated
+     * @return true if all References verify, false if one or more do not verify.
+     * @throws MissingResourceFailureException if a {@link Reference} does not verify
+     * (throws a {@link org.apache.xml.security.signature.ReferenceNotInitializedException}
+     * because of an uninitialized {@link XMLSignatureInput}
+     * @throws XMLSecurityException
+     */
+    boolean verifyReferences(boolean followManifests, DocumentIdIndex idIndex)
         throws MissingResourceFailureException, XMLSecurityException {
         if (referencesEl == null) {
             this.referencesEl =
@@ -320,6 +338,8 @@ public class Manifest extends SignatureElementProxy {
         }
 
         this.verificationResults = new boolean[referencesEl.length];
+        // References with the same URI and Transforms share one digest calculation
+        ReferenceDigestMemo digestMemo = new ReferenceDigestMemo(referencesEl);
         boolean verify = true;
         for (int i = 0; i < this.referencesEl.length; i++) {
             Reference currentRef =
@@ -329,7 +349,7 @@ public class Manifest extends SignatureElementProxy {
 
             // if only one item does not verify, the whole verification fails
             try {
-                boolean currentRefVerified = currentRef.verify();
+                boolean currentRefVerified = currentRef.verify(digestMemo, idIndex);
 
                 this.setVerificationResult(i, currentRefVerified);
 
@@ -344,7 +364,7 @@ public class Manifest extends SignatureElementProxy {
 
                     try {
                         XMLSignatureInput signedManifestNodes =
-                            currentRef.dereferenceURIandPerformTransforms(null);
+                            currentRef.dereferenceURIandPerformTransforms(null, idIndex);
                         Set<Node> nl = signedManifestNodes.getNodeSet();
                         Manifest referencedManifest = null;
                         Iterator<Node> nlIterator = nl.iterator();
@@ -380,7 +400,7 @@ public class Manifest extends SignatureElementProxy {
                         referencedManifest.resolverProperties = this.resolverProperties;
 
                         boolean referencedManifestValid =
-                            referencedManifest.verifyReferences(followManifests);
+                            referencedManifest.verifyReferences(followManifests, idIndex);
 
                         if (!referencedManifestValid) {
                             verify = false;
@@ -22,8 +22,11 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.xml.security.algorithms.Algorithm;
@@ -42,6 +45,8 @@ import org.apache.xml.security.transforms.Transforms;
 import org.apache.xml.security.transforms.params.InclusiveNamespaces;
 import org.apache.xml.security.utils.Constants;
 import org.apache.xml.security.utils.DigesterOutputStream;
+import org.apache.xml.security.utils.DocumentIdIndex;
+import org.apache.xml.security.utils.MultiOutputStream;
 import org.apache.xml.security.utils.SignatureElementProxy;
 import org.apache.xml.security.utils.UnsyncBufferedOutputStream;
 import org.apache.xml.security.utils.XMLUtils;
@@ -415,6 +420,11 @@ public class Reference extends SignatureElementProxy {
      * problem resolving the reference
      */
     public XMLSignatureInput getContentsBeforeTransformation()
+        throws ReferenceNotInitializedException {
+        return getContentsBeforeTransformation(null);
+    }
+
+    private XMLSignatureInput getContentsBeforeTransformation(DocumentIdIndex idIndex)
         throws ReferenceNotInitializedException {
         try {
             Attr uriAttr =
@@ -426,7 +436,7 @@ public class Reference extends SignatureElementProxy {
                 );
             resolver.addProperties(this.manifest.getResolverProperties());
 
-            return resolver.resolve(uriAttr, this.baseURI, secureValidation);
+            return resolver.resolve(uriAttr, this.baseURI, secureValidation, idIndex);
         }  catch (ResourceResolverException ex) {
             throw new ReferenceNotInitializedException(ex);
         }
@@ -606,9 +616,22 @@ public class Reference extends SignatureElementProxy {
      * @see Manifest#verifyReferences()
      */
     protected XMLSignatureInput dereferenceURIandPerformTransforms(OutputStream os)
+        throws XMLSignatureException {
+        return dereferenceURIandPerformTransforms(os, null);
+    }
+
+    /**
+     * Method dereferenceURIandPerformTransforms
+     *
+     * @param os where to write the transformation can be null.
+     * @param idIndex the ID index of the document which is validated, or null
+     * @return the element to digest
+     * @throws XMLSignatureException
+     */
+    XMLSignatureInput dereferenceURIandPerformTransforms(OutputStream os, DocumentIdIndex idIndex)
         throws XMLSignatureException {
         try {
-            XMLSignatureInput input = this.getContentsBeforeTransformation();
+            XMLSignatureInput input = this.getContentsBeforeTransformation(idIndex);
             cacheDereferencedElement(input);
 
             XMLSignatureInput output = this.getContentsAfterTransformation(input, os);
@@ -713,7 +736,23 @@ public class Reference extends SignatureElementProxy {
      */
     private byte[] calculateDigest(boolean validating)
         throws ReferenceNotInitializedException, XMLSignatureException {
-        XMLSignatureInput input = this.getContentsBeforeTransformation();
+        return calculateDigest(validating, null, null);
+    }
+
+    /**
+     * Method calculateDigest
+     *
+     * @param validating true if validating the reference
+     * @param digestMemo the digests calculated for the References of the Manifest, or null
+     * @param idIndex the ID index of the document which is validated, or null
+     * @return reference Calculate the digest of this reference.
+     * @throws ReferenceNotInitializedException
+     * @throws XMLSignatureException
+     */
+    private byte[] calculateDigest(
+        boolean validating, ReferenceDigestMemo digestMemo, DocumentIdIndex idIndex
+    ) throws ReferenceNotInitializedException, XMLSignatureException {
+        XMLSignatureInput input = this.getContentsBeforeTransformation(idIndex);
         if (input.isPreCalculatedDigest()) {
             return getPreCalculatedDigest(input);
         }
@@ -723,8 +762,28 @@ public class Reference extends SignatureElementProxy {
         MessageDigestAlgorithm mda = this.getMessageDigestAlgorithm();
         mda.reset();
 
-        try (DigesterOutputStream diOs = new DigesterOutputStream(mda);
-            OutputStream os = new UnsyncBufferedOutputStream(diOs)) {
+        ReferenceDigestMemo.Key memoKey =
+            digestMemo != null ? ReferenceDigestMemo.getKey(getElement()) : null;
+        List<MessageDigestAlgorithm> sharedDigestAlgorithms = Collections.emptyList();
+        if (memoKey != null) {
+            byte[] digest = digestMemo.getDigest(memoKey, mda.getAlgorithmURI());
+            if (digest != null) {
+                LOG.debug("Reusing the digest of an identical Reference for URI \"{}\"", getURI());
+                this.transformsOutput = digestMemo.getTransformsOutput(memoKey);
+                return digest;
+            }
+            sharedDigestAlgorithms = getSharedDigestAlgorithms(digestMemo, memoKey, mda.getAlgorithmURI());
+        }
+
+        // the digests of the References sharing the transformed octets are calculated in the same pass
+        DigesterOutputStream[] digesters = new DigesterOutputStream[1 + sharedDigestAlgorithms.size()];
+        digesters[0] = new DigesterOutputStream(mda);
+        for (int i = 1; i < digesters.length; i++) {
+            digesters[i] = new DigesterOutputStream(sharedDigestAlgorithms.get(i - 1));
+        }
+
+        try (OutputStream os = new UnsyncBufferedOutputStream(
+                digesters.length == 1 ? digesters[0] : new MultiOutputStream(digesters))) {
 
             XMLSignatureInput output = this.getContentsAfterTransformation(input, os);
             this.transformsOutput = output;
@@ -752,7 +811,15 @@ public class Reference extends SignatureElementProxy {
             //this.getReferencedBytes(diOs);
             //mda.update(data);
 
-            return diOs.getDigestValue();
+            byte[] digest = digesters[0].getDigestValue();
+            if (memoKey != null) {
+                digestMemo.put(memoKey, mda.getAlgorithmURI(), digest, output);
+                for (int i = 1; i < digesters.length; i++) {
+                    digestMemo.put(memoKey, sharedDigestAlgorithms.get(i - 1).getAlgorithmURI(),
+                                   digesters[i].getDigestValue(), output);
+                }
+            }
+            return digest;
         } catch (XMLSecurityException ex) {
             throw new ReferenceNotInitializedException(ex);
         } catch (IOException ex) {
@@ -760,6 +827,31 @@ public class Reference extends SignatureElementProxy {
         }
     }
 
+    /**
+     * Returns the digest algorithms of the References of the Manifest which digest the same
+     * octets as this Reference and were not verified yet. An algorithm which can't be used is
+     * left out, the error is reported when its Reference is verified.
+     */
+    private List<MessageDigestAlgorithm> getSharedDigestAlgorithms(
+        ReferenceDigestMemo digestMemo, ReferenceDigestMemo.Key memoKey, String digestAlgorithm
+    ) {
+        List<MessageDigestAlgorithm> sharedDigestAlgorithms = new ArrayList<>();
+        for (String uri : digestMemo.getPendingDigestAlgorithms(memoKey, digestAlgorithm)) {
+            if (secureValidation && MessageDigestAlgorithm.ALGO_ID_DIGEST_NOT_RECOMMENDED_MD5.equals(uri)) {
+                continue;
+            }
+            try {
+                MessageDigestAlgorithm sharedDigestAlgorithm =
+                    MessageDigestAlgorithm.getInstance(getDocument(), uri);
+                sharedDigestAlgorithm.reset();
+                sharedDigestAlgorithms.add(sharedDigestAlgorithm);
+            } catch (XMLSignatureException ex) {
+                LOG.debug("Cannot share the digest calculation for {}: {}", uri, ex.getMessage());
+            }
+        }
+        return sharedDigestAlgorithms;
+    }
+
     /**
      * Get the pre-calculated digest value from the XMLSignatureInput.
      *
@@ -802,9 +894,24 @@ public class Reference extends SignatureElementProxy {
      * @throws XMLSecurityException
      */
     public boolean verify()
+        throws ReferenceNotInitializedException, XMLSecurityException {
+        return verify(null, null);
+    }
+
+    /**
+     * Tests reference validation is success or false, reusing the digest of an identical
+     * Reference which was verified before.
+     *
+     * @param digestMemo the digests calculated for the References of the Manifest, or null
+     * @param idIndex the ID index of the document which is validated, or null
+     * @return true if reference validation is success, otherwise false
+     * @throws ReferenceNotInitializedException
+     * @throws XMLSecurityException
+     */
+    boolean verify(ReferenceDigestMemo digestMemo, DocumentIdIndex idIndex)
         throws ReferenceNotInitializedException, XMLSecurityException {
         byte[] elemDig = this.getDigestValue();
-        byte[] calcDig = this.calculateDigest(true);
+        byte[] calcDig = this.calculateDigest(true, digestMemo, idIndex);
         boolean equal = MessageDigestAlgorithm.isEqual(elemDig, calcDig);
 
         if (!equal) {
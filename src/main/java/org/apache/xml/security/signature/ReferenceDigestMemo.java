@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.signature;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.xml.security.transforms.Transforms;
+import org.apache.xml.security.utils.Constants;
+import org.apache.xml.security.utils.XMLUtils;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * The digests calculated while verifying the References of a Manifest.
+ *
+ * References which dereference the same same-document URI and apply equal Transforms
+ * produce the same octets. Their digests are calculated in one pass, one for each
+ * DigestMethod, and are reused by the References verified later. Transforms which
+ * evaluate XPath expressions are excluded, as here() depends on the location of the
+ * Transform element.
+ */
+final class ReferenceDigestMemo {
+
+    private final Element[] referenceElements;
+    private final Map<Key, Map<String, byte[]>> digests = new HashMap<>();
+    private final Map<Key, XMLSignatureInput> transformsOutputs = new HashMap<>();
+
+    ReferenceDigestMemo(Element[] referenceElements) {
+        this.referenceElements = referenceElements;
+    }
+
+    /**
+     * Returns the key of the octets digested by the given Reference, or null if its digest
+     * must be calculated on its own.
+     */
+    static Key getKey(Element referenceElement) {
+        Attr uriAttr = referenceElement.getAttributeNodeNS(null, Constants._ATT_URI);
+        if (uriAttr == null) {
+            return null;
+        }
+        String uri = uriAttr.getNodeValue();
+        if (!uri.isEmpty() && uri.charAt(0) != '#') {
+            return null;
+        }
+        Element transformsElement = XMLUtils.getNextElement(referenceElement.getFirstChild());
+        if (transformsElement == null
+            || !Constants.SignatureSpecNS.equals(transformsElement.getNamespaceURI())
+            || !Constants._TAG_TRANSFORMS.equals(transformsElement.getLocalName())) {
+            return new Key(uri, null);
+        }
+        for (Node n = transformsElement.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                String algorithm = ((Element) n).getAttributeNS(null, Constants._ATT_ALGORITHM);
+                if (Transforms.TRANSFORM_XPATH.equals(algorithm)
+                    || Transforms.TRANSFORM_XPATH2FILTER.equals(algorithm)) {
+                    return null;
+                }
+            }
+        }
+        return new Key(uri, transformsElement);
+    }
+
+    byte[] getDigest(Key key, String digestAlgorithm) {
+        Map<String, byte[]> digestsByAlgorithm = digests.get(key);
+        if (digestsByAlgorithm == null) {
+            return null;
+        }
+        byte[] digest = digestsByAlgorithm.get(digestAlgorithm);
+        return digest != null ? digest.clone() : null;
+    }
+
+    XMLSignatureInput getTransformsOutput(Key key) {
+        return transformsOutputs.get(key);
+    }
+
+    /**
+     * Returns the DigestMethods of the References with the given key whose digests have not
+     * been calculated yet, apart from the given one.
+     */
+    Set<String> getPendingDigestAlgorithms(Key key, String digestAlgorithm) {
+        Set<String> digestAlgorithms = new LinkedHashSet<>();
+        Map<String, byte[]> digestsByAlgorithm = digests.get(key);
+        for (Element referenceElement : referenceElements) {
+            if (!key.equals(getKey(referenceElement))) {
+                continue;
+            }
+            Element digestMethodElement = XMLUtils.selectDsNode(
+                referenceElement.getFirstChild(), Constants._TAG_DIGESTMETHOD, 0
+            );
+            if (digestMethodElement == null) {
+                continue;
+            }
+            String algorithm = digestMethodElement.getAttributeNS(null, Constants._ATT_ALGORITHM);
+            if (!algorithm.isEmpty() && !algorithm.equals(digestAlgorithm)
+                && (digestsByAlgorithm == null || !digestsByAlgorithm.containsKey(algorithm))) {
+                digestAlgorithms.add(algorithm);
+            }
+        }
+        return digestAlgorithms;
+    }
+
+    void put(Key key, String digestAlgorithm, byte[] digest, XMLSignatureInput transformsOutput) {
+        Map<String, byte[]> digestsByAlgorithm = digests.get(key);
+        if (digestsByAlgorithm == null) {
+            digestsByAlgorithm = new HashMap<>();
+            digests.put(key, digestsByAlgorithm);
+        }
+        digestsByAlgorithm.put(digestAlgorithm, digest.clone());
+        transformsOutputs.put(key, transformsOutput);
+    }
+
+    /**
+     * Identifies the References of a Manifest which digest the same octets.
+     */
+    static final class Key {
+
+        private final String uri;
+        private final Element transforms;
+
+        Key(String uri, Element transforms) {
+            this.uri = uri;
+            this.transforms = transforms;
+        }
+
+        @Override
+        public int hashCode() {
+            return uri.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            if (!uri.equals(other.uri)) {
+                return false;
+            }
+            if (transforms == null || other.transforms == null) {
+                return transforms == other.transforms;
+            }
+            return transforms == other.transforms || transforms.isEqualNode(other.transforms);
+        }
+    }
+}
@@ -25,7 +25,6 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -37,6 +36,8 @@ import org.apache.xml.security.c14n.implementations.Canonicalizer11_OmitComments
 import org.apache.xml.security.c14n.implementations.Canonicalizer20010315OmitComments;
 import org.apache.xml.security.c14n.implementations.CanonicalizerBase;
 import org.apache.xml.security.exceptions.XMLSecurityRuntimeException;
+import org.apache.xml.security.utils.BufferPool;
+import org.apache.xml.security.utils.CompactNodeSet;
 import org.apache.xml.security.utils.JavaUtils;
 import org.apache.xml.security.utils.XMLUtils;
 import org.w3c.dom.Document;
@@ -226,12 +227,12 @@ public class XMLSignatureInput {
             if (circumvent) {
                 XMLUtils.circumventBug2650(XMLUtils.getOwnerDocument(subNode));
             }
-            inputNodeSet = new LinkedHashSet<Node>();
+            inputNodeSet = new CompactNodeSet();
             XMLUtils.getSet(subNode, inputNodeSet, excludeNode, excludeComments);
             return inputNodeSet;
         } else if (isOctetStream()) {
             convertToNodes();
-            Set<Node> result = new LinkedHashSet<Node>();
+            Set<Node> result = new CompactNodeSet();
             XMLUtils.getSet(subNode, result, null, false);
             return result;
         }
@@ -503,7 +504,7 @@ public class XMLSignatureInput {
             c14nizer.setWriter(diOs);
             c14nizer.engineCanonicalize(this);
         } else {
-            byte[] buffer = new byte[4 * 1024];
+            byte[] buffer = BufferPool.acquire(4 * 1024);
             int bytesread = 0;
             try {
                 while ((bytesread = inputOctetStreamProxy.read(buffer)) != -1) {
@@ -512,6 +513,8 @@ public class XMLSignatureInput {
             } catch (IOException ex) {
                 inputOctetStreamProxy.close();
                 throw ex;
+            } finally {
+                BufferPool.release(buffer);
             }
         }
     }
@@ -0,0 +1,266 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.stax.config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+
+import org.apache.xml.security.configuration.AlgorithmType;
+import org.apache.xml.security.configuration.ConfigurationType;
+import org.apache.xml.security.configuration.HandlerType;
+import org.apache.xml.security.configuration.InOutAttrType;
+import org.apache.xml.security.configuration.JCEAlgorithmMappingsType;
+import org.apache.xml.security.configuration.PropertiesType;
+import org.apache.xml.security.configuration.PropertyType;
+import org.apache.xml.security.configuration.ResolverType;
+import org.apache.xml.security.configuration.ResourceResolversType;
+import org.apache.xml.security.configuration.SecurityHeaderHandlersType;
+import org.apache.xml.security.configuration.TransformAlgorithmType;
+import org.apache.xml.security.configuration.TransformAlgorithmsType;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Builds the ConfigurationType of a security-config.xml directly from the SAX events, without
+ * creating a JAXBContext and compiling the configuration schema. The structure of the
+ * security-config.xsd is checked while reading. Any deviation is reported as SAXException, so that
+ * the caller can fall back to the schema validating JAXB unmarshaller for a precise error message.
+ */
+class ConfigurationHandler extends DefaultHandler {
+
+    static final String NS_CONFIGURATION = "http://www.xmlsecurity.org/NS/configuration";
+
+    private static final String[] SECTIONS = {
+        "Properties", "SecurityHeaderHandlers", "TransformAlgorithms", "JCEAlgorithmMappings", "ResourceResolvers"
+    };
+    private static final String[] ENTRIES = {
+        "Property", "Handler", "TransformAlgorithm", "Algorithm", "Resolver"
+    };
+    private static final Set<String> CONFIGURATION_ATTRIBUTES = attributes("target");
+    private static final Set<String> PROPERTY_ATTRIBUTES = attributes("NAME", "VAL");
+    private static final Set<String> HANDLER_ATTRIBUTES = attributes("NAME", "URI", "JAVACLASS");
+    private static final Set<String> TRANSFORM_ALGORITHM_ATTRIBUTES = attributes("URI", "JAVACLASS", "INOUT");
+    private static final Set<String> ALGORITHM_ATTRIBUTES = attributes("URI", "Description", "AlgorithmClass",
+            "RequirementLevel", "SpecificationURL", "JCEProvider", "JCEName", "KeyLength", "IVLength", "RequiredKey");
+    private static final Set<String> RESOLVER_ATTRIBUTES = attributes("JAVACLASS", "DESCRIPTION");
+
+    private ConfigurationType configurationType;
+    private int depth;
+    private int section;
+    private Object entry;
+    private StringBuilder entryValue;
+
+    ConfigurationType getConfigurationType() throws SAXException {
+        if (configurationType == null || depth != 0) {
+            throw new SAXException("Incomplete configuration");
+        }
+        return configurationType;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+        if (!NS_CONFIGURATION.equals(uri)) {
+            throw new SAXException("Unexpected element " + qName);
+        }
+        switch (depth) {
+            case 0:
+                if (configurationType != null || !"Configuration".equals(localName)) {
+                    throw new SAXException("Unexpected element " + qName);
+                }
+                checkAttributes(attributes, CONFIGURATION_ATTRIBUTES);
+                configurationType = new ConfigurationType();
+                configurationType.setTarget(attributes.getValue("", "target"));
+                break;
+            case 1:
+                if (section >= SECTIONS.length || !SECTIONS[section].equals(localName)) {
+                    throw new SAXException("Unexpected element " + qName);
+                }
+                checkAttributes(attributes, Collections.<String>emptySet());
+                startSection();
+                section++;
+                break;
+            case 2:
+                if (!ENTRIES[section - 1].equals(localName)) {
+                    throw new SAXException("Unexpected element " + qName);
+                }
+                entry = createEntry(attributes);
+                entryValue = new StringBuilder();
+                break;
+            default:
+                throw new SAXException("Unexpected element " + qName);
+        }
+        depth++;
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        depth--;
+        if (depth == 2) {
+            setValue(entry, entryValue.toString());
+            entry = null;
+            entryValue = null;
+        } else if (depth == 0 && section != SECTIONS.length) {
+            throw new SAXException("Missing element " + SECTIONS[section]);
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if (entryValue != null) {
+            entryValue.append(ch, start, length);
+            return;
+        }
+        for (int i = start; i < start + length; i++) {
+            if (!Character.isWhitespace(ch[i])) {
+                throw new SAXException("Unexpected text content");
+            }
+        }
+    }
+
+    private void startSection() {
+        switch (section) {
+            case 0:
+                configurationType.setProperties(new PropertiesType());
+                break;
+            case 1:
+                configurationType.setSecurityHeaderHandlers(new SecurityHeaderHandlersType());
+                break;
+            case 2:
+                configurationType.setTransformAlgorithms(new TransformAlgorithmsType());
+                break;
+            case 3:
+                configurationType.setJCEAlgorithmMappings(new JCEAlgorithmMappingsType());
+                break;
+            default:
+                configurationType.setResourceResolvers(new ResourceResolversType());
+                break;
+        }
+    }
+
+    private Object createEntry(Attributes attributes) throws SAXException {
+        switch (section) {
+            case 1:
+                checkAttributes(attributes, PROPERTY_ATTRIBUTES);
+                PropertyType propertyType = new PropertyType();
+                propertyType.setNAME(attributes.getValue("", "NAME"));
+                propertyType.setVAL(attributes.getValue("", "VAL"));
+                configurationType.getProperties().getProperty().add(propertyType);
+                return propertyType;
+            case 2:
+                checkAttributes(attributes, HANDLER_ATTRIBUTES);
+                HandlerType handlerType = new HandlerType();
+                handlerType.setNAME(required(attributes, "NAME"));
+                handlerType.setURI(required(attributes, "URI"));
+                handlerType.setJAVACLASS(required(attributes, "JAVACLASS"));
+                configurationType.getSecurityHeaderHandlers().getHandler().add(handlerType);
+                return handlerType;
+            case 3:
+                checkAttributes(attributes, TRANSFORM_ALGORITHM_ATTRIBUTES);
+                TransformAlgorithmType transformAlgorithmType = new TransformAlgorithmType();
+                transformAlgorithmType.setURI(required(attributes, "URI"));
+                transformAlgorithmType.setJAVACLASS(required(attributes, "JAVACLASS"));
+                String inOut = attributes.getValue("", "INOUT");
+                if (inOut != null) {
+                    try {
+                        transformAlgorithmType.setINOUT(InOutAttrType.fromValue(inOut.trim()));
+                    } catch (IllegalArgumentException e) {
+                        throw new SAXException(e);
+                    }
+                }
+                configurationType.getTransformAlgorithms().getTransformAlgorithm().add(transformAlgorithmType);
+                return transformAlgorithmType;
+            case 4:
+                checkAttributes(attributes, ALGORITHM_ATTRIBUTES);
+                AlgorithmType algorithmType = new AlgorithmType();
+                algorithmType.setURI(required(attributes, "URI"));
+                algorithmType.setDescription(required(attributes, "Description"));
+                algorithmType.setAlgorithmClass(required(attributes, "AlgorithmClass"));
+                algorithmType.setRequirementLevel(required(attributes, "RequirementLevel"));
+                algorithmType.setSpecificationURL(attributes.getValue("", "SpecificationURL"));
+                algorithmType.setJCEProvider(attributes.getValue("", "JCEProvider"));
+                algorithmType.setJCEName(required(attributes, "JCEName"));
+                algorithmType.setKeyLength(parseInt(attributes.getValue("", "KeyLength")));
+                algorithmType.setIVLength(parseInt(attributes.getValue("", "IVLength")));
+                algorithmType.setRequiredKey(attributes.getValue("", "RequiredKey"));
+                configurationType.getJCEAlgorithmMappings().getAlgorithm().add(algorithmType);
+                return algorithmType;
+            default:
+                checkAttributes(attributes, RESOLVER_ATTRIBUTES);
+                ResolverType resolverType = new ResolverType();
+                resolverType.setJAVACLASS(required(attributes, "JAVACLASS"));
+                resolverType.setDESCRIPTION(required(attributes, "DESCRIPTION"));
+                configurationType.getResourceResolvers().getResolver().add(resolverType);
+                return resolverType;
+        }
+    }
+
+    private static void setValue(Object entry, String value) {
+        if (entry instanceof PropertyType) {
+            ((PropertyType) entry).setValue(value);
+        } else if (entry instanceof HandlerType) {
+            ((HandlerType) entry).setValue(value);
+        } else if (entry instanceof TransformAlgorithmType) {
+            ((TransformAlgorithmType) entry).setValue(value);
+        } else if (entry instanceof AlgorithmType) {
+            ((AlgorithmType) entry).setValue(value);
+        } else {
+            ((ResolverType) entry).setValue(value);
+        }
+    }
+
+    private static void checkAttributes(Attributes attributes, Set<String> declaredAttributes) throws SAXException {
+        for (int i = 0; i < attributes.getLength(); i++) {
+            String uri = attributes.getURI(i);
+            if (XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI.equals(uri)) {
+                continue;
+            }
+            if (!uri.isEmpty() || !declaredAttributes.contains(attributes.getLocalName(i))) {
+                throw new SAXException("Unexpected attribute " + attributes.getQName(i));
+            }
+        }
+    }
+
+    private static String required(Attributes attributes, String name) throws SAXException {
+        String value = attributes.getValue("", name);
+        if (value == null) {
+            throw new SAXException("Missing attribute " + name);
+        }
+        return value;
+    }
+
+    private static Integer parseInt(String value) throws SAXException {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    private static Set<String> attributes(String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+}
@@ -35,6 +35,8 @@ import javax.xml.parsers.SAXParserFactory;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 
+import org.xml.sax.SAXException;
+
 import java.net.URI;
 import java.net.URL;
 
@@ -47,22 +49,9 @@ public class Init {
 
     private static URI initialized;
 
-    @SuppressWarnings("unchecked")
     public static synchronized void init(URI uri, Class<?> callingClass) throws XMLSecurityException {
         if (initialized == null || uri != null && !uri.equals(initialized)) {
             try {
-                JAXBContext jaxbContext = JAXBContext.newInstance(ObjectFactory.class);
-                final Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-                SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-                Schema schema = schemaFactory.newSchema(
-                        ClassLoaderUtils.getResource("schemas/security-config.xsd", Init.class));
-                unmarshaller.setSchema(schema);
-                final UnmarshallerHandler unmarshallerHandler = unmarshaller.getUnmarshallerHandler();
-
-                SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-                saxParserFactory.setXIncludeAware(false);
-                saxParserFactory.setNamespaceAware(true);
-                SAXParser saxParser = saxParserFactory.newSAXParser();
                 if (uri == null) {
                     URL resource = ClassLoaderUtils.getResource("security-config.xml", Init.class);
                     if (resource == null) {
@@ -72,14 +61,19 @@ public class Init {
                     }
                     uri = resource.toURI();
                 }
-                saxParser.parse(uri.toURL().toExternalForm(), new XIncludeHandler(unmarshallerHandler));
-                JAXBElement<ConfigurationType> configurationTypeJAXBElement = (JAXBElement<ConfigurationType>) unmarshallerHandler.getResult();
+                ConfigurationType configurationType;
+                try {
+                    configurationType = parseConfiguration(uri);
+                } catch (SAXException e) {
+                    //let the schema validation tell what is wrong with the configuration
+                    configurationType = unmarshalConfiguration(uri);
+                }
 
-                ConfigurationProperties.init(configurationTypeJAXBElement.getValue().getProperties(), callingClass);
-                SecurityHeaderHandlerMapper.init(configurationTypeJAXBElement.getValue().getSecurityHeaderHandlers(), callingClass);
-                JCEAlgorithmMapper.init(configurationTypeJAXBElement.getValue().getJCEAlgorithmMappings());
-                TransformerAlgorithmMapper.init(configurationTypeJAXBElement.getValue().getTransformAlgorithms(), callingClass);
-                ResourceResolverMapper.init(configurationTypeJAXBElement.getValue().getResourceResolvers(), callingClass);
+                ConfigurationProperties.init(configurationType.getProperties(), callingClass);
+                SecurityHeaderHandlerMapper.init(configurationType.getSecurityHeaderHandlers(), callingClass);
+                JCEAlgorithmMapper.init(configurationType.getJCEAlgorithmMappings());
+                TransformerAlgorithmMapper.init(configurationType.getTransformAlgorithms(), callingClass);
+                ResourceResolverMapper.init(configurationType.getResourceResolvers(), callingClass);
 
                 I18n.init(ConfigurationProperties.getProperty("DefaultLanguageCode"), ConfigurationProperties.getProperty("DefaultCountryCode"));
 
@@ -91,4 +85,36 @@ public class Init {
             initialized = uri;
         }
     }
+
+    /**
+     * Reads the configuration without JAXB. Creating the JAXBContext and compiling the schema
+     * is by far the most expensive part of the initialization, and not needed for a valid configuration.
+     */
+    private static ConfigurationType parseConfiguration(URI uri) throws Exception {
+        ConfigurationHandler configurationHandler = new ConfigurationHandler();
+        newSAXParser().parse(uri.toURL().toExternalForm(), new XIncludeHandler(configurationHandler));
+        return configurationHandler.getConfigurationType();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConfigurationType unmarshalConfiguration(URI uri) throws Exception {
+        JAXBContext jaxbContext = JAXBContext.newInstance(ObjectFactory.class);
+        final Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        Schema schema = schemaFactory.newSchema(
+                ClassLoaderUtils.getResource("schemas/security-config.xsd", Init.class));
+        unmarshaller.setSchema(schema);
+        final UnmarshallerHandler unmarshallerHandler = unmarshaller.getUnmarshallerHandler();
+
+        newSAXParser().parse(uri.toURL().toExternalForm(), new XIncludeHandler(unmarshallerHandler));
+        JAXBElement<ConfigurationType> configurationTypeJAXBElement = (JAXBElement<ConfigurationType>) unmarshallerHandler.getResult();
+        return configurationTypeJAXBElement.getValue();
+    }
+
+    private static SAXParser newSAXParser() throws Exception {
+        SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+        saxParserFactory.setXIncludeAware(false);
+        saxParserFactory.setNamespaceAware(true);
+        return saxParserFactory.newSAXParser();
+    }
 }
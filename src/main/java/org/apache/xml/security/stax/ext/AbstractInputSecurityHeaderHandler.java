@@ -20,10 +20,8 @@ package org.apache.xml.security.stax.ext;
 
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
-import org.apache.xml.security.stax.impl.XMLSecurityEventReader;
+import org.apache.xml.security.stax.impl.XMLSecurityEventBinder;
 
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
 import javax.xml.namespace.QName;
 import java.util.ArrayList;
 import java.util.Deque;
@@ -39,16 +37,7 @@ public abstract class AbstractInputSecurityHeaderHandler implements XMLSecurityH
     @SuppressWarnings("unchecked")
     protected <T> T parseStructure(final Deque<XMLSecEvent> eventDeque, final int index,
                                    final XMLSecurityProperties securityProperties) throws XMLSecurityException {
-        try {
-            Unmarshaller unmarshaller = XMLSecurityConstants.getJaxbUnmarshaller(securityProperties.isDisableSchemaValidation());
-            return (T) unmarshaller.unmarshal(new XMLSecurityEventReader(eventDeque, index));
-
-        } catch (JAXBException e) {
-            if (e.getCause() != null && e.getCause() instanceof Exception) {
-                throw new XMLSecurityException((Exception)e.getCause());
-            }
-            throw new XMLSecurityException(e);
-        }
+        return (T) XMLSecurityEventBinder.unmarshal(eventDeque, index, securityProperties.isDisableSchemaValidation());
     }
 
     protected List<QName> getElementPath(Deque<XMLSecEvent> eventDeque) throws XMLSecurityException {
@@ -25,15 +25,11 @@ import java.security.interfaces.RSAPrivateKey;
 import java.util.HashSet;
 
 import javax.crypto.SecretKey;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.validation.Schema;
 
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.stax.config.Init;
 import org.apache.xml.security.stax.securityToken.SecurityTokenConstants;
 import org.apache.xml.security.utils.ClassLoaderUtils;
-import org.xml.sax.SAXException;
 
 /**
  * This is the central class of the streaming XML-security framework.
@@ -49,25 +45,6 @@ public class XMLSec {
                 throw new RuntimeException("security-config.xml not found in classpath");
             }
             Init.init(resource.toURI(), XMLSec.class);
-
-            try {
-                XMLSecurityConstants.setJaxbContext(
-                        JAXBContext.newInstance(
-                            org.apache.xml.security.binding.xmlenc.ObjectFactory.class,
-                            org.apache.xml.security.binding.xmlenc11.ObjectFactory.class,
-                            org.apache.xml.security.binding.xmldsig.ObjectFactory.class,
-                            org.apache.xml.security.binding.xmldsig11.ObjectFactory.class,
-                            org.apache.xml.security.binding.excc14n.ObjectFactory.class
-                        )
-                );
-
-                Schema schema = XMLSecurityUtils.loadXMLSecuritySchemas();
-                XMLSecurityConstants.setJaxbSchemas(schema);
-            } catch (JAXBException e) {
-                throw new RuntimeException(e);
-            } catch (SAXException e) {
-                throw new RuntimeException(e);
-            }
         } catch (XMLSecurityException e) {
             throw new RuntimeException(e.getMessage(), e);
         } catch (URISyntaxException e) {
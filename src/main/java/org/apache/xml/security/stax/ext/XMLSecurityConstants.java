@@ -20,6 +20,8 @@ package org.apache.xml.security.stax.ext;
 
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -27,10 +29,12 @@ import javax.xml.bind.Unmarshaller;
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.validation.Schema;
 
 import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.xml.sax.SAXException;
 
 /**
  * XMLSecurityConstants for global use
@@ -45,6 +49,10 @@ public class XMLSecurityConstants {
     private static final SecureRandom SECURE_RANDOM;
     private static JAXBContext jaxbContext;
     private static Schema schema;
+    private static boolean schemaLoaded;
+    private static volatile boolean defaultJaxbContext = true;
+    private static volatile UnmarshallerPool validatingUnmarshallerPool;
+    private static volatile UnmarshallerPool nonValidatingUnmarshallerPool;
 
     static {
         try {
@@ -88,24 +96,140 @@ public class XMLSecurityConstants {
 
     public static synchronized void setJaxbContext(JAXBContext jaxbContext) {
         XMLSecurityConstants.jaxbContext = jaxbContext;
+        XMLSecurityConstants.defaultJaxbContext = false;
+        resetUnmarshallerPools();
     }
 
     public static synchronized void setJaxbSchemas(Schema schema) {
         XMLSecurityConstants.schema = schema;
+        XMLSecurityConstants.schemaLoaded = true;
+        XMLSecurityConstants.defaultJaxbContext = false;
+        resetUnmarshallerPools();
     }
 
-    public static Schema getJaxbSchemas() {
+    /**
+     * Unmarshallers created for a previous JAXBContext or Schema must not be handed out anymore,
+     * so the pools are simply replaced. Unmarshallers still in use are dropped when released.
+     */
+    private static void resetUnmarshallerPools() {
+        validatingUnmarshallerPool = null;
+        nonValidatingUnmarshallerPool = null;
+    }
+
+    /**
+     * @return true as long as the JAXBContext and Schema are the ones of this library and have not been
+     * replaced by an extending framework. Only then the structures can be bound without JAXB.
+     */
+    public static boolean isDefaultJaxbContext() {
+        return XMLSecurityConstants.defaultJaxbContext;
+    }
+
+    /**
+     * The JAXBContext of the xmldsig and xmlenc bindings is created on first use only, since
+     * most structures are bound without JAXB and creating the context is expensive.
+     */
+    private static synchronized JAXBContext getJaxbContext() throws JAXBException {
+        if (jaxbContext == null) {
+            jaxbContext = JAXBContext.newInstance(
+                    org.apache.xml.security.binding.xmlenc.ObjectFactory.class,
+                    org.apache.xml.security.binding.xmlenc11.ObjectFactory.class,
+                    org.apache.xml.security.binding.xmldsig.ObjectFactory.class,
+                    org.apache.xml.security.binding.xmldsig11.ObjectFactory.class,
+                    org.apache.xml.security.binding.excc14n.ObjectFactory.class
+            );
+        }
+        return jaxbContext;
+    }
+
+    public static synchronized Schema getJaxbSchemas() {
+        if (!schemaLoaded) {
+            try {
+                schema = XMLSecurityUtils.loadXMLSecuritySchemas();
+            } catch (SAXException e) {
+                throw new RuntimeException(e);
+            }
+            schemaLoaded = true;
+        }
         return XMLSecurityConstants.schema;
     }
 
     public static Unmarshaller getJaxbUnmarshaller(boolean disableSchemaValidation) throws JAXBException {
-        Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+        Unmarshaller unmarshaller = getJaxbContext().createUnmarshaller();
         if (!disableSchemaValidation) {
-            unmarshaller.setSchema(schema);
+            unmarshaller.setSchema(getJaxbSchemas());
         }
         return unmarshaller;
     }
 
+    private static synchronized UnmarshallerPool getUnmarshallerPool(boolean disableSchemaValidation)
+            throws JAXBException {
+        if (validatingUnmarshallerPool == null) {
+            validatingUnmarshallerPool = new UnmarshallerPool(getJaxbContext(), getJaxbSchemas());
+            nonValidatingUnmarshallerPool = new UnmarshallerPool(getJaxbContext(), null);
+        }
+        return disableSchemaValidation ? nonValidatingUnmarshallerPool : validatingUnmarshallerPool;
+    }
+
+    /**
+     * Unmarshals the next element of the given reader with a pooled Unmarshaller. The Unmarshaller
+     * is reset and returned to the pool of the requested validation mode afterwards, so callers
+     * don't pay the Unmarshaller construction for every structure they bind.
+     *
+     * @param xmlEventReader the reader positioned in front of the element to unmarshal
+     * @param disableSchemaValidation true to unmarshal without schema validation
+     * @return the unmarshalled object
+     * @throws JAXBException
+     */
+    public static Object unmarshal(XMLEventReader xmlEventReader, boolean disableSchemaValidation)
+            throws JAXBException {
+        UnmarshallerPool unmarshallerPool =
+                disableSchemaValidation ? nonValidatingUnmarshallerPool : validatingUnmarshallerPool;
+        if (unmarshallerPool == null) {
+            unmarshallerPool = getUnmarshallerPool(disableSchemaValidation);
+        }
+        Unmarshaller unmarshaller = unmarshallerPool.borrow();
+        Object object = unmarshaller.unmarshal(xmlEventReader);
+        //an Unmarshaller which failed is not returned to the pool
+        unmarshallerPool.release(unmarshaller);
+        return object;
+    }
+
+    /**
+     * Bounded pool of Unmarshallers of one JAXBContext and validation mode.
+     */
+    private static final class UnmarshallerPool {
+
+        private static final int MAX_POOL_SIZE = 64;
+
+        private final JAXBContext jaxbContext;
+        private final Schema schema;
+        private final BlockingQueue<Unmarshaller> unmarshallers = new ArrayBlockingQueue<>(MAX_POOL_SIZE);
+
+        UnmarshallerPool(JAXBContext jaxbContext, Schema schema) {
+            this.jaxbContext = jaxbContext;
+            this.schema = schema;
+        }
+
+        Unmarshaller borrow() throws JAXBException {
+            Unmarshaller unmarshaller = unmarshallers.poll();
+            if (unmarshaller == null) {
+                unmarshaller = jaxbContext.createUnmarshaller();
+                unmarshaller.setSchema(schema);
+            }
+            return unmarshaller;
+        }
+
+        void release(Unmarshaller unmarshaller) throws JAXBException {
+            //a replaced pool is not reachable anymore, so releasing into it just drops the Unmarshaller
+            //restore the state a freshly created Unmarshaller has
+            unmarshaller.setEventHandler(null);
+            unmarshaller.setListener(null);
+            unmarshaller.setAttachmentUnmarshaller(null);
+            unmarshaller.setSchema(schema);
+            unmarshallers.offer(unmarshaller);
+        }
+    }
+
     public enum Phase {
         PREPROCESSING,
         PROCESSING,
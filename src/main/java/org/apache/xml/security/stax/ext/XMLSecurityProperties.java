@@ -18,8 +18,10 @@
  */
 package org.apache.xml.security.stax.ext;
 
+import org.apache.xml.security.keys.ResolvedKeyCache;
 import org.apache.xml.security.stax.securityToken.SecurityTokenConstants;
 
+import java.io.File;
 import java.security.Key;
 import java.security.cert.X509Certificate;
 import java.util.*;
@@ -79,6 +81,11 @@ public class XMLSecurityProperties {
     private QName signaturePositionQName;
     private boolean signaturePositionStart = false;
 
+    private int gcmDecryptionSpoolingThreshold = -1;
+    private File gcmDecryptionSpoolingDirectory;
+
+    private ResolvedKeyCache resolvedKeyCache;
+
     public XMLSecurityProperties() {
     }
 
@@ -117,6 +124,9 @@ public class XMLSecurityProperties {
         this.signatureIncludeDigestTransform = xmlSecurityProperties.signatureIncludeDigestTransform;
         this.signaturePositionQName = xmlSecurityProperties.signaturePositionQName;
         this.signaturePositionStart = xmlSecurityProperties.signaturePositionStart;
+        this.gcmDecryptionSpoolingThreshold = xmlSecurityProperties.gcmDecryptionSpoolingThreshold;
+        this.gcmDecryptionSpoolingDirectory = xmlSecurityProperties.gcmDecryptionSpoolingDirectory;
+        this.resolvedKeyCache = xmlSecurityProperties.resolvedKeyCache;
     }
 
     public boolean isSignaturePositionStart() {
@@ -514,4 +524,47 @@ public class XMLSecurityProperties {
     public void setSignaturePositionQName(QName signaturePositionQName) {
         this.signaturePositionQName = signaturePositionQName;
     }
+
+    public int getGcmDecryptionSpoolingThreshold() {
+        return gcmDecryptionSpoolingThreshold;
+    }
+
+    /**
+     * specifies how AES-GCM encrypted content is decrypted. By default (-1) the whole plaintext is buffered
+     * in memory until the authentication tag is verified. With a value >= 0 the ciphertext is spooled instead,
+     * up to the given number of bytes in memory and beyond that to a temporary file, and the plaintext is
+     * decrypted and released after the tag was verified. This keeps the memory bounded for large encrypted content.
+     *
+     * @param gcmDecryptionSpoolingThreshold the number of ciphertext bytes held in memory or -1 to disable spooling
+     */
+    public void setGcmDecryptionSpoolingThreshold(int gcmDecryptionSpoolingThreshold) {
+        this.gcmDecryptionSpoolingThreshold = gcmDecryptionSpoolingThreshold;
+    }
+
+    public File getGcmDecryptionSpoolingDirectory() {
+        return gcmDecryptionSpoolingDirectory;
+    }
+
+    /**
+     * specifies the directory of the temporary files used for spooling AES-GCM ciphertext
+     *
+     * @param gcmDecryptionSpoolingDirectory the directory or null (default) for the default temporary-file directory
+     */
+    public void setGcmDecryptionSpoolingDirectory(File gcmDecryptionSpoolingDirectory) {
+        this.gcmDecryptionSpoolingDirectory = gcmDecryptionSpoolingDirectory;
+    }
+
+    public ResolvedKeyCache getResolvedKeyCache() {
+        return resolvedKeyCache;
+    }
+
+    /**
+     * specifies a cache of the public keys built from the KeyValues of inbound messages, so that a key
+     * which is sent with every message is built only once. The same cache can be shared by all messages.
+     *
+     * @param resolvedKeyCache the cache or null (default) to build the keys every time
+     */
+    public void setResolvedKeyCache(ResolvedKeyCache resolvedKeyCache) {
+        this.resolvedKeyCache = resolvedKeyCache;
+    }
 }
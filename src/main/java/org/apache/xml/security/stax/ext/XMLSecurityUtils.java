@@ -31,6 +31,7 @@ import org.apache.xml.security.stax.impl.util.ConcreteLSInput;
 import org.apache.xml.security.stax.securityEvent.*;
 import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
 import org.apache.xml.security.stax.securityToken.SecurityTokenConstants;
+import org.apache.xml.security.utils.BufferPool;
 import org.apache.xml.security.utils.ClassLoaderUtils;
 import org.apache.xml.security.utils.XMLUtils;
 import org.w3c.dom.ls.LSInput;
@@ -412,9 +413,13 @@ public class XMLSecurityUtils {
 
     public static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
         int read = 0;
-        byte[] buf = new byte[4096];
-        while ((read = inputStream.read(buf)) != -1) {
-            outputStream.write(buf, 0, read);
+        byte[] buf = BufferPool.acquire(4096);
+        try {
+            while ((read = inputStream.read(buf)) != -1) {
+                outputStream.write(buf, 0, read);
+            }
+        } finally {
+            BufferPool.release(buf);
         }
     }
 
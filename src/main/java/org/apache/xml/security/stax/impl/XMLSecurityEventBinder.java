@@ -0,0 +1,1463 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.stax.impl;
+
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.annotation.XmlElementDecl;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.adapters.CollapsedStringAdapter;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.events.Attribute;
+
+import org.apache.xml.security.binding.excc14n.InclusiveNamespaces;
+import org.apache.xml.security.binding.xmldsig.CanonicalizationMethodType;
+import org.apache.xml.security.binding.xmldsig.DSAKeyValueType;
+import org.apache.xml.security.binding.xmldsig.DigestMethodType;
+import org.apache.xml.security.binding.xmldsig.KeyInfoType;
+import org.apache.xml.security.binding.xmldsig.KeyValueType;
+import org.apache.xml.security.binding.xmldsig.ObjectType;
+import org.apache.xml.security.binding.xmldsig.RSAKeyValueType;
+import org.apache.xml.security.binding.xmldsig.ReferenceType;
+import org.apache.xml.security.binding.xmldsig.RetrievalMethodType;
+import org.apache.xml.security.binding.xmldsig.SignatureMethodType;
+import org.apache.xml.security.binding.xmldsig.SignatureType;
+import org.apache.xml.security.binding.xmldsig.SignatureValueType;
+import org.apache.xml.security.binding.xmldsig.SignedInfoType;
+import org.apache.xml.security.binding.xmldsig.TransformType;
+import org.apache.xml.security.binding.xmldsig.TransformsType;
+import org.apache.xml.security.binding.xmldsig.X509DataType;
+import org.apache.xml.security.binding.xmldsig.X509IssuerSerialType;
+import org.apache.xml.security.binding.xmldsig11.DEREncodedKeyValueType;
+import org.apache.xml.security.binding.xmldsig11.ECKeyValueType;
+import org.apache.xml.security.binding.xmldsig11.KeyInfoReferenceType;
+import org.apache.xml.security.binding.xmldsig11.NamedCurveType;
+import org.apache.xml.security.binding.xmldsig11.X509DigestType;
+import org.apache.xml.security.binding.xmlenc.CipherDataType;
+import org.apache.xml.security.binding.xmlenc.CipherReferenceType;
+import org.apache.xml.security.binding.xmlenc.EncryptedDataType;
+import org.apache.xml.security.binding.xmlenc.EncryptedKeyType;
+import org.apache.xml.security.binding.xmlenc.EncryptedType;
+import org.apache.xml.security.binding.xmlenc.EncryptionMethodType;
+import org.apache.xml.security.binding.xmlenc.EncryptionPropertiesType;
+import org.apache.xml.security.binding.xmlenc.ReferenceList;
+import org.apache.xml.security.binding.xmlenc11.MGFType;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.apache.xml.security.stax.ext.stax.XMLSecAttribute;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecNamespace;
+import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import org.apache.xml.security.utils.XMLUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Binds ds:Signature, ds:SignedInfo, xenc:EncryptedData, xenc:EncryptedKey and their descendants
+ * directly from the buffered XMLSecEvents into the generated binding classes, without going through
+ * JAXB reflection and a schema validator.
+ *
+ * The content models of the xmldsig, xmldsig11, xmlenc, xmlenc11 and exc-c14n schemas are compiled
+ * into the parse methods below. When schema validation is enabled, element order and cardinality,
+ * required and undeclared attributes, wildcard namespace constraints, base64Binary / integer / ID
+ * lexical forms and Id uniqueness are enforced like the schema validator would. When it is disabled
+ * unknown content is skipped like the JAXB unmarshaller does.
+ *
+ * Elements of the binding packages which are rarely seen (e.g. PGPData, Manifest, AgreementMethod,
+ * explicit ECParameters) are handed over to the JAXB unmarshaller. Unknown elements in lax wildcards
+ * are returned as DOM elements just like JAXB does.
+ */
+public class XMLSecurityEventBinder {
+
+    private static final org.apache.xml.security.binding.xmldsig.ObjectFactory DSIG_FACTORY =
+            new org.apache.xml.security.binding.xmldsig.ObjectFactory();
+    private static final org.apache.xml.security.binding.xmldsig11.ObjectFactory DSIG11_FACTORY =
+            new org.apache.xml.security.binding.xmldsig11.ObjectFactory();
+    private static final org.apache.xml.security.binding.xmlenc.ObjectFactory XENC_FACTORY =
+            new org.apache.xml.security.binding.xmlenc.ObjectFactory();
+    private static final org.apache.xml.security.binding.xmlenc11.ObjectFactory XENC11_FACTORY =
+            new org.apache.xml.security.binding.xmlenc11.ObjectFactory();
+    private static final org.apache.xml.security.binding.excc14n.ObjectFactory EXCC14N_FACTORY =
+            new org.apache.xml.security.binding.excc14n.ObjectFactory();
+
+    private static final CollapsedStringAdapter COLLAPSED_STRING_ADAPTER = new CollapsedStringAdapter();
+
+    private static final String NS_XSI = XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI;
+
+    private static final QName TAG_dsig_XPath = new QName(XMLSecurityConstants.NS_DSIG, "XPath");
+    private static final QName TAG_dsig_MgmtData = new QName(XMLSecurityConstants.NS_DSIG, "MgmtData");
+    private static final QName TAG_dsig_RetrievalMethod = new QName(XMLSecurityConstants.NS_DSIG, "RetrievalMethod");
+    private static final QName TAG_dsig_X509CRL = new QName(XMLSecurityConstants.NS_DSIG, "X509CRL");
+    private static final QName TAG_dsig_Object = new QName(XMLSecurityConstants.NS_DSIG, "Object");
+    private static final QName TAG_xenc_KeySize = new QName(XMLSecurityConstants.NS_XMLENC, "KeySize");
+    private static final QName TAG_xenc_KeyReference = new QName(XMLSecurityConstants.NS_XMLENC, "KeyReference");
+    private static final QName TAG_xenc_CarriedKeyName = new QName(XMLSecurityConstants.NS_XMLENC, "CarriedKeyName");
+    private static final QName ATT_NULL_Recipient = new QName(null, "Recipient");
+
+    private static final QName[] ATTS_Id = {XMLSecurityConstants.ATT_NULL_Id};
+    private static final QName[] ATTS_Algorithm = {XMLSecurityConstants.ATT_NULL_Algorithm};
+    private static final QName[] ATTS_URI = {XMLSecurityConstants.ATT_NULL_URI};
+    private static final QName[] ATTS_Reference = {
+        XMLSecurityConstants.ATT_NULL_Id, XMLSecurityConstants.ATT_NULL_URI, XMLSecurityConstants.ATT_NULL_Type
+    };
+    private static final QName[] ATTS_RetrievalMethod = {XMLSecurityConstants.ATT_NULL_URI, XMLSecurityConstants.ATT_NULL_Type};
+    private static final QName[] ATTS_Object = {
+        XMLSecurityConstants.ATT_NULL_Id, XMLSecurityConstants.ATT_NULL_MimeType, XMLSecurityConstants.ATT_NULL_Encoding
+    };
+    private static final QName[] ATTS_EncryptedData = {
+        XMLSecurityConstants.ATT_NULL_Id, XMLSecurityConstants.ATT_NULL_Type,
+        XMLSecurityConstants.ATT_NULL_MimeType, XMLSecurityConstants.ATT_NULL_Encoding
+    };
+    private static final QName[] ATTS_EncryptedKey = {
+        XMLSecurityConstants.ATT_NULL_Id, XMLSecurityConstants.ATT_NULL_Type,
+        XMLSecurityConstants.ATT_NULL_MimeType, XMLSecurityConstants.ATT_NULL_Encoding, ATT_NULL_Recipient
+    };
+    private static final QName[] ATTS_KeyInfoReference = {XMLSecurityConstants.ATT_NULL_URI, XMLSecurityConstants.ATT_NULL_Id};
+    private static final QName[] ATTS_InclusiveNamespaces = {XMLSecurityConstants.ATT_NULL_PrefixList};
+    private static final QName[] ATTS_NONE = {};
+
+    private static final Set<QName> NATIVE_ELEMENTS;
+    private static final Set<QName> JAXB_ELEMENTS;
+
+    static {
+        Set<QName> nativeElements = new HashSet<>();
+        for (String localName : Arrays.asList(
+                "Signature", "SignatureValue", "SignedInfo", "CanonicalizationMethod", "SignatureMethod",
+                "Reference", "Transforms", "Transform", "DigestMethod", "DigestValue", "KeyInfo", "KeyName",
+                "MgmtData", "KeyValue", "RetrievalMethod", "X509Data", "Object", "DSAKeyValue", "RSAKeyValue")) {
+            nativeElements.add(new QName(XMLSecurityConstants.NS_DSIG, localName));
+        }
+        for (String localName : Arrays.asList(
+                "ECKeyValue", "DEREncodedKeyValue", "KeyInfoReference", "X509Digest")) {
+            nativeElements.add(new QName(XMLSecurityConstants.NS_DSIG11, localName));
+        }
+        for (String localName : Arrays.asList(
+                "CipherData", "CipherReference", "EncryptedData", "EncryptedKey", "ReferenceList")) {
+            nativeElements.add(new QName(XMLSecurityConstants.NS_XMLENC, localName));
+        }
+        nativeElements.add(XMLSecurityConstants.TAG_xenc11_MGF);
+        nativeElements.add(XMLSecurityConstants.TAG_c14nExcl_InclusiveNamespaces);
+        NATIVE_ELEMENTS = Collections.unmodifiableSet(nativeElements);
+
+        //all global elements known to the default JAXBContext:
+        Set<QName> jaxbElements = new HashSet<>();
+        Class<?>[] objectFactories = {
+            org.apache.xml.security.binding.xmldsig.ObjectFactory.class,
+            org.apache.xml.security.binding.xmldsig11.ObjectFactory.class,
+            org.apache.xml.security.binding.xmlenc.ObjectFactory.class,
+            org.apache.xml.security.binding.xmlenc11.ObjectFactory.class,
+            org.apache.xml.security.binding.excc14n.ObjectFactory.class,
+        };
+        for (Class<?> objectFactory : objectFactories) {
+            for (Method method : objectFactory.getMethods()) {
+                XmlElementDecl xmlElementDecl = method.getAnnotation(XmlElementDecl.class);
+                if (xmlElementDecl != null && xmlElementDecl.scope() == XmlElementDecl.GLOBAL.class) {
+                    jaxbElements.add(new QName(xmlElementDecl.namespace(), xmlElementDecl.name()));
+                } else if (xmlElementDecl == null && method.getName().startsWith("create")) {
+                    XmlRootElement xmlRootElement = method.getReturnType().getAnnotation(XmlRootElement.class);
+                    if (xmlRootElement != null) {
+                        jaxbElements.add(new QName(xmlRootElement.namespace(), xmlRootElement.name()));
+                    }
+                }
+            }
+        }
+        JAXB_ELEMENTS = Collections.unmodifiableSet(jaxbElements);
+    }
+
+    private final XMLSecEvent[] xmlSecEvents;
+    private final boolean validate;
+    private int position;
+    private Set<String> ids;
+    private Document document;
+
+    private XMLSecurityEventBinder(XMLSecEvent[] xmlSecEvents, boolean validate) {
+        this.xmlSecEvents = xmlSecEvents;
+        this.validate = validate;
+    }
+
+    /**
+     * @return true if the given element is bound natively
+     */
+    public static boolean isBindable(QName elementName) {
+        return NATIVE_ELEMENTS.contains(elementName);
+    }
+
+    /**
+     * Unmarshals the element starting at the given index of the event deque (counted like
+     * {@link XMLSecurityEventReader} does from the tail of the deque). The element is bound natively
+     * when it is known to this binder and the JAXBContext of this library is in use, otherwise
+     * the JAXB unmarshaller is used.
+     *
+     * @return the same object the JAXB unmarshaller would return for the element:
+     * a JAXBElement or an instance of a class annotated with XmlRootElement.
+     */
+    public static Object unmarshal(Deque<XMLSecEvent> eventDeque, int index, boolean disableSchemaValidation)
+            throws XMLSecurityException {
+
+        Iterator<XMLSecEvent> xmlSecEventIterator = eventDeque.descendingIterator();
+        int curIdx = 0;
+        while (curIdx++ < index && xmlSecEventIterator.hasNext()) {
+            xmlSecEventIterator.next();
+        }
+
+        XMLSecEvent rootEvent = xmlSecEventIterator.hasNext() ? xmlSecEventIterator.next() : null;
+        if (!XMLSecurityConstants.isDefaultJaxbContext() || rootEvent == null
+                || rootEvent.getEventType() != XMLStreamConstants.START_ELEMENT
+                || !isBindable(rootEvent.asStartElement().getName())) {
+            return unmarshalWithJaxb(new XMLSecurityEventReader(eventDeque, index), disableSchemaValidation);
+        }
+
+        List<XMLSecEvent> structure = new ArrayList<>();
+        structure.add(rootEvent);
+        int depth = 1;
+        while (depth > 0 && xmlSecEventIterator.hasNext()) {
+            XMLSecEvent xmlSecEvent = xmlSecEventIterator.next();
+            switch (xmlSecEvent.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    structure.add(xmlSecEvent);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    structure.add(xmlSecEvent);
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    structure.add(xmlSecEvent);
+                    break;
+                default:
+                    //comments and processing instructions are not part of the structure
+                    break;
+            }
+        }
+        if (depth != 0) {
+            throw new XMLSecurityException("stax.unexpectedXMLEvent", new Object[] {"EndDocument"});
+        }
+
+        XMLSecurityEventBinder binder =
+                new XMLSecurityEventBinder(structure.toArray(new XMLSecEvent[structure.size()]), !disableSchemaValidation);
+        binder.position++;
+        return binder.parseGlobalElement(rootEvent.asStartElement());
+    }
+
+    private static Object unmarshalWithJaxb(XMLSecurityEventReader xmlSecurityEventReader, boolean disableSchemaValidation)
+            throws XMLSecurityException {
+        try {
+            return XMLSecurityConstants.unmarshal(xmlSecurityEventReader, disableSchemaValidation);
+        } catch (JAXBException e) {
+            if (e.getCause() != null && e.getCause() instanceof Exception) {
+                throw new XMLSecurityException((Exception)e.getCause());
+            }
+            throw new XMLSecurityException(e);
+        }
+    }
+
+    private Object parseGlobalElement(XMLSecStartElement element) throws XMLSecurityException {
+        final QName name = element.getName();
+        final String namespace = name.getNamespaceURI();
+        if (XMLSecurityConstants.NS_DSIG.equals(namespace)) {
+            switch (name.getLocalPart()) {
+                case "Signature":
+                    return DSIG_FACTORY.createSignature(parseSignature(element));
+                case "SignatureValue":
+                    return DSIG_FACTORY.createSignatureValue(parseSignatureValue(element));
+                case "SignedInfo":
+                    return DSIG_FACTORY.createSignedInfo(parseSignedInfo(element));
+                case "CanonicalizationMethod":
+                    return DSIG_FACTORY.createCanonicalizationMethod(parseCanonicalizationMethod(element));
+                case "SignatureMethod":
+                    return DSIG_FACTORY.createSignatureMethod(parseSignatureMethod(element));
+                case "Reference":
+                    return DSIG_FACTORY.createReference(parseReference(element));
+                case "Transforms":
+                    return DSIG_FACTORY.createTransforms(parseTransforms(element));
+                case "Transform":
+                    return DSIG_FACTORY.createTransform(parseTransform(element));
+                case "DigestMethod":
+                    return DSIG_FACTORY.createDigestMethod(parseDigestMethod(element));
+                case "DigestValue":
+                    return DSIG_FACTORY.createDigestValue(parseBase64Element(element));
+                case "KeyInfo":
+                    return DSIG_FACTORY.createKeyInfo(parseKeyInfo(element));
+                case "KeyName":
+                    return DSIG_FACTORY.createKeyName(parseStringElement(element));
+                case "MgmtData":
+                    return DSIG_FACTORY.createMgmtData(parseStringElement(element));
+                case "KeyValue":
+                    return DSIG_FACTORY.createKeyValue(parseKeyValue(element));
+                case "RetrievalMethod":
+                    return DSIG_FACTORY.createRetrievalMethod(parseRetrievalMethod(element));
+                case "X509Data":
+                    return DSIG_FACTORY.createX509Data(parseX509Data(element));
+                case "Object":
+                    return DSIG_FACTORY.createObject(parseObject(element));
+                case "DSAKeyValue":
+                    return DSIG_FACTORY.createDSAKeyValue(parseDSAKeyValue(element));
+                case "RSAKeyValue":
+                    return DSIG_FACTORY.createRSAKeyValue(parseRSAKeyValue(element));
+                default:
+                    break;
+            }
+        } else if (XMLSecurityConstants.NS_XMLENC.equals(namespace)) {
+            switch (name.getLocalPart()) {
+                case "EncryptedData":
+                    return XENC_FACTORY.createEncryptedData(parseEncryptedData(element));
+                case "EncryptedKey":
+                    return XENC_FACTORY.createEncryptedKey(parseEncryptedKey(element));
+                case "CipherData":
+                    return XENC_FACTORY.createCipherData(parseCipherData(element));
+                case "CipherReference":
+                    return XENC_FACTORY.createCipherReference(parseCipherReference(element));
+                case "ReferenceList":
+                    return parseReferenceList(element);
+                default:
+                    break;
+            }
+        } else if (XMLSecurityConstants.NS_DSIG11.equals(namespace)) {
+            switch (name.getLocalPart()) {
+                case "ECKeyValue":
+                    if (hasChildElement(XMLSecurityConstants.TAG_dsig11_ECParameters)) {
+                        //explicit curve parameters are rare and left to JAXB
+                        break;
+                    }
+                    return DSIG11_FACTORY.createECKeyValue(parseECKeyValue(element));
+                case "DEREncodedKeyValue":
+                    return DSIG11_FACTORY.createDEREncodedKeyValue(parseDEREncodedKeyValue(element));
+                case "KeyInfoReference":
+                    return DSIG11_FACTORY.createKeyInfoReference(parseKeyInfoReference(element));
+                case "X509Digest":
+                    return DSIG11_FACTORY.createX509Digest(parseX509Digest(element));
+                default:
+                    break;
+            }
+        } else if (XMLSecurityConstants.TAG_xenc11_MGF.equals(name)) {
+            if (!hasChildElement(null)) {
+                return XENC11_FACTORY.createMGF(parseMGF(element));
+            }
+        } else if (XMLSecurityConstants.TAG_c14nExcl_InclusiveNamespaces.equals(name)) {
+            return EXCC14N_FACTORY.createInclusiveNamespaces(parseInclusiveNamespaces(element));
+        }
+        if (JAXB_ELEMENTS.contains(name)) {
+            return unmarshalWithJaxb();
+        }
+        return null;
+    }
+
+    private SignatureType parseSignature(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_Id);
+        SignatureType signatureType = new SignatureType();
+        signatureType.setId(parseId(element));
+
+        int state = 0;
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, null)) != null) {
+            QName name = child.getName();
+            if (XMLSecurityConstants.TAG_dsig_SignedInfo.equals(name)) {
+                state = sequence(element, child, state, 1, false);
+                signatureType.setSignedInfo(parseSignedInfo(child));
+            } else if (XMLSecurityConstants.TAG_dsig_SignatureValue.equals(name)) {
+                state = sequence(element, child, state, 2, false);
+                signatureType.setSignatureValue(parseSignatureValue(child));
+            } else if (XMLSecurityConstants.TAG_dsig_KeyInfo.equals(name)) {
+                state = sequence(element, child, state, 3, false);
+                signatureType.setKeyInfo(parseKeyInfo(child));
+            } else if (TAG_dsig_Object.equals(name)) {
+                state = sequence(element, child, state, 4, true);
+                signatureType.getObject().add(parseObject(child));
+            } else {
+                unexpectedElement(element, child);
+            }
+        }
+        required(element, signatureType.getSignedInfo(), XMLSecurityConstants.TAG_dsig_SignedInfo);
+        required(element, signatureType.getSignatureValue(), XMLSecurityConstants.TAG_dsig_SignatureValue);
+        return signatureType;
+    }
+
+    private SignatureValueType parseSignatureValue(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_Id);
+        SignatureValueType signatureValueType = new SignatureValueType();
+        signatureValueType.setId(parseId(element));
+        signatureValueType.setValue(parseBase64Content(element));
+        return signatureValueType;
+    }
+
+    private SignedInfoType parseSignedInfo(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_Id);
+        SignedInfoType signedInfoType = new SignedInfoType();
+        signedInfoType.setId(parseId(element));
+
+        int state = 0;
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, null)) != null) {
+            QName name = child.getName();
+            if (XMLSecurityConstants.TAG_dsig_CanonicalizationMethod.equals(name)) {
+                state = sequence(element, child, state, 1, false);
+                signedInfoType.setCanonicalizationMethod(parseCanonicalizationMethod(child));
+            } else if (XMLSecurityConstants.TAG_dsig_SignatureMethod.equals(name)) {
+                state = sequence(element, child, state, 2, false);
+                signedInfoType.setSignatureMethod(parseSignatureMethod(child));
+            } else if (XMLSecurityConstants.TAG_dsig_Reference.equals(name)) {
+                state = sequence(element, child, state, 3, true);
+                signedInfoType.getReference().add(parseReference(child));
+            } else {
+                unexpectedElement(element, child);
+            }
+        }
+        required(element, signedInfoType.getCanonicalizationMethod(), XMLSecurityConstants.TAG_dsig_CanonicalizationMethod);
+        required(element, signedInfoType.getSignatureMethod(), XMLSecurityConstants.TAG_dsig_SignatureMethod);
+        required(element, signedInfoType.getReference(), XMLSecurityConstants.TAG_dsig_Reference);
+        return signedInfoType;
+    }
+
+    private CanonicalizationMethodType parseCanonicalizationMethod(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_Algorithm);
+        CanonicalizationMethodType canonicalizationMethodType = new CanonicalizationMethodType();
+        canonicalizationMethodType.setAlgorithm(requiredAttribute(element, XMLSecurityConstants.ATT_NULL_Algorithm));
+
+        List<Object> content = canonicalizationMethodType.getContent();
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, content)) != null) {
+            addWildcard(element, child, content, null, true);
+        }
+        return canonicalizationMethodType;
+    }
+
+    private SignatureMethodType parseSignatureMethod(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_Algorithm);
+        SignatureMethodType signatureMethodType = new SignatureMethodType();
+        signatureMethodType.setAlgorithm(requiredAttribute(element, XMLSecurityConstants.ATT_NULL_Algorithm));
+
+        List<Object> content = signatureMethodType.getContent();
+        int state = 0;
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, content)) != null) {
+            if (XMLSecurityConstants.TAG_dsig_HMACOutputLength.equals(child.getName())) {
+                state = sequence(element, child, state, 1, false);
+                content.add(DSIG_FACTORY.createSignatureMethodTypeHMACOutputLength(parseIntegerElement(child)));
+            } else {
+                state = sequence(element, child, state, 2, true);
+                addWildcard(element, child, content, XMLSecurityConstants.NS_DSIG, true);
+            }
+        }
+        return signatureMethodType;
+    }
+
+    private ReferenceType parseReference(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_Reference);
+        ReferenceType referenceType = new ReferenceType();
+        referenceType.setId(parseId(element));
+        referenceType.setURI(attribute(element, XMLSecurityConstants.ATT_NULL_URI));
+        referenceType.setType(attribute(element, XMLSecurityConstants.ATT_NULL_Type));
+
+        int state = 0;
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, null)) != null) {
+            QName name = child.getName();
+            if (XMLSecurityConstants.TAG_dsig_Transforms.equals(name)) {
+                state = sequence(element, child, state, 1, false);
+                referenceType.setTransforms(parseTransforms(child));
+            } else if (XMLSecurityConstants.TAG_dsig_DigestMethod.equals(name)) {
+                state = sequence(element, child, state, 2, false);
+                referenceType.setDigestMethod(parseDigestMethod(child));
+            } else if (XMLSecurityConstants.TAG_dsig_DigestValue.equals(name)) {
+                state = sequence(element, child, state, 3, false);
+                referenceType.setDigestValue(parseBase64Element(child));
+            } else {
+                unexpectedElement(element, child);
+            }
+        }
+        required(element, referenceType.getDigestMethod(), XMLSecurityConstants.TAG_dsig_DigestMethod);
+        required(element, referenceType.getDigestValue(), XMLSecurityConstants.TAG_dsig_DigestValue);
+        return referenceType;
+    }
+
+    private TransformsType parseTransforms(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_NONE);
+        TransformsType transformsType = new TransformsType();
+        parseTransformList(element, transformsType.getTransform());
+        return transformsType;
+    }
+
+    private void parseTransformList(XMLSecStartElement element, List<TransformType> transforms) throws XMLSecurityException {
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, null)) != null) {
+            if (XMLSecurityConstants.TAG_dsig_Transform.equals(child.getName())) {
+                transforms.add(parseTransform(child));
+            } else {
+                unexpectedElement(element, child);
+            }
+        }
+        required(element, transforms, XMLSecurityConstants.TAG_dsig_Transform);
+    }
+
+    private TransformType parseTransform(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_Algorithm);
+        TransformType transformType = new TransformType();
+        transformType.setAlgorithm(requiredAttribute(element, XMLSecurityConstants.ATT_NULL_Algorithm));
+
+        List<Object> content = transformType.getContent();
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, content)) != null) {
+            if (TAG_dsig_XPath.equals(child.getName())) {
+                content.add(DSIG_FACTORY.createTransformTypeXPath(parseStringElement(child)));
+            } else {
+                addWildcard(element, child, content, XMLSecurityConstants.NS_DSIG, false);
+            }
+        }
+        return transformType;
+    }
+
+    private DigestMethodType parseDigestMethod(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_Algorithm);
+        DigestMethodType digestMethodType = new DigestMethodType();
+        digestMethodType.setAlgorithm(requiredAttribute(element, XMLSecurityConstants.ATT_NULL_Algorithm));
+
+        List<Object> content = digestMethodType.getContent();
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, content)) != null) {
+            addWildcard(element, child, content, XMLSecurityConstants.NS_DSIG, false);
+        }
+        return digestMethodType;
+    }
+
+    private KeyInfoType parseKeyInfo(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_Id);
+        KeyInfoType keyInfoType = new KeyInfoType();
+        keyInfoType.setId(parseId(element));
+
+        List<Object> content = keyInfoType.getContent();
+        int children = 0;
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, content)) != null) {
+            children++;
+            QName name = child.getName();
+            if (XMLSecurityConstants.TAG_dsig_KeyName.equals(name)) {
+                content.add(DSIG_FACTORY.createKeyName(parseStringElement(child)));
+            } else if (XMLSecurityConstants.TAG_dsig_KeyValue.equals(name)) {
+                content.add(DSIG_FACTORY.createKeyValue(parseKeyValue(child)));
+            } else if (TAG_dsig_RetrievalMethod.equals(name)) {
+                content.add(DSIG_FACTORY.createRetrievalMethod(parseRetrievalMethod(child)));
+            } else if (XMLSecurityConstants.TAG_dsig_X509Data.equals(name)) {
+                content.add(DSIG_FACTORY.createX509Data(parseX509Data(child)));
+            } else if (TAG_dsig_MgmtData.equals(name)) {
+                content.add(DSIG_FACTORY.createMgmtData(parseStringElement(child)));
+            } else if (XMLSecurityConstants.NS_DSIG.equals(name.getNamespaceURI())
+                    && ("PGPData".equals(name.getLocalPart()) || "SPKIData".equals(name.getLocalPart()))) {
+                content.add(unmarshalWithJaxb());
+            } else {
+                addWildcard(element, child, content, XMLSecurityConstants.NS_DSIG, false);
+            }
+        }
+        if (children == 0) {
+            missingElement(element, XMLSecurityConstants.TAG_dsig_KeyName);
+        }
+        return keyInfoType;
+    }
+
+    private KeyValueType parseKeyValue(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_NONE);
+        KeyValueType keyValueType = new KeyValueType();
+
+        List<Object> content = keyValueType.getContent();
+        int children = 0;
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, content)) != null) {
+            if (validate && children++ > 0) {
+                unexpectedElement(element, child);
+                continue;
+            }
+            QName name = child.getName();
+            if (XMLSecurityConstants.TAG_dsig_RSAKeyValue.equals(name)) {
+                content.add(DSIG_FACTORY.createRSAKeyValue(parseRSAKeyValue(child)));
+            } else if (XMLSecurityConstants.TAG_dsig_DSAKeyValue.equals(name)) {
+                content.add(DSIG_FACTORY.createDSAKeyValue(parseDSAKeyValue(child)));
+            } else {
+                addWildcard(element, child, content, XMLSecurityConstants.NS_DSIG, false);
+            }
+        }
+        if (children == 0) {
+            missingElement(element, XMLSecurityConstants.TAG_dsig_RSAKeyValue);
+        }
+        return keyValueType;
+    }
+
+    private RSAKeyValueType parseRSAKeyValue(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_NONE);
+        RSAKeyValueType rsaKeyValueType = new RSAKeyValueType();
+
+        int state = 0;
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, null)) != null) {
+            QName name = child.getName();
+            if (XMLSecurityConstants.TAG_dsig_Modulus.equals(name)) {
+                state = sequence(element, child, state, 1, false);
+                rsaKeyValueType.setModulus(parseBase64Element(child));
+            } else if (XMLSecurityConstants.TAG_dsig_Exponent.equals(name)) {
+                state = sequence(element, child, state, 2, false);
+                rsaKeyValueType.setExponent(parseBase64Element(child));
+            } else {
+                unexpectedElement(element, child);
+            }
+        }
+        required(element, rsaKeyValueType.getModulus(), XMLSecurityConstants.TAG_dsig_Modulus);
+        required(element, rsaKeyValueType.getExponent(), XMLSecurityConstants.TAG_dsig_Exponent);
+        return rsaKeyValueType;
+    }
+
+    private DSAKeyValueType parseDSAKeyValue(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_NONE);
+        DSAKeyValueType dsaKeyValueType = new DSAKeyValueType();
+
+        int state = 0;
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, null)) != null) {
+            QName name = child.getName();
+            if (XMLSecurityConstants.TAG_dsig_P.equals(name)) {
+                state = sequence(element, child, state, 1, false);
+                dsaKeyValueType.setP(parseBase64Element(child));
+            } else if (XMLSecurityConstants.TAG_dsig_Q.equals(name)) {
+                state = sequence(element, child, state, 2, false);
+                dsaKeyValueType.setQ(parseBase64Element(child));
+            } else if (XMLSecurityConstants.TAG_dsig_G.equals(name)) {
+                state = sequence(element, child, state, 3, false);
+                dsaKeyValueType.setG(parseBase64Element(child));
+            } else if (XMLSecurityConstants.TAG_dsig_Y.equals(name)) {
+                state = sequence(element, child, state, 4, false);
+                dsaKeyValueType.setY(parseBase64Element(child));
+            } else if (XMLSecurityConstants.TAG_dsig_J.equals(name)) {
+                state = sequence(element, child, state, 5, false);
+                dsaKeyValueType.setJ(parseBase64Element(child));
+            } else if (XMLSecurityConstants.TAG_dsig_Seed.equals(name)) {
+                state = sequence(element, child, state, 6, false);
+                dsaKeyValueType.setSeed(parseBase64Element(child));
+            } else if (XMLSecurityConstants.TAG_dsig_PgenCounter.equals(name)) {
+                state = sequence(element, child, state, 7, false);
+                dsaKeyValueType.setPgenCounter(parseBase64Element(child));
+            } else {
+                unexpectedElement(element, child);
+            }
+        }
+        //P and Q as well as Seed and PgenCounter must occur pairwise
+        if (dsaKeyValueType.getP() != null || dsaKeyValueType.getQ() != null) {
+            required(element, dsaKeyValueType.getP(), XMLSecurityConstants.TAG_dsig_P);
+            required(element, dsaKeyValueType.getQ(), XMLSecurityConstants.TAG_dsig_Q);
+        }
+        required(element, dsaKeyValueType.getY(), XMLSecurityConstants.TAG_dsig_Y);
+        if (dsaKeyValueType.getSeed() != null || dsaKeyValueType.getPgenCounter() != null) {
+            required(element, dsaKeyValueType.getSeed(), XMLSecurityConstants.TAG_dsig_Seed);
+            required(element, dsaKeyValueType.getPgenCounter(), XMLSecurityConstants.TAG_dsig_PgenCounter);
+        }
+        return dsaKeyValueType;
+    }
+
+    private RetrievalMethodType parseRetrievalMethod(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_RetrievalMethod);
+        RetrievalMethodType retrievalMethodType = new RetrievalMethodType();
+        retrievalMethodType.setURI(attribute(element, XMLSecurityConstants.ATT_NULL_URI));
+        retrievalMethodType.setType(attribute(element, XMLSecurityConstants.ATT_NULL_Type));
+
+        int state = 0;
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, null)) != null) {
+            if (XMLSecurityConstants.TAG_dsig_Transforms.equals(child.getName())) {
+                state = sequence(element, child, state, 1, false);
+                retrievalMethodType.setTransforms(parseTransforms(child));
+            } else {
+                unexpectedElement(element, child);
+            }
+        }
+        return retrievalMethodType;
+    }
+
+    private X509DataType parseX509Data(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_NONE);
+        X509DataType x509DataType = new X509DataType();
+
+        List<Object> content = x509DataType.getX509IssuerSerialOrX509SKIOrX509SubjectName();
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, null)) != null) {
+            QName name = child.getName();
+            if (XMLSecurityConstants.TAG_dsig_X509IssuerSerial.equals(name)) {
+                content.add(DSIG_FACTORY.createX509DataTypeX509IssuerSerial(parseX509IssuerSerial(child)));
+            } else if (XMLSecurityConstants.TAG_dsig_X509SKI.equals(name)) {
+                content.add(DSIG_FACTORY.createX509DataTypeX509SKI(parseBase64Element(child)));
+            } else if (XMLSecurityConstants.TAG_dsig_X509SubjectName.equals(name)) {
+                content.add(DSIG_FACTORY.createX509DataTypeX509SubjectName(parseStringElement(child)));
+            } else if (XMLSecurityConstants.TAG_dsig_X509Certificate.equals(name)) {
+                content.add(DSIG_FACTORY.createX509DataTypeX509Certificate(parseBase64Element(child)));
+            } else if (TAG_dsig_X509CRL.equals(name)) {
+                content.add(DSIG_FACTORY.createX509DataTypeX509CRL(parseBase64Element(child)));
+            } else {
+                addWildcard(element, child, content, XMLSecurityConstants.NS_DSIG, false);
+            }
+        }
+        required(element, content, XMLSecurityConstants.TAG_dsig_X509Certificate);
+        return x509DataType;
+    }
+
+    private X509IssuerSerialType parseX509IssuerSerial(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_NONE);
+        X509IssuerSerialType x509IssuerSerialType = new X509IssuerSerialType();
+
+        int state = 0;
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, null)) != null) {
+            QName name = child.getName();
+            if (XMLSecurityConstants.TAG_dsig_X509IssuerName.equals(name)) {
+                state = sequence(element, child, state, 1, false);
+                x509IssuerSerialType.setX509IssuerName(parseStringElement(child));
+            } else if (XMLSecurityConstants.TAG_dsig_X509SerialNumber.equals(name)) {
+                state = sequence(element, child, state, 2, false);
+                x509IssuerSerialType.setX509SerialNumber(parseIntegerElement(child));
+            } else {
+                unexpectedElement(element, child);
+            }
+        }
+        required(element, x509IssuerSerialType.getX509IssuerName(), XMLSecurityConstants.TAG_dsig_X509IssuerName);
+        required(element, x509IssuerSerialType.getX509SerialNumber(), XMLSecurityConstants.TAG_dsig_X509SerialNumber);
+        return x509IssuerSerialType;
+    }
+
+    private ObjectType parseObject(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_Object);
+        ObjectType objectType = new ObjectType();
+        objectType.setId(parseId(element));
+        objectType.setMimeType(attribute(element, XMLSecurityConstants.ATT_NULL_MimeType));
+        objectType.setEncoding(attribute(element, XMLSecurityConstants.ATT_NULL_Encoding));
+
+        List<Object> content = objectType.getContent();
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, content)) != null) {
+            addWildcard(element, child, content, null, false);
+        }
+        return objectType;
+    }
+
+    private ECKeyValueType parseECKeyValue(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_Id);
+        ECKeyValueType ecKeyValueType = new ECKeyValueType();
+        ecKeyValueType.setId(parseId(element));
+
+        int state = 0;
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, null)) != null) {
+            QName name = child.getName();
+            if (XMLSecurityConstants.TAG_dsig11_NamedCurve.equals(name)) {
+                state = sequence(element, child, state, 1, false);
+                checkAttributes(child, ATTS_URI);
+                NamedCurveType namedCurveType = new NamedCurveType();
+                namedCurveType.setURI(requiredAttribute(child, XMLSecurityConstants.ATT_NULL_URI));
+                parseEmptyElement(child);
+                ecKeyValueType.setNamedCurve(namedCurveType);
+            } else if (XMLSecurityConstants.TAG_dsig11_PublicKey.equals(name)) {
+                state = sequence(element, child, state, 2, false);
+                ecKeyValueType.setPublicKey(parseBase64Element(child));
+            } else {
+                unexpectedElement(element, child);
+            }
+        }
+        required(element, ecKeyValueType.getNamedCurve(), XMLSecurityConstants.TAG_dsig11_NamedCurve);
+        required(element, ecKeyValueType.getPublicKey(), XMLSecurityConstants.TAG_dsig11_PublicKey);
+        return ecKeyValueType;
+    }
+
+    private DEREncodedKeyValueType parseDEREncodedKeyValue(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_Id);
+        DEREncodedKeyValueType derEncodedKeyValueType = new DEREncodedKeyValueType();
+        derEncodedKeyValueType.setId(parseId(element));
+        derEncodedKeyValueType.setValue(parseBase64Content(element));
+        return derEncodedKeyValueType;
+    }
+
+    private KeyInfoReferenceType parseKeyInfoReference(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_KeyInfoReference);
+        KeyInfoReferenceType keyInfoReferenceType = new KeyInfoReferenceType();
+        keyInfoReferenceType.setURI(requiredAttribute(element, XMLSecurityConstants.ATT_NULL_URI));
+        keyInfoReferenceType.setId(parseId(element));
+        parseEmptyElement(element);
+        return keyInfoReferenceType;
+    }
+
+    private X509DigestType parseX509Digest(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_Algorithm);
+        X509DigestType x509DigestType = new X509DigestType();
+        x509DigestType.setAlgorithm(requiredAttribute(element, XMLSecurityConstants.ATT_NULL_Algorithm));
+        x509DigestType.setValue(parseBase64Content(element));
+        return x509DigestType;
+    }
+
+    private EncryptedDataType parseEncryptedData(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_EncryptedData);
+        EncryptedDataType encryptedDataType = new EncryptedDataType();
+        parseEncryptedType(element, encryptedDataType, null);
+        return encryptedDataType;
+    }
+
+    private EncryptedKeyType parseEncryptedKey(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_EncryptedKey);
+        EncryptedKeyType encryptedKeyType = new EncryptedKeyType();
+        encryptedKeyType.setRecipient(attribute(element, ATT_NULL_Recipient));
+        parseEncryptedType(element, encryptedKeyType, encryptedKeyType);
+        return encryptedKeyType;
+    }
+
+    private void parseEncryptedType(XMLSecStartElement element, EncryptedType encryptedType,
+                                    EncryptedKeyType encryptedKeyType) throws XMLSecurityException {
+        encryptedType.setId(parseId(element));
+        encryptedType.setType(attribute(element, XMLSecurityConstants.ATT_NULL_Type));
+        encryptedType.setMimeType(attribute(element, XMLSecurityConstants.ATT_NULL_MimeType));
+        encryptedType.setEncoding(attribute(element, XMLSecurityConstants.ATT_NULL_Encoding));
+
+        int state = 0;
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, null)) != null) {
+            QName name = child.getName();
+            if (XMLSecurityConstants.TAG_xenc_EncryptionMethod.equals(name)) {
+                state = sequence(element, child, state, 1, false);
+                encryptedType.setEncryptionMethod(parseEncryptionMethod(child));
+            } else if (XMLSecurityConstants.TAG_dsig_KeyInfo.equals(name)) {
+                state = sequence(element, child, state, 2, false);
+                encryptedType.setKeyInfo(parseKeyInfo(child));
+            } else if (XMLSecurityConstants.TAG_xenc_CipherData.equals(name)) {
+                state = sequence(element, child, state, 3, false);
+                encryptedType.setCipherData(parseCipherData(child));
+            } else if (XMLSecurityConstants.TAG_xenc_EncryptionProperties.equals(name)) {
+                state = sequence(element, child, state, 4, false);
+                @SuppressWarnings("unchecked")
+                JAXBElement<EncryptionPropertiesType> encryptionProperties =
+                        (JAXBElement<EncryptionPropertiesType>) unmarshalWithJaxb();
+                encryptedType.setEncryptionProperties(encryptionProperties.getValue());
+            } else if (encryptedKeyType != null && XMLSecurityConstants.TAG_xenc_ReferenceList.equals(name)) {
+                state = sequence(element, child, state, 5, false);
+                encryptedKeyType.setReferenceList(parseReferenceList(child));
+            } else if (encryptedKeyType != null && TAG_xenc_CarriedKeyName.equals(name)) {
+                state = sequence(element, child, state, 6, false);
+                encryptedKeyType.setCarriedKeyName(parseStringElement(child));
+            } else {
+                unexpectedElement(element, child);
+            }
+        }
+        required(element, encryptedType.getCipherData(), XMLSecurityConstants.TAG_xenc_CipherData);
+    }
+
+    private EncryptionMethodType parseEncryptionMethod(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_Algorithm);
+        EncryptionMethodType encryptionMethodType = new EncryptionMethodType();
+        encryptionMethodType.setAlgorithm(requiredAttribute(element, XMLSecurityConstants.ATT_NULL_Algorithm));
+
+        List<Object> content = encryptionMethodType.getContent();
+        int state = 0;
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, content)) != null) {
+            QName name = child.getName();
+            if (TAG_xenc_KeySize.equals(name)) {
+                state = sequence(element, child, state, 1, false);
+                content.add(XENC_FACTORY.createEncryptionMethodTypeKeySize(parseIntegerElement(child)));
+            } else if (XMLSecurityConstants.TAG_xenc_OAEPparams.equals(name)) {
+                state = sequence(element, child, state, 2, false);
+                content.add(XENC_FACTORY.createEncryptionMethodTypeOAEPparams(parseBase64Element(child)));
+            } else {
+                state = sequence(element, child, state, 3, true);
+                addWildcard(element, child, content, XMLSecurityConstants.NS_XMLENC, true);
+            }
+        }
+        return encryptionMethodType;
+    }
+
+    private CipherDataType parseCipherData(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_NONE);
+        CipherDataType cipherDataType = new CipherDataType();
+
+        int state = 0;
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, null)) != null) {
+            QName name = child.getName();
+            if (XMLSecurityConstants.TAG_xenc_CipherValue.equals(name)) {
+                state = sequence(element, child, state, 1, false);
+                cipherDataType.setCipherValue(parseBase64Element(child));
+            } else if (XMLSecurityConstants.TAG_xenc_CipherReference.equals(name)) {
+                //CipherValue and CipherReference are a choice
+                state = sequence(element, child, state == 0 ? 0 : 2, 2, false);
+                cipherDataType.setCipherReference(parseCipherReference(child));
+            } else {
+                unexpectedElement(element, child);
+            }
+        }
+        if (state == 0) {
+            missingElement(element, XMLSecurityConstants.TAG_xenc_CipherValue);
+        }
+        return cipherDataType;
+    }
+
+    private CipherReferenceType parseCipherReference(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_URI);
+        CipherReferenceType cipherReferenceType = new CipherReferenceType();
+        cipherReferenceType.setURI(requiredAttribute(element, XMLSecurityConstants.ATT_NULL_URI));
+
+        int state = 0;
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, null)) != null) {
+            if (XMLSecurityConstants.TAG_xenc_Transforms.equals(child.getName())) {
+                state = sequence(element, child, state, 1, false);
+                checkAttributes(child, ATTS_NONE);
+                org.apache.xml.security.binding.xmlenc.TransformsType transformsType =
+                        new org.apache.xml.security.binding.xmlenc.TransformsType();
+                parseTransformList(child, transformsType.getTransform());
+                cipherReferenceType.setTransforms(transformsType);
+            } else {
+                unexpectedElement(element, child);
+            }
+        }
+        return cipherReferenceType;
+    }
+
+    private ReferenceList parseReferenceList(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_NONE);
+        ReferenceList referenceList = new ReferenceList();
+
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, null)) != null) {
+            QName name = child.getName();
+            if (XMLSecurityConstants.TAG_xenc_DataReference.equals(name)) {
+                referenceList.getDataReferenceOrKeyReference().add(
+                        XENC_FACTORY.createReferenceListDataReference(parseEncryptionReference(child)));
+            } else if (TAG_xenc_KeyReference.equals(name)) {
+                referenceList.getDataReferenceOrKeyReference().add(
+                        XENC_FACTORY.createReferenceListKeyReference(parseEncryptionReference(child)));
+            } else {
+                unexpectedElement(element, child);
+            }
+        }
+        required(element, referenceList.getDataReferenceOrKeyReference(), XMLSecurityConstants.TAG_xenc_DataReference);
+        return referenceList;
+    }
+
+    private org.apache.xml.security.binding.xmlenc.ReferenceType parseEncryptionReference(XMLSecStartElement element)
+            throws XMLSecurityException {
+        checkAttributes(element, ATTS_URI);
+        org.apache.xml.security.binding.xmlenc.ReferenceType referenceType =
+                new org.apache.xml.security.binding.xmlenc.ReferenceType();
+        referenceType.setURI(requiredAttribute(element, XMLSecurityConstants.ATT_NULL_URI));
+
+        List<Object> any = referenceType.getAny();
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, null)) != null) {
+            addWildcard(element, child, any, XMLSecurityConstants.NS_XMLENC, true);
+        }
+        return referenceType;
+    }
+
+    private MGFType parseMGF(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_Algorithm);
+        MGFType mgfType = new MGFType();
+        mgfType.setAlgorithm(requiredAttribute(element, XMLSecurityConstants.ATT_NULL_Algorithm));
+        parseEmptyElement(element);
+        return mgfType;
+    }
+
+    private InclusiveNamespaces parseInclusiveNamespaces(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_InclusiveNamespaces);
+        InclusiveNamespaces inclusiveNamespaces = new InclusiveNamespaces();
+        String prefixList = attribute(element, XMLSecurityConstants.ATT_NULL_PrefixList);
+        if (prefixList != null) {
+            //xs:list of NMTOKENs
+            for (String prefix : prefixList.split("[ \t\r\n]+")) {
+                if (!prefix.isEmpty()) {
+                    inclusiveNamespaces.getPrefixList().add(prefix);
+                }
+            }
+        }
+        parseEmptyElement(element);
+        return inclusiveNamespaces;
+    }
+
+    /**
+     * Handles an element matched by an xs:any wildcard.
+     *
+     * @param excludedNamespace the target namespace for ##other wildcards, null for ##any wildcards
+     * @param strict true if the wildcard uses processContents="strict"
+     */
+    private void addWildcard(XMLSecStartElement parent, XMLSecStartElement child, List<Object> content,
+                             String excludedNamespace, boolean strict) throws XMLSecurityException {
+        String namespace = child.getName().getNamespaceURI();
+        if (excludedNamespace != null && (excludedNamespace.equals(namespace) || namespace.isEmpty())) {
+            unexpectedElement(parent, child);
+            return;
+        }
+        Object object = parseGlobalElement(child);
+        if (object == null) {
+            if (validate && strict) {
+                unexpectedElement(parent, child);
+                return;
+            }
+            object = buildDOMElement(child);
+        }
+        content.add(object);
+    }
+
+    /**
+     * @param mixedContent the list which receives the character content of mixed types, null
+     *                     for element-only types.
+     * @return the next child element of the given parent or null when the parent's end element was consumed
+     */
+    private XMLSecStartElement nextChildElement(XMLSecStartElement parent, List<Object> mixedContent)
+            throws XMLSecurityException {
+        StringBuilder text = null;
+        while (position < xmlSecEvents.length) {
+            XMLSecEvent xmlSecEvent = xmlSecEvents[position++];
+            switch (xmlSecEvent.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    addText(mixedContent, text);
+                    return xmlSecEvent.asStartElement();
+                case XMLStreamConstants.END_ELEMENT:
+                    addText(mixedContent, text);
+                    return null;
+                default:
+                    String data = xmlSecEvent.asCharacters().getData();
+                    if (mixedContent != null) {
+                        if (text == null) {
+                            text = new StringBuilder(data.length());
+                        }
+                        text.append(data);
+                    } else if (validate && !isWhiteSpace(data)) {
+                        throw new XMLSecurityException("stax.structure.unexpectedText",
+                                new Object[] {parent.getName()});
+                    }
+                    break;
+            }
+        }
+        throw new XMLSecurityException("stax.unexpectedXMLEvent", new Object[] {"EndDocument"});
+    }
+
+    private static void addText(List<Object> mixedContent, StringBuilder text) {
+        if (mixedContent != null && text != null && text.length() > 0) {
+            mixedContent.add(text.toString());
+        }
+    }
+
+    /**
+     * Reads the text content of an element of a simple type and consumes its end element.
+     */
+    private String readText(XMLSecStartElement element) throws XMLSecurityException {
+        String text = null;
+        StringBuilder stringBuilder = null;
+        while (position < xmlSecEvents.length) {
+            XMLSecEvent xmlSecEvent = xmlSecEvents[position++];
+            switch (xmlSecEvent.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    unexpectedElement(element, xmlSecEvent.asStartElement());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (stringBuilder != null) {
+                        return stringBuilder.toString();
+                    }
+                    return text == null ? "" : text;
+                default:
+                    String data = xmlSecEvent.asCharacters().getData();
+                    if (text == null) {
+                        text = data;
+                    } else {
+                        if (stringBuilder == null) {
+                            stringBuilder = new StringBuilder(text);
+                        }
+                        stringBuilder.append(data);
+                    }
+                    break;
+            }
+        }
+        throw new XMLSecurityException("stax.unexpectedXMLEvent", new Object[] {"EndDocument"});
+    }
+
+    private String parseStringElement(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_NONE);
+        return readText(element);
+    }
+
+    private void parseEmptyElement(XMLSecStartElement element) throws XMLSecurityException {
+        XMLSecStartElement child;
+        while ((child = nextChildElement(element, null)) != null) {
+            unexpectedElement(element, child);
+        }
+    }
+
+    private byte[] parseBase64Element(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_NONE);
+        return parseBase64Content(element);
+    }
+
+    /**
+     * Reads the xs:base64Binary content of an element which may have attributes.
+     */
+    private byte[] parseBase64Content(XMLSecStartElement element) throws XMLSecurityException {
+        String text = readText(element);
+        if (!validate) {
+            return DatatypeConverter.parseBase64Binary(text);
+        }
+        byte[] decoded = decodeBase64(text);
+        if (decoded == null) {
+            throw new XMLSecurityException("stax.structure.invalidValue",
+                    new Object[] {"base64Binary", element.getName()});
+        }
+        return decoded;
+    }
+
+    private BigInteger parseIntegerElement(XMLSecStartElement element) throws XMLSecurityException {
+        checkAttributes(element, ATTS_NONE);
+        String text = readText(element).trim();
+        int start = text.startsWith("+") || text.startsWith("-") ? 1 : 0;
+        boolean valid = text.length() > start;
+        for (int i = start; i < text.length() && valid; i++) {
+            valid = text.charAt(i) >= '0' && text.charAt(i) <= '9';
+        }
+        if (!valid) {
+            if (validate) {
+                throw new XMLSecurityException("stax.structure.invalidValue",
+                        new Object[] {"integer", element.getName()});
+            }
+            return null;
+        }
+        return new BigInteger(text.charAt(0) == '+' ? text.substring(1) : text);
+    }
+
+    /**
+     * Decodes the lexical xs:base64Binary form. Other than the MIME decoder this one rejects
+     * illegal characters, wrong padding and non zero pad bits as the schema validator does.
+     *
+     * @return the decoded bytes or null if the value isn't a valid xs:base64Binary
+     */
+    private static byte[] decodeBase64(String text) {
+        char[] chars = new char[text.length()];
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                continue;
+            }
+            if (!(c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '+' || c == '/' || c == '=')) {
+                return null;
+            }
+            chars[length++] = c;
+        }
+        if (length % 4 != 0) {
+            return null;
+        }
+        if (length > 0 && chars[length - 1] == '=') {
+            //the pad bits of the last significant character must be zero
+            int pads = chars[length - 2] == '=' ? 2 : 1;
+            int lastValue = base64Value(chars[length - 1 - pads]);
+            if (lastValue < 0 || (pads == 2 ? lastValue & 0x0f : lastValue & 0x03) != 0) {
+                return null;
+            }
+        }
+        try {
+            return Base64.getDecoder().decode(new String(chars, 0, length));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int base64Value(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        } else if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 26;
+        } else if (c >= '0' && c <= '9') {
+            return c - '0' + 52;
+        } else if (c == '+') {
+            return 62;
+        } else if (c == '/') {
+            return 63;
+        }
+        return -1;
+    }
+
+    private static boolean isWhiteSpace(String data) {
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNCName(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean nameStartChar = Character.isLetter(c) || c == '_';
+            if (i == 0 && !nameStartChar
+                || i > 0 && !nameStartChar && !Character.isDigit(c) && c != '.' && c != '-'
+                    && c != '\u00B7' && Character.getType(c) != Character.NON_SPACING_MARK
+                    && Character.getType(c) != Character.COMBINING_SPACING_MARK
+                    && Character.getType(c) != Character.LETTER_NUMBER) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks the position of a child in a xs:sequence. Positions are numbered from 1 in schema order.
+     *
+     * @return the new state of the sequence
+     */
+    private int sequence(XMLSecStartElement parent, XMLSecStartElement child, int state, int childPosition,
+                         boolean repeatable) throws XMLSecurityException {
+        if (validate && (childPosition < state || childPosition == state && !repeatable)) {
+            throw new XMLSecurityException("stax.structure.unexpectedElement",
+                    new Object[] {child.getName(), parent.getName()});
+        }
+        return childPosition;
+    }
+
+    private void unexpectedElement(XMLSecStartElement parent, XMLSecStartElement child) throws XMLSecurityException {
+        if (validate) {
+            throw new XMLSecurityException("stax.structure.unexpectedElement",
+                    new Object[] {child.getName(), parent.getName()});
+        }
+        skipElement();
+    }
+
+    private void missingElement(XMLSecStartElement parent, QName missing) throws XMLSecurityException {
+        if (validate) {
+            throw new XMLSecurityException("stax.structure.missingElement",
+                    new Object[] {missing, parent.getName()});
+        }
+    }
+
+    private void required(XMLSecStartElement parent, Object value, QName name) throws XMLSecurityException {
+        if (value == null || value instanceof List && ((List<?>) value).isEmpty()) {
+            missingElement(parent, name);
+        }
+    }
+
+    private void checkAttributes(XMLSecStartElement element, QName[] declaredAttributes) throws XMLSecurityException {
+        if (!validate) {
+            return;
+        }
+        List<XMLSecAttribute> attributes = element.getOnElementDeclaredAttributes();
+        for (int i = 0; i < attributes.size(); i++) {
+            QName name = attributes.get(i).getName();
+            if (NS_XSI.equals(name.getNamespaceURI())) {
+                continue;
+            }
+            boolean declared = false;
+            for (QName declaredAttribute : declaredAttributes) {
+                if (declaredAttribute.equals(name)) {
+                    declared = true;
+                    break;
+                }
+            }
+            if (!declared) {
+                throw new XMLSecurityException("stax.structure.unexpectedAttribute",
+                        new Object[] {name, element.getName()});
+            }
+        }
+    }
+
+    private static String attribute(XMLSecStartElement element, QName name) {
+        Attribute attribute = element.getAttributeByName(name);
+        return attribute == null ? null : attribute.getValue();
+    }
+
+    private String requiredAttribute(XMLSecStartElement element, QName name) throws XMLSecurityException {
+        String value = attribute(element, name);
+        if (value == null && validate) {
+            throw new XMLSecurityException("stax.structure.missingAttribute",
+                    new Object[] {name, element.getName()});
+        }
+        return value;
+    }
+
+    private String parseId(XMLSecStartElement element) throws XMLSecurityException {
+        String id = attribute(element, XMLSecurityConstants.ATT_NULL_Id);
+        if (id == null) {
+            return null;
+        }
+        id = COLLAPSED_STRING_ADAPTER.unmarshal(id);
+        if (validate) {
+            if (!isNCName(id)) {
+                throw new XMLSecurityException("stax.structure.invalidValue",
+                        new Object[] {"ID", element.getName()});
+            }
+            if (ids == null) {
+                ids = new HashSet<>();
+            }
+            if (!ids.add(id)) {
+                throw new XMLSecurityException("stax.structure.duplicateId", new Object[] {id});
+            }
+        }
+        return id;
+    }
+
+    /**
+     * @param childName the child to look for, null to look for any child element
+     * @return true if the current element has the given child element. Does not change the position.
+     */
+    private boolean hasChildElement(QName childName) {
+        int depth = 0;
+        for (int i = position; i < xmlSecEvents.length; i++) {
+            XMLSecEvent xmlSecEvent = xmlSecEvents[i];
+            if (xmlSecEvent.getEventType() == XMLStreamConstants.START_ELEMENT) {
+                if (depth == 0 && (childName == null || childName.equals(xmlSecEvent.asStartElement().getName()))) {
+                    return true;
+                }
+                depth++;
+            } else if (xmlSecEvent.getEventType() == XMLStreamConstants.END_ELEMENT && depth-- == 0) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skips the content of the start element consumed last including its end element.
+     */
+    private void skipElement() {
+        int depth = 0;
+        while (position < xmlSecEvents.length) {
+            XMLSecEvent xmlSecEvent = xmlSecEvents[position++];
+            if (xmlSecEvent.getEventType() == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (xmlSecEvent.getEventType() == XMLStreamConstants.END_ELEMENT && depth-- == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Unmarshals the start element consumed last with JAXB.
+     */
+    private Object unmarshalWithJaxb() throws XMLSecurityException {
+        int start = position - 1;
+        skipElement();
+        Deque<XMLSecEvent> subStructure = new ArrayDeque<>(position - start);
+        for (int i = start; i < position; i++) {
+            subStructure.push(xmlSecEvents[i]);
+        }
+        return unmarshalWithJaxb(new XMLSecurityEventReader(subStructure, 0), !validate);
+    }
+
+    /**
+     * Builds a DOM element of the start element consumed last, like JAXB does for unknown
+     * elements matched by a lax wildcard. All namespaces in scope are declared on the element.
+     */
+    private Element buildDOMElement(XMLSecStartElement xmlSecStartElement) throws XMLSecurityException {
+        if (document == null) {
+            try {
+                DocumentBuilder documentBuilder = XMLUtils.createDocumentBuilder(false);
+                document = documentBuilder.newDocument();
+                XMLUtils.repoolDocumentBuilder(documentBuilder);
+            } catch (ParserConfigurationException e) {
+                throw new XMLSecurityException(e);
+            }
+        }
+
+        Element root = createDOMElement(xmlSecStartElement);
+        List<XMLSecNamespace> namespaces = new ArrayList<>();
+        xmlSecStartElement.getNamespacesFromCurrentScope(namespaces);
+        for (int i = 0; i < namespaces.size(); i++) {
+            declareNamespace(root, namespaces.get(i));
+        }
+
+        Node current = root;
+        while (current != null && position < xmlSecEvents.length) {
+            XMLSecEvent xmlSecEvent = xmlSecEvents[position++];
+            switch (xmlSecEvent.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    XMLSecStartElement startElement = xmlSecEvent.asStartElement();
+                    Element element = createDOMElement(startElement);
+                    List<XMLSecNamespace> declaredNamespaces = startElement.getOnElementDeclaredNamespaces();
+                    for (int i = 0; i < declaredNamespaces.size(); i++) {
+                        declareNamespace(element, declaredNamespaces.get(i));
+                    }
+                    current.appendChild(element);
+                    current = element;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    current = current == root ? null : current.getParentNode();
+                    break;
+                default:
+                    current.appendChild(document.createTextNode(xmlSecEvent.asCharacters().getData()));
+                    break;
+            }
+        }
+        return root;
+    }
+
+    private Element createDOMElement(XMLSecStartElement xmlSecStartElement) {
+        QName name = xmlSecStartElement.getName();
+        String namespace = name.getNamespaceURI();
+        Element element;
+        if (namespace == null || namespace.isEmpty()) {
+            element = document.createElementNS(null, name.getLocalPart());
+        } else if (name.getPrefix() == null || name.getPrefix().isEmpty()) {
+            element = document.createElementNS(namespace, name.getLocalPart());
+        } else {
+            element = document.createElementNS(namespace, name.getPrefix() + ":" + name.getLocalPart());
+        }
+        List<XMLSecAttribute> attributes = xmlSecStartElement.getOnElementDeclaredAttributes();
+        for (int i = 0; i < attributes.size(); i++) {
+            XMLSecAttribute attribute = attributes.get(i);
+            QName attributeName = attribute.getName();
+            String attributeNamespace = attributeName.getNamespaceURI();
+            if (attributeNamespace == null || attributeNamespace.isEmpty()) {
+                element.setAttributeNS(null, attributeName.getLocalPart(), attribute.getValue());
+            } else {
+                element.setAttributeNS(attributeNamespace,
+                        attributeName.getPrefix() + ":" + attributeName.getLocalPart(), attribute.getValue());
+            }
+        }
+        return element;
+    }
+
+    private static void declareNamespace(Element element, XMLSecNamespace xmlSecNamespace) {
+        String prefix = xmlSecNamespace.getPrefix();
+        String namespaceURI = xmlSecNamespace.getNamespaceURI();
+        if (prefix == null || prefix.isEmpty()) {
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, XMLConstants.XMLNS_ATTRIBUTE, namespaceURI);
+        } else if (!XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+                    XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix, namespaceURI);
+        }
+    }
+}
@@ -127,7 +127,9 @@ public class PKISignatureAlgorithm implements SignatureAlgorithm {
         try {
             byte[] jcebytes = signature;
             if (this.jceName.contains("ECDSA")) {
-                jcebytes = ECDSAUtils.convertXMLDSIGtoASN1(jcebytes);
+                byte[] asn1Bytes = new byte[ECDSAUtils.getMaxASN1Length(signature.length)];
+                int length = ECDSAUtils.convertXMLDSIGtoASN1(signature, 0, signature.length, asn1Bytes, 0);
+                return this.signature.verify(asn1Bytes, 0, length);
             } else if (this.jceName.contains("DSA")) {
                 jcebytes = JavaUtils.convertDsaXMLDSIGtoASN1(jcebytes, 20);
             }
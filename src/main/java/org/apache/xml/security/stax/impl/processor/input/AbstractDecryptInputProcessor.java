@@ -38,14 +38,12 @@ import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
 import org.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
 import org.apache.xml.security.stax.ext.stax.XMLSecNamespace;
 import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
-import org.apache.xml.security.stax.impl.XMLSecurityEventReader;
+import org.apache.xml.security.stax.impl.XMLSecurityEventBinder;
 import org.apache.xml.security.stax.securityToken.SecurityTokenFactory;
 import org.apache.xml.security.stax.impl.util.*;
 
 import javax.crypto.*;
 import javax.xml.bind.JAXBElement;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
@@ -225,6 +223,8 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
                 decryptionThread.setSecretKey(decryptionKey);
                 decryptionThread.setSymmetricCipher(symCipher);
                 decryptionThread.setIvLength(ivLength);
+                decryptionThread.setGcmSpoolingThreshold(getSecurityProperties().getGcmDecryptionSpoolingThreshold());
+                decryptionThread.setGcmSpoolingDirectory(getSecurityProperties().getGcmDecryptionSpoolingDirectory());
                 XMLSecStartElement parentXMLSecStartElement = xmlSecStartElement.getParentXMLSecStartElement();
                 if (encryptedHeader) {
                     parentXMLSecStartElement = parentXMLSecStartElement.getParentXMLSecStartElement();
@@ -473,17 +473,11 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
 
         EncryptedDataType encryptedDataType;
 
-        try {
-            Unmarshaller unmarshaller =
-                    XMLSecurityConstants.getJaxbUnmarshaller(getSecurityProperties().isDisableSchemaValidation());
-            @SuppressWarnings("unchecked")
-            JAXBElement<EncryptedDataType> encryptedDataTypeJAXBElement =
-                    (JAXBElement<EncryptedDataType>) unmarshaller.unmarshal(new XMLSecurityEventReader(xmlSecEvents, 0));
-            encryptedDataType = encryptedDataTypeJAXBElement.getValue();
-
-        } catch (JAXBException e) {
-            throw new XMLSecurityException(e);
-        }
+        @SuppressWarnings("unchecked")
+        JAXBElement<EncryptedDataType> encryptedDataTypeJAXBElement =
+                (JAXBElement<EncryptedDataType>) XMLSecurityEventBinder.unmarshal(
+                        xmlSecEvents, 0, getSecurityProperties().isDisableSchemaValidation());
+        encryptedDataType = encryptedDataTypeJAXBElement.getValue();
         return encryptedDataType;
     }
 
@@ -719,6 +713,8 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
         private Cipher symmetricCipher;
         private int ivLength;
         private Key secretKey;
+        private int gcmSpoolingThreshold = -1;
+        private File gcmSpoolingDirectory;
 
         protected DecryptionThread(InputProcessorChain inputProcessorChain,
                                    boolean header) throws XMLStreamException, XMLSecurityException {
@@ -752,71 +748,22 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
         public void run() {
 
             try {
-                final OutputStream outputStream;
-
                 final Cipher cipher = getSymmetricCipher();
-                if (cipher.getAlgorithm().toUpperCase().contains("GCM")) {
-                    //we have to buffer the whole data until they are authenticated.
-                    //In GCM mode the authentication tag is appended after the last cipher block...
-                    outputStream = new FullyBufferedOutputStream(pipedOutputStream);
+                final boolean gcm = cipher.getAlgorithm().toUpperCase().contains("GCM");
+                final OutputStream base64OutputStream;
+                if (gcm && getGcmSpoolingThreshold() >= 0
+                    && getIvLength() == GCMSpoolingDecryptOutputStream.IV_LENGTH) {
+                    //spool the ciphertext instead of buffering the plaintext. The plaintext is
+                    //decrypted and released after the authentication tag is verified
+                    base64OutputStream = new Base64OutputStream(
+                            new GCMSpoolingDecryptOutputStream(
+                                    pipedOutputStream, getSecretKey(), cipher.getProvider(),
+                                    getGcmSpoolingThreshold(), getGcmSpoolingDirectory()),
+                            false);
                 } else {
-                    outputStream = pipedOutputStream;
+                    base64OutputStream = createDecryptOutputStream(cipher, gcm);
                 }
-
-                final CipherOutputStream cipherOutputStream = new CipherOutputStream(outputStream, cipher) {
-                    //override close() to workaround a bug in oracle-jdk:
-                    //authentication failures when using AEAD ciphers are silently ignored...
-                    @Override
-                    public void close() throws IOException {
-                        super.flush();
-                        try {
-                            byte[] bytes = cipher.doFinal();
-                            outputStream.write(bytes);
-                            outputStream.close();
-                        } catch (IllegalBlockSizeException e) {
-                            throw new IOException(e);
-                        } catch (BadPaddingException e) {
-                            throw new IOException(e);
-                        }
-                    }
-                };
-                IVSplittingOutputStream ivSplittingOutputStream = new IVSplittingOutputStream(
-                        cipherOutputStream,
-                        cipher, getSecretKey(), getIvLength());
-                //buffering seems not to help
-                //bufferedOutputStream = new BufferedOutputStream(new Base64OutputStream(ivSplittingOutputStream, false), 8192 * 5);
-                ReplaceableOuputStream replaceableOuputStream = new ReplaceableOuputStream(ivSplittingOutputStream);
-                OutputStream base64OutputStream = new Base64OutputStream(replaceableOuputStream, false);
-                ivSplittingOutputStream.setParentOutputStream(replaceableOuputStream);
-                OutputStreamWriter outputStreamWriter =
-                        new OutputStreamWriter(base64OutputStream,
-                                               Charset.forName(inputProcessorChain.getDocumentContext().getEncoding()));
-
-                //read the encrypted data from the stream until an end-element occurs and write then
-                //to the decrypter-stream
-                exitLoop:
-                while (true) {
-                    XMLSecEvent xmlSecEvent = processNextEvent();
-
-                    switch (xmlSecEvent.getEventType()) {
-                        case XMLStreamConstants.END_ELEMENT:
-                            //this must be the CipherValue EndElement.
-                            break exitLoop;
-                        case XMLStreamConstants.CHARACTERS:
-                            final char[] data = xmlSecEvent.asCharacters().getText();
-                            outputStreamWriter.write(data);
-                            break;
-                        default:
-                            throw new XMLSecurityException(
-                                    "stax.unexpectedXMLEvent",
-                                    new Object[] {XMLSecurityUtils.getXMLEventAsString(xmlSecEvent)}
-                            );
-                    }
-                }
-
-                //close to get Cipher.doFinal() called
-                outputStreamWriter.close();
-                LOG.debug("Decryption thread finished");
+                decrypt(base64OutputStream);
 
             } catch (Exception e) {
                 try {
@@ -830,6 +777,77 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
             }
         }
 
+        private OutputStream createDecryptOutputStream(final Cipher cipher, boolean gcm) {
+            final OutputStream outputStream;
+            if (gcm) {
+                //we have to buffer the whole data until they are authenticated.
+                //In GCM mode the authentication tag is appended after the last cipher block...
+                outputStream = new FullyBufferedOutputStream(pipedOutputStream);
+            } else {
+                outputStream = pipedOutputStream;
+            }
+
+            final CipherOutputStream cipherOutputStream = new CipherOutputStream(outputStream, cipher) {
+                //override close() to workaround a bug in oracle-jdk:
+                //authentication failures when using AEAD ciphers are silently ignored...
+                @Override
+                public void close() throws IOException {
+                    super.flush();
+                    try {
+                        byte[] bytes = cipher.doFinal();
+                        outputStream.write(bytes);
+                        outputStream.close();
+                    } catch (IllegalBlockSizeException e) {
+                        throw new IOException(e);
+                    } catch (BadPaddingException e) {
+                        throw new IOException(e);
+                    }
+                }
+            };
+            IVSplittingOutputStream ivSplittingOutputStream = new IVSplittingOutputStream(
+                    cipherOutputStream,
+                    cipher, getSecretKey(), getIvLength());
+            //buffering seems not to help
+            //bufferedOutputStream = new BufferedOutputStream(new Base64OutputStream(ivSplittingOutputStream, false), 8192 * 5);
+            ReplaceableOuputStream replaceableOuputStream = new ReplaceableOuputStream(ivSplittingOutputStream);
+            OutputStream base64OutputStream = new Base64OutputStream(replaceableOuputStream, false);
+            ivSplittingOutputStream.setParentOutputStream(replaceableOuputStream);
+            return base64OutputStream;
+        }
+
+        private void decrypt(OutputStream base64OutputStream)
+                throws XMLSecurityException, XMLStreamException, IOException {
+            OutputStreamWriter outputStreamWriter =
+                    new OutputStreamWriter(base64OutputStream,
+                                           Charset.forName(inputProcessorChain.getDocumentContext().getEncoding()));
+
+            //read the encrypted data from the stream until an end-element occurs and write then
+            //to the decrypter-stream
+            exitLoop:
+            while (true) {
+                XMLSecEvent xmlSecEvent = processNextEvent();
+
+                switch (xmlSecEvent.getEventType()) {
+                    case XMLStreamConstants.END_ELEMENT:
+                        //this must be the CipherValue EndElement.
+                        break exitLoop;
+                    case XMLStreamConstants.CHARACTERS:
+                        final char[] data = xmlSecEvent.asCharacters().getText();
+                        outputStreamWriter.write(data);
+                        break;
+                    default:
+                        throw new XMLSecurityException(
+                                "stax.unexpectedXMLEvent",
+                                new Object[] {XMLSecurityUtils.getXMLEventAsString(xmlSecEvent)}
+                        );
+                }
+            }
+
+            //close to get Cipher.doFinal() called
+            outputStreamWriter.close();
+            LOG.debug("Decryption thread finished");
+        }
+
         protected Cipher getSymmetricCipher() {
             return symmetricCipher;
         }
@@ -853,5 +871,21 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
         protected void setSecretKey(Key secretKey) {
             this.secretKey = secretKey;
         }
+
+        protected int getGcmSpoolingThreshold() {
+            return gcmSpoolingThreshold;
+        }
+
+        protected void setGcmSpoolingThreshold(int gcmSpoolingThreshold) {
+            this.gcmSpoolingThreshold = gcmSpoolingThreshold;
+        }
+
+        protected File getGcmSpoolingDirectory() {
+            return gcmSpoolingDirectory;
+        }
+
+        protected void setGcmSpoolingDirectory(File gcmSpoolingDirectory) {
+            this.gcmSpoolingDirectory = gcmSpoolingDirectory;
+        }
     }
 }
@@ -18,12 +18,15 @@
  */
 package org.apache.xml.security.stax.impl.processor.input;
 
+import org.apache.xml.security.stax.impl.transformer.TransformXPath2Filter;
 import org.apache.xml.security.stax.impl.transformer.canonicalizer.Canonicalizer20010315_Excl;
 import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
+import org.apache.xml.security.utils.MultiOutputStream;
 import org.apache.xml.security.utils.UnsyncBufferedOutputStream;
 import org.apache.xml.security.utils.XMLUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
 import org.apache.xml.security.binding.excc14n.InclusiveNamespaces;
 import org.apache.xml.security.binding.xmldsig.ReferenceType;
 import org.apache.xml.security.binding.xmldsig.SignatureType;
@@ -42,6 +45,7 @@ import org.apache.xml.security.stax.impl.util.IDGenerator;
 import org.apache.xml.security.stax.impl.util.KeyValue;
 import org.apache.xml.security.stax.securityEvent.AlgorithmSuiteSecurityEvent;
 
+import javax.xml.bind.JAXBElement;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
@@ -73,6 +77,7 @@ public abstract class AbstractSignatureReferenceVerifyInputProcessor extends Abs
     private final List<KeyValue<ResourceResolver, ReferenceType>> sameDocumentReferences;
     private final List<KeyValue<ResourceResolver, ReferenceType>> externalReferences;
     private final List<ReferenceType> processedReferences;
+    private final boolean referenceSharingEnabled;
 
     public AbstractSignatureReferenceVerifyInputProcessor(
             InputProcessorChain inputProcessorChain,
@@ -91,6 +96,7 @@ public abstract class AbstractSignatureReferenceVerifyInputProcessor extends Abs
         sameDocumentReferences = new ArrayList<KeyValue<ResourceResolver, ReferenceType>>(referencesTypeList.size());
         externalReferences = new ArrayList<KeyValue<ResourceResolver, ReferenceType>>(referencesTypeList.size());
         processedReferences = new ArrayList<>(referencesTypeList.size());
+        referenceSharingEnabled = !isSingleReferenceVerifierOverridden();
 
         Iterator<ReferenceType> referenceTypeIterator = referencesTypeList.iterator();
         while (referenceTypeIterator.hasNext()) {
@@ -151,27 +157,32 @@ public abstract class AbstractSignatureReferenceVerifyInputProcessor extends Abs
                 XMLSecStartElement xmlSecStartElement = xmlSecEvent.asStartElement();
                 List<ReferenceType> referenceTypes = resolvesResource(xmlSecStartElement);
                 if (!referenceTypes.isEmpty()) {
-                    for (int i = 0; i < referenceTypes.size(); i++) {
-                        ReferenceType referenceType = referenceTypes.get(i);
-
-                        if (processedReferences.contains(referenceType)) {
-                            throw new XMLSecurityException("signature.Verification.MultipleIDs",
-                                                           new Object[] {referenceType.getURI()});
+                    List<List<ReferenceType>> sharedReferenceTypes = groupSharedReferences(referenceTypes);
+                    for (int i = 0; i < sharedReferenceTypes.size(); i++) {
+                        List<ReferenceType> group = sharedReferenceTypes.get(i);
+
+                        for (int j = 0; j < group.size(); j++) {
+                            if (processedReferences.contains(group.get(j))) {
+                                throw new XMLSecurityException("signature.Verification.MultipleIDs",
+                                                               new Object[] {group.get(j).getURI()});
+                            }
                         }
                         InternalSignatureReferenceVerifier internalSignatureReferenceVerifier =
                                 getSignatureReferenceVerifier(getSecurityProperties(), inputProcessorChain,
-                                        referenceType, xmlSecStartElement);
+                                        group, xmlSecStartElement);
                         if (!internalSignatureReferenceVerifier.isFinished()) {
                             internalSignatureReferenceVerifier.processEvent(xmlSecEvent, inputProcessorChain);
                             inputProcessorChain.addProcessor(internalSignatureReferenceVerifier);
                         }
-                        processedReferences.add(referenceType);
+                        processedReferences.addAll(group);
                         inputProcessorChain.getDocumentContext().setIsInSignedContent(
                                 inputProcessorChain.getProcessors().indexOf(internalSignatureReferenceVerifier),
                                 internalSignatureReferenceVerifier);
 
-                        processElementPath(internalSignatureReferenceVerifier.getStartElementPath(), inputProcessorChain,
-                                internalSignatureReferenceVerifier.getStartElement(), referenceType);
+                        for (int j = 0; j < group.size(); j++) {
+                            processElementPath(internalSignatureReferenceVerifier.getStartElementPath(), inputProcessorChain,
+                                    internalSignatureReferenceVerifier.getStartElement(), group.get(j));
+                        }
                     }
                 }
                 break;
@@ -255,6 +266,151 @@ public abstract class AbstractSignatureReferenceVerifyInputProcessor extends Abs
         return new InternalSignatureReferenceVerifier(securityProperties, inputProcessorChain, referenceType, startElement);
     }
 
+    /**
+     * Returns a verifier for References which digest the same transformed octets. The octets are
+     * calculated once and fed to the digests of all the References.
+     */
+    protected InternalSignatureReferenceVerifier getSignatureReferenceVerifier(
+            XMLSecurityProperties securityProperties, InputProcessorChain inputProcessorChain,
+            List<ReferenceType> referenceTypes, XMLSecStartElement startElement) throws XMLSecurityException {
+        if (referenceTypes.size() == 1) {
+            return getSignatureReferenceVerifier(securityProperties, inputProcessorChain, referenceTypes.get(0), startElement);
+        }
+        return new InternalSignatureReferenceVerifier(securityProperties, inputProcessorChain, referenceTypes, startElement);
+    }
+
+    /**
+     * Returns true if References with the same URI and equal Transforms may share one
+     * verifier. By default this is the case unless a subclass overrides
+     * {@link #getSignatureReferenceVerifier(XMLSecurityProperties, InputProcessorChain, ReferenceType,
+     * XMLSecStartElement)}, so that the verifiers of the subclass are always used.
+     */
+    protected boolean isReferenceSharingEnabled() {
+        return referenceSharingEnabled;
+    }
+
+    private boolean isSingleReferenceVerifierOverridden() {
+        for (Class<?> clazz = getClass(); clazz != AbstractSignatureReferenceVerifyInputProcessor.class;
+                clazz = clazz.getSuperclass()) {
+            try {
+                clazz.getDeclaredMethod("getSignatureReferenceVerifier", XMLSecurityProperties.class,
+                        InputProcessorChain.class, ReferenceType.class, XMLSecStartElement.class);
+                return true;
+            } catch (NoSuchMethodException ex) {
+                // not overridden at this level
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Groups the References resolved by the same element which have the same URI and equal
+     * Transforms, so that they can share one transformation pass. Every Reference is in a
+     * group of its own if {@link #isReferenceSharingEnabled()} returns false.
+     */
+    protected List<List<ReferenceType>> groupSharedReferences(List<ReferenceType> referenceTypes) {
+        List<List<ReferenceType>> groups = new ArrayList<>(referenceTypes.size());
+        for (int i = 0; i < referenceTypes.size(); i++) {
+            ReferenceType referenceType = referenceTypes.get(i);
+            List<ReferenceType> group = null;
+            if (isReferenceSharingEnabled() && isShareable(referenceType)) {
+                for (int j = 0; j < groups.size(); j++) {
+                    ReferenceType other = groups.get(j).get(0);
+                    if (referenceType.getURI().equals(other.getURI()) && isShareable(other)
+                            && sameTransforms(referenceType, other)) {
+                        group = groups.get(j);
+                        break;
+                    }
+                }
+            }
+            if (group == null) {
+                group = new ArrayList<>(1);
+                groups.add(group);
+            }
+            group.add(referenceType);
+        }
+        return groups;
+    }
+
+    private static boolean isShareable(ReferenceType referenceType) {
+        if (referenceType.getTransforms() == null) {
+            return true;
+        }
+        List<TransformType> transformTypes = referenceType.getTransforms().getTransform();
+        for (int i = 0; i < transformTypes.size(); i++) {
+            //here() depends on the location of the Transform
+            if (XMLSecurityConstants.NS_XMLDSIG_FILTER2.equals(transformTypes.get(i).getAlgorithm())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameTransforms(ReferenceType referenceType1, ReferenceType referenceType2) {
+        List<TransformType> transformTypes1 = referenceType1.getTransforms() != null
+                ? referenceType1.getTransforms().getTransform() : Collections.<TransformType>emptyList();
+        List<TransformType> transformTypes2 = referenceType2.getTransforms() != null
+                ? referenceType2.getTransforms().getTransform() : Collections.<TransformType>emptyList();
+        if (transformTypes1.size() != transformTypes2.size()) {
+            return false;
+        }
+        for (int i = 0; i < transformTypes1.size(); i++) {
+            TransformType transformType1 = transformTypes1.get(i);
+            TransformType transformType2 = transformTypes2.get(i);
+            if (!transformType1.getAlgorithm().equals(transformType2.getAlgorithm())
+                    || !sameContent(transformType1.getContent(), transformType2.getContent())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameContent(List<Object> content1, List<Object> content2) {
+        List<Object> nodes1 = withoutWhitespace(content1);
+        List<Object> nodes2 = withoutWhitespace(content2);
+        if (nodes1.size() != nodes2.size()) {
+            return false;
+        }
+        for (int i = 0; i < nodes1.size(); i++) {
+            Object object1 = nodes1.get(i);
+            Object object2 = nodes2.get(i);
+            if (object1 instanceof Element && object2 instanceof Element) {
+                if (!((Element) object1).isEqualNode((Element) object2)) {
+                    return false;
+                }
+            } else if (object1 instanceof JAXBElement && object2 instanceof JAXBElement) {
+                JAXBElement<?> jaxbElement1 = (JAXBElement<?>) object1;
+                JAXBElement<?> jaxbElement2 = (JAXBElement<?>) object2;
+                if (!jaxbElement1.getName().equals(jaxbElement2.getName())
+                        || !sameValue(jaxbElement1.getValue(), jaxbElement2.getValue())) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameValue(Object value1, Object value2) {
+        if (value1 instanceof InclusiveNamespaces && value2 instanceof InclusiveNamespaces) {
+            return ((InclusiveNamespaces) value1).getPrefixList().equals(
+                    ((InclusiveNamespaces) value2).getPrefixList());
+        }
+        return value1 instanceof String && value1.equals(value2);
+    }
+
+    private static List<Object> withoutWhitespace(List<Object> content) {
+        List<Object> nodes = new ArrayList<>(content.size());
+        for (int i = 0; i < content.size(); i++) {
+            Object object = content.get(i);
+            if (!(object instanceof String && ((String) object).trim().isEmpty())) {
+                nodes.add(object);
+            }
+        }
+        return nodes;
+    }
+
     protected void verifyExternalReference(InputProcessorChain inputProcessorChain, InputStream inputStream,
                                          ReferenceType referenceType) throws XMLSecurityException, XMLStreamException {
 
@@ -338,6 +494,12 @@ public abstract class AbstractSignatureReferenceVerifyInputProcessor extends Abs
             TransformType transformType = new TransformType();
             transformType.setAlgorithm(XMLSecurityConstants.NS_C14N_OMIT_COMMENTS);
             transformTypeList.add(transformType);
+        } else if (XMLSecurityConstants.NS_XMLDSIG_FILTER2.equals(
+                transformTypeList.get(transformTypeList.size() - 1).getAlgorithm())) {
+            //the node-set of the filter must be canonicalized like in the DOM implementation
+            TransformType transformType = new TransformType();
+            transformType.setAlgorithm(XMLSecurityConstants.NS_C14N_OMIT_COMMENTS);
+            transformTypeList.add(transformType);
         }
 
         if (transformTypeList.size() > maximumAllowedTransformsPerReference) {
@@ -369,6 +531,10 @@ public abstract class AbstractSignatureReferenceVerifyInputProcessor extends Abs
                         Canonicalizer20010315_Excl.INCLUSIVE_NAMESPACES_PREFIX_LIST,
                         inclusiveNamespacesType.getPrefixList());
             }
+            if (XMLSecurityConstants.NS_XMLDSIG_FILTER2.equals(algorithm)) {
+                transformerProperties = new HashMap<>();
+                transformerProperties.put(TransformXPath2Filter.XPATH_FILTERS, getXPathFilters(transformType));
+            }
 
             if (parentTransformer != null) {
                 parentTransformer = XMLSecurityUtils.getTransformer(
@@ -382,6 +548,22 @@ public abstract class AbstractSignatureReferenceVerifyInputProcessor extends Abs
         return parentTransformer;
     }
 
+    private static List<Element> getXPathFilters(TransformType transformType) {
+        List<Element> xpathFilters = new ArrayList<>();
+        List<Object> content = transformType.getContent();
+        for (int i = 0; i < content.size(); i++) {
+            Object object = content.get(i);
+            if (object instanceof Element) {
+                Element element = (Element) object;
+                if (XMLSecurityConstants.NS_XMLDSIG_FILTER2.equals(element.getNamespaceURI())
+                        && "XPath".equals(element.getLocalName())) {
+                    xpathFilters.add(element);
+                }
+            }
+        }
+        return xpathFilters;
+    }
+
     protected void compareDigest(byte[] calculatedDigest, ReferenceType referenceType) throws XMLSecurityException {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Calculated Digest: {}", XMLUtils.encodeToString(calculatedDigest));
@@ -397,6 +579,7 @@ public abstract class AbstractSignatureReferenceVerifyInputProcessor extends Abs
 
     public class InternalSignatureReferenceVerifier extends AbstractInputProcessor {
         private ReferenceType referenceType;
+        private List<KeyValue<ReferenceType, DigestOutputStream>> sharedReferences = Collections.emptyList();
         private Transformer transformer;
         private DigestOutputStream digestOutputStream;
         private OutputStream bufferedDigestOutputStream;
@@ -417,6 +600,41 @@ public abstract class AbstractSignatureReferenceVerifyInputProcessor extends Abs
             this.transformer = buildTransformerChain(referenceType, bufferedDigestOutputStream, inputProcessorChain);
         }
 
+        /**
+         * Creates a verifier for References with the same URI and equal Transforms but different
+         * DigestMethods. The Transforms of the first Reference are applied and their output is
+         * fed to the digests of all the References.
+         */
+        public InternalSignatureReferenceVerifier(
+                XMLSecurityProperties securityProperties, InputProcessorChain inputProcessorChain,
+                List<ReferenceType> referenceTypes, XMLSecStartElement startElement) throws XMLSecurityException {
+
+            super(securityProperties);
+            this.setStartElement(startElement);
+            this.setReferenceType(referenceTypes.get(0));
+            this.digestOutputStream =
+                    createMessageDigestOutputStream(referenceTypes.get(0), inputProcessorChain.getSecurityContext());
+            OutputStream[] digestOutputStreams = new OutputStream[referenceTypes.size()];
+            digestOutputStreams[0] = this.digestOutputStream;
+            this.sharedReferences = new ArrayList<>(referenceTypes.size() - 1);
+            for (int i = 1; i < referenceTypes.size(); i++) {
+                DigestOutputStream sharedDigestOutputStream =
+                        createMessageDigestOutputStream(referenceTypes.get(i), inputProcessorChain.getSecurityContext());
+                this.sharedReferences.add(
+                        new KeyValue<ReferenceType, DigestOutputStream>(referenceTypes.get(i), sharedDigestOutputStream));
+                digestOutputStreams[i] = sharedDigestOutputStream;
+            }
+            this.bufferedDigestOutputStream =
+                    new UnsyncBufferedOutputStream(new MultiOutputStream(digestOutputStreams));
+            this.transformer = buildTransformerChain(getReferenceType(), bufferedDigestOutputStream, inputProcessorChain);
+            // The chains of the other References are built too, so that their transforms are
+            // checked and their security events are registered like for a single Reference.
+            // Only the chain of the first Reference is used.
+            for (int i = 1; i < referenceTypes.size(); i++) {
+                buildTransformerChain(referenceTypes.get(i), new ByteArrayOutputStream(), inputProcessorChain);
+            }
+        }
+
         public Transformer buildTransformerChain(ReferenceType referenceType, OutputStream outputStream, InputProcessorChain inputProcessorChain)
                 throws XMLSecurityException {
             return AbstractSignatureReferenceVerifyInputProcessor.this.buildTransformerChain(
@@ -458,6 +676,10 @@ public abstract class AbstractSignatureReferenceVerifyInputProcessor extends Abs
                         }
 
                         compareDigest(this.getDigestOutputStream().getDigestValue(), getReferenceType());
+                        for (int i = 0; i < sharedReferences.size(); i++) {
+                            KeyValue<ReferenceType, DigestOutputStream> sharedReference = sharedReferences.get(i);
+                            compareDigest(sharedReference.getValue().getDigestValue(), sharedReference.getKey());
+                        }
 
                         inputProcessorChain.removeProcessor(this);
                         inputProcessorChain.getDocumentContext().unsetIsInSignedContent(this);
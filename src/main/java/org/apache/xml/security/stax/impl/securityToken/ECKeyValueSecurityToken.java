@@ -25,7 +25,6 @@ import org.apache.xml.security.stax.ext.InboundSecurityContext;
 import org.apache.xml.security.stax.impl.util.IDGenerator;
 import org.apache.xml.security.stax.securityToken.SecurityTokenConstants;
 
-import java.math.BigInteger;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
@@ -58,32 +57,12 @@ public class ECKeyValueSecurityToken extends AbstractInboundSecurityToken {
             oid = oid.substring(8);
         }
         ECDSAUtils.ECCurveDefinition ecCurveDefinition = ECDSAUtils.getECCurveDefinition(oid);
-        if (ecCurveDefinition == null) {
+        if (ecCurveDefinition == null || ecCurveDefinition.getECParameterSpec() == null) {
             throw new XMLSecurityException("stax.unsupportedKeyValue");
         }
-        final EllipticCurve curve = new EllipticCurve(
-                new ECFieldFp(
-                        new BigInteger(ecCurveDefinition.getField(), 16)
-                ),
-                new BigInteger(ecCurveDefinition.getA(), 16),
-                new BigInteger(ecCurveDefinition.getB(), 16)
-        );
-        ECPoint ecPointG = ECDSAUtils.decodePoint(ecKeyValueType.getPublicKey(), curve);
-        ECPublicKeySpec ecPublicKeySpec = new ECPublicKeySpec(
-                new ECPoint(
-                        ecPointG.getAffineX(),
-                        ecPointG.getAffineY()
-                ),
-                new ECParameterSpec(
-                        curve,
-                        new ECPoint(
-                                new BigInteger(ecCurveDefinition.getX(), 16),
-                                new BigInteger(ecCurveDefinition.getY(), 16)
-                        ),
-                        new BigInteger(ecCurveDefinition.getN(), 16),
-                        ecCurveDefinition.getH()
-                )
-        );
+        ECParameterSpec ecParameterSpec = ecCurveDefinition.getECParameterSpec();
+        ECPoint ecPointG = ECDSAUtils.decodePoint(ecKeyValueType.getPublicKey(), ecParameterSpec.getCurve());
+        ECPublicKeySpec ecPublicKeySpec = new ECPublicKeySpec(ecPointG, ecParameterSpec);
         KeyFactory keyFactory = KeyFactory.getInstance("EC");
         return keyFactory.generatePublic(ecPublicKeySpec);
     }
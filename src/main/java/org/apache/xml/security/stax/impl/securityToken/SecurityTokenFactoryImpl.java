@@ -21,6 +21,8 @@ package org.apache.xml.security.stax.impl.securityToken;
 import org.apache.xml.security.binding.xmldsig.*;
 import org.apache.xml.security.binding.xmldsig11.ECKeyValueType;
 import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.keys.ResolvedKeyCache;
+import org.apache.xml.security.keys.content.x509.X509CertificateCache;
 import org.apache.xml.security.stax.ext.*;
 import org.apache.xml.security.stax.impl.util.IDGenerator;
 import org.apache.xml.security.stax.securityToken.SecurityTokenConstants.TokenType;
@@ -28,14 +30,11 @@ import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
 import org.apache.xml.security.stax.securityToken.SecurityTokenConstants;
 import org.apache.xml.security.stax.securityToken.SecurityTokenFactory;
 import org.apache.xml.security.utils.RFC2253Parser;
-import org.apache.xml.security.utils.UnsyncByteArrayInputStream;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.security.PublicKey;
 import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.Map;
 
@@ -138,6 +137,8 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
         if (rsaKeyValueType != null) {
             RsaKeyValueSecurityToken token =
                 new RsaKeyValueSecurityToken(rsaKeyValueType, inboundSecurityContext);
+            setCachedPublicKey(securityProperties, token, XMLSecurityConstants.TAG_dsig_RSAKeyValue.getLocalPart(),
+                    rsaKeyValueType.getModulus(), rsaKeyValueType.getExponent());
             setTokenKey(securityProperties, keyUsage, token);
             return token;
         }
@@ -146,6 +147,8 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
         if (dsaKeyValueType != null) {
             DsaKeyValueSecurityToken token =
                     new DsaKeyValueSecurityToken(dsaKeyValueType, inboundSecurityContext);
+            setCachedPublicKey(securityProperties, token, XMLSecurityConstants.TAG_dsig_DSAKeyValue.getLocalPart(),
+                    dsaKeyValueType.getP(), dsaKeyValueType.getQ(), dsaKeyValueType.getG(), dsaKeyValueType.getY());
             setTokenKey(securityProperties, keyUsage, token);
             return token;
         }
@@ -154,6 +157,9 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
         if (ecKeyValueType != null) {
             ECKeyValueSecurityToken token =
                     new ECKeyValueSecurityToken(ecKeyValueType, inboundSecurityContext);
+            setCachedPublicKey(securityProperties, token, XMLSecurityConstants.TAG_dsig11_ECKeyValue.getLocalPart(),
+                    ecKeyValueType.getNamedCurve().getURI().getBytes(StandardCharsets.UTF_8),
+                    ecKeyValueType.getPublicKey());
             setTokenKey(securityProperties, keyUsage, token);
             return token;
         }
@@ -260,6 +266,26 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
         throw new XMLSecurityException("stax.noKey", new Object[] {keyUsage});
     }
 
+    /**
+     * Takes the public key of a KeyValue token from the ResolvedKeyCache of the properties,
+     * or builds it and adds it to the cache.
+     */
+    private static void setCachedPublicKey(XMLSecurityProperties securityProperties,
+                                           AbstractInboundSecurityToken token,
+                                           String keyType, byte[]... values) throws XMLSecurityException {
+        ResolvedKeyCache resolvedKeyCache = securityProperties.getResolvedKeyCache();
+        if (resolvedKeyCache == null) {
+            return;
+        }
+        byte[] identifier = ResolvedKeyCache.getIdentifier(keyType, values);
+        PublicKey publicKey = resolvedKeyCache.getPublicKey(identifier);
+        if (publicKey != null) {
+            token.setPublicKey(publicKey);
+        } else {
+            resolvedKeyCache.put(identifier, token.getPublicKey());
+        }
+    }
+
     private static void setTokenKey(XMLSecurityProperties securityProperties, SecurityTokenConstants.KeyUsage keyUsage,
                                     AbstractInboundSecurityToken token) {
         Key key = null;
@@ -286,10 +312,9 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
      */
     private static X509Certificate getCertificateFromBytes(byte[] data)
             throws XMLSecurityException {
-        try (InputStream in = new UnsyncByteArrayInputStream(data)) {
-            CertificateFactory factory = CertificateFactory.getInstance("X.509");
-            return (X509Certificate) factory.generateCertificate(in);
-        } catch (CertificateException | IOException e) {
+        try {
+            return X509CertificateCache.getCertificate(data);
+        } catch (CertificateException e) {
             throw new XMLSecurityException(e);
         }
     }
@@ -24,7 +24,6 @@ import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.stax.ext.XMLSecurityConstants;
 import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
 import org.apache.xml.security.stax.impl.processor.input.XMLEventReaderInputProcessor;
-import org.apache.xml.security.utils.UnsyncByteArrayInputStream;
 import org.apache.xml.security.utils.UnsyncByteArrayOutputStream;
 
 import javax.xml.stream.XMLStreamConstants;
@@ -111,7 +110,7 @@ public class TransformBase64Decode extends TransformIdentity {
                                             throw new XMLStreamException(e);
                                         }
 
-                                        try (InputStream is = new UnsyncByteArrayInputStream(byteArrayOutputStream.toByteArray())) {
+                                        try (InputStream is = byteArrayOutputStream.toInputStream()) {
                                             XMLEventReaderInputProcessor xmlEventReaderInputProcessor
                                                 = new XMLEventReaderInputProcessor(null,
                                                                                    getXmlInputFactory().createXMLStreamReader(is)
@@ -155,7 +154,7 @@ public class TransformBase64Decode extends TransformIdentity {
                                         } catch (IOException e) {
                                             throw new XMLStreamException(e);
                                         }
-                                        try (InputStream is = new UnsyncByteArrayInputStream(byteArrayOutputStream.toByteArray())) {
+                                        try (InputStream is = byteArrayOutputStream.toInputStream()) {
                                             getTransformer().transform(is);
                                             getTransformer().doFinal();
                                         } catch (IOException ex) {
@@ -24,7 +24,6 @@ import org.apache.xml.security.stax.ext.XMLSecurityConstants;
 import org.apache.xml.security.stax.ext.XMLSecurityUtils;
 import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
 import org.apache.xml.security.stax.impl.processor.input.XMLEventReaderInputProcessor;
-import org.apache.xml.security.utils.UnsyncByteArrayInputStream;
 import org.apache.xml.security.utils.UnsyncByteArrayOutputStream;
 
 import javax.xml.stream.*;
@@ -158,7 +157,7 @@ public class TransformIdentity implements Transformer {
                             @Override
                             public void doFinal() throws XMLStreamException {
                                 xmlEventWriter.close();
-                                try (InputStream is = new UnsyncByteArrayInputStream(baos.toByteArray())) {
+                                try (InputStream is = baos.toInputStream()) {
                                     getTransformer().transform(is);
                                     getTransformer().doFinal();
                                 } catch (IOException ex) {
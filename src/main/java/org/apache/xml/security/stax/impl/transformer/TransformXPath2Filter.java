@@ -0,0 +1,447 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.stax.impl.transformer;
+
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.apache.xml.security.stax.ext.stax.XMLSecAttribute;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecNamespace;
+import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import org.apache.xml.security.stax.impl.processor.input.XMLEventReaderInputProcessor;
+import org.apache.xml.security.stax.impl.stax.XMLSecStartElementImpl;
+import org.w3c.dom.Element;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming implementation of a subset of the XPath Filter 2.0 transform
+ * (http://www.w3.org/2002/06/xmldsig-filter2).
+ * <p>
+ * The supported XPath expressions are unions ("|") of
+ * <ul>
+ * <li>"/", which selects the whole document</li>
+ * <li>absolute location paths of child ("/") and descendant ("//") steps. A step is a name test
+ * ("*", "prefix:*" or a QName), optionally followed by one attribute predicate ("[@attr]" or
+ * "[@attr='value']")</li>
+ * </ul>
+ * Other expressions are rejected when the transform is set up, in particular positional
+ * predicates like "[1]" and the here() function, which can't be decided on the event stream.
+ * References which use them must be verified with the DOM API.
+ * <p>
+ * The node-set is computed like in the DOM implementation: a node is included if it is not in a
+ * subtracted subtree and, when there are intersect filters, it is in an intersected subtree; or
+ * if it is in a subtree of a union filter. An element whose parent is excluded gets the
+ * namespaces in scope declared, so that the following canonicalizer renders them.
+ */
+public class TransformXPath2Filter extends TransformIdentity {
+
+    /** The property with the list of dsig-xpath:XPath elements of the transform */
+    public static final String XPATH_FILTERS = "xpathFilters";
+
+    private static final int SUBTRACT = 1;
+    private static final int INTERSECT = 2;
+    private static final int UNION = 4;
+
+    private final List<Path> paths = new ArrayList<>();
+    private int filterTypes;
+    private int documentFlags;
+
+    /** the flags of the open elements */
+    private int[] flagsStack = new int[16];
+    private int depth;
+
+    @Override
+    public void setProperties(Map<String, Object> properties) throws XMLSecurityException {
+        @SuppressWarnings("unchecked")
+        List<Element> xpathElements = (List<Element>) properties.get(XPATH_FILTERS);
+        if (xpathElements == null || xpathElements.isEmpty()) {
+            throw new XMLSecurityException("xml.WrongContent",
+                    new Object[] {XMLSecurityConstants.NS_XMLDSIG_FILTER2, "XPath"});
+        }
+        for (int i = 0; i < xpathElements.size(); i++) {
+            Element xpathElement = xpathElements.get(i);
+            int type;
+            String filter = xpathElement.getAttributeNS(null, "Filter");
+            if ("subtract".equals(filter)) {
+                type = SUBTRACT;
+            } else if ("intersect".equals(filter)) {
+                type = INTERSECT;
+            } else if ("union".equals(filter)) {
+                type = UNION;
+            } else {
+                throw new XMLSecurityException("attributeValueIllegal",
+                        new Object[] {"Filter", filter, "intersect, subtract or union"});
+            }
+            filterTypes |= type;
+            parseExpression(xpathElement.getTextContent(), xpathElement, type);
+        }
+    }
+
+    @Override
+    public XMLSecurityConstants.TransformMethod getPreferredTransformMethod(XMLSecurityConstants.TransformMethod forInput) {
+        switch (forInput) {
+            case XMLSecEvent:
+                return XMLSecurityConstants.TransformMethod.XMLSecEvent;
+            case InputStream:
+                return XMLSecurityConstants.TransformMethod.XMLSecEvent;
+            default:
+                throw new IllegalArgumentException("Unsupported class " + forInput.name());
+        }
+    }
+
+    @Override
+    public void transform(XMLSecEvent xmlSecEvent) throws XMLStreamException {
+        switch (xmlSecEvent.getEventType()) {
+            case XMLStreamConstants.START_ELEMENT: {
+                XMLSecStartElement xmlSecStartElement = xmlSecEvent.asStartElement();
+                XMLSecStartElement parent = xmlSecStartElement.getParentXMLSecStartElement();
+                int parentFlags = depth > 0 ? flagsStack[depth - 1] : getFlags(parent);
+                int flags = parentFlags | getMatchingFilters(xmlSecStartElement);
+                if (depth == flagsStack.length) {
+                    flagsStack = Arrays.copyOf(flagsStack, depth * 2);
+                }
+                flagsStack[depth++] = flags;
+                if (isIncluded(flags)) {
+                    if (parent != null && !isIncluded(parentFlags)) {
+                        xmlSecStartElement = declareNamespacesInScope(xmlSecStartElement);
+                    }
+                    super.transform(xmlSecStartElement);
+                }
+                return;
+            }
+            case XMLStreamConstants.END_ELEMENT: {
+                int flags = depth > 0 ? flagsStack[--depth] : getFlags(xmlSecEvent.getParentXMLSecStartElement());
+                if (isIncluded(flags)) {
+                    super.transform(xmlSecEvent);
+                }
+                return;
+            }
+            case XMLStreamConstants.START_DOCUMENT:
+            case XMLStreamConstants.END_DOCUMENT:
+                super.transform(xmlSecEvent);
+                return;
+            default: {
+                int flags = depth > 0 ? flagsStack[depth - 1] : getFlags(xmlSecEvent.getParentXMLSecStartElement());
+                if (isIncluded(flags)) {
+                    super.transform(xmlSecEvent);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void transform(InputStream inputStream) throws XMLStreamException {
+        XMLEventReaderInputProcessor xmlEventReaderInputProcessor =
+                new XMLEventReaderInputProcessor(null, getXmlInputFactory().createXMLStreamReader(inputStream));
+
+        try {
+            XMLSecEvent xmlSecEvent;
+            do {
+                xmlSecEvent = xmlEventReaderInputProcessor.processNextEvent(null);
+                this.transform(xmlSecEvent);
+            } while (xmlSecEvent.getEventType() != XMLStreamConstants.END_DOCUMENT);
+        } catch (XMLSecurityException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    private boolean isIncluded(int flags) {
+        if ((flags & UNION) != 0) {
+            return true;
+        }
+        return (flags & SUBTRACT) == 0 && ((filterTypes & INTERSECT) == 0 || (flags & INTERSECT) != 0);
+    }
+
+    /**
+     * Returns the filters which select the given element or one of its ancestors.
+     */
+    private int getFlags(XMLSecStartElement xmlSecStartElement) {
+        if (xmlSecStartElement == null) {
+            return documentFlags;
+        }
+        return getFlags(xmlSecStartElement.getParentXMLSecStartElement()) | getMatchingFilters(xmlSecStartElement);
+    }
+
+    private int getMatchingFilters(XMLSecStartElement xmlSecStartElement) {
+        int flags = 0;
+        for (int i = 0; i < paths.size(); i++) {
+            Path path = paths.get(i);
+            if ((flags & path.type) == 0 && path.matches(path.steps.length - 1, xmlSecStartElement)) {
+                flags |= path.type;
+            }
+        }
+        return flags;
+    }
+
+    private static XMLSecStartElement declareNamespacesInScope(XMLSecStartElement xmlSecStartElement) {
+        List<XMLSecNamespace> namespacesInScope = new ArrayList<>();
+        xmlSecStartElement.getNamespacesFromCurrentScope(namespacesInScope);
+        Map<String, XMLSecNamespace> namespaces = new LinkedHashMap<>();
+        for (int i = 0; i < namespacesInScope.size(); i++) {
+            XMLSecNamespace xmlSecNamespace = namespacesInScope.get(i);
+            namespaces.put(xmlSecNamespace.getPrefix(), xmlSecNamespace);
+        }
+        return new XMLSecStartElementImpl(xmlSecStartElement.getName(),
+                xmlSecStartElement.getOnElementDeclaredAttributes(), new ArrayList<>(namespaces.values()),
+                xmlSecStartElement.getParentXMLSecStartElement());
+    }
+
+    private void parseExpression(String expression, Element xpathElement, int type) throws XMLSecurityException {
+        String xpath = removeWhitespace(expression);
+        int start = 0;
+        int end;
+        while ((end = indexOfOutsideLiterals(xpath, '|', start)) >= 0) {
+            parsePath(xpath.substring(start, end), expression, xpathElement, type);
+            start = end + 1;
+        }
+        parsePath(xpath.substring(start), expression, xpathElement, type);
+    }
+
+    private static int indexOfOutsideLiterals(String xpath, char ch, int fromIndex) {
+        int quote = 0;
+        for (int i = fromIndex; i < xpath.length(); i++) {
+            char c = xpath.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == ch) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void parsePath(String path, String expression, Element xpathElement, int type) throws XMLSecurityException {
+        if ("/".equals(path)) {
+            documentFlags |= type;
+            return;
+        }
+        if (!path.startsWith("/")) {
+            throw unsupported(expression);
+        }
+
+        List<Step> steps = new ArrayList<>();
+        int i = 0;
+        while (i < path.length()) {
+            if (path.charAt(i) != '/') {
+                throw unsupported(expression);
+            }
+            boolean descendant = path.startsWith("//", i);
+            i += descendant ? 2 : 1;
+            int end = i;
+            while (end < path.length() && path.charAt(end) != '/' && path.charAt(end) != '[') {
+                end++;
+            }
+            Step step = new Step(descendant);
+            parseNameTest(step, path.substring(i, end), expression, xpathElement);
+            i = end;
+            if (i < path.length() && path.charAt(i) == '[') {
+                end = indexOfOutsideLiterals(path, ']', i + 1);
+                if (end < 0) {
+                    throw unsupported(expression);
+                }
+                parsePredicate(step, path.substring(i + 1, end), expression, xpathElement);
+                i = end + 1;
+            }
+            steps.add(step);
+        }
+        paths.add(new Path(type, steps.toArray(new Step[steps.size()])));
+    }
+
+    private static void parseNameTest(Step step, String nameTest, String expression, Element xpathElement)
+            throws XMLSecurityException {
+        if ("*".equals(nameTest)) {
+            return;
+        }
+        int colon = nameTest.indexOf(':');
+        String localName = colon < 0 ? nameTest : nameTest.substring(colon + 1);
+        if (colon >= 0) {
+            step.namespaceURI = lookupNamespaceURI(nameTest.substring(0, colon), expression, xpathElement);
+        } else {
+            step.namespaceURI = XMLConstants.NULL_NS_URI;
+        }
+        if (!"*".equals(localName)) {
+            if (!isNCName(localName)) {
+                throw unsupported(expression);
+            }
+            step.localName = localName;
+        }
+    }
+
+    private static void parsePredicate(Step step, String predicate, String expression, Element xpathElement)
+            throws XMLSecurityException {
+        if (predicate.isEmpty() || predicate.charAt(0) != '@') {
+            throw unsupported(expression);
+        }
+        int equals = predicate.indexOf('=');
+        String qname = predicate.substring(1, equals < 0 ? predicate.length() : equals);
+        int colon = qname.indexOf(':');
+        step.attributeNamespaceURI = colon < 0 ? XMLConstants.NULL_NS_URI
+                : lookupNamespaceURI(qname.substring(0, colon), expression, xpathElement);
+        step.attributeLocalName = qname.substring(colon + 1);
+        if (!isNCName(step.attributeLocalName)) {
+            throw unsupported(expression);
+        }
+        if (equals >= 0) {
+            String literal = predicate.substring(equals + 1);
+            if (literal.length() < 2 || literal.charAt(0) != literal.charAt(literal.length() - 1)
+                    || literal.charAt(0) != '\'' && literal.charAt(0) != '"') {
+                throw unsupported(expression);
+            }
+            step.attributeValue = literal.substring(1, literal.length() - 1);
+        }
+    }
+
+    private static String lookupNamespaceURI(String prefix, String expression, Element xpathElement)
+            throws XMLSecurityException {
+        if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+            return XMLConstants.XML_NS_URI;
+        }
+        String namespaceURI = xpathElement.lookupNamespaceURI(prefix);
+        if (namespaceURI == null || !isNCName(prefix)) {
+            throw unsupported(expression);
+        }
+        return namespaceURI;
+    }
+
+    private static boolean isNCName(String name) {
+        if (name.isEmpty() || !Character.isLetter(name.charAt(0)) && name.charAt(0) != '_') {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the whitespace outside of literals, it is insignificant in the supported expressions.
+     */
+    private static String removeWhitespace(String expression) {
+        StringBuilder sb = new StringBuilder(expression.length());
+        int quote = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (Character.isWhitespace(c)) {
+                continue;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static XMLSecurityException unsupported(String expression) {
+        return new XMLSecurityException("stax.unsupportedXPathFilter", new Object[] {expression});
+    }
+
+    private static final class Step {
+
+        private final boolean descendant;
+        /** null matches any namespace */
+        private String namespaceURI;
+        /** null matches any local name */
+        private String localName;
+        /** the attribute of the predicate, null if there is none */
+        private String attributeLocalName;
+        private String attributeNamespaceURI;
+        /** the value of the predicate, null if only the presence of the attribute is tested */
+        private String attributeValue;
+
+        Step(boolean descendant) {
+            this.descendant = descendant;
+        }
+
+        boolean matches(XMLSecStartElement xmlSecStartElement) {
+            if (localName != null && !localName.equals(xmlSecStartElement.getName().getLocalPart())) {
+                return false;
+            }
+            if (namespaceURI != null && !namespaceURI.equals(xmlSecStartElement.getName().getNamespaceURI())) {
+                return false;
+            }
+            if (attributeLocalName == null) {
+                return true;
+            }
+            List<XMLSecAttribute> attributes = xmlSecStartElement.getOnElementDeclaredAttributes();
+            for (int i = 0; i < attributes.size(); i++) {
+                XMLSecAttribute attribute = attributes.get(i);
+                if (attributeLocalName.equals(attribute.getName().getLocalPart())
+                        && attributeNamespaceURI.equals(attribute.getName().getNamespaceURI())) {
+                    return attributeValue == null || attributeValue.equals(attribute.getValue());
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Path {
+
+        private final int type;
+        private final Step[] steps;
+
+        Path(int type, Step[] steps) {
+            this.type = type;
+            this.steps = steps;
+        }
+
+        /**
+         * Returns true if the given element is selected by the steps up to the given index.
+         */
+        boolean matches(int index, XMLSecStartElement xmlSecStartElement) {
+            Step step = steps[index];
+            if (!step.matches(xmlSecStartElement)) {
+                return false;
+            }
+            XMLSecStartElement parent = xmlSecStartElement.getParentXMLSecStartElement();
+            if (index == 0) {
+                return step.descendant || parent == null;
+            }
+            if (!step.descendant) {
+                return parent != null && matches(index - 1, parent);
+            }
+            for (XMLSecStartElement ancestor = parent; ancestor != null;
+                    ancestor = ancestor.getParentXMLSecStartElement()) {
+                if (matches(index - 1, ancestor)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
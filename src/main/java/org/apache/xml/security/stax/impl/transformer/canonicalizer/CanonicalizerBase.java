@@ -26,7 +26,6 @@ import org.apache.xml.security.stax.ext.XMLSecurityUtils;
 import org.apache.xml.security.stax.ext.stax.*;
 import org.apache.xml.security.stax.impl.processor.input.XMLEventReaderInputProcessor;
 import org.apache.xml.security.stax.impl.transformer.TransformIdentity;
-import org.apache.xml.security.utils.UnsyncByteArrayInputStream;
 import org.apache.xml.security.utils.UnsyncByteArrayOutputStream;
 
 import javax.xml.namespace.QName;
@@ -389,7 +388,7 @@ public abstract class CanonicalizerBase extends TransformIdentity {
     public void doFinal() throws XMLStreamException {
         if (getTransformer() != null) {
             UnsyncByteArrayOutputStream baos = (UnsyncByteArrayOutputStream)getOutputStream();
-            try (InputStream is = new UnsyncByteArrayInputStream(baos.toByteArray())) {
+            try (InputStream is = baos.toInputStream()) {
                 getTransformer().transform(is);
                 getTransformer().doFinal();
             } catch (IOException ex) {
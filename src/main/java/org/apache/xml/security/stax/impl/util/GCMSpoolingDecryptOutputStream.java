@@ -0,0 +1,356 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.stax.impl.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.Provider;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+
+import org.apache.xml.security.utils.BufferPool;
+import org.apache.xml.security.utils.UnsyncByteArrayOutputStream;
+
+/**
+ * Decrypts AES-GCM (IV || ciphertext || 128 bit tag) without holding the whole data in memory and
+ * without releasing any plaintext before the authentication tag is verified.
+ * <p>
+ * The ciphertext is spooled, up to the given threshold in memory and beyond that to a temporary file,
+ * while its GHASH is computed. When the stream is closed the tag is verified and only then the spooled
+ * ciphertext is decrypted with AES/CTR, which produces the same keystream as GCM, and written to the
+ * underlying stream. The spooled data is ciphertext only, so no plaintext is ever written to disk.
+ * <p>
+ * Only 96 bit IVs are supported, which is what XML Encryption 1.1 mandates for AES-GCM.
+ */
+public class GCMSpoolingDecryptOutputStream extends FilterOutputStream {
+
+    public static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH = 16;
+    private static final int BLOCK_SIZE = 16;
+
+    private static final long[] LAST4 = {
+        0x0000L, 0x1c20L, 0x3840L, 0x2460L, 0x7080L, 0x6ca0L, 0x48c0L, 0x54e0L,
+        0xe100L, 0xfd20L, 0xd940L, 0xc560L, 0x9180L, 0x8da0L, 0xa9c0L, 0xb5e0L
+    };
+
+    private final Key secretKey;
+    private final Provider provider;
+    private final int memoryThreshold;
+    private final File tempDirectory;
+
+    private final byte[] iv = new byte[IV_LENGTH];
+    private int ivPos;
+
+    //the shoup tables of the hash subkey H
+    private final long[] hh = new long[16];
+    private final long[] hl = new long[16];
+    private long yh;
+    private long yl;
+    private final byte[] block = new byte[BLOCK_SIZE];
+
+    //bytes not yet hashed since they could be part of the tag
+    private final byte[] pending = new byte[TAG_LENGTH + BLOCK_SIZE];
+    private int pendingLength;
+    private long cipherTextLength;
+
+    private UnsyncByteArrayOutputStream memorySpool = new UnsyncByteArrayOutputStream();
+    private File spoolFile;
+    private OutputStream fileSpool;
+    private boolean closed;
+
+    /**
+     * @param out the stream the plaintext is written to after successful authentication
+     * @param secretKey the AES key
+     * @param provider the provider of the AES implementation to use, null for the default providers
+     * @param memoryThreshold the number of ciphertext bytes held in memory before spooling to a file
+     * @param tempDirectory the directory of the temporary file, null for the default temporary directory
+     */
+    public GCMSpoolingDecryptOutputStream(OutputStream out, Key secretKey, Provider provider,
+                                          int memoryThreshold, File tempDirectory) throws IOException {
+        super(out);
+        this.secretKey = secretKey;
+        this.provider = provider;
+        this.memoryThreshold = memoryThreshold;
+        this.tempDirectory = tempDirectory;
+
+        byte[] h = new byte[BLOCK_SIZE];
+        try {
+            h = getCipher("AES/ECB/NoPadding", Cipher.ENCRYPT_MODE, null).doFinal(h);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+        initTables(h);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (ivPos < IV_LENGTH) {
+            int ivBytes = Math.min(IV_LENGTH - ivPos, len);
+            System.arraycopy(b, off, iv, ivPos, ivBytes);
+            ivPos += ivBytes;
+            off += ivBytes;
+            len -= ivBytes;
+        }
+        if (len == 0) {
+            return;
+        }
+        spool(b, off, len);
+        cipherTextLength += len;
+
+        while (len > 0) {
+            int count = Math.min(pending.length - pendingLength, len);
+            System.arraycopy(b, off, pending, pendingLength, count);
+            pendingLength += count;
+            off += count;
+            len -= count;
+            if (pendingLength == pending.length) {
+                //the first block can't be part of the tag anymore
+                ghashBlock(pending, 0, BLOCK_SIZE);
+                System.arraycopy(pending, BLOCK_SIZE, pending, 0, TAG_LENGTH);
+                pendingLength = TAG_LENGTH;
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        //nothing is released before the authentication tag is verified
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (ivPos < IV_LENGTH || pendingLength < TAG_LENGTH) {
+                throw new IOException(new AEADBadTagException("Input too short - need tag"));
+            }
+            int lastBlockLength = pendingLength - TAG_LENGTH;
+            if (lastBlockLength > 0) {
+                ghashBlock(pending, 0, lastBlockLength);
+            }
+            long cipherTextBits = (cipherTextLength - TAG_LENGTH) * 8;
+            //the length block: 64 bit length of the (empty) additional data and of the ciphertext
+            yl ^= cipherTextBits;
+            multiplyH();
+
+            byte[] j0 = new byte[BLOCK_SIZE];
+            System.arraycopy(iv, 0, j0, 0, IV_LENGTH);
+            j0[BLOCK_SIZE - 1] = 1;
+            byte[] expectedTag = getCipher("AES/ECB/NoPadding", Cipher.ENCRYPT_MODE, null).doFinal(j0);
+            for (int i = 0; i < 8; i++) {
+                expectedTag[i] ^= (byte) (yh >>> (56 - 8 * i));
+                expectedTag[i + 8] ^= (byte) (yl >>> (56 - 8 * i));
+            }
+            byte[] tag = new byte[TAG_LENGTH];
+            System.arraycopy(pending, lastBlockLength, tag, 0, TAG_LENGTH);
+            if (!MessageDigest.isEqual(expectedTag, tag)) {
+                throw new IOException(new AEADBadTagException("Tag mismatch!"));
+            }
+
+            release(cipherTextLength - TAG_LENGTH);
+            out.close();
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        } finally {
+            cleanup();
+        }
+    }
+
+    /**
+     * Decrypts the authenticated ciphertext and writes the plaintext to the underlying stream.
+     */
+    private void release(long length) throws IOException, GeneralSecurityException {
+        //GCM encrypts the plaintext with the counter blocks starting at inc32(J0)
+        byte[] counter = new byte[BLOCK_SIZE];
+        System.arraycopy(iv, 0, counter, 0, IV_LENGTH);
+        counter[BLOCK_SIZE - 1] = 2;
+        Cipher ctrCipher = getCipher("AES/CTR/NoPadding", Cipher.DECRYPT_MODE, new IvParameterSpec(counter));
+
+        InputStream inputStream;
+        if (fileSpool != null) {
+            fileSpool.close();
+            inputStream = new BufferedInputStream(new FileInputStream(spoolFile), 8192);
+        } else {
+            inputStream = memorySpool.toInputStream();
+        }
+        byte[] buffer = BufferPool.acquire(8192);
+        try {
+            while (length > 0) {
+                int read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, length));
+                if (read < 0) {
+                    throw new IOException("Unexpected end of spooled data");
+                }
+                length -= read;
+                byte[] plain = ctrCipher.update(buffer, 0, read);
+                if (plain != null) {
+                    out.write(plain);
+                }
+            }
+            byte[] plain = ctrCipher.doFinal();
+            if (plain != null) {
+                out.write(plain);
+            }
+        } finally {
+            BufferPool.release(buffer);
+            inputStream.close();
+        }
+    }
+
+    private void spool(byte[] b, int off, int len) throws IOException {
+        if (fileSpool == null && cipherTextLength + len > memoryThreshold) {
+            spoolFile = File.createTempFile("xmlsec", ".gcm", tempDirectory);
+            fileSpool = new BufferedOutputStream(new FileOutputStream(spoolFile), 8192);
+            memorySpool.writeTo(fileSpool);
+            memorySpool = null;
+        }
+        if (fileSpool != null) {
+            fileSpool.write(b, off, len);
+        } else {
+            memorySpool.write(b, off, len);
+        }
+    }
+
+    private void cleanup() throws IOException {
+        memorySpool = null;
+        if (fileSpool != null) {
+            try {
+                fileSpool.close();
+            } finally {
+                if (!spoolFile.delete()) {
+                    spoolFile.deleteOnExit();
+                }
+                fileSpool = null;
+            }
+        }
+    }
+
+    private Cipher getCipher(String transformation, int mode, IvParameterSpec ivParameterSpec)
+            throws GeneralSecurityException {
+        Cipher cipher = null;
+        if (provider != null) {
+            try {
+                cipher = Cipher.getInstance(transformation, provider);
+            } catch (GeneralSecurityException e) { //NOPMD
+                //not every provider of AES-GCM offers AES/ECB and AES/CTR, fall back to the default providers
+            }
+        }
+        if (cipher == null) {
+            cipher = Cipher.getInstance(transformation);
+        }
+        cipher.init(mode, secretKey, ivParameterSpec);
+        return cipher;
+    }
+
+    private void ghashBlock(byte[] b, int off, int len) {
+        System.arraycopy(b, off, block, 0, len);
+        for (int i = len; i < BLOCK_SIZE; i++) {
+            block[i] = 0;
+        }
+        yh ^= toLong(block, 0);
+        yl ^= toLong(block, 8);
+        multiplyH();
+    }
+
+    private static long toLong(byte[] b, int off) {
+        long l = 0;
+        for (int i = 0; i < 8; i++) {
+            l = (l << 8) | (b[off + i] & 0xff);
+        }
+        return l;
+    }
+
+    /**
+     * Precomputes the multiples of H for the 4 bit table multiplication.
+     */
+    private void initTables(byte[] h) {
+        long vh = toLong(h, 0);
+        long vl = toLong(h, 8);
+        hl[8] = vl;
+        hh[8] = vh;
+        for (int i = 4; i > 0; i >>= 1) {
+            long t = (vl & 1) != 0 ? 0xe100000000000000L : 0L;
+            vl = (vh << 63) | (vl >>> 1);
+            vh = (vh >>> 1) ^ t;
+            hl[i] = vl;
+            hh[i] = vh;
+        }
+        for (int i = 2; i <= 8; i *= 2) {
+            vh = hh[i];
+            vl = hl[i];
+            for (int j = 1; j < i; j++) {
+                hh[i + j] = vh ^ hh[j];
+                hl[i + j] = vl ^ hl[j];
+            }
+        }
+    }
+
+    /**
+     * Y = Y * H in GF(2^128)
+     */
+    private void multiplyH() {
+        int lo = (int) (yl & 0xf);
+        long zh = hh[lo];
+        long zl = hl[lo];
+        for (int i = 15; i >= 0; i--) {
+            int x = (int) ((i < 8 ? yh >>> (56 - 8 * i) : yl >>> (56 - 8 * (i - 8))) & 0xff);
+            lo = x & 0xf;
+            int hi = x >>> 4;
+            int rem;
+            if (i != 15) {
+                rem = (int) (zl & 0xf);
+                zl = (zh << 60) | (zl >>> 4);
+                zh = (zh >>> 4) ^ (LAST4[rem] << 48);
+                zh ^= hh[lo];
+                zl ^= hl[lo];
+            }
+            rem = (int) (zl & 0xf);
+            zl = (zh << 60) | (zl >>> 4);
+            zh = (zh >>> 4) ^ (LAST4[rem] << 48);
+            zh ^= hh[hi];
+            zl ^= hl[hi];
+        }
+        yh = zh;
+        yl = zl;
+    }
+}
@@ -72,6 +72,9 @@ public final class Transform extends SignatureElementProxy {
     private static Map<String, Class<? extends TransformSpi>> transformSpiHash =
         new ConcurrentHashMap<String, Class<? extends TransformSpi>>();
 
+    /** Whether the default algorithms are available, without being part of the map */
+    private static volatile boolean defaultAlgorithmsRegistered;
+
     private final TransformSpi transformSpi;
     private boolean secureValidation;
 
@@ -150,7 +153,7 @@ public final class Transform extends SignatureElementProxy {
             throw new TransformationException("xml.WrongContent", exArgs);
         }
 
-        Class<? extends TransformSpi> transformSpiClass = transformSpiHash.get(algorithmURI);
+        Class<? extends TransformSpi> transformSpiClass = getTransformSpiClass(algorithmURI);
         if (transformSpiClass == null) {
             Object exArgs[] = { algorithmURI };
             throw new InvalidTransformException("signature.Transform.UnknownTransform", exArgs);
@@ -187,7 +190,7 @@ public final class Transform extends SignatureElementProxy {
             InvalidTransformException {
         JavaUtils.checkRegisterPermission();
         // are we already registered?
-        Class<? extends TransformSpi> transformSpi = transformSpiHash.get(algorithmURI);
+        Class<? extends TransformSpi> transformSpi = getTransformSpiClass(algorithmURI);
         if (transformSpi != null) {
             Object exArgs[] = { algorithmURI, transformSpi };
             throw new AlgorithmAlreadyRegisteredException("algorithm.alreadyRegistered", exArgs);
@@ -213,7 +216,7 @@ public final class Transform extends SignatureElementProxy {
         throws AlgorithmAlreadyRegisteredException {
         JavaUtils.checkRegisterPermission();
         // are we already registered?
-        Class<? extends TransformSpi> transformSpi = transformSpiHash.get(algorithmURI);
+        Class<? extends TransformSpi> transformSpi = getTransformSpiClass(algorithmURI);
         if (transformSpi != null) {
             Object exArgs[] = { algorithmURI, transformSpi };
             throw new AlgorithmAlreadyRegisteredException("algorithm.alreadyRegistered", exArgs);
@@ -222,42 +225,55 @@ public final class Transform extends SignatureElementProxy {
     }
 
     /**
-     * This method registers the default algorithms.
+     * This method registers the default algorithms. The implementing classes are only loaded
+     * when an algorithm is used for the first time, see {@link #getDefaultTransformSpiClass(String)}.
      */
     public static void registerDefaultAlgorithms() {
-        transformSpiHash.put(
-            Transforms.TRANSFORM_BASE64_DECODE, TransformBase64Decode.class
-        );
-        transformSpiHash.put(
-            Transforms.TRANSFORM_C14N_OMIT_COMMENTS, TransformC14N.class
-        );
-        transformSpiHash.put(
-            Transforms.TRANSFORM_C14N_WITH_COMMENTS, TransformC14NWithComments.class
-        );
-        transformSpiHash.put(
-            Transforms.TRANSFORM_C14N11_OMIT_COMMENTS, TransformC14N11.class
-        );
-        transformSpiHash.put(
-            Transforms.TRANSFORM_C14N11_WITH_COMMENTS, TransformC14N11_WithComments.class
-        );
-        transformSpiHash.put(
-            Transforms.TRANSFORM_C14N_EXCL_OMIT_COMMENTS, TransformC14NExclusive.class
-        );
-        transformSpiHash.put(
-            Transforms.TRANSFORM_C14N_EXCL_WITH_COMMENTS, TransformC14NExclusiveWithComments.class
-        );
-        transformSpiHash.put(
-            Transforms.TRANSFORM_XPATH, TransformXPath.class
-        );
-        transformSpiHash.put(
-            Transforms.TRANSFORM_ENVELOPED_SIGNATURE, TransformEnvelopedSignature.class
-        );
-        transformSpiHash.put(
-            Transforms.TRANSFORM_XSLT, TransformXSLT.class
-        );
-        transformSpiHash.put(
-            Transforms.TRANSFORM_XPATH2FILTER, TransformXPath2Filter.class
-        );
+        defaultAlgorithmsRegistered = true;
+    }
+
+    /**
+     * @return the class registered for the algorithm URI, including the default algorithms
+     */
+    private static Class<? extends TransformSpi> getTransformSpiClass(String algorithmURI) {
+        Class<? extends TransformSpi> implementingClass = transformSpiHash.get(algorithmURI);
+        if (implementingClass == null && defaultAlgorithmsRegistered) {
+            implementingClass = getDefaultTransformSpiClass(algorithmURI);
+        }
+        return implementingClass;
+    }
+
+    /**
+     * The table of the default algorithms. Unlike a map of classes, a switch only loads the
+     * class of the requested algorithm.
+     */
+    private static Class<? extends TransformSpi> getDefaultTransformSpiClass(String algorithmURI) {
+        switch (algorithmURI) {
+            case Transforms.TRANSFORM_BASE64_DECODE:
+                return TransformBase64Decode.class;
+            case Transforms.TRANSFORM_C14N_OMIT_COMMENTS:
+                return TransformC14N.class;
+            case Transforms.TRANSFORM_C14N_WITH_COMMENTS:
+                return TransformC14NWithComments.class;
+            case Transforms.TRANSFORM_C14N11_OMIT_COMMENTS:
+                return TransformC14N11.class;
+            case Transforms.TRANSFORM_C14N11_WITH_COMMENTS:
+                return TransformC14N11_WithComments.class;
+            case Transforms.TRANSFORM_C14N_EXCL_OMIT_COMMENTS:
+                return TransformC14NExclusive.class;
+            case Transforms.TRANSFORM_C14N_EXCL_WITH_COMMENTS:
+                return TransformC14NExclusiveWithComments.class;
+            case Transforms.TRANSFORM_XPATH:
+                return TransformXPath.class;
+            case Transforms.TRANSFORM_ENVELOPED_SIGNATURE:
+                return TransformEnvelopedSignature.class;
+            case Transforms.TRANSFORM_XSLT:
+                return TransformXSLT.class;
+            case Transforms.TRANSFORM_XPATH2FILTER:
+                return TransformXPath2Filter.class;
+            default:
+                return null;
+        }
     }
 
     /**
@@ -322,6 +338,21 @@ public final class Transform extends SignatureElementProxy {
         return result;
     }
 
+    /**
+     * Returns an OutputStream which applies this transform to the octets written to it,
+     * or null if the transform can't be applied in a single streaming pass.
+     *
+     * @param os where to output the result of the transformation
+     * @return an OutputStream applying this transform, or null
+     * @throws IOException
+     * @throws TransformationException
+     */
+    OutputStream createOutputStream(OutputStream os)
+        throws IOException, TransformationException {
+        transformSpi.secureValidation = secureValidation;
+        return transformSpi.engineCreateOutputStream(os, this);
+    }
+
     /** {@inheritDoc} */
     public String getBaseLocalName() {
         return Constants._TAG_TRANSFORM;
@@ -335,7 +366,7 @@ public final class Transform extends SignatureElementProxy {
 
         setLocalAttribute(Constants._ATT_ALGORITHM, algorithmURI);
 
-        Class<? extends TransformSpi> transformSpiClass = transformSpiHash.get(algorithmURI);
+        Class<? extends TransformSpi> transformSpiClass = getTransformSpiClass(algorithmURI);
         if (transformSpiClass == null) {
             Object exArgs[] = { algorithmURI };
             throw new InvalidTransformException("signature.Transform.UnknownTransform", exArgs);
@@ -100,6 +100,28 @@ public abstract class TransformSpi {
         return enginePerformTransform(input, null);
     }
 
+    /**
+     * Returns an OutputStream which applies this transform to the octets written to it
+     * and writes the result to the given OutputStream, or null if the transform can't be
+     * applied in a single streaming pass. This is the equivalent of a StAX Transformer
+     * preferring an InputStream: {@link Transforms} uses it to fuse the trailing transforms
+     * of a chain into the OutputStream of the preceding transform.
+     * <p>
+     * Closing the returned OutputStream must write any pending octets, but must not close
+     * the given OutputStream.
+     *
+     * @param os where to output this transformation.
+     * @param transformObject the Transform object
+     * @return an OutputStream applying this transform, or null
+     * @throws IOException
+     * @throws TransformationException
+     */
+    protected OutputStream engineCreateOutputStream(
+        OutputStream os, Transform transformObject
+    ) throws IOException, TransformationException {
+        return null;
+    }
+
     /**
      * Returns the URI representation of <code>Transformation algorithm</code>
      *
@@ -254,20 +254,56 @@ public class Transforms extends SignatureElementProxy {
     ) throws TransformationException {
         try {
             int last = this.getLength() - 1;
-            for (int i = 0; i < last; i++) {
-                Transform t = this.item(i);
-                LOG.debug("Perform the ({})th {} transform", i, t.getURI());
-                checkSecureValidation(t);
-                xmlSignatureInput = t.performTransform(xmlSignatureInput);
+
+            // The trailing transforms which can be applied to the octets as they are
+            // written are fused into the output stream, so the preceding transform
+            // writes through them in a single pass instead of materializing its output.
+            int firstFused = last + 1;
+            OutputStream pipeline = os;
+            if (os != null) {
+                while (firstFused > 1) {
+                    Transform t = this.item(firstFused - 1);
+                    checkSecureValidation(t);
+                    OutputStream stage = t.createOutputStream(pipeline);
+                    if (stage == null) {
+                        break;
+                    }
+                    pipeline = stage;
+                    firstFused--;
+                }
+            }
+
+            int end = firstFused <= last ? firstFused - 1 : last;
+            for (int i = 0; i < end; i++) {
+                xmlSignatureInput = performTransform(i, xmlSignatureInput, null);
+            }
+            if (end < 0) {
+                return xmlSignatureInput;
+            }
+            if (pipeline == os) {
+                return performTransform(end, xmlSignatureInput, os);
             }
-            if (last >= 0) {
-                Transform t = this.item(last);
-                LOG.debug("Perform the ({})th {} transform", last, t.getURI());
-                checkSecureValidation(t);
-                xmlSignatureInput = t.performTransform(xmlSignatureInput, os);
+
+            XMLSignatureInput output = performTransform(end, xmlSignatureInput, pipeline);
+            if (!output.isOutputStreamSet() && !output.isOctetStream()) {
+                // the fused transforms need the node-set, apply them one by one
+                LOG.debug("Transform {} didn't produce octets, no streaming", end);
+                for (int i = firstFused; i < last; i++) {
+                    output = performTransform(i, output, null);
+                }
+                return performTransform(last, output, os);
+            }
+
+            LOG.debug("Perform the ({})th to ({})th transform in a single pass", firstFused, last);
+            if (!output.isOutputStreamSet()) {
+                output.updateOutputStream(pipeline);
             }
+            pipeline.close();
 
-            return xmlSignatureInput;
+            output = new XMLSignatureInput((byte[])null);
+            output.setSecureValidation(secureValidation);
+            output.setOutputStream(os);
+            return output;
         } catch (IOException ex) {
             throw new TransformationException(ex);
         } catch (CanonicalizationException ex) {
@@ -277,6 +313,16 @@ public class Transforms extends SignatureElementProxy {
         }
     }
 
+    private XMLSignatureInput performTransform(
+        int index, XMLSignatureInput xmlSignatureInput, OutputStream os
+    ) throws IOException, CanonicalizationException, InvalidCanonicalizerException,
+        TransformationException {
+        Transform t = this.item(index);
+        LOG.debug("Perform the ({})th {} transform", index, t.getURI());
+        checkSecureValidation(t);
+        return t.performTransform(xmlSignatureInput, os);
+    }
+
     private void checkSecureValidation(Transform transform) throws TransformationException {
         String uri = transform.getURI();
         if (secureValidation && Transforms.TRANSFORM_XSLT.equals(uri)) {
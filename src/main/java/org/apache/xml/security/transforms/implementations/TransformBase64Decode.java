@@ -18,6 +18,7 @@
  */
 package org.apache.xml.security.transforms.implementations;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
@@ -29,6 +30,7 @@ import org.apache.xml.security.transforms.Transform;
 import org.apache.xml.security.transforms.TransformSpi;
 import org.apache.xml.security.transforms.TransformationException;
 import org.apache.xml.security.transforms.Transforms;
+import org.apache.xml.security.utils.UnsyncByteArrayOutputStream;
 import org.apache.xml.security.utils.XMLUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -36,8 +38,6 @@ import org.w3c.dom.Node;
 import org.w3c.dom.Text;
 import org.xml.sax.SAXException;
 
-import org.apache.xml.security.utils.JavaUtils;
-
 /**
  * Implements the <CODE>http://www.w3.org/2000/09/xmldsig#base64</CODE> decoding
  * transform.
@@ -61,6 +61,10 @@ import org.apache.xml.security.utils.JavaUtils;
  * elements as well as any descendant comments and processing instructions.
  * The output of this transform is an octet stream.</p>
  *
+ * <p>The input is decoded incrementally, straight into the output stream
+ * of the next stage, so the memory use doesn't depend on the size of the
+ * encoded content.</p>
+ *
  */
 public class TransformBase64Decode extends TransformSpi {
 
@@ -68,6 +72,8 @@ public class TransformBase64Decode extends TransformSpi {
     public static final String implementedTransformURI =
         Transforms.TRANSFORM_BASE64_DECODE;
 
+    private static final int CHUNK_SIZE = 8 * 1024;
+
     /**
      * Method engineGetURI
      *
@@ -96,80 +102,120 @@ public class TransformBase64Decode extends TransformSpi {
     protected XMLSignatureInput enginePerformTransform(
         XMLSignatureInput input, OutputStream os, Transform transformObject
     ) throws IOException, CanonicalizationException, TransformationException {
-        if (input.isElement()) {
-            Node el = input.getSubNode();
-            if (input.getSubNode().getNodeType() == Node.TEXT_NODE) {
-                el = el.getParentNode();
-            }
-            StringBuilder sb = new StringBuilder();
-            traverseElement((Element)el, sb);
-            if (os == null) {
-                byte[] decodedBytes = XMLUtils.decode(sb.toString());
-                XMLSignatureInput output = new XMLSignatureInput(decodedBytes);
-                output.setSecureValidation(secureValidation);
-                return output;
-            }
-            byte[] bytes = XMLUtils.decode(sb.toString());
-            os.write(bytes);
-            XMLSignatureInput output = new XMLSignatureInput((byte[])null);
+        if (os == null && input.isOctetStream()) {
+            // decode lazily while the next transform reads the octets
+            XMLSignatureInput output =
+                new XMLSignatureInput(XMLUtils.decodeStream(input.getOctetStream()));
             output.setSecureValidation(secureValidation);
-            output.setOutputStream(os);
             return output;
         }
 
-        if (input.isOctetStream() || input.isNodeSet()) {
-            if (os == null) {
-                byte[] base64Bytes = input.getBytes();
-                byte[] decodedBytes = XMLUtils.decode(base64Bytes);
-                XMLSignatureInput output = new XMLSignatureInput(decodedBytes);
-                output.setSecureValidation(secureValidation);
-                return output;
-            }
-            if (input.isByteArray() || input.isNodeSet()) {
-                byte[] bytes = XMLUtils.decode(input.getBytes());
-                os.write(bytes);
-            } else {
-                byte[] inputBytes = JavaUtils.getBytesFromStream(input.getOctetStreamReal());
-                byte[] bytes = XMLUtils.decode(inputBytes);
-                os.write(bytes);
-            }
-            XMLSignatureInput output = new XMLSignatureInput((byte[])null);
-            output.setSecureValidation(secureValidation);
-            output.setOutputStream(os);
-            return output;
+        UnsyncByteArrayOutputStream decodedBytes = null;
+        OutputStream target = os;
+        if (target == null) {
+            decodedBytes = new UnsyncByteArrayOutputStream();
+            target = decodedBytes;
         }
 
-        try {
-            //Exceptional case there is current not text case testing this(Before it was a
-            //a common case).
-            Document doc =
-                XMLUtils.createDocumentBuilder(false, secureValidation).parse(input.getOctetStream());
-
-            Element rootNode = doc.getDocumentElement();
-            StringBuilder sb = new StringBuilder();
-            traverseElement(rootNode, sb);
-            byte[] decodedBytes = XMLUtils.decode(sb.toString());
-            XMLSignatureInput output = new XMLSignatureInput(decodedBytes);
-            output.setSecureValidation(secureValidation);
-            return output;
+        try (OutputStream base64OutputStream =
+            XMLUtils.decodeStream(new NonClosingOutputStream(target))) {
+            if (input.isElement()) {
+                Node el = input.getSubNode();
+                if (input.getSubNode().getNodeType() == Node.TEXT_NODE) {
+                    el = el.getParentNode();
+                }
+                traverseElement((Element)el, base64OutputStream);
+            } else if (input.isOctetStream() || input.isNodeSet()) {
+                input.updateOutputStream(base64OutputStream);
+            } else {
+                //Exceptional case there is current not text case testing this(Before it was a
+                //a common case).
+                Document doc =
+                    XMLUtils.createDocumentBuilder(false, secureValidation).parse(input.getOctetStream());
+                traverseElement(doc.getDocumentElement(), base64OutputStream);
+            }
         } catch (ParserConfigurationException e) {
             throw new TransformationException(e, "c14n.Canonicalizer.Exception");
         } catch (SAXException e) {
             throw new TransformationException(e, "SAX exception");
         }
+
+        if (os == null) {
+            XMLSignatureInput output = new XMLSignatureInput(decodedBytes.toByteArray());
+            output.setSecureValidation(secureValidation);
+            return output;
+        }
+        XMLSignatureInput output = new XMLSignatureInput((byte[])null);
+        output.setSecureValidation(secureValidation);
+        output.setOutputStream(os);
+        return output;
     }
 
-    void traverseElement(Element node, StringBuilder sb) {
+    /**
+     * Decodes the octets written to the returned stream, so preceding transforms which
+     * produce octets can write straight into the decoder.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    protected OutputStream engineCreateOutputStream(
+        OutputStream os, Transform transformObject
+    ) {
+        return XMLUtils.decodeStream(new NonClosingOutputStream(os));
+    }
+
+    /**
+     * Writes the character data of the text node descendants of the given element.
+     * The data of a large text node is written in chunks, without copying it into a
+     * single byte array. Base64 encoded data is in the ASCII range.
+     */
+    void traverseElement(Element node, OutputStream os) throws IOException {
+        byte[] buffer = null;
         Node sibling = node.getFirstChild();
         while (sibling != null) {
             switch (sibling.getNodeType()) {
             case Node.ELEMENT_NODE:
-                traverseElement((Element)sibling, sb);
+                traverseElement((Element)sibling, os);
                 break;
             case Node.TEXT_NODE:
-                sb.append(((Text)sibling).getData());
+                String data = ((Text)sibling).getData();
+                int size = Math.min(data.length(), CHUNK_SIZE);
+                if (buffer == null || buffer.length < size) {
+                    buffer = new byte[size];
+                }
+                int offset = 0;
+                while (offset < data.length()) {
+                    int length = Math.min(data.length() - offset, buffer.length);
+                    for (int i = 0; i < length; i++) {
+                        char c = data.charAt(offset + i);
+                        // anything outside the ASCII range is not part of the encoding
+                        buffer[i] = c < 0x80 ? (byte)c : (byte)' ';
+                    }
+                    os.write(buffer, 0, length);
+                    offset += length;
+                }
             }
             sibling = sibling.getNextSibling();
         }
     }
+
+    /**
+     * Closing the decoder flushes the last bytes, but must not close the stream of the next stage.
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
 }
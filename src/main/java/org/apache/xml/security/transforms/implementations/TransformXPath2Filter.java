@@ -21,7 +21,6 @@ package org.apache.xml.security.transforms.implementations;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -38,6 +37,7 @@ import org.apache.xml.security.transforms.TransformSpi;
 import org.apache.xml.security.transforms.TransformationException;
 import org.apache.xml.security.transforms.Transforms;
 import org.apache.xml.security.transforms.params.XPath2FilterContainer;
+import org.apache.xml.security.utils.CompactNodeSet;
 import org.apache.xml.security.utils.XMLUtils;
 import org.apache.xml.security.utils.XPathAPI;
 import org.apache.xml.security.utils.XPathFactory;
@@ -278,7 +278,7 @@ class XPath2NodeFilter implements NodeFilter {
     }
 
     private static Set<Node> convertNodeListToSet(List<NodeList> l) {
-        Set<Node> result = new HashSet<>();
+        Set<Node> result = new CompactNodeSet();
         for (NodeList rootNodes : l) {
             int length = rootNodes.getLength();
 
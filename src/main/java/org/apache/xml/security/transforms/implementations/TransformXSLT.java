@@ -23,9 +23,15 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.xml.XMLConstants;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
@@ -63,6 +69,30 @@ public class TransformXSLT extends TransformSpi {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(TransformXSLT.class);
 
+    /** The maximum number of compiled stylesheets which are cached */
+    private static final int MAX_CACHED_TEMPLATES = 64;
+
+    /**
+     * The securely configured factory shared by all instances, created on first use.
+     * TransformerFactory instances are not thread-safe, so it is only accessed with
+     * the class lock held.
+     */
+    private static TransformerFactory transformerFactory;
+
+    /**
+     * The compiled stylesheets keyed by the digest of their serialized form.
+     * Templates objects are thread-safe and can be shared.
+     */
+    private static final Map<String, Templates> TEMPLATES_CACHE =
+        Collections.synchronizedMap(new LinkedHashMap<String, Templates>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Templates> eldest) {
+                return size() > MAX_CACHED_TEMPLATES;
+            }
+        });
+
     /**
      * Method engineGetURI
      *
@@ -87,40 +117,13 @@ public class TransformXSLT extends TransformSpi {
                 throw new TransformationException("xml.WrongContent", exArgs);
             }
 
-            TransformerFactory tFactory = TransformerFactory.newInstance();
-            // Process XSLT stylesheets in a secure manner
-            tFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
-
             /*
              * This transform requires an octet stream as input. If the actual
              * input is an XPath node-set, then the signature application should
              * attempt to convert it to octets (apply Canonical XML]) as described
              * in the Reference Processing Model (section 4.3.3.2).
              */
-            Source stylesheet;
-
-            /*
-             * This complicated transformation of the stylesheet itself is necessary
-             * because of the need to get the pure style sheet. If we simply say
-             * Source stylesheet = new DOMSource(this.xsltElement);
-             * whereby this.xsltElement is not the rootElement of the Document,
-             * this causes problems;
-             * so we convert the stylesheet to byte[] and use this as input stream
-             */
-            {
-                try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-                    Transformer transformer = tFactory.newTransformer();
-                    DOMSource source = new DOMSource(xsltElement);
-                    StreamResult result = new StreamResult(os);
-
-                    transformer.transform(source, result);
-
-                    stylesheet =
-                        new StreamSource(new ByteArrayInputStream(os.toByteArray()));
-                }
-            }
-
-            Transformer transformer = tFactory.newTransformer(stylesheet);
+            Transformer transformer = getTemplates(xsltElement).newTransformer();
 
             // Force Xalan to use \n as line separator on all OSes. This
             // avoids OS specific signature validation failures due to line
@@ -133,7 +136,7 @@ public class TransformXSLT extends TransformSpi {
                 LOG.warn("Unable to set Xalan line-separator property: " + e.getMessage());
             }
 
-            try (InputStream is = new ByteArrayInputStream(input.getBytes())) {
+            try (InputStream is = getInputStream(input)) {
                 Source xmlSource = new StreamSource(is);
                 if (baos == null) {
                     try (ByteArrayOutputStream baos1 = new ByteArrayOutputStream()) {
@@ -160,4 +163,72 @@ public class TransformXSLT extends TransformSpi {
             throw new TransformationException(ex);
         }
     }
+
+    /**
+     * Returns the compiled stylesheet, either from the cache or compiled by the
+     * shared TransformerFactory.
+     *
+     * This complicated transformation of the stylesheet itself is necessary
+     * because of the need to get the pure style sheet. If we simply say
+     * Source stylesheet = new DOMSource(this.xsltElement);
+     * whereby this.xsltElement is not the rootElement of the Document,
+     * this causes problems;
+     * so we convert the stylesheet to byte[] and use this as input stream.
+     * The digest of these bytes is the key of the cache.
+     */
+    private static Templates getTemplates(Element xsltElement)
+        throws IOException, XMLSecurityException, TransformerException {
+        byte[] stylesheet;
+        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+            Transformer transformer;
+            synchronized (TransformXSLT.class) {
+                transformer = getTransformerFactory().newTransformer();
+            }
+            transformer.transform(new DOMSource(xsltElement), new StreamResult(os));
+            stylesheet = os.toByteArray();
+        }
+
+        String key;
+        try {
+            key = XMLUtils.encodeToString(MessageDigest.getInstance("SHA-256").digest(stylesheet));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new XMLSecurityException(ex);
+        }
+
+        Templates templates = TEMPLATES_CACHE.get(key);
+        if (templates == null) {
+            synchronized (TransformXSLT.class) {
+                templates = getTransformerFactory().newTemplates(
+                    new StreamSource(new ByteArrayInputStream(stylesheet)));
+            }
+            TEMPLATES_CACHE.put(key, templates);
+        } else {
+            LOG.debug("Using cached XSLT stylesheet");
+        }
+        return templates;
+    }
+
+    /**
+     * Returns the shared TransformerFactory. It must be called with the class lock held.
+     */
+    private static TransformerFactory getTransformerFactory() throws TransformerConfigurationException {
+        if (transformerFactory == null) {
+            TransformerFactory tFactory = TransformerFactory.newInstance();
+            // Process XSLT stylesheets in a secure manner
+            tFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
+            transformerFactory = tFactory;
+        }
+        return transformerFactory;
+    }
+
+    private static InputStream getInputStream(XMLSignatureInput input)
+        throws IOException, XMLSecurityException {
+        if (input.isOctetStream()) {
+            InputStream is = input.getOctetStream();
+            if (is != null) {
+                return is;
+            }
+        }
+        return new ByteArrayInputStream(input.getBytes());
+    }
 }
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.utils;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of the byte arrays used by the stream classes to buffer and copy data, e.g. by
+ * {@link UnsyncBufferedOutputStream}. Every digest and signature calculation needs such
+ * buffers only for a short time, so they are kept per thread and reused instead of being
+ * allocated again.
+ * <p>
+ * The buffers are pooled in the size classes 4, 8, 16, 32 and 64 KiB, and a few buffers of
+ * each size class are kept per thread. Requests for larger buffers are not pooled. A buffer
+ * which was not released is simply garbage collected. The pool holds only byte arrays in
+ * its thread locals, so it does not keep the class loader of this library alive.
+ * <p>
+ * The number of allocated and reused buffers is counted and can be used for monitoring.
+ * Pooling can be disabled with the system property
+ * {@code org.apache.xml.security.bufferPool.disabled}.
+ */
+public final class BufferPool {
+
+    private static final int MIN_SIZE_SHIFT = 12;
+    private static final int MAX_SIZE_SHIFT = 16;
+    private static final int SIZE_CLASSES = MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1;
+    private static final int BUFFERS_PER_SIZE_CLASS = 4;
+
+    private static final boolean disabled =
+        AccessController.doPrivileged(
+            (PrivilegedAction<Boolean>) () -> Boolean.getBoolean("org.apache.xml.security.bufferPool.disabled"));
+
+    private static final ThreadLocal<byte[][][]> buffers = new ThreadLocal<>();
+
+    private static final LongAdder allocatedBuffers = new LongAdder();
+    private static final LongAdder reusedBuffers = new LongAdder();
+
+    private BufferPool() {
+        // we don't allow instantiation
+    }
+
+    /**
+     * Returns a buffer of at least the given size. Its content is undefined.
+     *
+     * @param size the minimum size of the buffer
+     * @return a buffer of at least the given size
+     */
+    public static byte[] acquire(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be > 0");
+        }
+        int sizeClass = getSizeClass(size);
+        if (sizeClass < 0 || disabled) {
+            allocatedBuffers.increment();
+            return new byte[size];
+        }
+        byte[][][] pool = buffers.get();
+        if (pool != null) {
+            byte[][] pooled = pool[sizeClass];
+            for (int i = 0; i < BUFFERS_PER_SIZE_CLASS; i++) {
+                byte[] buffer = pooled[i];
+                if (buffer != null) {
+                    pooled[i] = null;
+                    reusedBuffers.increment();
+                    return buffer;
+                }
+            }
+        }
+        allocatedBuffers.increment();
+        return new byte[1 << (sizeClass + MIN_SIZE_SHIFT)];
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #acquire(int)} to the pool of the current thread.
+     * The buffer must not be used by the caller afterwards. Buffers of other sizes are ignored.
+     *
+     * @param buffer the buffer to release, may be null
+     */
+    public static void release(byte[] buffer) {
+        if (buffer == null || disabled) {
+            return;
+        }
+        int size = buffer.length;
+        int sizeClass = getSizeClass(size);
+        if (sizeClass < 0 || size != 1 << (sizeClass + MIN_SIZE_SHIFT)) {
+            return;
+        }
+        byte[][][] pool = buffers.get();
+        if (pool == null) {
+            pool = new byte[SIZE_CLASSES][BUFFERS_PER_SIZE_CLASS][];
+            buffers.set(pool);
+        }
+        byte[][] pooled = pool[sizeClass];
+        int free = -1;
+        for (int i = 0; i < BUFFERS_PER_SIZE_CLASS; i++) {
+            if (pooled[i] == buffer) {
+                // released twice, the buffer must not be handed out twice
+                return;
+            }
+            if (pooled[i] == null && free < 0) {
+                free = i;
+            }
+        }
+        if (free >= 0) {
+            pooled[free] = buffer;
+        }
+    }
+
+    /**
+     * @return the number of buffers which were allocated because none could be reused
+     */
+    public static long getAllocatedBuffers() {
+        return allocatedBuffers.sum();
+    }
+
+    /**
+     * @return the number of buffers which were taken from the pool
+     */
+    public static long getReusedBuffers() {
+        return reusedBuffers.sum();
+    }
+
+    private static int getSizeClass(int size) {
+        if (size > 1 << MAX_SIZE_SHIFT) {
+            return -1;
+        }
+        if (size <= 1 << MIN_SIZE_SHIFT) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SIZE_SHIFT;
+    }
+}
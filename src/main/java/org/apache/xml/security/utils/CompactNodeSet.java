@@ -0,0 +1,254 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.utils;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.w3c.dom.Node;
+
+/**
+ * A memory efficient set of DOM nodes which iterates in insertion order. Node-sets are built
+ * in document order, so the iteration order is the document order, like the one of a
+ * LinkedHashSet.
+ * <p>
+ * The nodes are held in an array indexed by their position. Membership is looked up in an
+ * open addressing identity hash table of positions, so no objects are allocated per node.
+ * A node-set of a large document needs about a quarter of the memory of a LinkedHashSet.
+ * <p>
+ * Nodes are compared by identity, which is what the DOM implementations use for equals().
+ * The set doesn't permit null elements and is not thread-safe.
+ */
+public final class CompactNodeSet extends AbstractSet<Node> {
+
+    private static final int FREE = 0;
+    private static final int REMOVED = -1;
+
+    /** the nodes by position, removed nodes are null */
+    private Node[] nodes;
+    /** the first unused position */
+    private int end;
+    private int size;
+    /** the table of positions + 1 or FREE or REMOVED, its length is a power of two */
+    private int[] table;
+    /** the number of slots which are not FREE */
+    private int usedSlots;
+    private int modCount;
+
+    /**
+     * Constructs an empty set.
+     */
+    public CompactNodeSet() {
+        this(16);
+    }
+
+    /**
+     * Constructs an empty set for the given number of nodes.
+     *
+     * @param expectedSize the expected number of nodes
+     */
+    public CompactNodeSet(int expectedSize) {
+        nodes = new Node[Math.max(expectedSize, 4)];
+        table = new int[tableSizeFor(nodes.length)];
+    }
+
+    /**
+     * Constructs a set containing the nodes of the given collection in its iteration order.
+     *
+     * @param c the nodes
+     */
+    public CompactNodeSet(Collection<? extends Node> c) {
+        this(c.size());
+        addAll(c);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Node && position(o) >= 0;
+    }
+
+    @Override
+    public boolean add(Node node) {
+        if (node == null) {
+            throw new NullPointerException("node must not be null");
+        }
+        if (position(node) >= 0) {
+            return false;
+        }
+        if (end == nodes.length) {
+            if (size < end / 2) {
+                rehash(table.length);
+            } else {
+                nodes = Arrays.copyOf(nodes, end + (end >> 1));
+            }
+        }
+        if ((usedSlots + 1) * 3 > table.length * 2) {
+            rehash(tableSizeFor(size + 1));
+        }
+
+        int mask = table.length - 1;
+        int slot = hash(node) & mask;
+        while (table[slot] > 0) {
+            slot = (slot + 1) & mask;
+        }
+        if (table[slot] == FREE) {
+            usedSlots++;
+        }
+        nodes[end] = node;
+        table[slot] = ++end;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Node)) {
+            return false;
+        }
+        int slot = slot(o);
+        if (slot < 0) {
+            return false;
+        }
+        nodes[table[slot] - 1] = null;
+        table[slot] = REMOVED;
+        size--;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(nodes, 0, end, null);
+        Arrays.fill(table, FREE);
+        end = 0;
+        size = 0;
+        usedSlots = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<Node> iterator() {
+        return new NodeIterator();
+    }
+
+    private int position(Object o) {
+        int slot = slot(o);
+        return slot < 0 ? -1 : table[slot] - 1;
+    }
+
+    private int slot(Object o) {
+        int mask = table.length - 1;
+        int slot = hash(o) & mask;
+        while (true) {
+            int entry = table[slot];
+            if (entry == FREE) {
+                return -1;
+            }
+            if (entry > 0 && nodes[entry - 1] == o) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Compacts the positions and rebuilds the hash table with the given size.
+     */
+    private void rehash(int tableSize) {
+        int position = 0;
+        for (int i = 0; i < end; i++) {
+            if (nodes[i] != null) {
+                nodes[position++] = nodes[i];
+            }
+        }
+        Arrays.fill(nodes, position, end, null);
+        end = position;
+
+        table = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int i = 0; i < end; i++) {
+            int slot = hash(nodes[i]) & mask;
+            while (table[slot] != FREE) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+        usedSlots = end;
+    }
+
+    private static int hash(Object o) {
+        int h = System.identityHashCode(o) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(Math.max(capacity * 2, 8) - 1) << 1;
+        return n < 0 ? 1 << 30 : n;
+    }
+
+    private final class NodeIterator implements Iterator<Node> {
+
+        private int next;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            while (next < end && nodes[next] == null) {
+                next++;
+            }
+            return next < end;
+        }
+
+        @Override
+        public Node next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return nodes[last];
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            CompactNodeSet.this.remove(nodes[last]);
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * An index of all elements of a document that have an ID attribute, keyed by the ID value. It is
+ * built with a single traversal of the document on the first lookup and replaces the tree-search of
+ * {@link XMLUtils#protectAgainstWrappingAttack(Node, String)} when many same-document references
+ * of a document are resolved.
+ * <p>
+ * The index is a snapshot of the document, it doesn't notice ID attributes which are added or
+ * registered later. It must therefore only be used for the duration of a single validation and
+ * then be thrown away.
+ */
+public final class DocumentIdIndex {
+
+    private final Document doc;
+    private Map<String, List<Element>> idMap;
+
+    /**
+     * Constructor DocumentIdIndex
+     *
+     * @param doc the document to index
+     */
+    public DocumentIdIndex(Document doc) {
+        this.doc = doc;
+    }
+
+    /**
+     * @return the indexed document
+     */
+    public Document getDocument() {
+        return doc;
+    }
+
+    private void build() {
+        idMap = new HashMap<>();
+        Node startNode = doc.getDocumentElement();
+        Node processedNode = null;
+
+        while (startNode != null) {
+            if (startNode.getNodeType() == Node.ELEMENT_NODE) {
+                Element se = (Element) startNode;
+
+                NamedNodeMap attributes = se.getAttributes();
+                if (attributes != null) {
+                    int length = attributes.getLength();
+                    for (int i = 0; i < length; i++) {
+                        Attr attr = (Attr)attributes.item(i);
+                        if (attr.isId()) {
+                            add(attr.getValue(), se);
+                        }
+                    }
+                }
+            }
+
+            processedNode = startNode;
+            startNode = startNode.getFirstChild();
+
+            // no child, this node is done.
+            if (startNode == null) {
+                // close node processing, get sibling
+                startNode = processedNode.getNextSibling();
+            }
+
+            // no more siblings, get parent, all children
+            // of parent are processed.
+            while (startNode == null) {
+                processedNode = processedNode.getParentNode();
+                if (processedNode == null || processedNode.getNodeType() == Node.DOCUMENT_NODE) {
+                    return;
+                }
+                // close parent node processing (processed node now)
+                startNode = processedNode.getNextSibling();
+            }
+        }
+    }
+
+    private void add(String id, Element element) {
+        List<Element> elements = idMap.get(id);
+        if (elements == null) {
+            idMap.put(id, Collections.singletonList(element));
+        } else {
+            if (elements.size() == 1) {
+                elements = new ArrayList<>(elements);
+                idMap.put(id, elements);
+            }
+            elements.add(element);
+        }
+    }
+
+    /**
+     * Returns the elements with an ID attribute of the given value in document order.
+     *
+     * @param id the ID value
+     * @return the elements, an empty list if there is none
+     */
+    public List<Element> getElements(String id) {
+        if (idMap == null) {
+            build();
+        }
+        List<Element> elements = idMap.get(id);
+        if (elements == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(elements);
+    }
+
+    /**
+     * Returns true if at most one element has an ID attribute with the given value.
+     * This is the equivalent of {@link XMLUtils#protectAgainstWrappingAttack(Node, String)}
+     * applied to the document element.
+     *
+     * @param id the ID value, optionally prefixed with '#'
+     * @return true if the ID is not used more than once
+     */
+    public boolean isUnique(String id) {
+        return getElements(normalize(id)).size() <= 1;
+    }
+
+    /**
+     * Returns true if no other element than the given one has an ID attribute with the given value.
+     * This is the equivalent of {@link XMLUtils#protectAgainstWrappingAttack(Node, Element, String)}
+     * applied to the document element.
+     *
+     * @param id the ID value, optionally prefixed with '#'
+     * @param knownElement the element which is expected to carry the ID value
+     * @return true if no other element has the ID
+     */
+    public boolean isUnique(String id, Element knownElement) {
+        for (Element element : getElements(normalize(id))) {
+            if (element != knownElement) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalize(String value) {
+        String id = value.trim();
+        if (!id.isEmpty() && id.charAt(0) == '#') {
+            id = id.substring(1);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An OutputStream which writes everything to several OutputStreams. It is used to feed the
+ * output of one transformation into the digesters of several References which share the
+ * same dereferenced data and transforms, but use different DigestMethods.
+ */
+public class MultiOutputStream extends OutputStream {
+
+    private final OutputStream[] outputStreams;
+
+    public MultiOutputStream(OutputStream... outputStreams) {
+        this.outputStreams = outputStreams;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        for (OutputStream outputStream : outputStreams) {
+            outputStream.write(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        for (OutputStream outputStream : outputStreams) {
+            outputStream.write(b, off, len);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        for (OutputStream outputStream : outputStreams) {
+            outputStream.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        for (OutputStream outputStream : outputStreams) {
+            try {
+                outputStream.close();
+            } catch (IOException e) {
+                //try to close the others and rethrow the first exception
+                if (exception == null) {
+                    exception = e;
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
@@ -20,9 +20,20 @@ package org.apache.xml.security.utils;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class RFC2253Parser {
 
+    /** The maximum number of memoized distinguished names per direction */
+    private static final int MAX_CACHE_SIZE = 1024;
+
+    /** Longer distinguished names are not memoized */
+    private static final int MAX_CACHED_LENGTH = 512;
+
+    private static final ConcurrentMap<String, String> NORMALIZED_TO_XML = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, String> NORMALIZED_TO_RFC = new ConcurrentHashMap<>();
+
     /**
      * Method rfc2253toXMLdsig
      *
@@ -72,6 +83,30 @@ public class RFC2253Parser {
             return "";
         }
 
+        // the same few names are normalized again and again, e.g. for every certificate of a
+        // StorageResolver, so the results are memoized
+        if (dn.length() > MAX_CACHED_LENGTH) {
+            return normalizeUncached(dn, toXml);
+        }
+        ConcurrentMap<String, String> cache = toXml ? NORMALIZED_TO_XML : NORMALIZED_TO_RFC;
+        String normalized = cache.get(dn);
+        if (normalized == null) {
+            normalized = normalizeUncached(dn, toXml);
+            if (cache.size() >= MAX_CACHE_SIZE) {
+                // start over instead of evicting single names, the names in use are back soon
+                cache.clear();
+            }
+            cache.put(dn, normalized);
+        }
+        return normalized;
+    }
+
+    private static String normalizeUncached(String dn, boolean toXml) {
+        String normalized = FastNormalizer.normalize(dn, toXml);
+        if (normalized != null) {
+            return normalized;
+        }
+
         try {
             String DN = semicolonToComma(dn);
             StringBuilder sb = new StringBuilder();
@@ -99,6 +134,142 @@ public class RFC2253Parser {
         }
     }
 
+    /**
+     * Normalizes the distinguished names without quotes and semicolons, i.e. practically all
+     * names of certificates, in a single pass without intermediate Strings. The result is the
+     * same as the one of the general parser below, which is used for all other names.
+     */
+    private static final class FastNormalizer {
+
+        private final String dn;
+        private final boolean toXml;
+        private final StringBuilder sb;
+
+        private FastNormalizer(String dn, boolean toXml) {
+            this.dn = dn;
+            this.toXml = toXml;
+            this.sb = new StringBuilder(dn.length());
+        }
+
+        /**
+         * @return the normalized name, or null if the name must be normalized by the general parser
+         */
+        static String normalize(String dn, boolean toXml) {
+            if (dn.indexOf('"') >= 0 || dn.indexOf(';') >= 0) {
+                return null;
+            }
+            FastNormalizer normalizer = new FastNormalizer(dn, toXml);
+            return normalizer.parseDN() ? normalizer.sb.toString() : null;
+        }
+
+        private boolean parseDN() {
+            long range = trim(0, dn.length());
+            int start = start(range);
+            int end = end(range);
+            int i = start;
+            for (int k = dn.indexOf(',', start); k >= 0 && k < end; k = dn.indexOf(',', k + 1)) {
+                if (k > start && dn.charAt(k - 1) != '\\') {
+                    long rdn = trimWhitespace(i, k);
+                    if (!parseRDN(start(rdn), end(rdn))) {
+                        return false;
+                    }
+                    sb.append(',');
+                    i = k + 1;
+                }
+            }
+            long rdn = trim(i, end);
+            return parseRDN(start(rdn), end(rdn));
+        }
+
+        private boolean parseRDN(int start, int end) {
+            int i = start;
+            for (int k = dn.indexOf('+', start); k >= 0 && k < end; k = dn.indexOf('+', k + 1)) {
+                if (k > start && dn.charAt(k - 1) != '\\') {
+                    long atav = trim(i, k);
+                    if (!parseATAV(start(atav), end(atav))) {
+                        return false;
+                    }
+                    sb.append('+');
+                    i = k + 1;
+                }
+            }
+            long atav = trim(i, end);
+            return parseATAV(start(atav), end(atav));
+        }
+
+        private boolean parseATAV(int start, int end) {
+            int i = dn.indexOf('=', start);
+            if (i < 0 || i >= end || i > start && dn.charAt(i - 1) == '\\') {
+                sb.append(dn, start, end);
+                return true;
+            }
+            String attrType = normalizeAT(dn.substring(start, i));
+            if (attrType.isEmpty()) {
+                // let the general parser deal with it
+                return false;
+            }
+            sb.append(attrType).append('=');
+            if (attrType.charAt(0) >= '0' && attrType.charAt(0) <= '9') {
+                sb.append(dn, i + 1, end);
+                return true;
+            }
+            long value = trim(i + 1, end);
+            int valueStart = start(value);
+            int valueEnd = end(value);
+            if (valueStart < valueEnd) {
+                if (toXml && dn.charAt(valueStart) == '#') {
+                    sb.append('\\');
+                } else if (!toXml && valueEnd - valueStart > 1
+                    && dn.charAt(valueStart) == '\\' && dn.charAt(valueStart + 1) == '#') {
+                    valueStart++;
+                }
+            }
+            sb.append(dn, valueStart, valueEnd);
+            return true;
+        }
+
+        /**
+         * The range without leading and trailing whitespace, as {@link String#trim()}
+         */
+        private long trimWhitespace(int start, int end) {
+            while (start < end && dn.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && dn.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            return range(start, end);
+        }
+
+        /**
+         * The range without leading and trailing whitespace, except an escaped trailing space,
+         * as {@link RFC2253Parser#trim(String)}
+         */
+        private long trim(int start, int end) {
+            long range = trimWhitespace(start, end);
+            int trimmedStart = start(range);
+            int trimmedEnd = end(range);
+            if (trimmedEnd < end && dn.charAt(trimmedEnd) == ' '
+                && trimmedEnd > trimmedStart && dn.charAt(trimmedEnd - 1) == '\\'
+                && !(trimmedEnd - 1 > trimmedStart && dn.charAt(trimmedEnd - 2) == '\\')) {
+                return range(trimmedStart, trimmedEnd + 1);
+            }
+            return range;
+        }
+
+        private static long range(int start, int end) {
+            return (long) start << 32 | end;
+        }
+
+        private static int start(long range) {
+            return (int) (range >>> 32);
+        }
+
+        private static int end(long range) {
+            return (int) range;
+        }
+    }
+
     /**
      * Method parseRDN
      *
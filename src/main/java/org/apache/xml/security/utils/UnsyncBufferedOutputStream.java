@@ -21,6 +21,10 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
+/**
+ * An unsynchronized buffered OutputStream. The buffer is taken from the {@link BufferPool}
+ * and returned to it when the stream is closed.
+ */
 public class UnsyncBufferedOutputStream extends FilterOutputStream {
 
     protected byte[] buffer;
@@ -28,7 +32,7 @@ public class UnsyncBufferedOutputStream extends FilterOutputStream {
 
     public UnsyncBufferedOutputStream(OutputStream out) {
         super(out);
-        buffer = new byte[8192];
+        buffer = BufferPool.acquire(8192);
     }
 
     public UnsyncBufferedOutputStream(OutputStream out, int size) {
@@ -36,7 +40,7 @@ public class UnsyncBufferedOutputStream extends FilterOutputStream {
         if (size <= 0) {
             throw new IllegalArgumentException("size must be > 0");
         }
-        buffer = new byte[size];
+        buffer = BufferPool.acquire(size);
     }
 
     @Override
@@ -45,8 +49,22 @@ public class UnsyncBufferedOutputStream extends FilterOutputStream {
         out.flush();
     }
 
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            super.close();
+        } finally {
+            BufferPool.release(buffer);
+            buffer = null;
+        }
+    }
+
     @Override
     public void write(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
         if (length >= buffer.length) {
             flushInternal();
             out.write(bytes, offset, length);
@@ -65,6 +83,7 @@ public class UnsyncBufferedOutputStream extends FilterOutputStream {
 
     @Override
     public void write(int oneByte) throws IOException {
+        ensureOpen();
         if (count == buffer.length) {
             out.write(buffer, 0, count);
             count = 0;
@@ -72,6 +91,12 @@ public class UnsyncBufferedOutputStream extends FilterOutputStream {
         buffer[count++] = (byte) oneByte;
     }
 
+    private void ensureOpen() throws IOException {
+        if (buffer == null) {
+            throw new IOException("Stream closed");
+        }
+    }
+
     private void flushInternal() throws IOException {
         if (count > 0) {
             out.write(buffer, 0, count);
@@ -19,11 +19,17 @@
 package org.apache.xml.security.utils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 
 /**
  * A simple Unsynced ByteArrayOutputStream
  *
+ * The content is kept in a list of segments instead of one array, so that growing the stream
+ * never copies the content written so far. The segments grow from 8 KiB up to 256 KiB, which
+ * keeps each of them below the size of the humongous objects of the G1 collector. The content
+ * can be written to another stream or read with {@link #toInputStream()} without copying it.
  */
 public class UnsyncByteArrayOutputStream extends OutputStream  {
 
@@ -31,58 +37,83 @@ public class UnsyncByteArrayOutputStream extends OutputStream  {
     // Integer.MAX_VALUE doesn't work on some VMs, as some header values are reserved
     private static final int VM_ARRAY_INDEX_MAX_VALUE = Integer.MAX_VALUE - 8;
     private static final int INITIAL_SIZE = 8192;
+    private static final int MAX_SEGMENT_SIZE = 256 * 1024;
 
+    private byte[][] segments = new byte[4][];
+    /** the number of allocated segments */
+    private int segmentCount;
+    /** the index of the segment which is written to */
+    private int segmentIndex;
     private byte[] buf;
-    private int size = INITIAL_SIZE;
+    /** the position in the current segment */
     private int pos;
+    /** the number of bytes in the segments before the current one */
+    private int offset;
 
     public UnsyncByteArrayOutputStream() {
         buf = new byte[INITIAL_SIZE];
+        segments[0] = buf;
+        segmentCount = 1;
     }
 
     public void write(byte[] arg0) {
-        if ((VM_ARRAY_INDEX_MAX_VALUE - pos) < arg0.length) {
-            throw new OutOfMemoryError();
-        }
-        int newPos = pos + arg0.length;
-        if (newPos > size) {
-            expandSize(newPos);
-        }
-        System.arraycopy(arg0, 0, buf, pos, arg0.length);
-        pos = newPos;
+        write(arg0, 0, arg0.length);
     }
 
     public void write(byte[] arg0, int arg1, int arg2) {
-        if ((VM_ARRAY_INDEX_MAX_VALUE - pos) < arg2) {
+        if ((VM_ARRAY_INDEX_MAX_VALUE - size()) < arg2) {
             throw new OutOfMemoryError();
         }
-        int newPos = pos + arg2;
-        if (newPos > size) {
-            expandSize(newPos);
+        int off = arg1;
+        int len = arg2;
+        while (len > 0) {
+            if (pos == buf.length) {
+                nextSegment();
+            }
+            int toCopy = Math.min(len, buf.length - pos);
+            System.arraycopy(arg0, off, buf, pos, toCopy);
+            pos += toCopy;
+            off += toCopy;
+            len -= toCopy;
         }
-        System.arraycopy(arg0, arg1, buf, pos, arg2);
-        pos = newPos;
     }
 
     public void write(int arg0) {
-        if (VM_ARRAY_INDEX_MAX_VALUE - pos == 0) {
+        if (VM_ARRAY_INDEX_MAX_VALUE - size() == 0) {
             throw new OutOfMemoryError();
         }
-        int newPos = pos + 1;
-        if (newPos > size) {
-            expandSize(newPos);
+        if (pos == buf.length) {
+            nextSegment();
         }
         buf[pos++] = (byte)arg0;
     }
 
+    /**
+     * @return the number of bytes written to this stream
+     */
+    public int size() {
+        return offset + pos;
+    }
+
     public byte[] toByteArray() {
-        byte result[] = new byte[pos];
-        System.arraycopy(buf, 0, result, 0, pos);
+        byte result[] = new byte[size()];
+        int resultPos = 0;
+        for (int i = 0; i < segmentIndex; i++) {
+            System.arraycopy(segments[i], 0, result, resultPos, segments[i].length);
+            resultPos += segments[i].length;
+        }
+        System.arraycopy(buf, 0, result, resultPos, pos);
         return result;
     }
 
+    /**
+     * Discards the content. The segments are kept and reused.
+     */
     public void reset() {
+        segmentIndex = 0;
+        buf = segments[0];
         pos = 0;
+        offset = 0;
     }
 
     /**
@@ -95,21 +126,120 @@ public class UnsyncByteArrayOutputStream extends OutputStream  {
      *             if an error occurs while writing to {@code out}.
      */
     public void writeTo(OutputStream out) throws IOException {
+        for (int i = 0; i < segmentIndex; i++) {
+            out.write(segments[i]);
+        }
         out.write(buf, 0, pos);
     }
 
-    private void expandSize(int newPos) {
-        int newSize = size;
-        while (newPos > newSize) {
-            newSize = newSize << 1;
-            // Deal with overflow
-            if (newSize < 0) {
-                newSize = VM_ARRAY_INDEX_MAX_VALUE;
+    /**
+     * Returns an InputStream which reads the current contents of this stream without copying
+     * them. The stream must not be written to or reset while the InputStream is in use.
+     *
+     * @return an InputStream over the contents of this stream
+     */
+    public InputStream toInputStream() {
+        return new SegmentInputStream();
+    }
+
+    private void nextSegment() {
+        offset += buf.length;
+        segmentIndex++;
+        if (segmentIndex == segmentCount) {
+            if (segmentCount == segments.length) {
+                segments = Arrays.copyOf(segments, segmentCount << 1);
+            }
+            segments[segmentCount++] = new byte[Math.min(buf.length << 1, MAX_SEGMENT_SIZE)];
+        }
+        buf = segments[segmentIndex];
+        pos = 0;
+    }
+
+    private final class SegmentInputStream extends InputStream {
+
+        private final int lastSegment = segmentIndex;
+        private final int lastSegmentSize = pos;
+        private int readSegment;
+        private int readPos;
+        private int markSegment;
+        private int markPos;
+
+        private int segmentSize(int segment) {
+            return segment == lastSegment ? lastSegmentSize : segments[segment].length;
+        }
+
+        private boolean hasRemaining() {
+            while (readPos == segmentSize(readSegment)) {
+                if (readSegment == lastSegment) {
+                    return false;
+                }
+                readSegment++;
+                readPos = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() {
+            if (!hasRemaining()) {
+                return -1;
             }
+            return segments[readSegment][readPos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!hasRemaining()) {
+                return -1;
+            }
+            int read = 0;
+            while (read < len && hasRemaining()) {
+                int toCopy = Math.min(len - read, segmentSize(readSegment) - readPos);
+                System.arraycopy(segments[readSegment], readPos, b, off + read, toCopy);
+                readPos += toCopy;
+                read += toCopy;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = 0;
+            while (skipped < n && hasRemaining()) {
+                int toSkip = (int) Math.min(n - skipped, segmentSize(readSegment) - readPos);
+                readPos += toSkip;
+                skipped += toSkip;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            int available = segmentSize(readSegment) - readPos;
+            for (int i = readSegment + 1; i <= lastSegment; i++) {
+                available += segmentSize(i);
+            }
+            return available;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(int readlimit) {
+            markSegment = readSegment;
+            markPos = readPos;
+        }
+
+        @Override
+        public void reset() {
+            readSegment = markSegment;
+            readPos = markPos;
         }
-        byte newBuf[] = new byte[newSize];
-        System.arraycopy(buf, 0, newBuf, 0, pos);
-        buf = newBuf;
-        size = newSize;
     }
-}
\ No newline at end of file
+}
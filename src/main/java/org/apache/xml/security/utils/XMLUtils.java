@@ -19,6 +19,8 @@
 package org.apache.xml.security.utils;
 
 import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -26,8 +28,8 @@ import java.math.BigInteger;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -549,6 +551,39 @@ public final class XMLUtils {
         return Base64.getMimeDecoder().decode(encodedBytes);
     }
 
+    /**
+     * Wraps the given stream, so that the bytes written to the returned stream are
+     * written base64 encoded like {@link #encodeToString(byte[])} does. The returned
+     * stream must be closed to write the final characters.
+     */
+    public static OutputStream encodeStream(OutputStream os) {
+        if (ignoreLineBreaks) {
+            return Base64.getEncoder().wrap(os);
+        }
+        return Base64.getMimeEncoder().wrap(os);
+    }
+
+    /**
+     * Wraps the given stream of base64 encoded characters, so that the decoded bytes
+     * are read from the returned stream like {@link #decode(String)} returns them.
+     */
+    public static InputStream decodeStream(InputStream is) {
+        return new Base64DecodingInputStream(is);
+    }
+
+    /**
+     * Wraps the given stream, so that the base64 encoded characters written to the returned
+     * stream are written to it decoded like {@link #decode(byte[])} returns them. The returned
+     * stream must be closed to write the final bytes.
+     */
+    public static OutputStream decodeStream(OutputStream os) {
+        return new Base64DecodingOutputStream(os);
+    }
+
+    private static boolean isBase64Character(int c) {
+        return c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '+' || c == '/';
+    }
+
     /**
      * Method convertNodelistToSet
      *
@@ -557,11 +592,11 @@ public final class XMLUtils {
      */
     public static Set<Node> convertNodelistToSet(NodeList xpathNodeSet) {
         if (xpathNodeSet == null) {
-            return new HashSet<>();
+            return new CompactNodeSet();
         }
 
         int length = xpathNodeSet.getLength();
-        Set<Node> set = new HashSet<>(length);
+        Set<Node> set = new CompactNodeSet(length);
 
         for (int i = 0; i < length; i++) {
             set.add(xpathNodeSet.item(i));
@@ -841,7 +876,7 @@ public final class XMLUtils {
      * @return nodes with the constrain
      */
     public static Set<Node> excludeNodeFromSet(Node signatureElement, Set<Node> inputSet) {
-        Set<Node> resultSet = new HashSet<>();
+        Set<Node> resultSet = new CompactNodeSet(inputSet.size());
         Iterator<Node> iterator = inputSet.iterator();
 
         while (iterator.hasNext()) {
@@ -1242,6 +1277,152 @@ public final class XMLUtils {
         }
     }
 
+    /**
+     * The stream returned by the MIME decoder stops reading at the padding. Like decode(), this
+     * stream rejects base64 data following the padding.
+     */
+    private static final class Base64DecodingInputStream extends FilterInputStream {
+
+        private final InputStream encoded;
+        private boolean endChecked;
+
+        Base64DecodingInputStream(InputStream encoded) {
+            super(Base64.getMimeDecoder().wrap(encoded));
+            this.encoded = encoded;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b == -1) {
+                checkEnd();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read == -1) {
+                checkEnd();
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skip by reading, so that the end is checked
+            if (n <= 0) {
+                return 0;
+            }
+            byte[] buffer = new byte[(int)Math.min(n, 8192)];
+            long remaining = n;
+            while (remaining > 0) {
+                int read = read(buffer, 0, (int)Math.min(remaining, buffer.length));
+                if (read < 0) {
+                    break;
+                }
+                remaining -= read;
+            }
+            return n - remaining;
+        }
+
+        private void checkEnd() throws IOException {
+            if (!endChecked) {
+                endChecked = true;
+                int c;
+                while ((c = encoded.read()) != -1) {
+                    if (isBase64Character(c)) {
+                        throw new IOException("Base64 data after the padding");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes the base64 encoded characters written to it like the MIME decoder: characters
+     * outside of the base64 alphabet are ignored, while a malformed padding and base64 data
+     * following the padding are rejected.
+     */
+    private static final class Base64DecodingOutputStream extends FilterOutputStream {
+
+        private final byte[] quanta = new byte[4 * 1024];
+        private final byte[] decoded = new byte[3 * 1024];
+        private int count;
+        private boolean paddingRead;
+        /** a second padding character must follow the first one immediately */
+        private boolean secondPaddingExpected;
+        private boolean closed;
+
+        Base64DecodingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            int c = b & 0xff;
+            if (secondPaddingExpected) {
+                if (c != '=') {
+                    throw new IOException("Illegal base64 ending sequence");
+                }
+                secondPaddingExpected = false;
+            } else if (isBase64Character(c)) {
+                if (paddingRead) {
+                    throw new IOException("Base64 data after the padding");
+                }
+                quanta[count++] = (byte)c;
+                if (count == quanta.length) {
+                    int length = Base64.getDecoder().decode(quanta, decoded);
+                    out.write(decoded, 0, length);
+                    count = 0;
+                }
+            } else if (c == '=' && !paddingRead) {
+                int remaining = count % 4;
+                if (remaining < 2) {
+                    throw new IOException("Illegal base64 ending sequence");
+                }
+                paddingRead = true;
+                secondPaddingExpected = remaining == 2;
+                writeDecoded();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (secondPaddingExpected) {
+                    throw new IOException("Illegal base64 ending sequence");
+                }
+                writeDecoded();
+            } finally {
+                out.close();
+            }
+        }
+
+        private void writeDecoded() throws IOException {
+            if (count > 0) {
+                try {
+                    out.write(Base64.getDecoder().decode(Arrays.copyOf(quanta, count)));
+                } catch (IllegalArgumentException ex) {
+                    throw new IOException(ex);
+                }
+                count = 0;
+            }
+        }
+    }
+
     /**
      * Maps the two boolean configuration options for the factories to the array index for the WeakObjectPool
      * @param validating
@@ -24,6 +24,7 @@ import java.util.Map;
 
 import org.apache.xml.security.signature.XMLSignatureInput;
 import org.apache.xml.security.utils.ClassLoaderUtils;
+import org.apache.xml.security.utils.DocumentIdIndex;
 import org.apache.xml.security.utils.JavaUtils;
 import org.apache.xml.security.utils.resolver.implementations.ResolverDirectHTTP;
 import org.apache.xml.security.utils.resolver.implementations.ResolverFragment;
@@ -274,7 +275,25 @@ public class ResourceResolver {
      */
     public XMLSignatureInput resolve(Attr uri, String baseURI, boolean secureValidation)
         throws ResourceResolverException {
-        ResourceResolverContext context = new ResourceResolverContext(uri, baseURI, secureValidation);
+        return resolve(uri, baseURI, secureValidation, null);
+    }
+
+    /**
+     * Method resolve
+     *
+     * @param uri
+     * @param baseURI
+     * @param secureValidation
+     * @param idIndex the ID index of the document which is validated, or null
+     * @return the resource
+     *
+     * @throws ResourceResolverException
+     */
+    public XMLSignatureInput resolve(
+        Attr uri, String baseURI, boolean secureValidation, DocumentIdIndex idIndex
+    ) throws ResourceResolverException {
+        ResourceResolverContext context =
+            new ResourceResolverContext(uri, baseURI, secureValidation, idIndex);
         return resolverSpi.engineResolveURI(context);
     }
 
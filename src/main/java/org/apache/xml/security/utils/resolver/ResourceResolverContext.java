@@ -18,14 +18,24 @@
  */
 package org.apache.xml.security.utils.resolver;
 
+import org.apache.xml.security.utils.DocumentIdIndex;
+import org.apache.xml.security.utils.XMLUtils;
 import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
 
 public class ResourceResolverContext {
 
     public ResourceResolverContext(Attr attr, String baseUri, boolean secureValidation) {
+        this(attr, baseUri, secureValidation, null);
+    }
+
+    public ResourceResolverContext(
+        Attr attr, String baseUri, boolean secureValidation, DocumentIdIndex idIndex
+    ) {
         this.attr = attr;
         this.baseUri = baseUri;
         this.secureValidation = secureValidation;
+        this.idIndex = idIndex;
         this.uriToResolve = attr != null ? attr.getValue() : null;
     }
 
@@ -36,4 +46,26 @@ public class ResourceResolverContext {
     public final String baseUri;
 
     public final Attr attr;
+
+    /**
+     * The ID index of the document which is validated, or null. It is only valid for the duration
+     * of a single validation.
+     */
+    public final DocumentIdIndex idIndex;
+
+    /**
+     * Returns true if at most one element of the document of the given node has an ID attribute
+     * with the given value. The ID index of this context is used if it was built for that document,
+     * otherwise the document is searched.
+     *
+     * @param doc the document of the resolved node
+     * @param id the ID value
+     * @return true if the ID is not used more than once
+     */
+    public boolean isUniqueId(Document doc, String id) {
+        if (idIndex != null && idIndex.getDocument() == doc) {
+            return idIndex.isUnique(id);
+        }
+        return XMLUtils.protectAgainstWrappingAttack(doc.getDocumentElement(), id);
+    }
 }
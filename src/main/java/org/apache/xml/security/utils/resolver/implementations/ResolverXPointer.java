@@ -19,12 +19,10 @@
 package org.apache.xml.security.utils.resolver.implementations;
 
 import org.apache.xml.security.signature.XMLSignatureInput;
-import org.apache.xml.security.utils.XMLUtils;
 import org.apache.xml.security.utils.resolver.ResourceResolverContext;
 import org.apache.xml.security.utils.resolver.ResourceResolverException;
 import org.apache.xml.security.utils.resolver.ResourceResolverSpi;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 /**
@@ -70,14 +68,12 @@ public class ResolverXPointer extends ResourceResolverSpi {
             String id = getXPointerId(context.uriToResolve);
             resultNode = doc.getElementById(id);
 
-            if (context.secureValidation) {
-                Element start = context.attr.getOwnerDocument().getDocumentElement();
-                if (!XMLUtils.protectAgainstWrappingAttack(start, id)) {
-                    Object exArgs[] = { id };
-                    throw new ResourceResolverException(
-                        "signature.Verification.MultipleIDs", exArgs, context.uriToResolve, context.baseUri
-                    );
-                }
+            if (context.secureValidation
+                && !context.isUniqueId(context.attr.getOwnerDocument(), id)) {
+                Object exArgs[] = { id };
+                throw new ResourceResolverException(
+                    "signature.Verification.MultipleIDs", exArgs, context.uriToResolve, context.baseUri
+                );
             }
 
             if (resultNode == null) {
@@ -22,11 +22,24 @@ import static org.junit.Assert.*;
 
 import java.io.File;
 import java.security.Security;
-
+import java.util.Collections;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.crypto.KeySelector;
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import javax.xml.crypto.dsig.DigestMethod;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.SignedInfo;
 import javax.xml.crypto.dsig.XMLSignatureException;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMSignContext;
 import javax.xml.crypto.dsig.dom.DOMValidateContext;
+import javax.xml.crypto.dsig.spec.C14NMethodParameterSpec;
+import javax.xml.crypto.dsig.spec.TransformParameterSpec;
 import javax.xml.crypto.test.KeySelectors;
 
+import org.apache.xml.security.signature.XMLSignature;
 import org.apache.xml.security.utils.XMLUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -85,4 +98,50 @@ public class JSRWrappingAttackTest {
         }
     }
 
+    @org.junit.Test
+    public void testDuplicateIdAddedAfterValidation() throws Exception {
+        Document doc = XMLUtils.createDocumentBuilder(false).newDocument();
+        Element root = doc.createElementNS(null, "root");
+        doc.appendChild(root);
+        Element signed = doc.createElementNS(null, "signed");
+        signed.setAttributeNS(null, "Id", "a");
+        signed.appendChild(doc.createTextNode("text"));
+        root.appendChild(signed);
+
+        XMLSignatureFactory fac = XMLSignatureFactory.getInstance("DOM");
+        Reference ref = fac.newReference(
+            "#a", fac.newDigestMethod(DigestMethod.SHA256, null),
+            Collections.singletonList(fac.newTransform(CanonicalizationMethod.EXCLUSIVE, (TransformParameterSpec) null)),
+            null, null
+        );
+        SignedInfo si = fac.newSignedInfo(
+            fac.newCanonicalizationMethod(CanonicalizationMethod.EXCLUSIVE, (C14NMethodParameterSpec) null),
+            fac.newSignatureMethod(XMLSignature.ALGO_ID_MAC_HMAC_SHA256, null),
+            Collections.singletonList(ref)
+        );
+        SecretKey key = new SecretKeySpec(new byte[32], "HmacSHA256");
+        DOMSignContext sc = new DOMSignContext(key, root);
+        sc.setIdAttributeNS(signed, null, "Id");
+        fac.newXMLSignature(si, null).sign(sc);
+
+        Element sigElement = SignatureValidator.getSignatureElement(doc);
+        DOMValidateContext vc = new DOMValidateContext(KeySelector.singletonKeySelector(key), sigElement);
+        vc.setProperty("org.apache.jcp.xml.dsig.secureValidation", Boolean.TRUE);
+        vc.setIdAttributeNS(signed, null, "Id");
+        assertTrue(fac.unmarshalXMLSignature(vc).validate(vc));
+
+        // an element with the same ID is registered between two validations
+        Element duplicate = doc.createElementNS(null, "duplicate");
+        duplicate.setAttributeNS(null, "Id", "a");
+        root.appendChild(duplicate);
+        duplicate.setIdAttributeNS(null, "Id", true);
+
+        try {
+            fac.unmarshalXMLSignature(vc).validate(vc);
+            fail("Failure expected on a duplicate ID");
+        } catch (XMLSignatureException ex) {
+            assertTrue(ex.getMessage().contains("URIReferenceException"));
+        }
+    }
+
 }
@@ -27,7 +27,11 @@ import java.io.*;
 import java.util.*;
 import java.security.*;
 
+import javax.xml.crypto.Data;
 import javax.xml.crypto.URIDereferencer;
+import javax.xml.crypto.URIReference;
+import javax.xml.crypto.URIReferenceException;
+import javax.xml.crypto.XMLCryptoContext;
 import javax.xml.crypto.dom.DOMStructure;
 import javax.xml.crypto.dsig.*;
 import javax.xml.crypto.dsig.keyinfo.*;
@@ -302,6 +306,90 @@ public class XMLSignatureTest {
         }
     }
 
+    @org.junit.Test
+    public void testValidateSharedReferences() throws Exception {
+        // two References to the same Object with different DigestMethods
+        List<Reference> refs = new ArrayList<>();
+        refs.add(fac.newReference("#object-1", fac.newDigestMethod(DigestMethod.SHA1, null)));
+        refs.add(fac.newReference("#object-1", fac.newDigestMethod(DigestMethod.SHA256, null)));
+        CanonicalizationMethod cm = fac.newCanonicalizationMethod
+            (CanonicalizationMethod.INCLUSIVE, (C14NMethodParameterSpec) null);
+        SignedInfo si = fac.newSignedInfo(cm, SIG_METHODS[2], refs);
+
+        Document doc = TestUtils.newDocument();
+        Element content = doc.createElementNS(null, "Content");
+        content.appendChild(doc.createTextNode("shared"));
+        XMLObject obj = fac.newXMLObject(Collections.singletonList
+            (new DOMStructure(content)), "object-1", null, null);
+        XMLSignature sig = fac.newXMLSignature(si, null, Collections.singletonList(obj), null, null);
+        sig.sign(new DOMSignContext(SIGN_KEYS[2], doc));
+
+        DOMValidateContext dvc = new DOMValidateContext
+            (VALIDATE_KEYS[2], doc.getDocumentElement());
+        XMLSignature sig2 = fac.unmarshalXMLSignature(dvc);
+        assertTrue(sig2.validate(dvc));
+        List<?> refs2 = sig2.getSignedInfo().getReferences();
+        assertEquals(20, ((Reference) refs2.get(0)).getCalculatedDigestValue().length);
+        assertEquals(32, ((Reference) refs2.get(1)).getCalculatedDigestValue().length);
+
+        doc.getElementsByTagNameNS(null, "Content").item(0).setTextContent("modified");
+        dvc = new DOMValidateContext(VALIDATE_KEYS[2], doc.getDocumentElement());
+        sig2 = fac.unmarshalXMLSignature(dvc);
+        assertFalse(sig2.validate(dvc));
+        refs2 = sig2.getSignedInfo().getReferences();
+        assertFalse(((Reference) refs2.get(0)).validate(dvc));
+        assertFalse(((Reference) refs2.get(1)).validate(dvc));
+    }
+
+    @org.junit.Test
+    public void testValidateSharedReferencesLazily() throws Exception {
+        List<Reference> refs = new ArrayList<>();
+        refs.add(fac.newReference("#object-1", fac.newDigestMethod(DigestMethod.SHA1, null)));
+        refs.add(fac.newReference("#object-2", fac.newDigestMethod(DigestMethod.SHA1, null)));
+        refs.add(fac.newReference("#object-2", fac.newDigestMethod(DigestMethod.SHA256, null)));
+        CanonicalizationMethod cm = fac.newCanonicalizationMethod
+            (CanonicalizationMethod.INCLUSIVE, (C14NMethodParameterSpec) null);
+        SignedInfo si = fac.newSignedInfo(cm, SIG_METHODS[2], refs);
+
+        Document doc = TestUtils.newDocument();
+        List<XMLObject> objs = new ArrayList<>();
+        for (String id : new String[] {"object-1", "object-2"}) {
+            Element content = doc.createElementNS(null, "Content");
+            content.appendChild(doc.createTextNode(id));
+            objs.add(fac.newXMLObject(Collections.singletonList(new DOMStructure(content)), id, null, null));
+        }
+        XMLSignature sig = fac.newXMLSignature(si, null, objs, null, null);
+        sig.sign(new DOMSignContext(SIGN_KEYS[2], doc));
+
+        // a URIDereferencer of the caller is passed every Reference
+        final List<URIReference> dereferenced = new ArrayList<>();
+        final URIDereferencer defaultDereferencer = fac.getURIDereferencer();
+        DOMValidateContext dvc = new DOMValidateContext
+            (VALIDATE_KEYS[2], doc.getDocumentElement());
+        dvc.setURIDereferencer(new URIDereferencer() {
+            @Override
+            public Data dereference(URIReference uriReference, XMLCryptoContext context)
+                throws URIReferenceException {
+                dereferenced.add(uriReference);
+                return defaultDereferencer.dereference(uriReference, context);
+            }
+        });
+        XMLSignature sig2 = fac.unmarshalXMLSignature(dvc);
+        assertTrue(sig2.validate(dvc));
+        assertEquals(sig2.getSignedInfo().getReferences(), dereferenced);
+
+        // the validation stops at the first invalid Reference
+        doc.getElementsByTagNameNS(null, "Content").item(0).setTextContent("modified");
+        dvc = new DOMValidateContext(VALIDATE_KEYS[2], doc.getDocumentElement());
+        sig2 = fac.unmarshalXMLSignature(dvc);
+        assertFalse(sig2.validate(dvc));
+        List<?> refs2 = sig2.getSignedInfo().getReferences();
+        assertNull(((Reference) refs2.get(1)).getCalculatedDigestValue());
+        assertNull(((Reference) refs2.get(2)).getCalculatedDigestValue());
+        assertTrue(((Reference) refs2.get(1)).validate(dvc));
+        assertEquals(32, ((Reference) refs2.get(2)).getCalculatedDigestValue().length);
+    }
+
     @org.junit.Test
     public void testSignTemplateWithObjectNSDefs() throws Exception {
         String base = System.getProperty("basedir") == null ? "./"
@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.stax.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.xml.security.configuration.ConfigurationType;
+import org.apache.xml.security.configuration.ObjectFactory;
+import org.apache.xml.security.utils.ClassLoaderUtils;
+import org.custommonkey.xmlunit.XMLAssert;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+/**
+ */
+public class ConfigurationHandlerTest extends Assert {
+
+    @Test
+    public void testSameConfigurationAsJaxb() throws Exception {
+        URL url = ClassLoaderUtils.getResource("security-config.xml", ConfigurationHandlerTest.class);
+
+        ConfigurationHandler configurationHandler = new ConfigurationHandler();
+        newSAXParserFactory().newSAXParser().parse(url.toExternalForm(), new XIncludeHandler(configurationHandler));
+        ConfigurationType configurationType = configurationHandler.getConfigurationType();
+
+        JAXBContext jaxbContext = JAXBContext.newInstance(ObjectFactory.class);
+        Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+        @SuppressWarnings("unchecked")
+        JAXBElement<ConfigurationType> expected = (JAXBElement<ConfigurationType>) unmarshaller.unmarshal(url);
+
+        assertFalse(configurationType.getJCEAlgorithmMappings().getAlgorithm().isEmpty());
+        XMLAssert.assertXMLEqual(marshal(jaxbContext, expected.getValue()), marshal(jaxbContext, configurationType));
+    }
+
+    @Test
+    public void testInvalidConfiguration() throws Exception {
+        String sections =
+            "<Properties/><SecurityHeaderHandlers/><TransformAlgorithms/><JCEAlgorithmMappings/><ResourceResolvers/>";
+        parse("<Configuration xmlns=\"" + ConfigurationHandler.NS_CONFIGURATION + "\">" + sections + "</Configuration>");
+
+        assertInvalid("<Configuration xmlns=\"" + ConfigurationHandler.NS_CONFIGURATION + "\">"
+                      + "<Properties/><SecurityHeaderHandlers/><TransformAlgorithms/><JCEAlgorithmMappings/>"
+                      + "</Configuration>");
+        assertInvalid("<Configuration xmlns=\"" + ConfigurationHandler.NS_CONFIGURATION + "\" foo=\"bar\">"
+                      + sections + "</Configuration>");
+        assertInvalid("<Configuration xmlns=\"" + ConfigurationHandler.NS_CONFIGURATION + "\">"
+                      + "<Properties/><SecurityHeaderHandlers/><TransformAlgorithms>"
+                      + "<TransformAlgorithm URI=\"urn:a\" JAVACLASS=\"a\" INOUT=\"INOUT\"/></TransformAlgorithms>"
+                      + "<JCEAlgorithmMappings/><ResourceResolvers/></Configuration>");
+        assertInvalid("<Configuration xmlns=\"" + ConfigurationHandler.NS_CONFIGURATION + "\">"
+                      + "<Properties/><SecurityHeaderHandlers/><TransformAlgorithms/><JCEAlgorithmMappings>"
+                      + "<Algorithm URI=\"urn:a\" Description=\"a\" AlgorithmClass=\"a\" RequirementLevel=\"a\" "
+                      + "JCEName=\"a\" KeyLength=\"a\"/></JCEAlgorithmMappings><ResourceResolvers/></Configuration>");
+        assertInvalid("<Configuration xmlns=\"" + ConfigurationHandler.NS_CONFIGURATION + "\">"
+                      + "<Properties/><SecurityHeaderHandlers/><TransformAlgorithms/><JCEAlgorithmMappings/>"
+                      + "<ResourceResolvers><Resolver JAVACLASS=\"a\"/></ResourceResolvers></Configuration>");
+        assertInvalid("<doc/>");
+    }
+
+    private void assertInvalid(String xml) throws Exception {
+        try {
+            parse(xml);
+            fail("SAXException expected for " + xml);
+        } catch (SAXException e) { //NOPMD
+            //expected
+        }
+    }
+
+    private ConfigurationType parse(String xml) throws Exception {
+        ConfigurationHandler configurationHandler = new ConfigurationHandler();
+        newSAXParserFactory().newSAXParser().parse(
+            new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), configurationHandler);
+        return configurationHandler.getConfigurationType();
+    }
+
+    private static SAXParserFactory newSAXParserFactory() {
+        SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+        saxParserFactory.setNamespaceAware(true);
+        return saxParserFactory;
+    }
+
+    private static String marshal(JAXBContext jaxbContext, ConfigurationType configurationType) throws Exception {
+        Marshaller marshaller = jaxbContext.createMarshaller();
+        StringWriter stringWriter = new StringWriter();
+        marshaller.marshal(new ObjectFactory().createConfiguration(configurationType), stringWriter);
+        return stringWriter.toString();
+    }
+}
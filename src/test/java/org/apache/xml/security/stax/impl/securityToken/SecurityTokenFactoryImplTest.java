@@ -21,12 +21,17 @@ package org.apache.xml.security.stax.impl.securityToken;
 import java.security.Key;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
 
 import javax.xml.bind.JAXBElement;
 
 import org.apache.xml.security.binding.xmldsig.KeyInfoType;
+import org.apache.xml.security.binding.xmldsig.KeyValueType;
 import org.apache.xml.security.binding.xmldsig.ObjectFactory;
+import org.apache.xml.security.binding.xmldsig.RSAKeyValueType;
 import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.keys.ResolvedKeyCache;
 import org.apache.xml.security.stax.config.Init;
 import org.apache.xml.security.stax.ext.InboundSecurityContext;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
@@ -40,6 +45,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import static org.apache.xml.security.stax.securityToken.SecurityTokenConstants.KeyIdentifier_KeyName;
+import static org.apache.xml.security.stax.securityToken.SecurityTokenConstants.KeyIdentifier_KeyValue;
 import static org.apache.xml.security.test.stax.utils.KeyLoader.loadPublicKey;
 import static org.junit.Assert.*;
 
@@ -138,4 +144,41 @@ public class SecurityTokenFactoryImplTest {
         factory.getSecurityToken(keyInfoType, keyUsage, xmlSecurityProperties, inboundSecurityContext);
     }
 
+    @Test
+    public void testKeyValueTokenWithResolvedKeyCache() throws Exception {
+        SecurityTokenFactory factory = new SecurityTokenFactoryImpl();
+
+        SecurityTokenConstants.KeyUsage keyUsage = SecurityTokenConstants.KeyUsage_Signature_Verification;
+
+        RSAPublicKey publicKey = (RSAPublicKey) loadPublicKey("rsa.key", "RSA");
+        ResolvedKeyCache resolvedKeyCache = new ResolvedKeyCache(10, 60000L);
+        xmlSecurityProperties.setResolvedKeyCache(resolvedKeyCache);
+
+        InboundSecurityToken token =
+                factory.getSecurityToken(newKeyValue(publicKey), keyUsage, xmlSecurityProperties, inboundSecurityContext);
+        assertEquals(KeyIdentifier_KeyValue, token.getKeyIdentifier());
+        PublicKey resolved = token.getPublicKey();
+        assertEquals(publicKey, resolved);
+        assertEquals(1, resolvedKeyCache.size());
+
+        InboundSecurityContext otherInboundSecurityContext = new InboundSecurityContextImpl();
+        token = factory.getSecurityToken(newKeyValue(publicKey), keyUsage, xmlSecurityProperties, otherInboundSecurityContext);
+        assertSame(resolved, token.getPublicKey());
+        assertEquals(1, resolvedKeyCache.getHits());
+    }
+
+    private static KeyInfoType newKeyValue(RSAPublicKey publicKey) {
+        ObjectFactory of = new ObjectFactory();
+
+        RSAKeyValueType rsaKeyValueType = new RSAKeyValueType();
+        rsaKeyValueType.setModulus(publicKey.getModulus().toByteArray());
+        rsaKeyValueType.setExponent(publicKey.getPublicExponent().toByteArray());
+        KeyValueType keyValueType = new KeyValueType();
+        keyValueType.getContent().add(of.createRSAKeyValue(rsaKeyValueType));
+
+        KeyInfoType keyInfoType = new KeyInfoType();
+        keyInfoType.getContent().add(of.createKeyValue(keyValueType));
+        return keyInfoType;
+    }
+
 }
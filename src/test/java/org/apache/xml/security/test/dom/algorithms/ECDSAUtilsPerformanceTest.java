@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.test.dom.algorithms;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+
+import org.apache.xml.security.algorithms.implementations.ECDSAUtils;
+import org.junit.Test;
+
+/**
+ * Measures the conversion of ECDSA signatures and the lookup of the curves. It is excluded
+ * from the normal build, run it with "mvn test -Dtest=ECDSAUtilsPerformanceTest".
+ */
+public class ECDSAUtilsPerformanceTest {
+
+    private static final int runs = 20;
+    private static final int iterations = 1000000;
+
+    @Test
+    public void testConversionPerformance() throws Exception {
+        System.out.println("Testing ECDSAUtils performance");
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("EC");
+        kpg.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = kpg.generateKeyPair();
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(new byte[] {1, 2, 3});
+        byte[] asn1 = signature.sign();
+        byte[] xmldsig = ECDSAUtils.convertASN1toXMLDSIG(asn1);
+
+        byte[] asn1Buffer = new byte[ECDSAUtils.getMaxASN1Length(xmldsig.length)];
+        byte[] xmldsigBuffer = new byte[64];
+        for (int run = 1; run <= runs; run++) {
+            long length = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                length += ECDSAUtils.convertXMLDSIGtoASN1(xmldsig).length;
+                length += ECDSAUtils.convertASN1toXMLDSIG(asn1).length;
+            }
+            long allocating = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                length += ECDSAUtils.convertXMLDSIGtoASN1(xmldsig, 0, xmldsig.length, asn1Buffer, 0);
+                length += ECDSAUtils.convertASN1toXMLDSIG(asn1, 0, asn1.length, xmldsigBuffer, 0, 32);
+            }
+            long buffered = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                length += ECDSAUtils.getECCurveDefinition("1.2.840.10045.3.1.7").getH();
+            }
+            long lookup = System.nanoTime() - start;
+
+            System.out.println("Run " + run + ": round trip " + allocating / iterations + " ns/op, "
+                + "into buffers " + buffered / iterations + " ns/op, "
+                + "curve lookup " + lookup / iterations + " ns/op (" + length + ")");
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.test.dom.algorithms;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+
+import org.apache.xml.security.algorithms.implementations.ECDSAUtils;
+import org.junit.Assert;
+
+/**
+ * Tests the conversion of ECDSA signatures and the lookup of the curves in ECDSAUtils.
+ */
+public class ECDSAUtilsTest extends Assert {
+
+    @org.junit.Test
+    public void testConvertRealSignatures() throws Exception {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("EC");
+        kpg.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = kpg.generateKeyPair();
+        byte[] data = "Some data to sign".getBytes("UTF-8");
+
+        byte[] asn1Buffer = new byte[ECDSAUtils.getMaxASN1Length(64) + 5];
+        for (int i = 0; i < 50; i++) {
+            Signature signature = Signature.getInstance("SHA256withECDSA");
+            signature.initSign(keyPair.getPrivate());
+            signature.update(data);
+            byte[] asn1 = signature.sign();
+
+            byte[] xmldsig = ECDSAUtils.convertASN1toXMLDSIG(asn1);
+            // r or s may be shorter than 32 bytes, but not both of them in practice
+            assertTrue(xmldsig.length <= 64);
+            assertArrayEquals(asn1, ECDSAUtils.convertXMLDSIGtoASN1(xmldsig));
+
+            // the buffer variants with the fixed length of the curve
+            byte[] raw = new byte[70];
+            assertEquals(64, ECDSAUtils.convertASN1toXMLDSIG(asn1, 0, asn1.length, raw, 3, 32));
+            int length = ECDSAUtils.convertXMLDSIGtoASN1(raw, 3, 64, asn1Buffer, 5);
+            assertArrayEquals(asn1, Arrays.copyOfRange(asn1Buffer, 5, 5 + length));
+
+            signature.initVerify(keyPair.getPublic());
+            signature.update(data);
+            assertTrue(signature.verify(asn1Buffer, 5, length));
+        }
+    }
+
+    @org.junit.Test
+    public void testConvertLeadingZeros() throws Exception {
+        byte[] xmldsig = new byte[64];
+        xmldsig[31] = 1;
+        xmldsig[32] = (byte) 0x80;
+        xmldsig[63] = 2;
+        byte[] asn1 = ECDSAUtils.convertXMLDSIGtoASN1(xmldsig);
+        // r = 1, s with a sign byte
+        assertEquals(0x30, asn1[0]);
+        assertEquals(asn1.length - 2, asn1[1]);
+        assertArrayEquals(new byte[] {2, 1, 1, 2, 33, 0, (byte) 0x80}, Arrays.copyOfRange(asn1, 2, 9));
+
+        byte[] raw = new byte[64];
+        Arrays.fill(raw, (byte) 0xff);
+        ECDSAUtils.convertASN1toXMLDSIG(asn1, 0, asn1.length, raw, 0, 32);
+        assertArrayEquals(xmldsig, raw);
+
+        try {
+            ECDSAUtils.convertASN1toXMLDSIG(asn1, 0, asn1.length, raw, 0, 16);
+            fail("Failure expected as s is longer than 16 bytes");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    @org.junit.Test
+    public void testConvertInvalidSignatures() throws Exception {
+        byte[][] invalid = {
+            {0x30, 0x06, 0x02, 0x01, 0x01, 0x02, 0x01},
+            {0x31, 0x06, 0x02, 0x01, 0x01, 0x02, 0x01, 0x01},
+            {0x30, 0x07, 0x02, 0x01, 0x01, 0x02, 0x01, 0x01},
+            {0x30, 0x06, 0x02, 0x05, 0x01, 0x02, 0x01, 0x01},
+            {0x30, 0x06, 0x02, 0x01, 0x01, 0x04, 0x01, 0x01},
+        };
+        for (byte[] asn1 : invalid) {
+            try {
+                ECDSAUtils.convertASN1toXMLDSIG(asn1);
+                fail("Failure expected on " + Arrays.toString(asn1));
+            } catch (IOException ex) {
+                // expected
+            }
+        }
+        try {
+            ECDSAUtils.convertXMLDSIGtoASN1(new byte[1]);
+            fail("Failure expected on an empty signature value");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    @org.junit.Test
+    public void testCurveDefinitions() throws Exception {
+        ECDSAUtils.ECCurveDefinition p256 = ECDSAUtils.getECCurveDefinition("1.2.840.10045.3.1.7");
+        assertNotNull(p256);
+        assertSame(p256, ECDSAUtils.getECCurveDefinitionByName("secp256r1"));
+        assertSame(p256, ECDSAUtils.getECCurveDefinitionByName("NIST P-256"));
+        assertSame(p256, ECDSAUtils.getECCurveDefinitionByName("X9.62 prime256v1"));
+        assertNull(ECDSAUtils.getECCurveDefinition("1.2.3.4"));
+        assertNull(ECDSAUtils.getECCurveDefinitionByName("unknown"));
+
+        // the parameters are built once
+        assertSame(p256.getECParameterSpec(), p256.getECParameterSpec());
+        assertEquals(32, (p256.getECParameterSpec().getCurve().getField().getFieldSize() + 7) / 8);
+
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("EC");
+        kpg.initialize(new ECGenParameterSpec("secp256r1"));
+        ECPublicKey publicKey = (ECPublicKey) kpg.generateKeyPair().getPublic();
+        assertEquals("1.2.840.10045.3.1.7", ECDSAUtils.getOIDFromPublicKey(publicKey));
+
+        // every curve is found by its oid
+        for (ECDSAUtils.ECCurveDefinition definition : ECDSAUtils.getECCurveDefinitions()) {
+            assertSame(definition, ECDSAUtils.getECCurveDefinition(definition.getOid()));
+        }
+    }
+}
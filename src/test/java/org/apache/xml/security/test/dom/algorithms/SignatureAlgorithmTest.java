@@ -22,6 +22,8 @@ import java.security.KeyPairGenerator;
 import java.security.PrivateKey;
 
 import org.apache.xml.security.algorithms.SignatureAlgorithm;
+import org.apache.xml.security.algorithms.implementations.SignatureBaseRSA;
+import org.apache.xml.security.exceptions.AlgorithmAlreadyRegisteredException;
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.signature.XMLSignature;
 import org.apache.xml.security.utils.XMLUtils;
@@ -62,4 +64,16 @@ public class SignatureAlgorithmTest {
         otherSignatureAlgorithm.sign();
     }
 
+    @org.junit.Test
+    public void testDefaultAlgorithmAlreadyRegistered() throws Exception {
+        try {
+            SignatureAlgorithm.register(
+                XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA256, SignatureBaseRSA.SignatureRSASHA256.class
+            );
+            org.junit.Assert.fail("AlgorithmAlreadyRegisteredException expected");
+        } catch (AlgorithmAlreadyRegisteredException ex) { //NOPMD
+            //expected
+        }
+    }
+
 }
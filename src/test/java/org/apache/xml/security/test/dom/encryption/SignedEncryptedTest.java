@@ -99,6 +99,17 @@ public class SignedEncryptedTest extends Assert {
         secureAndVerify(null, true);
     }
 
+    /**
+     * This test uses the default StaxSerializer, which creates the decrypted nodes directly in the
+     * original document.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void decryptUsingStaxSerializer() throws Exception {
+        secureAndVerify(null, false);
+    }
+
     public void secureAndVerify(TransformerFactory transformerFactory, boolean useDocumentSerializer) throws Exception {
         DocumentBuilder builder = XMLUtils.createDocumentBuilder(false);
         Document document = null;
@@ -145,7 +156,8 @@ public class SignedEncryptedTest extends Assert {
         document = cipher.doFinal(document, element, true);
 
         XMLCipher deCipher = XMLCipher.getInstance(XMLCipher.AES_128);
-        if (transformerFactory != null && deCipher.getSerializer() instanceof TransformSerializer) {
+        if (transformerFactory != null) {
+            deCipher.setSerializer(new TransformSerializer());
             Field f = deCipher.getSerializer().getClass().getDeclaredField("transformerFactory");
             f.setAccessible(true);
             f.set(deCipher.getSerializer(), transformerFactory);
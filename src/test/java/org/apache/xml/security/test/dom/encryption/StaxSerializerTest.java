@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.test.dom.encryption;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.xml.security.encryption.StaxSerializer;
+import org.apache.xml.security.encryption.XMLEncryptionException;
+import org.apache.xml.security.utils.XMLUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Test for the StaxSerializer, which creates the parsed nodes directly in the context document.
+ */
+public class StaxSerializerTest extends Assert {
+
+    static {
+        org.apache.xml.security.Init.init();
+    }
+
+    @Test
+    public void testElement() throws Exception {
+        Element ctx = createContext();
+        String source =
+            "<p:a xmlns:x=\"urn:x\" x:attr=\"1\" plain=\"2\" xml:lang=\"en\">"
+            + "<b xmlns=\"urn:default\">text &amp; more</b></p:a>";
+
+        Node node = new StaxSerializer().deserialize(source.getBytes(StandardCharsets.UTF_8), ctx);
+        assertSame(ctx.getOwnerDocument(), node.getOwnerDocument());
+
+        Element a = (Element) node;
+        // the prefix is bound by the context
+        assertEquals("urn:p", a.getNamespaceURI());
+        assertEquals("a", a.getLocalName());
+        assertEquals("1", a.getAttributeNS("urn:x", "attr"));
+        assertEquals("2", a.getAttributeNS(null, "plain"));
+        assertEquals("en", a.getAttributeNS("http://www.w3.org/XML/1998/namespace", "lang"));
+        assertEquals("urn:x", a.getAttributeNS("http://www.w3.org/2000/xmlns/", "x"));
+        // the declarations of the context are not copied
+        assertFalse(a.hasAttributeNS("http://www.w3.org/2000/xmlns/", "p"));
+
+        Element b = (Element) a.getFirstChild();
+        assertEquals("urn:default", b.getNamespaceURI());
+        assertEquals("text & more", b.getTextContent());
+        assertEquals(1, b.getChildNodes().getLength());
+    }
+
+    @Test
+    public void testContent() throws Exception {
+        Element ctx = createContext();
+        String source = "text<!--comment--><?target data?><![CDATA[<cdata>]]><e/>";
+
+        Node node = new StaxSerializer().deserialize(source, ctx);
+        assertEquals(Node.DOCUMENT_FRAGMENT_NODE, node.getNodeType());
+
+        Node child = node.getFirstChild();
+        assertEquals(Node.TEXT_NODE, child.getNodeType());
+        assertEquals("text", child.getNodeValue());
+        child = child.getNextSibling();
+        assertEquals(Node.COMMENT_NODE, child.getNodeType());
+        assertEquals("comment", child.getNodeValue());
+        child = child.getNextSibling();
+        assertEquals(Node.PROCESSING_INSTRUCTION_NODE, child.getNodeType());
+        assertEquals("target", child.getNodeName());
+        assertEquals("data", child.getNodeValue());
+        child = child.getNextSibling();
+        assertEquals(Node.CDATA_SECTION_NODE, child.getNodeType());
+        assertEquals("<cdata>", child.getNodeValue());
+        child = child.getNextSibling();
+        assertEquals("e", child.getLocalName());
+        assertNull(child.getNextSibling());
+    }
+
+    @Test
+    public void testDoctypeNotAllowed() throws Exception {
+        Element ctx = createContext();
+        String source = "<!DOCTYPE a [<!ENTITY e \"x\">]><a>&e;</a>";
+        try {
+            new StaxSerializer().deserialize(source.getBytes(StandardCharsets.UTF_8), ctx);
+            fail("Failure expected on a DOCTYPE");
+        } catch (XMLEncryptionException ex) {
+            // expected
+        }
+    }
+
+    private static Element createContext() throws Exception {
+        Document doc = XMLUtils.createDocumentBuilder(false).newDocument();
+        Element root = doc.createElementNS("urn:p", "p:root");
+        root.setAttributeNS("http://www.w3.org/2000/xmlns/", "xmlns:p", "urn:p");
+        doc.appendChild(root);
+        return root;
+    }
+}
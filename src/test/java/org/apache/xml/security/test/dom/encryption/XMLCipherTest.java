@@ -23,6 +23,7 @@ import static org.junit.Assert.*;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
@@ -31,7 +32,14 @@ import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.NoSuchPaddingException;
@@ -50,7 +58,10 @@ import org.apache.xml.security.encryption.EncryptedData;
 import org.apache.xml.security.encryption.EncryptedKey;
 import org.apache.xml.security.encryption.EncryptionMethod;
 import org.apache.xml.security.encryption.CipherData;
+import org.apache.xml.security.encryption.Reference;
+import org.apache.xml.security.encryption.XMLEncryptionException;
 import org.apache.xml.security.transforms.params.XPathContainer;
+import org.apache.xml.security.utils.Constants;
 import org.apache.xml.security.utils.EncryptionConstants;
 import org.apache.xml.security.utils.XMLUtils;
 import org.apache.xml.security.keys.KeyInfo;
@@ -900,6 +911,308 @@ public class XMLCipherTest {
         xmlCipher.decryptToByteArray(encryptedData);
     }
 
+    @org.junit.Test
+    public void testDecryptToInputStream() throws Exception {
+        KeyGenerator keygen = KeyGenerator.getInstance("AES");
+        keygen.init(128);
+        Key key = keygen.generateKey();
+
+        for (String algorithm : new String[] {XMLCipher.AES_128, XMLCipher.AES_128_GCM}) {
+            Document d = document();
+            Element e = (Element) d.getElementsByTagName(element()).item(index());
+
+            XMLCipher cipher = XMLCipher.getInstance(algorithm);
+            cipher.init(XMLCipher.ENCRYPT_MODE, key);
+            EncryptedData encryptedData = cipher.encryptData(d, e);
+            Element encryptedElement = cipher.martial(d, encryptedData);
+
+            XMLCipher dcipher = XMLCipher.getInstance(algorithm);
+            dcipher.init(XMLCipher.DECRYPT_MODE, key);
+            byte[] expected = dcipher.decryptToByteArray(encryptedElement);
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (InputStream is = dcipher.decryptToInputStream(encryptedElement)) {
+                byte[] buf = new byte[100];
+                int read;
+                while ((read = is.read(buf)) != -1) {
+                    baos.write(buf, 0, read);
+                }
+            }
+            assertArrayEquals(expected, baos.toByteArray());
+            assertTrue(new String(expected, StandardCharsets.UTF_8).startsWith("<" + element()));
+        }
+    }
+
+    @org.junit.Test
+    public void testDecryptToInputStreamModified() throws Exception {
+        KeyGenerator keygen = KeyGenerator.getInstance("AES");
+        keygen.init(128);
+        Key key = keygen.generateKey();
+
+        Document d = document();
+        Element e = (Element) d.getElementsByTagName(element()).item(index());
+
+        XMLCipher cipher = XMLCipher.getInstance(XMLCipher.AES_128_GCM);
+        cipher.init(XMLCipher.ENCRYPT_MODE, key);
+        EncryptedData encryptedData = cipher.encryptData(d, e);
+
+        // modify the authentication tag at the end of the cipher text
+        byte[] cipherText = XMLUtils.decode(encryptedData.getCipherData().getCipherValue().getValue());
+        cipherText[cipherText.length - 1] ^= 1;
+        encryptedData.getCipherData().getCipherValue().setValue(XMLUtils.encodeToString(cipherText));
+        Element encryptedElement = cipher.martial(d, encryptedData);
+
+        XMLCipher dcipher = XMLCipher.getInstance(XMLCipher.AES_128_GCM);
+        dcipher.init(XMLCipher.DECRYPT_MODE, key);
+        try (InputStream is = dcipher.decryptToInputStream(encryptedElement)) {
+            byte[] buf = new byte[100];
+            while (is.read(buf) != -1) { //NOPMD
+            }
+            fail("Failure expected on a modified cipher text");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    @org.junit.Test
+    public void testDecryptElementModified() throws Exception {
+        KeyGenerator keygen = KeyGenerator.getInstance("AES");
+        keygen.init(128);
+        Key key = keygen.generateKey();
+
+        Document d = document();
+        Element e = (Element) d.getElementsByTagName(element()).item(index());
+
+        XMLCipher cipher = XMLCipher.getInstance(XMLCipher.AES_128_GCM);
+        cipher.init(XMLCipher.ENCRYPT_MODE, key);
+        EncryptedData encryptedData = cipher.encryptData(d, e);
+
+        // modify the authentication tag at the end of the cipher text
+        byte[] cipherText = XMLUtils.decode(encryptedData.getCipherData().getCipherValue().getValue());
+        cipherText[cipherText.length - 1] ^= 1;
+        encryptedData.getCipherData().getCipherValue().setValue(XMLUtils.encodeToString(cipherText));
+        Element encryptedElement = cipher.martial(d, encryptedData);
+        e.getParentNode().replaceChild(encryptedElement, e);
+
+        XMLCipher dcipher = XMLCipher.getInstance(XMLCipher.AES_128_GCM);
+        dcipher.init(XMLCipher.DECRYPT_MODE, key);
+        try {
+            dcipher.doFinal(d, encryptedElement);
+            fail("Failure expected on a modified cipher text");
+        } catch (XMLEncryptionException ex) {
+            // the cipher text is authenticated before the plain text is parsed
+            assertTrue(ex.getCause() instanceof BadPaddingException);
+        }
+    }
+
+    @org.junit.Test
+    public void testLargeElement() throws Exception {
+        KeyGenerator keygen = KeyGenerator.getInstance("AES");
+        keygen.init(128);
+        Key key = keygen.generateKey();
+
+        Document d = XMLUtils.createDocumentBuilder(false).newDocument();
+        Element root = d.createElementNS(null, "root");
+        d.appendChild(root);
+        Element payload = d.createElementNS(null, "payload");
+        root.appendChild(payload);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("line ").append(i).append(" & <escaped>\n");
+        }
+        payload.appendChild(d.createTextNode(text.toString()));
+
+        XMLCipher cipher = XMLCipher.getInstance(XMLCipher.AES_128_GCM);
+        cipher.init(XMLCipher.ENCRYPT_MODE, key);
+        cipher.doFinal(d, payload, true);
+        assertNull(payload.getFirstChild().getNextSibling());
+        assertEquals(EncryptionConstants._TAG_ENCRYPTEDDATA, payload.getFirstChild().getLocalName());
+
+        XMLCipher dcipher = XMLCipher.getInstance(XMLCipher.AES_128_GCM);
+        dcipher.init(XMLCipher.DECRYPT_MODE, key);
+        dcipher.doFinal(d, (Element) payload.getFirstChild());
+        assertEquals(text.toString(), payload.getTextContent());
+    }
+
+    @org.junit.Test
+    public void testBatchEncryption() throws Exception {
+        KeyGenerator keygen = KeyGenerator.getInstance("AES");
+        keygen.init(128);
+        Key key = keygen.generateKey();
+        keygen.init(192);
+        Key kek = keygen.generateKey();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (boolean content : new boolean[] {false, true}) {
+                for (Executor e : new Executor[] {null, executor}) {
+                    Document d = invoice(50);
+                    String source = toString(d);
+                    List<Element> items = new ArrayList<>();
+                    NodeList nl = d.getElementsByTagNameNS("urn:invoice", "item");
+                    for (int i = 0; i < nl.getLength(); i++) {
+                        items.add((Element) nl.item(i));
+                    }
+
+                    XMLCipher keyCipher = XMLCipher.getInstance(XMLCipher.AES_192_KeyWrap);
+                    keyCipher.init(XMLCipher.WRAP_MODE, kek);
+                    EncryptedKey encryptedKey = keyCipher.encryptKey(d, key);
+
+                    XMLCipher cipher = XMLCipher.getInstance(XMLCipher.AES_128_GCM);
+                    cipher.init(XMLCipher.ENCRYPT_MODE, key);
+                    List<Element> encrypted = cipher.doFinal(d, items, content, encryptedKey, e);
+                    d.getDocumentElement().appendChild(cipher.martial(d, encryptedKey));
+
+                    assertEquals(items.size(), encrypted.size());
+                    assertEquals(0, d.getElementsByTagNameNS("urn:invoice", "price").getLength());
+                    assertEquals(items.size(), encryptedKey.getReferenceList().size());
+                    Iterator<Reference> references = encryptedKey.getReferenceList().getReferences();
+                    for (int i = 0; i < encrypted.size(); i++) {
+                        Element encryptedElement = encrypted.get(i);
+                        assertEquals(
+                            "#" + encryptedElement.getAttributeNS(null, "Id"), references.next().getURI()
+                        );
+                        if (content) {
+                            assertSame(items.get(i), encryptedElement.getParentNode());
+                        }
+                    }
+
+                    // decrypt with the key from the shared EncryptedKey
+                    Element ek = (Element) d.getElementsByTagNameNS(
+                        EncryptionConstants.EncryptionSpecNS, EncryptionConstants._TAG_ENCRYPTEDKEY
+                    ).item(0);
+                    XMLCipher kekCipher = XMLCipher.getInstance();
+                    kekCipher.init(XMLCipher.UNWRAP_MODE, kek);
+                    Key contentKey = kekCipher.decryptKey(kekCipher.loadEncryptedKey(d, ek), XMLCipher.AES_128_GCM);
+                    d.getDocumentElement().removeChild(ek);
+
+                    XMLCipher dcipher = XMLCipher.getInstance(XMLCipher.AES_128_GCM);
+                    dcipher.init(XMLCipher.DECRYPT_MODE, contentKey);
+                    for (Element encryptedElement : encrypted) {
+                        dcipher.doFinal(d, encryptedElement);
+                    }
+                    assertEquals(source, toString(d));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @org.junit.Test
+    public void testBatchEncryptionNestedElements() throws Exception {
+        KeyGenerator keygen = KeyGenerator.getInstance("AES");
+        keygen.init(128);
+        Key key = keygen.generateKey();
+
+        Document d = invoice(2);
+        String source = toString(d);
+        List<Element> elements = new ArrayList<>();
+        elements.add((Element) d.getElementsByTagNameNS("urn:invoice", "item").item(1));
+        elements.add((Element) d.getElementsByTagNameNS("urn:invoice", "price").item(1));
+
+        XMLCipher cipher = XMLCipher.getInstance(XMLCipher.AES_128);
+        cipher.init(XMLCipher.ENCRYPT_MODE, key);
+        try {
+            cipher.doFinal(d, elements, false, null);
+            fail("Failure expected on nested elements");
+        } catch (XMLEncryptionException ex) {
+            // expected
+        }
+        assertEquals(source, toString(d));
+    }
+
+    @org.junit.Test
+    public void testDecryptDocument() throws Exception {
+        KeyGenerator keygen = KeyGenerator.getInstance("AES");
+        keygen.init(128);
+        Key key = keygen.generateKey();
+        keygen.init(192);
+        Key kek = keygen.generateKey();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (boolean content : new boolean[] {false, true}) {
+                for (Executor e : new Executor[] {null, executor}) {
+                    Document d = invoice(50);
+                    String source = toString(d);
+                    List<Element> items = new ArrayList<>();
+                    NodeList nl = d.getElementsByTagNameNS("urn:invoice", "item");
+                    for (int i = 0; i < nl.getLength(); i++) {
+                        items.add((Element) nl.item(i));
+                    }
+
+                    XMLCipher keyCipher = XMLCipher.getInstance(XMLCipher.AES_192_KeyWrap);
+                    keyCipher.init(XMLCipher.WRAP_MODE, kek);
+                    EncryptedKey encryptedKey = keyCipher.encryptKey(d, key);
+
+                    XMLCipher cipher = XMLCipher.getInstance(XMLCipher.AES_128_GCM);
+                    cipher.init(XMLCipher.ENCRYPT_MODE, key);
+                    cipher.doFinal(d, items, content, encryptedKey, e);
+                    Element ek = cipher.martial(d, encryptedKey);
+                    d.getDocumentElement().appendChild(ek);
+
+                    // the key is decrypted from the shared EncryptedKey
+                    XMLCipher dcipher = XMLCipher.getInstance();
+                    dcipher.init(XMLCipher.DECRYPT_MODE, null);
+                    dcipher.setKEK(kek);
+                    dcipher.decryptDocument(d, e);
+
+                    assertEquals(
+                        0,
+                        d.getElementsByTagNameNS(
+                            EncryptionConstants.EncryptionSpecNS, EncryptionConstants._TAG_ENCRYPTEDDATA
+                        ).getLength()
+                    );
+                    d.getDocumentElement().removeChild(ek);
+                    assertEquals(source, toString(d));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @org.junit.Test
+    public void testDecryptDocumentModified() throws Exception {
+        KeyGenerator keygen = KeyGenerator.getInstance("AES");
+        keygen.init(128);
+        Key key = keygen.generateKey();
+
+        Document d = invoice(10);
+        List<Element> items = new ArrayList<>();
+        NodeList nl = d.getElementsByTagNameNS("urn:invoice", "item");
+        for (int i = 0; i < nl.getLength(); i++) {
+            items.add((Element) nl.item(i));
+        }
+        XMLCipher cipher = XMLCipher.getInstance(XMLCipher.AES_128_GCM);
+        cipher.init(XMLCipher.ENCRYPT_MODE, key);
+        List<Element> encrypted = cipher.doFinal(d, items, false, null);
+
+        // modify the authentication tag of the last cipher text
+        Element cipherValue = (Element) encrypted.get(encrypted.size() - 1).getElementsByTagNameNS(
+            EncryptionConstants.EncryptionSpecNS, EncryptionConstants._TAG_CIPHERVALUE
+        ).item(0);
+        byte[] cipherText = XMLUtils.decode(cipherValue.getTextContent());
+        cipherText[cipherText.length - 1] ^= 1;
+        cipherValue.setTextContent(XMLUtils.encodeToString(cipherText));
+        String encryptedDocument = toString(d);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            XMLCipher dcipher = XMLCipher.getInstance(XMLCipher.AES_128_GCM);
+            dcipher.init(XMLCipher.DECRYPT_MODE, key);
+            dcipher.decryptDocument(d, executor);
+            fail("Failure expected on a modified cipher text");
+        } catch (XMLEncryptionException ex) {
+            // expected
+        } finally {
+            executor.shutdown();
+        }
+        // none of the other EncryptedData elements was replaced
+        assertEquals(encryptedDocument, toString(d));
+    }
+
     @org.junit.Test
     public void testMultipleKEKs() throws Exception {
 
@@ -981,6 +1294,22 @@ public class XMLCipherTest {
         return baos.toString(StandardCharsets.UTF_8.name());
     }
 
+    private Document invoice(int items) throws Exception {
+        Document d = XMLUtils.createDocumentBuilder(false).newDocument();
+        Element root = d.createElementNS("urn:invoice", "inv:invoice");
+        root.setAttributeNS(Constants.NamespaceSpecNS, "xmlns:inv", "urn:invoice");
+        d.appendChild(root);
+        for (int i = 0; i < items; i++) {
+            Element item = d.createElementNS("urn:invoice", "inv:item");
+            item.setAttributeNS(null, "number", String.valueOf(i));
+            Element price = d.createElementNS("urn:invoice", "inv:price");
+            price.appendChild(d.createTextNode(i + ".95"));
+            item.appendChild(price);
+            root.appendChild(item);
+        }
+        return d;
+    }
+
     private Document document() {
         Document d = null;
         try {
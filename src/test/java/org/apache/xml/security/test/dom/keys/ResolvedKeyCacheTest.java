@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.test.dom.keys;
+
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.util.Arrays;
+
+import org.apache.xml.security.keys.KeyInfo;
+import org.apache.xml.security.keys.ResolvedKeyCache;
+import org.apache.xml.security.keys.keyresolver.KeyResolverSpi;
+import org.apache.xml.security.keys.storage.StorageResolver;
+import org.apache.xml.security.utils.XMLUtils;
+import org.junit.Assert;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Test for the cache of the keys resolved from a KeyInfo.
+ */
+public class ResolvedKeyCacheTest extends Assert {
+
+    static {
+        org.apache.xml.security.Init.init();
+    }
+
+    private final PublicKey publicKey;
+
+    public ResolvedKeyCacheTest() throws Exception {
+        publicKey = KeyPairGenerator.getInstance("RSA").generateKeyPair().getPublic();
+    }
+
+    @org.junit.Test
+    public void testKeyValue() throws Exception {
+        ResolvedKeyCache cache = new ResolvedKeyCache(10, 60000L);
+
+        KeyInfo keyInfo = newKeyInfo(publicKey, cache);
+        PublicKey resolved = keyInfo.getPublicKey();
+        assertEquals(publicKey, resolved);
+        assertEquals(1, cache.size());
+
+        // the same KeyValue in another document
+        long hits = cache.getHits();
+        assertSame(resolved, newKeyInfo(publicKey, cache).getPublicKey());
+        assertEquals(hits + 1, cache.getHits());
+
+        // another KeyValue
+        PublicKey otherKey = KeyPairGenerator.getInstance("RSA").generateKeyPair().getPublic();
+        assertEquals(otherKey, newKeyInfo(otherKey, cache).getPublicKey());
+        assertEquals(2, cache.size());
+    }
+
+    @org.junit.Test
+    public void testInternalResolversFirst() throws Exception {
+        ResolvedKeyCache cache = new ResolvedKeyCache(10, 60000L);
+        assertEquals(publicKey, newKeyInfo(publicKey, cache).getPublicKey());
+
+        // the per-KeyInfo resolver takes precedence over the cache, and its key is not cached
+        final PublicKey otherKey = KeyPairGenerator.getInstance("RSA").generateKeyPair().getPublic();
+        KeyInfo keyInfo = newKeyInfo(publicKey, cache);
+        keyInfo.registerInternalKeyResolver(new KeyResolverSpi() {
+            @Override
+            public PublicKey engineLookupAndResolvePublicKey(
+                Element element, String baseURI, StorageResolver storage
+            ) {
+                return otherKey;
+            }
+        });
+        long hits = cache.getHits();
+        assertEquals(otherKey, keyInfo.getPublicKey());
+        assertEquals(hits, cache.getHits());
+        assertEquals(1, cache.size());
+
+        assertEquals(publicKey, newKeyInfo(publicKey, cache).getPublicKey());
+        assertEquals(hits + 1, cache.getHits());
+    }
+
+    @org.junit.Test
+    public void testExpiry() throws Exception {
+        ResolvedKeyCache cache = new ResolvedKeyCache(10, 0L);
+
+        newKeyInfo(publicKey, cache).getPublicKey();
+        long hits = cache.getHits();
+        assertEquals(publicKey, newKeyInfo(publicKey, cache).getPublicKey());
+        assertEquals(hits, cache.getHits());
+    }
+
+    @org.junit.Test
+    public void testMaxSize() throws Exception {
+        ResolvedKeyCache cache = new ResolvedKeyCache(2, 60000L);
+        for (int i = 0; i < 5; i++) {
+            cache.put(ResolvedKeyCache.getIdentifier("test", new byte[] {(byte) i}), publicKey);
+        }
+        assertEquals(2, cache.size());
+        assertSame(publicKey, cache.getPublicKey(ResolvedKeyCache.getIdentifier("test", new byte[] {4})));
+
+        // a disabled cache
+        cache = new ResolvedKeyCache(0, 60000L);
+        cache.put(ResolvedKeyCache.getIdentifier("test", new byte[] {0}), publicKey);
+        assertEquals(0, cache.size());
+    }
+
+    @org.junit.Test
+    public void testIdentifier() throws Exception {
+        // the values are kept apart
+        assertFalse(
+            Arrays.equals(
+                ResolvedKeyCache.getIdentifier("test", new byte[] {1, 2}, new byte[] {3}),
+                ResolvedKeyCache.getIdentifier("test", new byte[] {1}, new byte[] {2, 3})
+            )
+        );
+
+        Document doc = XMLUtils.createDocumentBuilder(false).newDocument();
+        KeyInfo keyInfo = new KeyInfo(doc);
+        keyInfo.addRetrievalMethod("#key", null, null);
+        keyInfo.addKeyValue(publicKey);
+        Element retrievalMethod = XMLUtils.getNextElement(keyInfo.getElement().getFirstChild());
+        assertFalse(ResolvedKeyCache.isCacheable(retrievalMethod));
+        assertTrue(ResolvedKeyCache.isCacheable(XMLUtils.getNextElement(retrievalMethod.getNextSibling())));
+    }
+
+    private static KeyInfo newKeyInfo(PublicKey publicKey, ResolvedKeyCache cache) throws Exception {
+        Document doc = XMLUtils.createDocumentBuilder(false).newDocument();
+        KeyInfo keyInfo = new KeyInfo(doc);
+        keyInfo.addKeyValue(publicKey);
+        doc.appendChild(keyInfo.getElement());
+
+        KeyInfo parsed = new KeyInfo(doc.getDocumentElement(), "");
+        parsed.setResolvedKeyCache(cache);
+        return parsed;
+    }
+}
@@ -32,6 +32,12 @@ import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.RSAPrivateKeySpec;
 import java.security.spec.RSAPublicKeySpec;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import javax.crypto.Cipher;
 import javax.crypto.NoSuchPaddingException;
@@ -52,9 +58,13 @@ import org.apache.xml.security.keys.content.x509.XMLX509SubjectName;
 import org.apache.xml.security.keys.keyresolver.KeyResolver;
 import org.apache.xml.security.keys.keyresolver.KeyResolverException;
 import org.apache.xml.security.keys.keyresolver.KeyResolverSpi;
+import org.apache.xml.security.keys.keyresolver.implementations.DSAKeyValueResolver;
 import org.apache.xml.security.keys.keyresolver.implementations.PrivateKeyResolver;
+import org.apache.xml.security.keys.keyresolver.implementations.RSAKeyValueResolver;
+import org.apache.xml.security.keys.keyresolver.implementations.RetrievalMethodResolver;
 import org.apache.xml.security.keys.keyresolver.implementations.SecretKeyResolver;
 import org.apache.xml.security.keys.keyresolver.implementations.SingleKeyResolver;
+import org.apache.xml.security.keys.keyresolver.implementations.X509SKIResolver;
 import org.apache.xml.security.keys.storage.StorageResolver;
 import org.apache.xml.security.keys.storage.implementations.KeyStoreResolver;
 import org.apache.xml.security.utils.Constants;
@@ -295,6 +305,43 @@ public class KeyResolverTest {
         decryptDocument(document, null);
     }
 
+    /**
+     * Test that the resolvers are looked up by the names of the KeyInfo child elements.
+     */
+    @org.junit.Test
+    public void testResolversByElementName() throws Exception {
+        Document doc = XMLUtils.createDocumentBuilder(false).newDocument();
+        Element keyValue = doc.createElementNS(Constants.SignatureSpecNS, "ds:KeyValue");
+        Element x509Data = doc.createElementNS(Constants.SignatureSpecNS, "ds:X509Data");
+        Element unknown = doc.createElementNS("urn:unknown", "u:Unknown");
+        List<Element> elements = Arrays.asList(keyValue, x509Data, unknown);
+
+        Map<KeyResolverSpi, List<Element>> resolvers = KeyResolver.getResolvers(elements);
+        Map<Class<?>, List<Element>> elementsByResolverClass = new HashMap<>();
+        for (Map.Entry<KeyResolverSpi, List<Element>> entry : resolvers.entrySet()) {
+            elementsByResolverClass.put(entry.getKey().getClass(), entry.getValue());
+        }
+        assertEquals(Collections.singletonList(keyValue), elementsByResolverClass.get(RSAKeyValueResolver.class));
+        assertEquals(Collections.singletonList(keyValue), elementsByResolverClass.get(DSAKeyValueResolver.class));
+        assertEquals(Collections.singletonList(x509Data), elementsByResolverClass.get(X509SKIResolver.class));
+        assertFalse(elementsByResolverClass.containsKey(RetrievalMethodResolver.class));
+
+        // resolvers which don't declare their elements are asked for every element, and
+        // the order of the registration is kept
+        Iterator<KeyResolverSpi> registered = KeyResolver.iterator();
+        Iterator<KeyResolverSpi> found = resolvers.keySet().iterator();
+        while (registered.hasNext()) {
+            KeyResolverSpi resolver = registered.next();
+            if (resolver.engineGetResolvableElements() == null) {
+                assertEquals(elements, resolvers.get(resolver));
+            }
+            if (resolvers.containsKey(resolver)) {
+                assertSame(resolver, found.next());
+            }
+        }
+        assertFalse(found.hasNext());
+    }
+
     private void decryptDocument(Document docSource, KeyResolverSpi internalResolver) throws Exception
     {
         Document document = (Document)docSource.cloneNode(true);
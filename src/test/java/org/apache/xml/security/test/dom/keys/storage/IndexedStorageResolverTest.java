@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.test.dom.keys.storage;
+
+import static org.junit.Assert.*;
+
+import java.io.FileInputStream;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.Iterator;
+
+import org.apache.xml.security.algorithms.MessageDigestAlgorithm;
+import org.apache.xml.security.keys.content.X509Data;
+import org.apache.xml.security.keys.content.x509.XMLX509Digest;
+import org.apache.xml.security.keys.content.x509.XMLX509IssuerSerial;
+import org.apache.xml.security.keys.content.x509.XMLX509SKI;
+import org.apache.xml.security.keys.content.x509.XMLX509SubjectName;
+import org.apache.xml.security.keys.keyresolver.KeyResolverSpi;
+import org.apache.xml.security.keys.keyresolver.implementations.X509DigestResolver;
+import org.apache.xml.security.keys.keyresolver.implementations.X509IssuerSerialResolver;
+import org.apache.xml.security.keys.keyresolver.implementations.X509SKIResolver;
+import org.apache.xml.security.keys.keyresolver.implementations.X509SubjectNameResolver;
+import org.apache.xml.security.keys.storage.IndexedStorageResolver;
+import org.apache.xml.security.keys.storage.StorageResolver;
+import org.apache.xml.security.utils.XMLUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Test for the IndexedStorageResolver.
+ */
+public class IndexedStorageResolverTest {
+
+    private static final String BASEDIR =
+        System.getProperty("basedir") == null ? "./": System.getProperty("basedir");
+    private static final String SEP = System.getProperty("file.separator");
+
+    static {
+        org.apache.xml.security.Init.init();
+    }
+
+    @org.junit.Test
+    public void testLookup() throws Exception {
+        KeyStore ks = loadKeyStore("keystore.jks", "JKS");
+        KeyStore ks2 = loadKeyStore("keystore2.jks", "JCEKS");
+
+        IndexedStorageResolver storage = new IndexedStorageResolver(ks);
+        storage.add(ks2);
+        Document doc = XMLUtils.createDocumentBuilder(false).newDocument();
+
+        int count = 0;
+        Iterator<?> iter = storage.getIterator();
+        while (iter.hasNext()) {
+            X509Certificate cert = (X509Certificate) iter.next();
+            assertSame(cert, storage.getCertificate(new XMLX509IssuerSerial(doc, cert)));
+            assertSame(cert, storage.getCertificate(new XMLX509SubjectName(doc, cert)));
+            assertSame(cert, storage.getCertificate(new XMLX509Digest(doc, cert, MessageDigestAlgorithm.ALGO_ID_DIGEST_SHA1)));
+            assertSame(cert, storage.getCertificate(new XMLX509Digest(doc, cert, MessageDigestAlgorithm.ALGO_ID_DIGEST_SHA256)));
+            if (cert.getVersion() >= 3 && cert.getExtensionValue(XMLX509SKI.SKI_OID) != null) {
+                assertSame(cert, storage.getCertificate(new XMLX509SKI(doc, cert)));
+            }
+            count++;
+        }
+        assertEquals(4, count);
+
+        assertNull(storage.getCertificate(new XMLX509SubjectName(doc, "CN=unknown")));
+        assertNull(storage.getCertificate(new XMLX509IssuerSerial(doc, "CN=unknown", 1)));
+    }
+
+    @org.junit.Test
+    public void testAddInvalidatesIndex() throws Exception {
+        KeyStore ks = loadKeyStore("keystore.jks", "JKS");
+        KeyStore ks2 = loadKeyStore("keystore2.jks", "JCEKS");
+        Document doc = XMLUtils.createDocumentBuilder(false).newDocument();
+
+        IndexedStorageResolver storage = new IndexedStorageResolver();
+        X509Certificate cert = (X509Certificate) new StorageResolver(ks2).getIterator().next();
+        assertNull(storage.getCertificate(new XMLX509SubjectName(doc, cert)));
+
+        storage.add(ks);
+        storage.add(ks2);
+        assertSame(cert, storage.getCertificate(new XMLX509SubjectName(doc, cert)));
+    }
+
+    @org.junit.Test
+    public void testKeyResolvers() throws Exception {
+        KeyStore ks = loadKeyStore("keystore.jks", "JKS");
+        KeyStore ks2 = loadKeyStore("keystore2.jks", "JCEKS");
+        StorageResolver storage = new StorageResolver(ks);
+        storage.add(ks2);
+        IndexedStorageResolver indexedStorage = new IndexedStorageResolver(ks);
+        indexedStorage.add(ks2);
+
+        Document doc = XMLUtils.createDocumentBuilder(false).newDocument();
+        Iterator<?> iter = storage.getIterator();
+        while (iter.hasNext()) {
+            X509Certificate cert = (X509Certificate) iter.next();
+
+            X509Data x509Data = new X509Data(doc);
+            x509Data.addIssuerSerial(cert.getIssuerX500Principal().getName(), cert.getSerialNumber());
+            assertSameResult(new X509IssuerSerialResolver(), x509Data.getElement(), storage, indexedStorage);
+
+            x509Data = new X509Data(doc);
+            x509Data.addSubjectName(cert);
+            assertSameResult(new X509SubjectNameResolver(), x509Data.getElement(), storage, indexedStorage);
+
+            x509Data = new X509Data(doc);
+            x509Data.addDigest(cert, MessageDigestAlgorithm.ALGO_ID_DIGEST_SHA256);
+            assertSameResult(new X509DigestResolver(), x509Data.getElement(), storage, indexedStorage);
+
+            if (cert.getVersion() >= 3 && cert.getExtensionValue(XMLX509SKI.SKI_OID) != null) {
+                x509Data = new X509Data(doc);
+                x509Data.addSKI(cert);
+                // iterating fails on the X509v1 certificates of the storage, the index skips them
+                assertEquals(
+                    cert,
+                    new X509SKIResolver().engineLookupResolveX509Certificate(x509Data.getElement(), "", indexedStorage)
+                );
+            }
+        }
+    }
+
+    private static void assertSameResult(
+        KeyResolverSpi resolver, Element element, StorageResolver storage, StorageResolver indexedStorage
+    ) throws Exception {
+        X509Certificate expected = resolver.engineLookupResolveX509Certificate(element, "", storage);
+        assertNotNull(expected);
+        assertEquals(expected, resolver.engineLookupResolveX509Certificate(element, "", indexedStorage));
+    }
+
+    private static KeyStore loadKeyStore(String name, String type) throws Exception {
+        String inputDir = BASEDIR + SEP + "src/test/resources" + SEP
+            + "org" + SEP + "apache" + SEP + "xml" + SEP + "security" + SEP
+            + "samples" + SEP + "input";
+
+        KeyStore ks = KeyStore.getInstance(type);
+        try (FileInputStream inStream = new FileInputStream(inputDir + SEP + name)) {
+            ks.load(inStream, "xmlsecurity".toCharArray());
+        }
+        return ks;
+    }
+}
@@ -93,6 +93,38 @@ public class SignatureReferenceTest {
         assertEquals(referenceElement, originalElement);
     }
 
+    @org.junit.Test
+    public void testIdenticalReferences() throws Throwable {
+        Document doc = getOriginalDocument();
+        XMLSignature sig = new XMLSignature(doc, "", XMLSignature.ALGO_ID_SIGNATURE_DSA);
+        doc.getDocumentElement().appendChild(sig.getElement());
+
+        for (String digestAlgorithm
+            : new String[] {Constants.ALGO_ID_DIGEST_SHA1, Constants.ALGO_ID_DIGEST_SHA1, DigestMethod.SHA256}) {
+            Transforms transforms = new Transforms(doc);
+            transforms.addTransform(Transforms.TRANSFORM_ENVELOPED_SIGNATURE);
+            transforms.addTransform(Transforms.TRANSFORM_C14N_WITH_COMMENTS);
+            sig.addDocument("", transforms, digestAlgorithm);
+        }
+        sig.sign(getPrivateKey());
+
+        SignedInfo signedInfo = sig.getSignedInfo();
+        assertTrue(signedInfo.verify(false));
+        for (int i = 0; i < signedInfo.getLength(); i++) {
+            assertTrue(signedInfo.getVerificationResult(i));
+            assertNotNull(signedInfo.item(i).getTransformsOutput());
+            assertNotNull(signedInfo.item(i).getReferenceData());
+        }
+
+        // the shared digest must still be compared against each DigestValue
+        Element digestValue = (Element) doc.getElementsByTagNameNS(DS_NS, "DigestValue").item(1);
+        digestValue.setTextContent("AAAAAAAAAAAAAAAAAAAAAAAAAAA=");
+        assertFalse(signedInfo.verify(false));
+        assertTrue(signedInfo.getVerificationResult(0));
+        assertFalse(signedInfo.getVerificationResult(1));
+        assertTrue(signedInfo.getVerificationResult(2));
+    }
+
     // See SANTUARIO-465
     @org.junit.Test
     public void testNoReferenceChildren() throws ParserConfigurationException, XMLSecurityException {
@@ -18,10 +18,17 @@
  */
 package org.apache.xml.security.test.dom.transforms.implementations;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.Base64;
+import java.util.Random;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
@@ -31,10 +38,13 @@ import javax.xml.xpath.XPathFactory;
 
 import org.apache.xml.security.signature.XMLSignatureInput;
 import org.apache.xml.security.test.dom.DSNamespaceContext;
+import org.apache.xml.security.transforms.TransformationException;
 import org.apache.xml.security.transforms.Transforms;
 import org.apache.xml.security.transforms.implementations.TransformBase64Decode;
+import org.apache.xml.security.transforms.params.XPathContainer;
 import org.apache.xml.security.utils.XMLUtils;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 /**
@@ -144,6 +154,187 @@ public class TransformBase64DecodeTest {
         );
     }
 
+    /**
+     * Content larger than the internal buffers, split over several text nodes, is decoded
+     * into the output stream of the last transform.
+     */
+    @org.junit.Test
+    public void testLargeContentStreamed() throws Exception {
+        byte[] data = new byte[200 * 1024 + 7];
+        new Random(42).nextBytes(data);
+        String encoded = Base64.getMimeEncoder().encodeToString(data);
+
+        Document doc = TransformBase64DecodeTest.createDocument();
+        Element element = doc.createElementNS(null, "Data");
+        doc.appendChild(element);
+        int split = encoded.length() / 3;
+        element.appendChild(doc.createTextNode(encoded.substring(0, split)));
+        element.appendChild(doc.createComment("ignored"));
+        element.appendChild(doc.createTextNode(encoded.substring(split)));
+
+        Document doc2 = TransformBase64DecodeTest.createDocument();
+        Transforms t = new Transforms(doc2);
+        doc2.appendChild(t.getElement());
+        t.addTransform(Transforms.TRANSFORM_BASE64_DECODE);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        t.performTransforms(new XMLSignatureInput(element), os);
+        assertArrayEquals(data, os.toByteArray());
+
+        os.reset();
+        t.performTransforms(new XMLSignatureInput(new ByteArrayInputStream(encoded.getBytes())), os);
+        assertArrayEquals(data, os.toByteArray());
+
+        XMLSignatureInput out =
+            t.performTransforms(new XMLSignatureInput(new ByteArrayInputStream(encoded.getBytes())));
+        assertArrayEquals(data, out.getBytes());
+    }
+
+    /**
+     * The second decoding is fused into the output stream of the first one.
+     */
+    @org.junit.Test
+    public void testChainedStreaming() throws Exception {
+        String s2 =
+            "VkdobElGVlNTU0J2WmlCMGFHVWdkSEpoYm5ObWIzSnRJR2x6SUdoMGRIQTZMeTkzZDNjdWR6TXVi\n"
+            + "M0puTHpJd01EQXZNRGt2ZUcxcwpaSE5wWnlOaVlYTmxOalE9";
+        Document doc = TransformBase64DecodeTest.createDocument();
+        Transforms t = new Transforms(doc);
+        doc.appendChild(t.getElement());
+        t.addTransform(TransformBase64Decode.implementedTransformURI);
+        t.addTransform(TransformBase64Decode.implementedTransformURI);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        XMLSignatureInput out =
+            t.performTransforms(new XMLSignatureInput(new ByteArrayInputStream(s2.getBytes())), os);
+        assertTrue(out.isOutputStreamSet());
+        assertEquals(
+            "The URI of the transform is http://www.w3.org/2000/09/xmldsig#base64", os.toString("UTF-8")
+        );
+    }
+
+    /**
+     * The fused decoding rejects the same input as the decoding of a single transform.
+     */
+    @org.junit.Test
+    public void testChainedStreamingMalformedPadding() throws Exception {
+        Document doc = TransformBase64DecodeTest.createDocument();
+        Transforms t = new Transforms(doc);
+        doc.appendChild(t.getElement());
+        t.addTransform(TransformBase64Decode.implementedTransformURI);
+        t.addTransform(TransformBase64Decode.implementedTransformURI);
+
+        for (String encoded : new String[] {"QQ=", "QUJD=QUJD", "QQ==QQ=="}) {
+            String s2 = Base64.getEncoder().encodeToString(encoded.getBytes("UTF-8"));
+            try {
+                t.performTransforms(
+                    new XMLSignatureInput(new ByteArrayInputStream(s2.getBytes())), new ByteArrayOutputStream()
+                );
+                fail("Failure expected on " + encoded);
+            } catch (TransformationException ex) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * A node-set produced by the preceding transform is decoded as without streaming.
+     */
+    @org.junit.Test
+    public void testChainedNodeSet() throws Exception {
+        String input = "<Object><Data>VGhlIFVSSSBvZiB0aGU<Skip>gdHJhbnNmb3Jt</Skip></Data></Object>";
+        Document doc = null;
+        try (InputStream is = new ByteArrayInputStream(input.getBytes())) {
+            doc = XMLUtils.createDocumentBuilder(false).parse(is);
+        }
+
+        Document doc2 = TransformBase64DecodeTest.createDocument();
+        Transforms t = new Transforms(doc2);
+        doc2.appendChild(t.getElement());
+        XPathContainer xpath = new XPathContainer(doc2);
+        xpath.setXPath("self::text()");
+        t.addTransform(Transforms.TRANSFORM_XPATH, xpath.getElementPlusReturns());
+        t.addTransform(Transforms.TRANSFORM_BASE64_DECODE);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        t.performTransforms(new XMLSignatureInput(doc), os);
+        byte[] expected = t.performTransforms(new XMLSignatureInput(doc)).getBytes();
+        assertArrayEquals(expected, os.toByteArray());
+        assertEquals("The URI of the transform", os.toString("UTF-8"));
+    }
+
+    /**
+     * A short or empty first text node must not limit the chunks of the following ones.
+     */
+    @org.junit.Test(timeout = 10000)
+    public void testShortFirstTextNode() throws Exception {
+        byte[] data = new byte[20 * 1024];
+        new Random(42).nextBytes(data);
+        String encoded = Base64.getMimeEncoder().encodeToString(data);
+
+        Document doc2 = TransformBase64DecodeTest.createDocument();
+        Transforms t = new Transforms(doc2);
+        doc2.appendChild(t.getElement());
+        t.addTransform(Transforms.TRANSFORM_BASE64_DECODE);
+
+        for (String first : new String[] {"", "\n"}) {
+            Document doc = TransformBase64DecodeTest.createDocument();
+            Element element = doc.createElementNS(null, "Data");
+            doc.appendChild(element);
+            element.appendChild(doc.createTextNode(first));
+            element.appendChild(doc.createComment("ignored"));
+            element.appendChild(doc.createTextNode(encoded));
+
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            t.performTransforms(new XMLSignatureInput(element), os);
+            assertArrayEquals(data, os.toByteArray());
+        }
+    }
+
+    /**
+     * Malformed padding and base64 data following the padding are rejected like by
+     * {@link XMLUtils#decode(byte[])}, so that nothing can be appended to the signed data.
+     */
+    @org.junit.Test
+    public void testMalformedPadding() throws Exception {
+        Document doc2 = TransformBase64DecodeTest.createDocument();
+        Transforms t = new Transforms(doc2);
+        doc2.appendChild(t.getElement());
+        t.addTransform(Transforms.TRANSFORM_BASE64_DECODE);
+
+        for (String encoded : new String[] {"QQ=", "QUJD=QUJD", "QQ==QQ==", "QQ=\n=", "Q"}) {
+            Document doc = TransformBase64DecodeTest.createDocument();
+            Element element = doc.createElementNS(null, "Data");
+            doc.appendChild(element);
+            element.appendChild(doc.createTextNode(encoded));
+            try {
+                t.performTransforms(new XMLSignatureInput(element), new ByteArrayOutputStream());
+                fail("Failure expected on " + encoded);
+            } catch (TransformationException ex) {
+                // expected
+            }
+            try {
+                t.performTransforms(
+                    new XMLSignatureInput(new ByteArrayInputStream(encoded.getBytes())), new ByteArrayOutputStream()
+                );
+                fail("Failure expected on " + encoded);
+            } catch (TransformationException ex) {
+                // expected
+            }
+            try {
+                t.performTransforms(new XMLSignatureInput(new ByteArrayInputStream(encoded.getBytes()))).getBytes();
+                fail("Failure expected on " + encoded);
+            } catch (IOException ex) {
+                // expected
+            }
+        }
+
+        // line breaks and trailing characters outside of the alphabet are ignored
+        XMLSignatureInput out =
+            t.performTransforms(new XMLSignatureInput(new ByteArrayInputStream("QU\nJD\nQQ==\n".getBytes())));
+        assertEquals("ABCA", new String(out.getBytes(), "UTF-8"));
+    }
+
     private static Document createDocument() throws ParserConfigurationException {
         DocumentBuilder db = XMLUtils.createDocumentBuilder(false);
         Document doc = db.newDocument();
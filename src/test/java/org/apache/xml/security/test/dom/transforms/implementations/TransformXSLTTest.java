@@ -18,9 +18,11 @@
  */
 package org.apache.xml.security.test.dom.transforms.implementations;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPath;
@@ -29,6 +31,7 @@ import javax.xml.xpath.XPathFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 import org.apache.xml.security.signature.XMLSignatureInput;
 import org.apache.xml.security.test.dom.DSNamespaceContext;
@@ -36,6 +39,9 @@ import org.apache.xml.security.transforms.Transform;
 import org.apache.xml.security.transforms.Transforms;
 import org.apache.xml.security.utils.XMLUtils;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
 public class TransformXSLTTest {
 
     private static final String BASEDIR =
@@ -86,6 +92,43 @@ public class TransformXSLTTest {
         transform.performTransform(new XMLSignatureInput(doc2));
     }
 
+    /**
+     * The compiled stylesheet is cached, so repeated transforms must give the same result,
+     * and a modified stylesheet must not be served from the cache.
+     */
+    @org.junit.Test
+    public void testCachedStylesheet() throws Exception {
+        String xml =
+            "<ds:Transform xmlns:ds=\"http://www.w3.org/2000/09/xmldsig#\""
+            + " Algorithm=\"http://www.w3.org/TR/1999/REC-xslt-19991116\">"
+            + "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+            + "<xsl:output method=\"text\"/>"
+            + "<xsl:template match=\"/\"><xsl:value-of select=\"count(//b)\"/></xsl:template>"
+            + "</xsl:stylesheet></ds:Transform>";
+        Document doc = XMLUtils.createDocumentBuilder(false).parse(
+            new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        Element transformEl = doc.getDocumentElement();
+        byte[] input = "<a><b/><b/><c/></a>".getBytes(StandardCharsets.UTF_8);
+
+        byte[] first = performTransform(doc, transformEl, input);
+        assertEquals("2", new String(first, StandardCharsets.UTF_8));
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(first, performTransform(doc, transformEl, input));
+        }
+
+        Node select = doc.getElementsByTagNameNS(
+            "http://www.w3.org/1999/XSL/Transform", "value-of").item(0).getAttributes().item(0);
+        select.setNodeValue("count(//c)");
+        assertEquals("1", new String(performTransform(doc, transformEl, input), StandardCharsets.UTF_8));
+    }
+
+    private static byte[] performTransform(Document doc, Element transformEl, byte[] input)
+        throws Exception {
+        Transform transform =
+            new Transform(doc, Transforms.TRANSFORM_XSLT, transformEl.getChildNodes());
+        return transform.performTransform(new XMLSignatureInput(input)).getBytes();
+    }
+
     private static Document getDocument(File file)
         throws ParserConfigurationException, SAXException, IOException {
         return XMLUtils.createDocumentBuilder(false).parse(new FileInputStream(file));
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.test.dom.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.xml.security.utils.BufferPool;
+import org.apache.xml.security.utils.UnsyncBufferedOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link BufferPool}
+ */
+public class BufferPoolTest extends Assert {
+
+    @Test
+    public void testSizeClasses() {
+        byte[] buffer = BufferPool.acquire(100);
+        assertEquals(4096, buffer.length);
+        BufferPool.release(buffer);
+        buffer = BufferPool.acquire(4097);
+        assertEquals(8192, buffer.length);
+        BufferPool.release(buffer);
+        buffer = BufferPool.acquire(65536);
+        assertEquals(65536, buffer.length);
+        BufferPool.release(buffer);
+
+        // larger buffers are not pooled
+        buffer = BufferPool.acquire(65537);
+        assertEquals(65537, buffer.length);
+        BufferPool.release(buffer);
+        assertNotSame(buffer, BufferPool.acquire(65537));
+    }
+
+    @Test
+    public void testReuse() {
+        byte[] first = BufferPool.acquire(16384);
+        byte[] second = BufferPool.acquire(16384);
+        assertNotSame(first, second);
+        BufferPool.release(first);
+        // a second release must not hand out the buffer twice
+        BufferPool.release(first);
+
+        long reused = BufferPool.getReusedBuffers();
+        byte[] third = BufferPool.acquire(16384);
+        assertSame(first, third);
+        assertEquals(reused + 1, BufferPool.getReusedBuffers());
+
+        long allocated = BufferPool.getAllocatedBuffers();
+        assertNotSame(first, BufferPool.acquire(16384));
+        assertEquals(allocated + 1, BufferPool.getAllocatedBuffers());
+    }
+
+    @Test
+    public void testPoolIsPerThread() throws Exception {
+        byte[] buffer = BufferPool.acquire(32768);
+        BufferPool.release(buffer);
+        byte[][] acquired = new byte[1][];
+        Thread thread = new Thread(() -> acquired[0] = BufferPool.acquire(32768));
+        thread.start();
+        thread.join();
+        assertNotSame(buffer, acquired[0]);
+        assertSame(buffer, BufferPool.acquire(32768));
+    }
+
+    @Test
+    public void testUnsyncBufferedOutputStream() throws Exception {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        OutputStream os = new UnsyncBufferedOutputStream(result);
+        for (int i = 0; i < 20000; i++) {
+            os.write(i);
+            expected.write(i);
+        }
+        os.close();
+        os.close();
+        assertArrayEquals(expected.toByteArray(), result.toByteArray());
+
+        try {
+            os.write(1);
+            fail("Exception expected");
+        } catch (IOException ex) {
+            assertEquals("Stream closed", ex.getMessage());
+        }
+
+        long reused = BufferPool.getReusedBuffers();
+        new UnsyncBufferedOutputStream(result).close();
+        assertEquals(reused + 1, BufferPool.getReusedBuffers());
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.test.dom.utils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.xml.security.signature.XMLSignatureInput;
+import org.apache.xml.security.utils.CompactNodeSet;
+import org.apache.xml.security.utils.XMLUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+public class CompactNodeSetTest extends Assert {
+
+    @Test
+    public void testSameAsLinkedHashSet() throws Exception {
+        Document doc = createDocument(2000);
+        Set<Node> expected = new LinkedHashSet<>();
+        XMLUtils.getSet(doc, expected, null, true);
+        Set<Node> actual = new CompactNodeSet();
+        XMLUtils.getSet(doc, actual, null, true);
+
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, actual);
+        assertEquals(actual, expected);
+        assertEquals(expected.hashCode(), actual.hashCode());
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+        for (Node node : expected) {
+            assertTrue(actual.contains(node));
+        }
+        assertFalse(actual.contains(doc.createElement("a")));
+        assertFalse(actual.add(doc.getDocumentElement()));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        Document doc = createDocument(500);
+        Set<Node> expected = new LinkedHashSet<>();
+        XMLUtils.getSet(doc, expected, null, true);
+        Set<Node> actual = new CompactNodeSet(expected);
+
+        List<Node> nodes = new ArrayList<>(expected);
+        for (int i = 0; i < nodes.size(); i += 3) {
+            assertTrue(actual.remove(nodes.get(i)));
+            expected.remove(nodes.get(i));
+        }
+        assertFalse(actual.remove(nodes.get(0)));
+        for (Iterator<Node> it = actual.iterator(); it.hasNext();) {
+            if (it.next().getNodeType() == Node.TEXT_NODE) {
+                it.remove();
+            }
+        }
+        for (Iterator<Node> it = expected.iterator(); it.hasNext();) {
+            if (it.next().getNodeType() == Node.TEXT_NODE) {
+                it.remove();
+            }
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+
+        // re-added nodes go to the end like in a LinkedHashSet
+        for (int i = 0; i < nodes.size(); i++) {
+            expected.add(nodes.get(i));
+            actual.add(nodes.get(i));
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+
+        actual.clear();
+        assertTrue(actual.isEmpty());
+        assertFalse(actual.iterator().hasNext());
+        assertTrue(actual.add(nodes.get(1)));
+        assertEquals(1, actual.size());
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testConcurrentModification() throws Exception {
+        Document doc = createDocument(10);
+        Set<Node> set = new CompactNodeSet();
+        XMLUtils.getSet(doc, set, null, true);
+        for (Node node : set) {
+            set.remove(node);
+        }
+    }
+
+    @Test
+    public void testXMLSignatureInputNodeSet() throws Exception {
+        Document doc = createDocument(100);
+        Node exclude = doc.getDocumentElement().getFirstChild();
+        XMLSignatureInput input = new XMLSignatureInput(doc);
+        input.setExcludeNode(exclude);
+
+        Set<Node> expected = new LinkedHashSet<>();
+        XMLUtils.getSet(doc, expected, exclude, false);
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(input.getNodeSet()));
+        assertFalse(input.getNodeSet().contains(exclude));
+    }
+
+    private static Document createDocument(int elements) throws Exception {
+        StringBuilder sb = new StringBuilder("<root xmlns:a=\"urn:a\">");
+        for (int i = 0; i < elements; i++) {
+            sb.append("<a:e id=\"").append(i).append("\" b=\"c\">text").append(i)
+                .append("<!-- comment --></a:e>");
+        }
+        sb.append("</root>");
+        return XMLUtils.createDocumentBuilder(false).parse(
+            new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+}
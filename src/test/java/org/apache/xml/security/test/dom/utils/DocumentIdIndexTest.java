@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.test.dom.utils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.xml.security.utils.DocumentIdIndex;
+import org.apache.xml.security.utils.XMLUtils;
+import org.apache.xml.security.utils.resolver.ResourceResolverContext;
+import org.apache.xml.security.utils.resolver.ResourceResolverException;
+import org.apache.xml.security.utils.resolver.ResourceResolverSpi;
+import org.apache.xml.security.utils.resolver.implementations.ResolverFragment;
+import org.apache.xml.security.utils.resolver.implementations.ResolverXPointer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public class DocumentIdIndexTest extends Assert {
+
+    private static final String XML =
+        "<root xmlns:ns=\"urn:test\">"
+        + "<a Id=\"a\"><b Id=\"b\"/></a>"
+        + "<c Id=\"c\"/>"
+        + "<ns:sig URI=\"#a\"/>"
+        + "</root>";
+
+    @Test
+    public void testLookup() throws Exception {
+        Document doc = parse();
+        DocumentIdIndex index = new DocumentIdIndex(doc);
+
+        assertEquals(1, index.getElements("a").size());
+        assertSame(doc.getElementById("b"), index.getElements("b").get(0));
+        assertTrue(index.getElements("d").isEmpty());
+        assertTrue(index.isUnique("#a"));
+        assertTrue(index.isUnique(" c "));
+        assertTrue(index.isUnique("c", doc.getElementById("c")));
+        assertFalse(index.isUnique("c", doc.getElementById("a")));
+    }
+
+    @Test
+    public void testDuplicates() throws Exception {
+        Document doc = parse();
+        Element duplicate = doc.createElement("d");
+        duplicate.setAttributeNS(null, "Id", "a");
+        duplicate.setIdAttributeNS(null, "Id", true);
+        doc.getElementById("c").appendChild(duplicate);
+
+        DocumentIdIndex index = new DocumentIdIndex(doc);
+        assertEquals(2, index.getElements("a").size());
+        assertSame(duplicate, index.getElements("a").get(1));
+        assertFalse(index.isUnique("a"));
+        assertFalse(index.isUnique("a", duplicate));
+        assertTrue(index.isUnique("b"));
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        Document doc = parse();
+        DocumentIdIndex index = new DocumentIdIndex(doc);
+        assertSame(doc, index.getDocument());
+        assertTrue(index.isUnique("b"));
+
+        // the index doesn't notice later changes, a new one does
+        Element duplicate = doc.createElement("d");
+        duplicate.setAttributeNS(null, "Id", "b");
+        doc.getDocumentElement().appendChild(duplicate);
+        duplicate.setIdAttributeNS(null, "Id", true);
+
+        assertTrue(index.isUnique("b"));
+        assertFalse(new DocumentIdIndex(doc).isUnique("b"));
+    }
+
+    @Test
+    public void testResolverFragment() throws Exception {
+        Document doc = parse();
+        Element sig = (Element) doc.getElementsByTagNameNS("urn:test", "sig").item(0);
+        ResolverFragment resolver = new ResolverFragment();
+
+        ResourceResolverContext context =
+            new ResourceResolverContext(sig.getAttributeNodeNS(null, "URI"), null, true);
+        assertNotNull(resolver.engineResolveURI(context));
+
+        Element duplicate = doc.createElement("d");
+        duplicate.setAttributeNS(null, "Id", "a");
+        doc.getDocumentElement().appendChild(duplicate);
+        duplicate.setIdAttributeNS(null, "Id", true);
+        try {
+            resolver.engineResolveURI(context);
+            fail("Failure expected on a duplicate ID");
+        } catch (ResourceResolverException ex) {
+            assertEquals("signature.Verification.MultipleIDs", ex.getMsgID());
+        }
+    }
+
+    @Test
+    public void testResolverWithIndex() throws Exception {
+        Document doc = parse();
+        Element sig = (Element) doc.getElementsByTagNameNS("urn:test", "sig").item(0);
+        sig.setAttributeNS(null, "XPointer", "#xpointer(id('a'))");
+        DocumentIdIndex index = new DocumentIdIndex(doc);
+        assertTrue(index.isUnique("a"));
+
+        // the duplicate is added after the index was built, so it is only found without the index
+        Element duplicate = doc.createElement("d");
+        duplicate.setAttributeNS(null, "Id", "a");
+        doc.getDocumentElement().appendChild(duplicate);
+        duplicate.setIdAttributeNS(null, "Id", true);
+
+        for (String uriAttr : new String[] {"URI", "XPointer"}) {
+            ResourceResolverSpi resolver =
+                "URI".equals(uriAttr) ? new ResolverFragment() : new ResolverXPointer();
+            ResourceResolverContext context =
+                new ResourceResolverContext(sig.getAttributeNodeNS(null, uriAttr), null, true, index);
+            assertNotNull(resolver.engineResolveURI(context));
+
+            // an index of another document is ignored
+            context = new ResourceResolverContext(
+                sig.getAttributeNodeNS(null, uriAttr), null, true, new DocumentIdIndex(parse())
+            );
+            try {
+                resolver.engineResolveURI(context);
+                fail("Failure expected on a duplicate ID");
+            } catch (ResourceResolverException ex) {
+                assertEquals("signature.Verification.MultipleIDs", ex.getMsgID());
+            }
+        }
+    }
+
+    private static Document parse() throws Exception {
+        Document doc = XMLUtils.createDocumentBuilder(false).parse(
+            new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8)));
+        for (String id : new String[] {"a", "b", "c"}) {
+            Element element = (Element) doc.getElementsByTagName(id).item(0);
+            element.setIdAttributeNS(null, "Id", true);
+        }
+        return doc;
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.test.dom.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.xml.security.utils.RFC2253Parser;
+import org.junit.Test;
+
+/**
+ * Measures the normalization of distinguished names. It is excluded from the normal build,
+ * run it with "mvn test -Dtest=RFC2253ParserPerformanceTest".
+ */
+public class RFC2253ParserPerformanceTest {
+
+    private static final int runs = 20;
+    private static final int iterations = 200000;
+
+    private static final String[] CORPUS = {
+        "CN=Merlin Hughes,O=Baltimore Technologies\\, Ltd.,ST=Dublin,C=IE",
+        "CN=Test DSA CA,O=Baltimore Technologies\\, Ltd.,ST=Dublin,C=IE",
+        "CN=www.example.com, OU=IT Department, O=Example Corporation, L=San Francisco, ST=California, C=US",
+        "EMAILADDRESS=admin@example.org,CN=Example Issuing CA 2,OU=PKI,O=Example Org,C=DE",
+        "CN=Alice Smith+UID=asmith,OU=People,DC=example,DC=com",
+        "1.2.840.113549.1.9.1=#16116a646f65406578616d706c652e636f6d,CN=John Doe,O=Example,C=GB",
+        "CN=Transmitter\\, Inc. Signing Key,O=Transmitter,L=Dublin,C=IE",
+        "CN=\"Steve, Kille\",  O=Isode Limited, C=GB",
+        "OU=Sales; CN=J. Smith; O=Widget Inc.; C=US",
+    };
+
+    @Test
+    public void testNormalizePerformance() throws Exception {
+        System.out.println("Testing RFC2253Parser.normalize() performance");
+        for (int run = 1; run <= runs; run++) {
+            long start = System.nanoTime();
+            int length = 0;
+            for (int i = 0; i < iterations; i++) {
+                length += RFC2253Parser.normalize(CORPUS[i % CORPUS.length]).length();
+            }
+            long repeated = System.nanoTime() - start;
+
+            // distinct names, which are not found in the memo
+            List<String> distinct = new ArrayList<>(iterations);
+            for (int i = 0; i < iterations; i++) {
+                distinct.add("SERIALNUMBER=" + run + "-" + i + "," + CORPUS[i % CORPUS.length]);
+            }
+            start = System.nanoTime();
+            for (String dn : distinct) {
+                length += RFC2253Parser.normalize(dn).length();
+            }
+            long unique = System.nanoTime() - start;
+
+            System.out.println("Run " + run + ": repeated names " + repeated / iterations + " ns/op, "
+                + "distinct names " + unique / iterations + " ns/op (" + length + ")");
+        }
+    }
+}
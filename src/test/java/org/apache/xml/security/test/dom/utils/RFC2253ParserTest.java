@@ -117,4 +117,27 @@ public class RFC2253ParserTest extends Assert {
         sb.append('\uc487');
         Assert.assertEquals(RFC2253Parser.xmldsigtoRFC2253("SN=" + sb.toString()), "SN=Lu\uc48di\uc487");
     }
+
+    @Test
+    public void testNormalize() throws Exception {
+        Assert.assertEquals("CN=Merlin Hughes,O=Baltimore Technologies\\, Ltd.,ST=Dublin,C=IE",
+            RFC2253Parser.normalize(" CN=Merlin Hughes, O=Baltimore Technologies\\, Ltd., ST=Dublin, C=IE "));
+        Assert.assertEquals("CN=Test\\,OU=a+UID=b,C=US\\ ",
+            RFC2253Parser.normalize("cn=Test\\ , ou=a + uid=b ,c=US\\ "));
+        Assert.assertEquals("CN=a\\+b+O=c\\=d", RFC2253Parser.normalize("CN=a\\+b+O=c\\=d"));
+        Assert.assertEquals("CN=\\#hash,O=\\#hex", RFC2253Parser.normalize("CN=\\#hash,O=#hex", true));
+        Assert.assertEquals("CN=#hash,O=#hex", RFC2253Parser.normalize("CN=\\#hash,O=#hex", false));
+    }
+
+    @Test
+    public void testNormalizeMemoized() throws Exception {
+        String dn = "CN=Steve Kille    ,   O=Isode Limited,C=GB";
+        String normalized = RFC2253Parser.normalize(dn);
+        Assert.assertEquals("CN=Steve Kille,O=Isode Limited,C=GB", normalized);
+        Assert.assertSame(normalized, RFC2253Parser.normalize(new String(dn)));
+        // the directions are memoized separately
+        Assert.assertEquals("1.3.6.1.4.1.1466.0=#04024869", RFC2253Parser.normalize("1.3.6.1.4.1.1466.0=#04024869", false));
+        Assert.assertEquals("CN=\\#04024869", RFC2253Parser.normalize("CN=#04024869", true));
+        Assert.assertEquals("CN=#04024869", RFC2253Parser.normalize("CN=#04024869", false));
+    }
 }
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.test.dom.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.apache.xml.security.utils.UnsyncByteArrayOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link UnsyncByteArrayOutputStream}
+ */
+public class UnsyncByteArrayOutputStreamTest extends Assert {
+
+    @Test
+    public void testWriteAcrossSegments() throws Exception {
+        UnsyncByteArrayOutputStream os = new UnsyncByteArrayOutputStream();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        write(os, expected, 1024 * 1024 + 17);
+
+        assertEquals(expected.size(), os.size());
+        assertArrayEquals(expected.toByteArray(), os.toByteArray());
+
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        os.writeTo(written);
+        assertArrayEquals(expected.toByteArray(), written.toByteArray());
+    }
+
+    @Test
+    public void testToInputStream() throws Exception {
+        UnsyncByteArrayOutputStream os = new UnsyncByteArrayOutputStream();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        write(os, expected, 100000);
+        byte[] expectedBytes = expected.toByteArray();
+
+        InputStream is = os.toInputStream();
+        assertEquals(expectedBytes.length, is.available());
+        assertEquals(expectedBytes[0] & 0xff, is.read());
+        assertEquals(8191, is.skip(8191));
+        assertTrue(is.markSupported());
+        is.mark(0);
+
+        byte[] read = new byte[5000];
+        assertEquals(read.length, is.read(read, 0, read.length));
+        for (int i = 0; i < read.length; i++) {
+            assertEquals(expectedBytes[8192 + i], read[i]);
+        }
+        is.reset();
+        assertEquals(expectedBytes[8192] & 0xff, is.read());
+
+        ByteArrayOutputStream rest = new ByteArrayOutputStream();
+        int n;
+        while ((n = is.read(read, 0, read.length)) != -1) {
+            rest.write(read, 0, n);
+        }
+        assertEquals(expectedBytes.length - 8193, rest.size());
+        assertEquals(-1, is.read());
+        assertEquals(0, is.available());
+
+        // the stream is a snapshot of the content written so far
+        os.write(1);
+        InputStream snapshot = os.toInputStream();
+        assertEquals(expectedBytes.length + 1, snapshot.available());
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        UnsyncByteArrayOutputStream os = new UnsyncByteArrayOutputStream();
+        write(os, new ByteArrayOutputStream(), 50000);
+        os.reset();
+        assertEquals(0, os.size());
+        assertEquals(0, os.toByteArray().length);
+        assertEquals(-1, os.toInputStream().read());
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        write(os, expected, 70000);
+        assertArrayEquals(expected.toByteArray(), os.toByteArray());
+    }
+
+    private static void write(UnsyncByteArrayOutputStream os, ByteArrayOutputStream expected, int size) {
+        Random random = new Random(size);
+        int written = 0;
+        while (written < size) {
+            if (random.nextInt(4) == 0) {
+                int b = random.nextInt(256);
+                os.write(b);
+                expected.write(b);
+                written++;
+            } else {
+                byte[] bytes = new byte[Math.min(random.nextInt(20000), size - written)];
+                random.nextBytes(bytes);
+                os.write(bytes);
+                expected.write(bytes, 0, bytes.length);
+                written += bytes.length;
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.test.stax;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.SecureRandom;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import org.apache.xml.security.stax.impl.util.GCMSpoolingDecryptOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ */
+public class GCMSpoolingDecryptOutputStreamTest extends Assert {
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Test
+    public void testDecryptInMemory() throws Exception {
+        SecretKey secretKey = generateKey(128);
+        for (int length : new int[] {0, 1, 15, 16, 17, 31, 32, 33, 1000, 8193}) {
+            byte[] plainText = randomBytes(length);
+            byte[] encrypted = encrypt(secretKey, plainText);
+            assertArrayEquals(plainText, decrypt(secretKey, encrypted, Integer.MAX_VALUE, null, 1));
+            assertArrayEquals(plainText, decrypt(secretKey, encrypted, Integer.MAX_VALUE, null, 7));
+            assertArrayEquals(plainText, decrypt(secretKey, encrypted, Integer.MAX_VALUE, null, encrypted.length));
+        }
+    }
+
+    @Test
+    public void testDecryptSpooled() throws Exception {
+        File tempDirectory = Files.createTempDirectory("xmlsec").toFile();
+        try {
+            SecretKey secretKey = generateKey(256);
+            byte[] plainText = randomBytes(1024 * 1024 + 5);
+            byte[] encrypted = encrypt(secretKey, plainText);
+            assertArrayEquals(plainText, decrypt(secretKey, encrypted, 4096, tempDirectory, 8191));
+            //the spooled ciphertext must be removed
+            assertEquals(0, tempDirectory.list().length);
+        } finally {
+            tempDirectory.delete();
+        }
+    }
+
+    @Test
+    public void testTamperedTag() throws Exception {
+        SecretKey secretKey = generateKey(128);
+        byte[] encrypted = encrypt(secretKey, randomBytes(100));
+        encrypted[encrypted.length - 1] ^= 1;
+        assertBadTag(secretKey, encrypted);
+    }
+
+    @Test
+    public void testTamperedCipherText() throws Exception {
+        File tempDirectory = Files.createTempDirectory("xmlsec").toFile();
+        try {
+            SecretKey secretKey = generateKey(128);
+            byte[] encrypted = encrypt(secretKey, randomBytes(10000));
+            encrypted[20] ^= 1;
+            ByteArrayOutputStream plainText = new ByteArrayOutputStream();
+            GCMSpoolingDecryptOutputStream outputStream =
+                    new GCMSpoolingDecryptOutputStream(plainText, secretKey, null, 100, tempDirectory);
+            outputStream.write(encrypted);
+            try {
+                outputStream.close();
+                fail("Exception expected");
+            } catch (IOException e) {
+                assertTrue(e.getCause() instanceof AEADBadTagException);
+            }
+            //nothing must be released before the authentication
+            assertEquals(0, plainText.size());
+            assertEquals(0, tempDirectory.list().length);
+        } finally {
+            tempDirectory.delete();
+        }
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        SecretKey secretKey = generateKey(128);
+        byte[] encrypted = encrypt(secretKey, randomBytes(0));
+        byte[] truncated = new byte[encrypted.length - 1];
+        System.arraycopy(encrypted, 0, truncated, 0, truncated.length);
+        assertBadTag(secretKey, truncated);
+    }
+
+    private void assertBadTag(SecretKey secretKey, byte[] encrypted) throws Exception {
+        try {
+            decrypt(secretKey, encrypted, Integer.MAX_VALUE, null, 3);
+            fail("Exception expected");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof AEADBadTagException);
+        }
+    }
+
+    private SecretKey generateKey(int size) throws Exception {
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(size);
+        return keyGenerator.generateKey();
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private byte[] encrypt(SecretKey secretKey, byte[] plainText) throws Exception {
+        byte[] iv = randomBytes(GCMSpoolingDecryptOutputStream.IV_LENGTH);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(128, iv));
+        byte[] cipherText = cipher.doFinal(plainText);
+        byte[] result = new byte[iv.length + cipherText.length];
+        System.arraycopy(iv, 0, result, 0, iv.length);
+        System.arraycopy(cipherText, 0, result, iv.length, cipherText.length);
+        return result;
+    }
+
+    private byte[] decrypt(SecretKey secretKey, byte[] encrypted, int memoryThreshold,
+                           File tempDirectory, int chunkSize) throws Exception {
+        ByteArrayOutputStream plainText = new ByteArrayOutputStream();
+        GCMSpoolingDecryptOutputStream outputStream =
+                new GCMSpoolingDecryptOutputStream(plainText, secretKey, null, memoryThreshold, tempDirectory);
+        for (int off = 0; off < encrypted.length; off += chunkSize) {
+            if (chunkSize == 1) {
+                outputStream.write(encrypted[off]);
+            } else {
+                outputStream.write(encrypted, off, Math.min(chunkSize, encrypted.length - off));
+            }
+        }
+        outputStream.close();
+        return plainText.toByteArray();
+    }
+}
@@ -0,0 +1,381 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.test.stax;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.xml.security.binding.xmldsig.KeyInfoType;
+import org.apache.xml.security.binding.xmldsig.SignatureType;
+import org.apache.xml.security.binding.xmldsig.X509IssuerSerialType;
+import org.apache.xml.security.binding.xmlenc.EncryptedKeyType;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.XMLSec;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.apache.xml.security.stax.ext.XMLSecurityUtils;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import org.apache.xml.security.stax.impl.XMLSecurityEventBinder;
+import org.apache.xml.security.stax.impl.XMLSecurityEventReader;
+import org.custommonkey.xmlunit.Diff;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compares the structures bound by the XMLSecurityEventBinder with the ones of the JAXB unmarshaller
+ */
+public class XMLSecurityEventBinderTest extends Assert {
+
+    private static final String DSIG_NS = "xmlns:ds=\"http://www.w3.org/2000/09/xmldsig#\"";
+
+    private static JAXBContext jaxbContext;
+
+    @BeforeClass
+    public static void initialize() throws Exception {
+        XMLSec.init();
+        jaxbContext = JAXBContext.newInstance(
+                org.apache.xml.security.binding.xmlenc.ObjectFactory.class,
+                org.apache.xml.security.binding.xmlenc11.ObjectFactory.class,
+                org.apache.xml.security.binding.xmldsig.ObjectFactory.class,
+                org.apache.xml.security.binding.xmldsig11.ObjectFactory.class,
+                org.apache.xml.security.binding.excc14n.ObjectFactory.class
+        );
+    }
+
+    @Test
+    public void testSameResultAsJaxb() throws Exception {
+        String basedir = System.getProperty("basedir") == null ? "./" : System.getProperty("basedir");
+        String[] directories = {
+            "src/test/resources/ie/baltimore/merlin-examples/merlin-xmldsig-twenty-three",
+            "src/test/resources/ie/baltimore/merlin-examples/merlin-xmlenc-five",
+            "src/test/resources/org/w3c/www/interop/xmlenc-core-11",
+            "src/test/resources/interop/c14n/Y1",
+            "src/test/resources/interop/c14n/Y3",
+            "src/test/resources/interop/c14n/Y4",
+            "src/test/resources/interop/c14n/Y5",
+            "src/test/resources/org/apache/xml/security/encryption",
+        };
+
+        int structures = 0;
+        for (String directory : directories) {
+            File[] files = new File(basedir, directory).listFiles();
+            assertNotNull(directory, files);
+            for (File file : files) {
+                if (!file.getName().endsWith(".xml")) {
+                    continue;
+                }
+                Deque<XMLSecEvent> xmlSecEventDeque;
+                try (InputStream inputStream = new FileInputStream(file)) {
+                    xmlSecEventDeque = readEvents(inputStream);
+                } catch (XMLStreamException e) {
+                    //not every resource is a well-formed standalone document
+                    continue;
+                }
+                List<Integer> indexes = getStructureIndexes(xmlSecEventDeque);
+                for (Integer index : indexes) {
+                    compare(file.getName(), xmlSecEventDeque, index, false);
+                    compare(file.getName(), xmlSecEventDeque, index, true);
+                    structures++;
+                }
+            }
+        }
+        assertTrue(structures > 40);
+    }
+
+    @Test
+    public void testKeyInfoContent() throws Exception {
+        String xml =
+            "<ds:Signature " + DSIG_NS + ">"
+            + "<ds:SignedInfo>"
+            + "<ds:CanonicalizationMethod Algorithm=\"http://www.w3.org/2001/10/xml-exc-c14n#\">"
+            + "<ec:InclusiveNamespaces xmlns:ec=\"http://www.w3.org/2001/10/xml-exc-c14n#\" PrefixList=\"ds  soap\"/>"
+            + "</ds:CanonicalizationMethod>"
+            + "<ds:SignatureMethod Algorithm=\"http://www.w3.org/2000/09/xmldsig#hmac-sha1\">"
+            + "<ds:HMACOutputLength>128</ds:HMACOutputLength>"
+            + "</ds:SignatureMethod>"
+            + "<ds:Reference URI=\"#a\"><ds:DigestMethod Algorithm=\"http://www.w3.org/2000/09/xmldsig#sha1\"/>"
+            + "<ds:DigestValue>AAAA</ds:DigestValue></ds:Reference>"
+            + "</ds:SignedInfo>"
+            + "<ds:SignatureValue Id=\" sv \">AQID</ds:SignatureValue>"
+            + "<ds:KeyInfo>"
+            + "<ds:X509Data><ds:X509IssuerSerial><ds:X509IssuerName>CN=Test</ds:X509IssuerName>"
+            + "<ds:X509SerialNumber>+12345</ds:X509SerialNumber></ds:X509IssuerSerial></ds:X509Data>"
+            + "<wsse:SecurityTokenReference xmlns:wsse=\"urn:test\"><wsse:Reference URI=\"#b\"/></wsse:SecurityTokenReference>"
+            + "</ds:KeyInfo>"
+            + "</ds:Signature>";
+
+        SignatureType signatureType = bind(xml, false);
+        assertEquals("sv", signatureType.getSignatureValue().getId());
+        assertArrayEquals(new byte[]{1, 2, 3}, signatureType.getSignatureValue().getValue());
+
+        KeyInfoType keyInfoType = signatureType.getKeyInfo();
+        assertEquals(2, keyInfoType.getContent().size());
+        assertTrue(keyInfoType.getContent().get(1) instanceof org.w3c.dom.Element);
+        org.apache.xml.security.binding.xmldsig.X509DataType x509DataType =
+            XMLSecurityUtils.getQNameType(keyInfoType.getContent(), XMLSecurityConstants.TAG_dsig_X509Data);
+        @SuppressWarnings("unchecked")
+        X509IssuerSerialType x509IssuerSerialType =
+            ((JAXBElement<X509IssuerSerialType>) x509DataType.getX509IssuerSerialOrX509SKIOrX509SubjectName().get(0)).getValue();
+        assertEquals("CN=Test", x509IssuerSerialType.getX509IssuerName());
+        assertEquals(12345, x509IssuerSerialType.getX509SerialNumber().intValue());
+
+        org.apache.xml.security.binding.excc14n.InclusiveNamespaces inclusiveNamespaces =
+            XMLSecurityUtils.getQNameType(signatureType.getSignedInfo().getCanonicalizationMethod().getContent(),
+                                          XMLSecurityConstants.TAG_c14nExcl_InclusiveNamespaces);
+        assertEquals(2, inclusiveNamespaces.getPrefixList().size());
+        assertEquals("soap", inclusiveNamespaces.getPrefixList().get(1));
+    }
+
+    @Test
+    public void testEncryptedKeyInKeyInfo() throws Exception {
+        String xml =
+            "<xenc:EncryptedData xmlns:xenc=\"http://www.w3.org/2001/04/xmlenc#\" " + DSIG_NS + " Type=\"http://www.w3.org/2001/04/xmlenc#Element\">"
+            + "<xenc:EncryptionMethod Algorithm=\"http://www.w3.org/2001/04/xmlenc#aes128-cbc\"/>"
+            + "<ds:KeyInfo><xenc:EncryptedKey Recipient=\"r\">"
+            + "<xenc:EncryptionMethod Algorithm=\"http://www.w3.org/2009/xmlenc11#rsa-oaep\">"
+            + "<ds:DigestMethod Algorithm=\"http://www.w3.org/2001/04/xmlenc#sha256\"/>"
+            + "<xenc11:MGF xmlns:xenc11=\"http://www.w3.org/2009/xmlenc11#\" Algorithm=\"http://www.w3.org/2009/xmlenc11#mgf1sha256\"/>"
+            + "</xenc:EncryptionMethod>"
+            + "<xenc:CipherData><xenc:CipherValue>AQID</xenc:CipherValue></xenc:CipherData>"
+            + "<xenc:ReferenceList><xenc:DataReference URI=\"#ed\"/></xenc:ReferenceList>"
+            + "</xenc:EncryptedKey></ds:KeyInfo>"
+            + "<xenc:CipherData><xenc:CipherValue/></xenc:CipherData>"
+            + "</xenc:EncryptedData>";
+
+        Deque<XMLSecEvent> xmlSecEventDeque = readEvents(xml);
+        @SuppressWarnings("unchecked")
+        JAXBElement<org.apache.xml.security.binding.xmlenc.EncryptedDataType> encryptedData =
+            (JAXBElement<org.apache.xml.security.binding.xmlenc.EncryptedDataType>)
+                XMLSecurityEventBinder.unmarshal(xmlSecEventDeque, 1, false);
+        assertEquals(0, encryptedData.getValue().getCipherData().getCipherValue().length);
+
+        EncryptedKeyType encryptedKeyType =
+            XMLSecurityUtils.getQNameType(encryptedData.getValue().getKeyInfo().getContent(),
+                                          XMLSecurityConstants.TAG_xenc_EncryptedKey);
+        assertEquals("r", encryptedKeyType.getRecipient());
+        assertNotNull(XMLSecurityUtils.getQNameType(encryptedKeyType.getEncryptionMethod().getContent(),
+                                                    XMLSecurityConstants.TAG_dsig_DigestMethod));
+        assertNotNull(XMLSecurityUtils.getQNameType(encryptedKeyType.getEncryptionMethod().getContent(),
+                                                    XMLSecurityConstants.TAG_xenc11_MGF));
+        assertEquals("#ed", encryptedKeyType.getReferenceList().getDataReferenceOrKeyReference().get(0).getValue().getURI());
+    }
+
+    @Test
+    public void testStructuralValidation() throws Exception {
+        String signedInfo =
+            "<ds:SignedInfo><ds:CanonicalizationMethod Algorithm=\"http://www.w3.org/2001/10/xml-exc-c14n#\"/>"
+            + "<ds:SignatureMethod Algorithm=\"http://www.w3.org/2000/09/xmldsig#rsa-sha1\"/>"
+            + "<ds:Reference URI=\"\"><ds:DigestMethod Algorithm=\"http://www.w3.org/2000/09/xmldsig#sha1\"/>"
+            + "<ds:DigestValue>AAAA</ds:DigestValue></ds:Reference></ds:SignedInfo>";
+
+        //SignatureValue before SignedInfo
+        assertInvalid("<ds:Signature " + DSIG_NS + "><ds:SignatureValue>AAAA</ds:SignatureValue>"
+                      + signedInfo + "</ds:Signature>", "stax.structure.unexpectedElement");
+        //missing SignatureValue
+        assertInvalid("<ds:Signature " + DSIG_NS + ">" + signedInfo + "</ds:Signature>",
+                      "stax.structure.missingElement");
+        //undeclared attribute
+        assertInvalid("<ds:Signature " + DSIG_NS + " foo=\"bar\">" + signedInfo
+                      + "<ds:SignatureValue>AAAA</ds:SignatureValue></ds:Signature>",
+                      "stax.structure.unexpectedAttribute");
+        //invalid base64
+        assertInvalid("<ds:Signature " + DSIG_NS + ">" + signedInfo
+                      + "<ds:SignatureValue>AAA</ds:SignatureValue></ds:Signature>",
+                      "stax.structure.invalidValue");
+        //duplicate Id
+        assertInvalid("<ds:Signature " + DSIG_NS + " Id=\"a\">" + signedInfo
+                      + "<ds:SignatureValue Id=\"a\">AAAA</ds:SignatureValue></ds:Signature>",
+                      "stax.structure.duplicateId");
+        //text in element only content
+        assertInvalid("<ds:Signature " + DSIG_NS + ">text" + signedInfo
+                      + "<ds:SignatureValue>AAAA</ds:SignatureValue></ds:Signature>",
+                      "stax.structure.unexpectedText");
+        //dsig element in a ##other wildcard
+        assertInvalid("<ds:Signature " + DSIG_NS + ">" + signedInfo
+                      + "<ds:SignatureValue>AAAA</ds:SignatureValue><ds:KeyInfo><ds:Foo/></ds:KeyInfo></ds:Signature>",
+                      "stax.structure.unexpectedElement");
+
+        //without schema validation unknown content is skipped like JAXB does
+        SignatureType signatureType = bind("<ds:Signature " + DSIG_NS + " foo=\"bar\">" + signedInfo
+                                           + "<ds:Foo/><ds:SignatureValue>AAAA</ds:SignatureValue></ds:Signature>", true);
+        assertNotNull(signatureType.getSignatureValue());
+        assertEquals(1, signatureType.getSignedInfo().getReference().size());
+    }
+
+    @Test
+    public void testPooledUnmarshaller() throws Exception {
+        String valid =
+            "<ds:KeyInfo " + DSIG_NS + "><ds:KeyName>test</ds:KeyName></ds:KeyInfo>";
+        String invalid =
+            "<ds:KeyInfo " + DSIG_NS + "><ds:Foo/></ds:KeyInfo>";
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                XMLSecurityConstants.unmarshal(new XMLSecurityEventReader(readEvents(invalid), 1), false);
+                fail("Schema validation error expected");
+            } catch (JAXBException e) { //NOPMD
+                //expected
+            }
+            //unknown content is skipped without validation, also by an unmarshaller used before
+            assertNotNull(XMLSecurityConstants.unmarshal(new XMLSecurityEventReader(readEvents(invalid), 1), true));
+
+            @SuppressWarnings("unchecked")
+            JAXBElement<KeyInfoType> keyInfo = (JAXBElement<KeyInfoType>)
+                XMLSecurityConstants.unmarshal(new XMLSecurityEventReader(readEvents(valid), 1), false);
+            assertEquals("test", ((JAXBElement<?>) keyInfo.getValue().getContent().get(0)).getValue());
+        }
+    }
+
+    private void assertInvalid(String xml, String expectedMsgID) throws Exception {
+        try {
+            bind(xml, false);
+            fail("Exception expected for " + xml);
+        } catch (XMLSecurityException e) {
+            assertEquals(expectedMsgID, e.getMsgID());
+        }
+        try {
+            unmarshalWithJaxb(readEvents(xml), 1, false);
+            fail("Schema validation error expected for " + xml);
+        } catch (JAXBException e) { //NOPMD
+            //expected
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private SignatureType bind(String xml, boolean disableSchemaValidation) throws Exception {
+        return ((JAXBElement<SignatureType>) XMLSecurityEventBinder.unmarshal(
+            readEvents(xml), 1, disableSchemaValidation)).getValue();
+    }
+
+    private void compare(String name, Deque<XMLSecEvent> xmlSecEventDeque, int index, boolean disableSchemaValidation)
+        throws Exception {
+
+        Object expected = null;
+        Exception expectedException = null;
+        try {
+            expected = unmarshalWithJaxb(xmlSecEventDeque, index, disableSchemaValidation);
+        } catch (JAXBException e) {
+            expectedException = e;
+        }
+
+        Object actual = null;
+        try {
+            actual = XMLSecurityEventBinder.unmarshal(xmlSecEventDeque, index, disableSchemaValidation);
+        } catch (XMLSecurityException e) {
+            if (expectedException == null) {
+                throw new AssertionError(name + ": " + e.getMessage(), e);
+            }
+            return;
+        }
+        if (expectedException != null) {
+            fail(name + ": schema validation error expected: " + expectedException.getMessage());
+        }
+
+        String expectedXML = marshal(expected);
+        String actualXML = marshal(actual);
+        Diff diff = new Diff(expectedXML, actualXML);
+        assertTrue(name + ": " + diff.toString() + "\n" + expectedXML + "\n" + actualXML, diff.similar());
+    }
+
+    private Object unmarshalWithJaxb(Deque<XMLSecEvent> xmlSecEventDeque, int index, boolean disableSchemaValidation)
+        throws JAXBException {
+        return XMLSecurityConstants.getJaxbUnmarshaller(disableSchemaValidation).unmarshal(
+            new XMLSecurityEventReader(xmlSecEventDeque, index));
+    }
+
+    private String marshal(Object object) throws JAXBException {
+        Marshaller marshaller = jaxbContext.createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+        StringWriter stringWriter = new StringWriter();
+        marshaller.marshal(object, stringWriter);
+        return stringWriter.toString();
+    }
+
+    private static List<Integer> getStructureIndexes(Deque<XMLSecEvent> xmlSecEventDeque) {
+        List<Integer> indexes = new ArrayList<>();
+        int index = 0;
+        boolean inSignature = false;
+        java.util.Iterator<XMLSecEvent> iterator = xmlSecEventDeque.descendingIterator();
+        while (iterator.hasNext()) {
+            XMLSecEvent xmlSecEvent = iterator.next();
+            if (xmlSecEvent.getEventType() == XMLStreamConstants.START_ELEMENT) {
+                XMLSecStartElement xmlSecStartElement = xmlSecEvent.asStartElement();
+                if (xmlSecStartElement.getName().equals(XMLSecurityConstants.TAG_dsig_Signature)) {
+                    indexes.add(index);
+                    inSignature = true;
+                } else if (!inSignature
+                    && (xmlSecStartElement.getName().equals(XMLSecurityConstants.TAG_xenc_EncryptedData)
+                    || xmlSecStartElement.getName().equals(XMLSecurityConstants.TAG_xenc_EncryptedKey)
+                    || xmlSecStartElement.getName().equals(XMLSecurityConstants.TAG_dsig_SignedInfo))) {
+                    indexes.add(index);
+                }
+            } else if (xmlSecEvent.getEventType() == XMLStreamConstants.END_ELEMENT
+                && xmlSecEvent.asEndElement().getName().equals(XMLSecurityConstants.TAG_dsig_Signature)) {
+                inSignature = false;
+            }
+            index++;
+        }
+        return indexes;
+    }
+
+    private static Deque<XMLSecEvent> readEvents(String xml) throws Exception {
+        return readEvents(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Deque<XMLSecEvent> readEvents(InputStream inputStream) throws Exception {
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(inputStream);
+
+        Deque<XMLSecEvent> xmlSecEventDeque = new ArrayDeque<>();
+        XMLSecStartElement parentXmlSecStartElement = null;
+        do {
+            XMLSecEvent xmlSecEvent = XMLSecEventFactory.allocate(xmlStreamReader, parentXmlSecStartElement);
+            if (xmlSecEvent.getEventType() == XMLStreamConstants.START_ELEMENT) {
+                parentXmlSecStartElement = xmlSecEvent.asStartElement();
+            } else if (xmlSecEvent.getEventType() == XMLStreamConstants.END_ELEMENT && parentXmlSecStartElement != null) {
+                parentXmlSecStartElement = parentXmlSecStartElement.getParentXMLSecStartElement();
+            }
+            xmlSecEventDeque.push(xmlSecEvent);
+            xmlStreamReader.next();
+        }
+        while (xmlStreamReader.hasNext());
+        xmlSecEventDeque.push(XMLSecEventFactory.allocate(xmlStreamReader, null));
+        return xmlSecEventDeque;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.test.stax.performance;
+
+import org.apache.xml.security.stax.ext.XMLSec;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Measures the cold start of the streaming and the DOM framework. Every run initializes the library
+ * in a fresh JVM, since in an already warmed up JVM the interesting costs (class loading,
+ * configuration parsing) are gone.
+ */
+public class PerformanceStartupTest {
+
+    private static final int runs = 10;
+
+    @Test
+    public void testStartupTimePerformance() throws Exception {
+        System.out.println("Testing Startup Time Performance");
+        long median = measureStartup("stax", "target/startupTimeSamples.txt");
+        System.out.println("Median startup time: " + median + " ms");
+    }
+
+    @Test
+    public void testDOMStartupTimePerformance() throws Exception {
+        System.out.println("Testing DOM Startup Time Performance");
+        long median = measureStartup("dom", "target/domStartupTimeSamples.txt");
+        System.out.println("Median DOM startup time: " + median + " ms");
+    }
+
+    private long measureStartup(String framework, String samplesFile) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+        long[] samples = new long[runs];
+        FileWriter startupSamplesWriter = new FileWriter(samplesFile, false);
+        for (int i = 0; i < runs; i++) {
+            ProcessBuilder processBuilder = new ProcessBuilder(
+                    java, "-cp", System.getProperty("java.class.path"),
+                    PerformanceStartupTest.class.getName(), framework);
+            processBuilder.redirectErrorStream(true);
+            Process process = processBuilder.start();
+            String line;
+            String result = null;
+            try (BufferedReader reader =
+                     new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                while ((line = reader.readLine()) != null) {
+                    result = line;
+                }
+            }
+            Assert.assertEquals(0, process.waitFor());
+            samples[i] = Long.parseLong(result.trim());
+            startupSamplesWriter.write(samples[i] + "\n");
+        }
+        startupSamplesWriter.close();
+
+        Arrays.sort(samples);
+        return samples[runs / 2];
+    }
+
+    /**
+     * Entry point of the measured JVM. The last line printed is the initialization time in milliseconds.
+     */
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+        if ("dom".equals(args[0])) {
+            org.apache.xml.security.Init.init();
+        } else {
+            XMLSec.init();
+        }
+        System.out.println((System.nanoTime() - start) / 1000000L);
+    }
+}
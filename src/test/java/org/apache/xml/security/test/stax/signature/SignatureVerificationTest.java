@@ -25,6 +25,7 @@ import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.security.KeyStore;
+import java.security.PrivateKey;
 import java.security.Security;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
@@ -35,12 +36,15 @@ import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
+import org.apache.xml.security.binding.xmldsig.ReferenceType;
+import org.apache.xml.security.binding.xmldsig.SignatureType;
 import org.apache.xml.security.c14n.Canonicalizer;
 import org.apache.xml.security.c14n.implementations.Canonicalizer20010315OmitComments;
 import org.apache.xml.security.exceptions.XMLSecurityException;
@@ -52,12 +56,20 @@ import org.apache.xml.security.signature.XMLSignature;
 import org.apache.xml.security.stax.config.Init;
 import org.apache.xml.security.stax.config.TransformerAlgorithmMapper;
 import org.apache.xml.security.stax.ext.*;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import org.apache.xml.security.stax.impl.DocumentContextImpl;
+import org.apache.xml.security.stax.impl.InboundSecurityContextImpl;
+import org.apache.xml.security.stax.impl.InputProcessorChainImpl;
+import org.apache.xml.security.stax.impl.processor.input.XMLEventReaderInputProcessor;
+import org.apache.xml.security.stax.impl.processor.input.XMLSignatureReferenceVerifyInputProcessor;
 import org.apache.xml.security.stax.securityEvent.*;
 import org.apache.xml.security.stax.securityToken.SecurityTokenConstants;
 import org.apache.xml.security.test.stax.utils.StAX2DOM;
 import org.apache.xml.security.test.stax.utils.TestUtils;
 import org.apache.xml.security.test.stax.utils.XMLSecEventAllocator;
 import org.apache.xml.security.transforms.Transform;
+import org.apache.xml.security.transforms.Transforms;
 import org.apache.xml.security.transforms.implementations.TransformC14N;
 import org.apache.xml.security.utils.XMLUtils;
 import org.junit.Assert;
@@ -1907,4 +1919,152 @@ public class SignatureVerificationTest extends AbstractSignatureVerificationTest
             Assert.assertTrue(ex.getMessage().contains("Invalid digest of reference"));
         }
     }
+
+    @Test
+    public void testSharedReferencesWithDifferentDigestMethods() throws Exception {
+        // Set up the Key
+        KeyStore keyStore = KeyStore.getInstance("jks");
+        keyStore.load(
+                this.getClass().getClassLoader().getResource("transmitter.jks").openStream(),
+                "default".toCharArray()
+        );
+        Key key = keyStore.getKey("transmitter", "default".toCharArray());
+        X509Certificate cert = (X509Certificate)keyStore.getCertificate("transmitter");
+        Document document = signSharedReferences(key, cert);
+
+        XMLSecurityProperties properties = new XMLSecurityProperties();
+        InboundXMLSec inboundXMLSec = XMLSec.getInboundWSSec(properties);
+        TestSecurityEventListener securityEventListener = new TestSecurityEventListener();
+        XMLStreamReader securityStreamReader =
+                inboundXMLSec.processInMessage(createXMLStreamReader(document), null, securityEventListener);
+        StAX2DOM.readDoc(XMLUtils.createDocumentBuilder(false), securityStreamReader);
+
+        List<SignedElementSecurityEvent> signedElementSecurityEvents =
+                securityEventListener.getSecurityEvents(SecurityEventConstants.SignedElement);
+        Assert.assertEquals(2, signedElementSecurityEvents.size());
+        Assert.assertNotEquals(signedElementSecurityEvents.get(0).getCorrelationID(),
+                signedElementSecurityEvents.get(1).getCorrelationID());
+
+        // The Transforms of every Reference are reported, not only the ones of the first Reference
+        List<AlgorithmSuiteSecurityEvent> algorithmSuiteSecurityEvents =
+                securityEventListener.getSecurityEvents(SecurityEventConstants.AlgorithmSuite);
+        for (SignedElementSecurityEvent signedElementSecurityEvent : signedElementSecurityEvents) {
+            int transforms = 0;
+            for (AlgorithmSuiteSecurityEvent algorithmSuiteSecurityEvent : algorithmSuiteSecurityEvents) {
+                if (XMLSecurityConstants.SigTransform.equals(algorithmSuiteSecurityEvent.getAlgorithmUsage())
+                        && signedElementSecurityEvent.getCorrelationID().equals(
+                                algorithmSuiteSecurityEvent.getCorrelationID())) {
+                    transforms++;
+                }
+            }
+            Assert.assertEquals(1, transforms);
+        }
+
+        // Every DigestValue must be checked, not only the one of the first Reference
+        Element digestValueElement =
+                (Element)document.getElementsByTagNameNS("http://www.w3.org/2000/09/xmldsig#", "DigestValue").item(1);
+        digestValueElement.setTextContent("AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA=");
+        Element signedInfoElement =
+                (Element)document.getElementsByTagNameNS("http://www.w3.org/2000/09/xmldsig#", "SignedInfo").item(0);
+        java.security.Signature signature = java.security.Signature.getInstance("SHA1withRSA");
+        signature.initSign((PrivateKey)key);
+        signature.update(Canonicalizer.getInstance("http://www.w3.org/2001/10/xml-exc-c14n#")
+                .canonicalizeSubtree(signedInfoElement));
+        Element signatureValueElement =
+                (Element)document.getElementsByTagNameNS("http://www.w3.org/2000/09/xmldsig#", "SignatureValue").item(0);
+        signatureValueElement.setTextContent(XMLUtils.encodeToString(signature.sign()));
+
+        securityStreamReader =
+                inboundXMLSec.processInMessage(createXMLStreamReader(document), null, new TestSecurityEventListener());
+        try {
+            StAX2DOM.readDoc(XMLUtils.createDocumentBuilder(false), securityStreamReader);
+            fail("Failure expected on a wrong digest");
+        } catch (XMLStreamException ex) {
+            Assert.assertTrue(ex.getMessage().contains("Invalid digest of reference"));
+        }
+    }
+
+    @Test
+    public void testSharedReferencesWithOverriddenVerifier() throws Exception {
+        // Set up the Key
+        KeyStore keyStore = KeyStore.getInstance("jks");
+        keyStore.load(
+                this.getClass().getClassLoader().getResource("transmitter.jks").openStream(),
+                "default".toCharArray()
+        );
+        Key key = keyStore.getKey("transmitter", "default".toCharArray());
+        X509Certificate cert = (X509Certificate)keyStore.getCertificate("transmitter");
+        Document document = signSharedReferences(key, cert);
+
+        Element signatureElement =
+                (Element)document.getElementsByTagNameNS("http://www.w3.org/2000/09/xmldsig#", "Signature").item(0);
+        SignatureType signatureType = XMLSecurityConstants.getJaxbUnmarshaller(false)
+                .unmarshal(signatureElement, SignatureType.class).getValue();
+
+        XMLSecurityProperties properties = new XMLSecurityProperties();
+        InputProcessorChainImpl inputProcessorChain =
+                new InputProcessorChainImpl(new InboundSecurityContextImpl(), new DocumentContextImpl());
+        inputProcessorChain.addProcessor(
+                new XMLEventReaderInputProcessor(properties, createXMLStreamReader(document)));
+
+        // The verifier of a subclass is used for every Reference, even if they could share one
+        final List<ReferenceType> verifiedReferences = new ArrayList<>();
+        XMLSignatureReferenceVerifyInputProcessor referenceVerifyInputProcessor =
+                new XMLSignatureReferenceVerifyInputProcessor(inputProcessorChain, signatureType, null, properties) {
+                    @Override
+                    protected InternalSignatureReferenceVerifier getSignatureReferenceVerifier(
+                            XMLSecurityProperties securityProperties, InputProcessorChain inputProcessorChain,
+                            ReferenceType referenceType, XMLSecStartElement startElement) throws XMLSecurityException {
+                        verifiedReferences.add(referenceType);
+                        return super.getSignatureReferenceVerifier(
+                                securityProperties, inputProcessorChain, referenceType, startElement);
+                    }
+                };
+        inputProcessorChain.addProcessor(referenceVerifyInputProcessor);
+
+        XMLSecEvent xmlSecEvent;
+        do {
+            inputProcessorChain.reset();
+            xmlSecEvent = inputProcessorChain.processEvent();
+        } while (xmlSecEvent.getEventType() != XMLStreamConstants.END_DOCUMENT);
+        inputProcessorChain.reset();
+        inputProcessorChain.doFinal();
+
+        Assert.assertEquals(signatureType.getSignedInfo().getReference(), verifiedReferences);
+    }
+
+    private Document signSharedReferences(Key key, X509Certificate cert) throws Exception {
+        // Read in plaintext document
+        InputStream sourceDocument =
+                this.getClass().getClassLoader().getResourceAsStream(
+                        "ie/baltimore/merlin-examples/merlin-xmlenc-five/plaintext.xml");
+        DocumentBuilder builder = XMLUtils.createDocumentBuilder(false);
+        Document document = builder.parse(sourceDocument);
+
+        // Sign PaymentInfo twice with the same Transforms but different DigestMethods
+        Element paymentInfoElement =
+                (Element)document.getElementsByTagNameNS("urn:example:po", "PaymentInfo").item(0);
+        paymentInfoElement.setAttributeNS(null, "Id", "PaymentInfo-1");
+        paymentInfoElement.setIdAttributeNS(null, "Id", true);
+
+        XMLSignature sig = new XMLSignature(document, "", "http://www.w3.org/2000/09/xmldsig#rsa-sha1",
+                "http://www.w3.org/2001/10/xml-exc-c14n#");
+        document.getDocumentElement().appendChild(sig.getElement());
+        for (String digestMethod : new String[] {"http://www.w3.org/2000/09/xmldsig#sha1",
+                "http://www.w3.org/2001/04/xmlenc#sha256"}) {
+            Transforms transforms = new Transforms(document);
+            transforms.addTransform("http://www.w3.org/2001/10/xml-exc-c14n#");
+            sig.addDocument("#PaymentInfo-1", transforms, digestMethod);
+        }
+        sig.addKeyInfo(cert);
+        sig.sign(key);
+        return document;
+    }
+
+    private XMLStreamReader createXMLStreamReader(Document document) throws Exception {
+        javax.xml.transform.Transformer transformer = transformerFactory.newTransformer();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        transformer.transform(new DOMSource(document), new StreamResult(baos));
+        return xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(baos.toByteArray()));
+    }
 }
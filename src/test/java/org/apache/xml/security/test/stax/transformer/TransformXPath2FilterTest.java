@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.xml.security.test.stax.transformer;
+
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.signature.XMLSignatureInput;
+import org.apache.xml.security.stax.config.Init;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.apache.xml.security.stax.ext.XMLSecurityUtils;
+import org.apache.xml.security.stax.ext.Transformer;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.impl.transformer.TransformXPath2Filter;
+import org.apache.xml.security.test.stax.utils.XMLSecEventAllocator;
+import org.apache.xml.security.transforms.Transforms;
+import org.apache.xml.security.transforms.params.XPath2FilterContainer;
+import org.apache.xml.security.utils.XMLUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ */
+public class TransformXPath2FilterTest extends Assert {
+
+    private static final String XML =
+        "<root xmlns=\"urn:default\" xmlns:a=\"urn:a\">\n"
+        + "  <a:Header Id=\"h\"><a:Item>1</a:Item></a:Header>\n"
+        + "  <a:Body xmlns:b=\"urn:b\"><b:Data Id=\"d\">text<secret>x</secret><!-- c --></b:Data><keep/></a:Body>\n"
+        + "  <ds:Signature xmlns:ds=\"http://www.w3.org/2000/09/xmldsig#\"><ds:SignedInfo/></ds:Signature>\n"
+        + "</root>";
+
+    private XMLInputFactory xmlInputFactory;
+
+    @Before
+    public void setUp() throws Exception {
+        Init.init(this.getClass().getClassLoader().getResource("security-config.xml").toURI(),
+                this.getClass());
+        org.apache.xml.security.Init.init();
+        this.xmlInputFactory = XMLInputFactory.newInstance();
+        this.xmlInputFactory.setEventAllocator(new XMLSecEventAllocator());
+    }
+
+    @Test
+    public void testSubtract() throws Exception {
+        assertSameAsDOM(new String[][] {
+            {XPath2FilterContainer.SUBTRACT, "//ds:Signature"},
+        });
+        assertSameAsDOM(new String[][] {
+            {XPath2FilterContainer.SUBTRACT, " //a:Body/b:Data/d:secret | //*[@Id = 'h'] "},
+        });
+    }
+
+    @Test
+    public void testIntersect() throws Exception {
+        assertSameAsDOM(new String[][] {
+            {XPath2FilterContainer.INTERSECT, "//a:Body | /d:root/a:Header[@Id='h']"},
+        });
+        assertSameAsDOM(new String[][] {
+            {XPath2FilterContainer.INTERSECT, "/d:root"},
+            {XPath2FilterContainer.SUBTRACT, "//b:*[@Id]"},
+        });
+    }
+
+    @Test
+    public void testUnion() throws Exception {
+        // a:Item and d:keep are included while their parents are excluded
+        assertSameAsDOM(new String[][] {
+            {XPath2FilterContainer.INTERSECT, "//b:Data"},
+            {XPath2FilterContainer.SUBTRACT, "//d:secret"},
+            {XPath2FilterContainer.UNION, "//a:Item | /d:root/a:Body/d:keep"},
+        });
+    }
+
+    @Test
+    public void testUnsupportedExpression() throws Exception {
+        assertUnsupported("//a:Body[position() = 1]");
+        // positional predicates are left to the DOM XPath engine
+        assertUnsupported("//a:Body[1]");
+        assertUnsupported("here()/ancestor::ds:Signature[1]");
+    }
+
+    private void assertUnsupported(String expression) throws Exception {
+        try {
+            transformUsingStAX(new String[][] {
+                {XPath2FilterContainer.INTERSECT, expression},
+            });
+            fail("Exception expected");
+        } catch (XMLSecurityException ex) {
+            assertEquals("stax.unsupportedXPathFilter", ex.getMsgID());
+        }
+    }
+
+    private void assertSameAsDOM(String[][] filters) throws Exception {
+        byte[] expected = transformUsingDOM(filters);
+        byte[] result = transformUsingStAX(filters);
+        assertEquals(new String(expected, StandardCharsets.UTF_8), new String(result, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] transformUsingDOM(String[][] filters) throws Exception {
+        Document doc = XMLUtils.createDocumentBuilder(false).parse(
+            new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8)));
+        Transforms transforms = createTransforms(filters);
+        transforms.addTransform(Transforms.TRANSFORM_C14N_OMIT_COMMENTS);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        transforms.performTransforms(new XMLSignatureInput(doc), os);
+        return os.toByteArray();
+    }
+
+    private byte[] transformUsingStAX(String[][] filters) throws Exception {
+        Element transformElement = createTransforms(filters).item(0).getElement();
+        List<Element> xpathElements = Arrays.asList(XMLUtils.selectNodes(transformElement.getFirstChild(),
+            XPath2FilterContainer.XPathFilter2NS, XPath2FilterContainer._TAG_XPATH2));
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Transformer c14n = XMLSecurityUtils.getTransformer(null, os, null,
+            XMLSecurityConstants.NS_C14N_OMIT_COMMENTS, XMLSecurityConstants.DIRECTION.IN);
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(TransformXPath2Filter.XPATH_FILTERS, xpathElements);
+        Transformer filter = XMLSecurityUtils.getTransformer(c14n, null, properties,
+            XMLSecurityConstants.NS_XMLDSIG_FILTER2, XMLSecurityConstants.DIRECTION.IN);
+        assertTrue(filter instanceof TransformXPath2Filter);
+
+        XMLEventReader xmlEventReader = xmlInputFactory.createXMLEventReader(
+            new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8)));
+        while (xmlEventReader.hasNext()) {
+            filter.transform((XMLSecEvent) xmlEventReader.nextEvent());
+        }
+        filter.doFinal();
+        return os.toByteArray();
+    }
+
+    private static Transforms createTransforms(String[][] filters) throws Exception {
+        Document doc = XMLUtils.createDocumentBuilder(false).newDocument();
+        Transforms transforms = new Transforms(doc);
+        Element transformsElement = transforms.getElement();
+        transformsElement.setAttributeNS("http://www.w3.org/2000/xmlns/", "xmlns:a", "urn:a");
+        transformsElement.setAttributeNS("http://www.w3.org/2000/xmlns/", "xmlns:b", "urn:b");
+        transformsElement.setAttributeNS("http://www.w3.org/2000/xmlns/", "xmlns:d", "urn:default");
+        transformsElement.setAttributeNS("http://www.w3.org/2000/xmlns/", "xmlns:ds",
+            "http://www.w3.org/2000/09/xmldsig#");
+        doc.appendChild(transformsElement);
+        transforms.addTransform(Transforms.TRANSFORM_XPATH2FILTER, XPath2FilterContainer.newInstances(doc, filters));
+        return transforms;
+    }
+}